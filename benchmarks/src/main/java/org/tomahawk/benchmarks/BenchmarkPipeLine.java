@@ -0,0 +1,44 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.resolver.PipeLine;
+import org.tomahawk.libtomahawk.resolver.Query;
+
+/**
+ * A {@link PipeLine} without any {@link org.tomahawk.libtomahawk.resolver.Resolver}s, which counts
+ * its results reports instead of posting them.
+ */
+public class BenchmarkPipeLine extends PipeLine {
+
+    private long mReportCount = 0;
+
+    public BenchmarkPipeLine() {
+        super(null);
+        setAllResolversAdded(true);
+    }
+
+    @Override
+    protected void postResultsReport(Query query) {
+        mReportCount++;
+    }
+
+    public long getReportCount() {
+        return mReportCount;
+    }
+}
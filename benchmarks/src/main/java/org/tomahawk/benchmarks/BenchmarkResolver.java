@@ -0,0 +1,81 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Resolver;
+
+import android.graphics.drawable.Drawable;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link Resolver} which doesn't resolve anything. It only serves as the origin of the {@link
+ * org.tomahawk.libtomahawk.resolver.Result}s of a {@link SyntheticCatalog}.
+ */
+public class BenchmarkResolver implements Resolver {
+
+    private int mId;
+
+    private int mWeight;
+
+    public BenchmarkResolver(int id, int weight) {
+        mId = id;
+        mWeight = weight;
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public boolean isResolving() {
+        return false;
+    }
+
+    @Override
+    public Drawable getIcon() {
+        return null;
+    }
+
+    @Override
+    public boolean resolve(Query query) {
+        return true;
+    }
+
+    @Override
+    public boolean resolve(ArrayList<Query> queries) {
+        return true;
+    }
+
+    @Override
+    public int getId() {
+        return mId;
+    }
+
+    @Override
+    public int getWeight() {
+        return mWeight;
+    }
+
+    @Override
+    public int getTimeout() {
+        return 0;
+    }
+}
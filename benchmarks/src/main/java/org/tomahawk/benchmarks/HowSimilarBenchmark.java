@@ -0,0 +1,100 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.resolver.PipeLine;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Query#howSimilar(Result, int, float)} by scoring every {@link Result} of a
+ * {@link SyntheticCatalog}, once for a track {@link Query} and once for a fullTextQuery.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HowSimilarBenchmark {
+
+    private static final float MINSCORE = 0.5F;
+
+    @Param({"1000", "10000", "100000"})
+    public int mCatalogSize;
+
+    private ArrayList<Result> mResults;
+
+    private Query mTrackQuery;
+
+    private Query mFullTextQuery;
+
+    @Setup
+    public void setup() {
+        mResults = new SyntheticCatalog(mCatalogSize, new BenchmarkResolver(0, 100)).getResults();
+        mTrackQuery = SyntheticCatalog.makeTrackQuery();
+        mFullTextQuery = SyntheticCatalog.makeFullTextQuery();
+    }
+
+    @Benchmark
+    public float trackQuery() {
+        float sum = 0F;
+        for (Result result : mResults) {
+            sum += mTrackQuery.howSimilar(result, PipeLine.PIPELINE_SEARCHTYPE_TRACKS, MINSCORE);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float trackQueryUnbounded() {
+        float sum = 0F;
+        for (Result result : mResults) {
+            sum += mTrackQuery.howSimilar(result, PipeLine.PIPELINE_SEARCHTYPE_TRACKS);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float fullTextQuery() {
+        float sum = 0F;
+        for (Result result : mResults) {
+            sum += mFullTextQuery.howSimilar(result, PipeLine.PIPELINE_SEARCHTYPE_TRACKS,
+                    MINSCORE);
+            sum += mFullTextQuery.howSimilar(result, PipeLine.PIPELINE_SEARCHTYPE_ALBUMS,
+                    MINSCORE);
+            sum += mFullTextQuery.howSimilar(result, PipeLine.PIPELINE_SEARCHTYPE_ARTISTS,
+                    MINSCORE);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,90 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.resolver.Result;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TomahawkUtils#getLevenshteinDistance(String, String)} against its bounded
+ * variant, comparing the target track name with every track name of a {@link SyntheticCatalog}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LevenshteinBenchmark {
+
+    // The same bound as derived from PipeLine's MINSCORE
+    private static final float MINSCORE = 0.5F;
+
+    @Param({"1000", "10000", "100000"})
+    public int mCatalogSize;
+
+    private String mTarget;
+
+    private String[] mNames;
+
+    @Setup
+    public void setup() {
+        mTarget = SyntheticCatalog.makeTrackQuery().getName().toLowerCase();
+        ArrayList<Result> results = new SyntheticCatalog(mCatalogSize,
+                new BenchmarkResolver(0, 100)).getResults();
+        mNames = new String[results.size()];
+        for (int i = 0; i < results.size(); i++) {
+            mNames[i] = results.get(i).getTrack().getName().toLowerCase();
+        }
+    }
+
+    @Benchmark
+    public int unbounded() {
+        int sum = 0;
+        for (String name : mNames) {
+            sum += TomahawkUtils.getLevenshteinDistance(mTarget, name);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int bounded() {
+        int sum = 0;
+        for (String name : mNames) {
+            int maxLength = Math.max(mTarget.length(), name.length());
+            sum += TomahawkUtils.getLevenshteinDistance(mTarget, name,
+                    (int) (maxLength * (1F - MINSCORE)) + 1);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,302 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.database.TomahawkSQLiteHelper;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads and stores a playlist in the flat schema of database version 5 and in the normalized and
+ * indexed schema of version 6. The Android SQLite classes can't run on the JVM, so this runs the
+ * same SQL through the xerial SQLite JDBC driver, which embeds the same SQLite engine. The
+ * normalized schema is being created with the statements of {@link TomahawkSQLiteHelper}, the
+ * queries mirror the ones in UserPlaylistsDataSource.
+ * <p/>
+ * Both databases contain {@link #OTHER_PLAYLISTS} other playlists of the same size, so that
+ * selecting a playlist's tracks without an index has to skip over them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlaylistStorageBenchmark {
+
+    private static final int OTHER_PLAYLISTS = 4;
+
+    private static final String PLAYLIST_ID = "benchmark_playlist";
+
+    private static final String CREATE_FLAT_TABLE_TRACKS = "CREATE TABLE `tracks` ("
+            + " `id` INTEGER PRIMARY KEY AUTOINCREMENT, `id_userplaylists` TEXT, `trackname` TEXT,"
+            + " `artistname` TEXT, `albumname` TEXT, `position` INTEGER)";
+
+    private static final String SELECT_FLAT_TRACKS = "SELECT `id`, `trackname`, `artistname`,"
+            + " `albumname`, `position` FROM `tracks` WHERE `id_userplaylists` = ?"
+            + " ORDER BY `position`, `id`";
+
+    private static final String INSERT_FLAT_TRACK = "INSERT INTO `tracks` (`id_userplaylists`,"
+            + " `trackname`, `artistname`, `albumname`, `position`) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SELECT_TRACKS = "SELECT t.`id`, t.`trackname`, ar.`name`,"
+            + " al.`name`, t.`position` FROM `tracks` AS t"
+            + " LEFT JOIN `artists` AS ar ON ar.`id` = t.`id_artists`"
+            + " LEFT JOIN `albums` AS al ON al.`id` = t.`id_albums`"
+            + " WHERE t.`id_userplaylists` = ? ORDER BY t.`position`, t.`id`";
+
+    private static final String INSERT_TRACK = "INSERT INTO `tracks` (`id_userplaylists`,"
+            + " `trackname`, `id_artists`, `id_albums`, `position`) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String DELETE_TRACKS = "DELETE FROM `tracks` WHERE `id_userplaylists` = ?";
+
+    private static final String DELETE_TRACK = "DELETE FROM `tracks` WHERE `id` = ?";
+
+    @Param({"1000", "10000"})
+    public int mPlaylistSize;
+
+    private ArrayList<Result> mResults;
+
+    private Connection mFlatConnection;
+
+    private PreparedStatement mSelectFlatTracks;
+
+    private PreparedStatement mInsertFlatTrack;
+
+    private PreparedStatement mDeleteFlatTracks;
+
+    private Connection mConnection;
+
+    private PreparedStatement mSelectTracks;
+
+    private PreparedStatement mInsertTrack;
+
+    private PreparedStatement mDeleteTracks;
+
+    private PreparedStatement mDeleteTrack;
+
+    private PreparedStatement mSelectArtistId;
+
+    private PreparedStatement mInsertArtist;
+
+    private PreparedStatement mSelectAlbumId;
+
+    private PreparedStatement mInsertAlbum;
+
+    private final HashMap<String, Long> mArtistIds = new HashMap<String, Long>();
+
+    private final HashMap<String, Long> mAlbumIds = new HashMap<String, Long>();
+
+    private Random mRandom;
+
+    @Setup
+    public void setup() throws SQLException {
+        mResults = new SyntheticCatalog(mPlaylistSize, new BenchmarkResolver(0, 100))
+                .getResults();
+        mRandom = new Random(mPlaylistSize);
+
+        mFlatConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = mFlatConnection.createStatement();
+        statement.execute(CREATE_FLAT_TABLE_TRACKS);
+        statement.close();
+        mFlatConnection.setAutoCommit(false);
+        mSelectFlatTracks = mFlatConnection.prepareStatement(SELECT_FLAT_TRACKS);
+        mInsertFlatTrack = mFlatConnection.prepareStatement(INSERT_FLAT_TRACK);
+        mDeleteFlatTracks = mFlatConnection.prepareStatement(DELETE_TRACKS);
+
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        statement = mConnection.createStatement();
+        statement.execute(TomahawkSQLiteHelper.CREATE_TABLE_USERPLAYLISTS);
+        statement.execute(TomahawkSQLiteHelper.CREATE_TABLE_ARTISTS);
+        statement.execute(TomahawkSQLiteHelper.CREATE_TABLE_ALBUMS);
+        statement.execute(TomahawkSQLiteHelper.CREATE_TABLE_TRACKS);
+        statement.execute(TomahawkSQLiteHelper.CREATE_INDEX_TRACKS_PLAYLIST_POSITION);
+        statement.close();
+        mConnection.setAutoCommit(false);
+        mSelectTracks = mConnection.prepareStatement(SELECT_TRACKS);
+        mInsertTrack = mConnection.prepareStatement(INSERT_TRACK);
+        mDeleteTracks = mConnection.prepareStatement(DELETE_TRACKS);
+        mDeleteTrack = mConnection.prepareStatement(DELETE_TRACK);
+        mSelectArtistId = mConnection.prepareStatement(
+                "SELECT `id` FROM `artists` WHERE `name` = ?");
+        mInsertArtist = mConnection.prepareStatement("INSERT INTO `artists` (`name`) VALUES (?)");
+        mSelectAlbumId = mConnection.prepareStatement("SELECT `id` FROM `albums` WHERE `name` = ?");
+        mInsertAlbum = mConnection.prepareStatement("INSERT INTO `albums` (`name`) VALUES (?)");
+
+        for (int i = 0; i < OTHER_PLAYLISTS; i++) {
+            storeFlat("other_playlist_" + i);
+            store("other_playlist_" + i);
+        }
+        storeFlat(PLAYLIST_ID);
+        store(PLAYLIST_ID);
+    }
+
+    /**
+     * Load the playlist from the flat schema without an index, like version 5 did
+     */
+    @Benchmark
+    public int loadFlat() throws SQLException {
+        return load(mSelectFlatTracks);
+    }
+
+    /**
+     * Load the playlist from the normalized schema through the index on playlist and position
+     */
+    @Benchmark
+    public int loadNormalized() throws SQLException {
+        return load(mSelectTracks);
+    }
+
+    /**
+     * Rewrite the whole playlist in the flat schema, like every store did up to version 4
+     */
+    @Benchmark
+    public int storeAllFlat() throws SQLException {
+        return storeFlat(PLAYLIST_ID);
+    }
+
+    /**
+     * Rewrite the whole playlist in the normalized schema. This is what storing a playlist costs,
+     * which hasn't been stored before.
+     */
+    @Benchmark
+    public int storeAllNormalized() throws SQLException {
+        return store(PLAYLIST_ID);
+    }
+
+    /**
+     * Replace a single track of the playlist, which is what storing a playlist costs after a small
+     * change, now that only the difference to the stored revision is being written
+     */
+    @Benchmark
+    public long storeChangeNormalized() throws SQLException {
+        Result result = mResults.get(mRandom.nextInt(mResults.size()));
+        mSelectTracks.setString(1, PLAYLIST_ID);
+        ResultSet resultSet = mSelectTracks.executeQuery();
+        resultSet.next();
+        long id = resultSet.getLong(1);
+        long position = resultSet.getLong(5);
+        resultSet.close();
+        mDeleteTrack.setLong(1, id);
+        mDeleteTrack.executeUpdate();
+        long insertedId = insertTrack(PLAYLIST_ID, result, position);
+        mConnection.commit();
+        return insertedId;
+    }
+
+    private static int load(PreparedStatement selectTracks) throws SQLException {
+        int sum = 0;
+        selectTracks.setString(1, PLAYLIST_ID);
+        ResultSet resultSet = selectTracks.executeQuery();
+        while (resultSet.next()) {
+            sum += resultSet.getLong(1) + resultSet.getString(2).length()
+                    + resultSet.getString(3).length() + resultSet.getString(4).length()
+                    + resultSet.getLong(5);
+        }
+        resultSet.close();
+        return sum;
+    }
+
+    private int storeFlat(String playlistId) throws SQLException {
+        mDeleteFlatTracks.setString(1, playlistId);
+        mDeleteFlatTracks.executeUpdate();
+        for (int i = 0; i < mResults.size(); i++) {
+            Result result = mResults.get(i);
+            mInsertFlatTrack.setString(1, playlistId);
+            mInsertFlatTrack.setString(2, result.getTrack().getName());
+            mInsertFlatTrack.setString(3, result.getArtist().getName());
+            mInsertFlatTrack.setString(4, result.getAlbum().getName());
+            mInsertFlatTrack.setLong(5, i);
+            mInsertFlatTrack.executeUpdate();
+        }
+        mFlatConnection.commit();
+        return mResults.size();
+    }
+
+    private int store(String playlistId) throws SQLException {
+        mDeleteTracks.setString(1, playlistId);
+        mDeleteTracks.executeUpdate();
+        for (int i = 0; i < mResults.size(); i++) {
+            insertTrack(playlistId, mResults.get(i), i);
+        }
+        mConnection.commit();
+        return mResults.size();
+    }
+
+    private long insertTrack(String playlistId, Result result, long position)
+            throws SQLException {
+        mInsertTrack.setString(1, playlistId);
+        mInsertTrack.setString(2, result.getTrack().getName());
+        mInsertTrack.setLong(3, getNameId(result.getArtist().getName(), mArtistIds,
+                mSelectArtistId, mInsertArtist));
+        mInsertTrack.setLong(4, getNameId(result.getAlbum().getName(), mAlbumIds,
+                mSelectAlbumId, mInsertAlbum));
+        mInsertTrack.setLong(5, position);
+        mInsertTrack.executeUpdate();
+        ResultSet keys = mInsertTrack.getGeneratedKeys();
+        keys.next();
+        long id = keys.getLong(1);
+        keys.close();
+        return id;
+    }
+
+    private static long getNameId(String name, HashMap<String, Long> ids,
+            PreparedStatement selectStatement, PreparedStatement insertStatement)
+            throws SQLException {
+        Long id = ids.get(name);
+        if (id == null) {
+            selectStatement.setString(1, name);
+            ResultSet resultSet = selectStatement.executeQuery();
+            if (resultSet.next()) {
+                id = resultSet.getLong(1);
+            } else {
+                insertStatement.setString(1, name);
+                insertStatement.executeUpdate();
+                ResultSet keys = insertStatement.getGeneratedKeys();
+                keys.next();
+                id = keys.getLong(1);
+                keys.close();
+            }
+            resultSet.close();
+            ids.put(name, id);
+        }
+        return id;
+    }
+}
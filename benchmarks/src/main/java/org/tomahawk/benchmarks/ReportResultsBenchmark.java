@@ -0,0 +1,93 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.tomahawk.libtomahawk.resolver.PipeLine#reportResults}, which scores, filters
+ * and adds the reported {@link Result}s to their {@link Query}. A fresh {@link Query} is being used
+ * for every iteration, so that its result map doesn't only ever see the same keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportResultsBenchmark {
+
+    // reportResults removes duplicates via ArrayList.contains, which is quadratic in the number of
+    // reported Results. A single Resolver never reports anywhere near 100k Results for one Query.
+    @Param({"1000", "10000"})
+    public int mCatalogSize;
+
+    private BenchmarkResolver mResolver;
+
+    private BenchmarkPipeLine mPipeLine;
+
+    private ArrayList<Result> mResults;
+
+    private Query mTrackQuery;
+
+    private Query mFullTextQuery;
+
+    @Setup
+    public void setup() {
+        mResolver = new BenchmarkResolver(0, 100);
+        mPipeLine = new BenchmarkPipeLine();
+        mResults = new SyntheticCatalog(mCatalogSize, mResolver).getResults();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupQueries() {
+        mTrackQuery = SyntheticCatalog.makeTrackQuery();
+        mPipeLine.resolve(mTrackQuery);
+        mFullTextQuery = SyntheticCatalog.makeFullTextQuery();
+        mPipeLine.resolve(mFullTextQuery);
+    }
+
+    @Benchmark
+    public Query trackQuery() {
+        mPipeLine.reportResults(mTrackQuery.getQid(), mResults, mResolver);
+        return mTrackQuery;
+    }
+
+    @Benchmark
+    public Query fullTextQuery() {
+        mPipeLine.reportResults(mFullTextQuery.getQid(), mResults, mResolver);
+        return mFullTextQuery;
+    }
+}
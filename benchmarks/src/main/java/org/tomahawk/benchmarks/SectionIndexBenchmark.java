@@ -0,0 +1,160 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.collection.SectionIndex;
+import org.tomahawk.libtomahawk.collection.SortedView;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the header and fast scroll lookups of a sorted library with and without a {@link
+ * SectionIndex}. The "scan" benchmarks do what an adapter has to do, if it only has the sorted
+ * list: walk it and compare first letters. Every benchmark answers {@link #LOOKUPS} random
+ * lookups, the ones using the {@link SectionIndex} should not depend on the library size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SectionIndexBenchmark {
+
+    private static final int LOOKUPS = 100;
+
+    @Param({"1000", "10000", "50000"})
+    public int mLibrarySize;
+
+    private SortedView<Query> mSortedView;
+
+    private List<Query> mSnapshot;
+
+    private SectionIndex mSectionIndex;
+
+    private int[] mPositions;
+
+    private int[] mSections;
+
+    private Query mChangedQuery;
+
+    @Setup
+    public void setup() {
+        mSortedView = new SortedView<Query>(SortedView.ORDER_ALPHA);
+        ArrayList<Result> results = new SyntheticCatalog(mLibrarySize,
+                new BenchmarkResolver(0, 100)).getResults();
+        for (Result result : results) {
+            mSortedView.add(new Query(result.getTrack().getName(),
+                    result.getAlbum().getName(), result.getArtist().getName(), false));
+        }
+        mSnapshot = mSortedView.getSnapshot();
+        mSectionIndex = mSortedView.getSectionIndex();
+        Random random = new Random(mLibrarySize);
+        mPositions = new int[LOOKUPS];
+        mSections = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            mPositions[i] = random.nextInt(mSnapshot.size());
+            mSections[i] = random.nextInt(mSectionIndex.getSectionCount());
+        }
+        mChangedQuery = mSnapshot.get(mSnapshot.size() / 2);
+    }
+
+    @Benchmark
+    public int sectionForPositionScan() {
+        int sum = 0;
+        for (int position : mPositions) {
+            int section = 0;
+            int previous = SectionIndex.getSection(mSnapshot.get(0).getName());
+            for (int i = 1; i <= position; i++) {
+                int current = SectionIndex.getSection(mSnapshot.get(i).getName());
+                if (current != previous) {
+                    section++;
+                    previous = current;
+                }
+            }
+            sum += section;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int sectionForPositionIndexed() {
+        int sum = 0;
+        for (int position : mPositions) {
+            sum += mSectionIndex.getSectionForPosition(position);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int positionForSectionScan() {
+        int sum = 0;
+        for (int wantedSection : mSections) {
+            int section = 0;
+            int previous = SectionIndex.getSection(mSnapshot.get(0).getName());
+            for (int i = 1; i < mSnapshot.size() && section < wantedSection; i++) {
+                int current = SectionIndex.getSection(mSnapshot.get(i).getName());
+                if (current != previous) {
+                    section++;
+                    previous = current;
+                    if (section == wantedSection) {
+                        sum += i;
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int positionForSectionIndexed() {
+        int sum = 0;
+        for (int section : mSections) {
+            sum += mSectionIndex.getSectionStart(section);
+        }
+        return sum;
+    }
+
+    /**
+     * Removing and re-adding a single track, as it happens on every MediaStore change, followed by
+     * rebuilding the {@link SectionIndex} out of the maintained section counts
+     */
+    @Benchmark
+    public int rebuildAfterChange() {
+        mSortedView.remove(mChangedQuery);
+        mSortedView.add(mChangedQuery);
+        return mSortedView.getSectionIndex().getSectionCount();
+    }
+}
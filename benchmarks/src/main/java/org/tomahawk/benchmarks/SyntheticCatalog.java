@@ -0,0 +1,118 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Resolver;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * A reproducible catalog of {@link Result}s with made up artist, album and track names. A share of
+ * the {@link Result}s are misspelled variations of the target track, so that the scoring code has
+ * to deal with near misses as well as with obvious mismatches.
+ */
+public class SyntheticCatalog {
+
+    private static final String[] WORDS = {"love", "night", "the", "heart", "dance", "fire",
+            "blue", "rain", "city", "dream", "light", "gold", "river", "ghost", "summer", "wild",
+            "stone", "sky", "silver", "electric", "machine", "shadow", "ocean", "velvet", "echo"};
+
+    private static final String TARGET_ARTIST = "The Velvet Machine";
+
+    private static final String TARGET_ALBUM = "Electric Summer Nights";
+
+    private static final String TARGET_TRACK = "Dancing In The Silver Rain";
+
+    // Every n-th Result is a variation of the target track
+    private static final int TARGET_INTERVAL = 20;
+
+    private final ArrayList<Result> mResults;
+
+    public SyntheticCatalog(int size, Resolver resolver) {
+        Random random = new Random(size);
+        mResults = new ArrayList<Result>(size);
+        for (int i = 0; i < size; i++) {
+            String artistName;
+            String albumName;
+            String trackName;
+            if (i % TARGET_INTERVAL == 0) {
+                artistName = misspell(TARGET_ARTIST, random);
+                albumName = misspell(TARGET_ALBUM, random);
+                trackName = misspell(TARGET_TRACK, random);
+            } else {
+                artistName = makeName(random, 1 + random.nextInt(3));
+                albumName = makeName(random, 1 + random.nextInt(4));
+                trackName = makeName(random, 1 + random.nextInt(5));
+            }
+            Artist artist = Artist.get(artistName);
+            Album album = Album.get(albumName, artist);
+            Track track = Track.get(trackName, album, artist);
+            Result result = new Result("http://example.com/" + i + ".mp3", track);
+            result.setResolvedBy(resolver);
+            mResults.add(result);
+        }
+    }
+
+    public ArrayList<Result> getResults() {
+        return mResults;
+    }
+
+    /**
+     * @return a new {@link Query} for the target track
+     */
+    public static Query makeTrackQuery() {
+        return new Query(TARGET_TRACK, TARGET_ALBUM, TARGET_ARTIST, false);
+    }
+
+    /**
+     * @return a new fullTextQuery {@link Query} for the target track
+     */
+    public static Query makeFullTextQuery() {
+        return new Query(TARGET_ARTIST + " " + TARGET_TRACK, false);
+    }
+
+    private static String makeName(Random random, int wordCount) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                name.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            name.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+        }
+        return name.toString();
+    }
+
+    /**
+     * @return the given name with up to three random characters replaced
+     */
+    private static String misspell(String name, Random random) {
+        char[] chars = name.toCharArray();
+        int typos = random.nextInt(4);
+        for (int i = 0; i < typos; i++) {
+            chars[random.nextInt(chars.length)] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,82 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Query#addTrackResult(Result)} and the sorting in {@link
+ * Query#getTrackResults()}, using the {@link Result}s of a {@link SyntheticCatalog} with random
+ * scores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrackResultsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int mCatalogSize;
+
+    private ArrayList<Result> mResults;
+
+    private Query mFilledQuery;
+
+    @Setup
+    public void setup() {
+        mResults = new SyntheticCatalog(mCatalogSize, new BenchmarkResolver(0, 100)).getResults();
+        Random random = new Random(mCatalogSize);
+        for (Result result : mResults) {
+            // Scores below 1, so that the Query doesn't count as solved
+            result.setTrackScore(random.nextFloat() * 0.99F);
+        }
+        mFilledQuery = SyntheticCatalog.makeTrackQuery();
+        mFilledQuery.addTrackResults(mResults);
+    }
+
+    @Benchmark
+    public Query addTrackResults() {
+        Query query = SyntheticCatalog.makeTrackQuery();
+        query.addTrackResults(mResults);
+        return query;
+    }
+
+    @Benchmark
+    public ArrayList<Result> getTrackResults() {
+        return mFilledQuery.getTrackResults();
+    }
+}
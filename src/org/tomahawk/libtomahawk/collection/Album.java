@@ -19,7 +19,6 @@ package org.tomahawk.libtomahawk.collection;
 
 import org.tomahawk.libtomahawk.resolver.DataBaseResolver;
 import org.tomahawk.libtomahawk.resolver.Query;
-import org.tomahawk.libtomahawk.resolver.QueryComparator;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
@@ -39,11 +38,20 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkListItem {
 
-    private static ConcurrentHashMap<String, Album> sAlbums
-            = new ConcurrentHashMap<String, Album>();
+    private static final EntityRegistry<Album> sAlbums = new EntityRegistry<Album>(1024);
+
+    private static final SortedView<Album> sLocalAlbums
+            = new SortedView<Album>(SortedView.ORDER_ALPHA);
+
+    private final int mId;
+
+    private final String mCacheKey;
 
     private ConcurrentHashMap<String, Query> mQueries;
 
+    private final SortedView<Query> mSortedQueries
+            = new SortedView<Query>(SortedView.ORDER_ALBUMPOS);
+
     private String mName;
 
     private Artist mArtist;
@@ -61,26 +69,35 @@ public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkLis
     /**
      * Construct a new {@link Album}
      */
-    private Album(String albumName, Artist artist) {
+    private Album(String albumName, Artist artist, String cacheKey, int id) {
         mName = albumName;
         mArtist = artist;
+        mCacheKey = cacheKey;
+        mId = id;
         mQueries = new ConcurrentHashMap<String, Query>();
     }
 
     /**
      * Returns the {@link Album} with the given album name and {@link org.tomahawk.libtomahawk.collection.Artist}.
-     * If none exists in our static {@link ConcurrentHashMap} yet, construct and add it.
+     * If none exists in our static {@link EntityRegistry} yet, construct and add it.
      */
     public static Album get(String albumName, Artist artist) {
         if (artist == null) {
             artist = Artist.get("");
         }
-        Album album = new Album(albumName, artist);
-        String key = TomahawkUtils.getCacheKey(album);
-        if (!sAlbums.containsKey(key)) {
-            sAlbums.put(key, album);
+        String key = TomahawkUtils.getCacheKey(albumName, artist.getName());
+        Album album = sAlbums.get(key);
+        if (album == null) {
+            synchronized (sAlbums) {
+                album = sAlbums.get(key);
+                if (album == null) {
+                    int id = sAlbums.nextId();
+                    album = new Album(albumName, artist, key, id);
+                    sAlbums.add(key, id, album);
+                }
+            }
         }
-        return sAlbums.get(key);
+        return album;
     }
 
     /**
@@ -90,6 +107,28 @@ public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkLis
         return sAlbums.get(key);
     }
 
+    /**
+     * Get the {@link org.tomahawk.libtomahawk.collection.Album} by providing its id
+     */
+    public static Album getAlbumById(int id) {
+        return sAlbums.getById(id);
+    }
+
+    /**
+     * @return the number of {@link Album}s, which are currently cached
+     */
+    public static int getCachedCount() {
+        return sAlbums.size();
+    }
+
+    /**
+     * @return the number of {@link Album}s, which have been evicted from the cache, since nothing
+     * referenced them anymore
+     */
+    public static long getEvictedCount() {
+        return sAlbums.getEvictedCount();
+    }
+
     /**
      * @return A {@link java.util.ArrayList} of all {@link Album}s
      */
@@ -104,15 +143,14 @@ public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkLis
      * @return A {@link java.util.ArrayList} of all local {@link Album}s
      */
     public static ArrayList<Album> getLocalAlbums() {
-        ArrayList<Album> albums = new ArrayList<Album>();
-        for (Album album : sAlbums.values()) {
-            if (album.containsLocalQueries()) {
-                albums.add(album);
-            }
-        }
-        Collections.sort(albums,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
-        return albums;
+        return new ArrayList<Album>(sLocalAlbums.getSnapshot());
+    }
+
+    /**
+     * @return the {@link SortedView} of all local {@link Album}s
+     */
+    public static SortedView<Album> getLocalAlbumsView() {
+        return sLocalAlbums;
     }
 
     /**
@@ -131,6 +169,20 @@ public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkLis
         return mName;
     }
 
+    /**
+     * @return this {@link Album}'s compact id, which is unique among all {@link Album}s
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * @return this {@link Album}'s normalized cache key
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
     /**
      * @return the {@link Album}'s {@link Artist}
      */
@@ -154,12 +206,25 @@ public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkLis
      */
     public void addQuery(Query query) {
         if (query.getPreferredTrackResult() != null && query.getPreferredTrackResult()
-                .getResolvedBy() instanceof DataBaseResolver) {
+                .getResolvedBy() instanceof DataBaseResolver && !mContainsLocalQueries) {
             mContainsLocalQueries = true;
+            sLocalAlbums.add(this);
         }
         String key = TomahawkUtils.getCacheKey(query);
-        if (!mQueries.containsKey(key)) {
-            mQueries.put(key, query);
+        if (mQueries.putIfAbsent(key, query) == null) {
+            mSortedQueries.add(query);
+        }
+    }
+
+    /**
+     * Remove a {@link Track} from this {@link Album}, unless another {@link
+     * org.tomahawk.libtomahawk.resolver.Query} with the same track has been added instead.
+     *
+     * @param query the {@link Track} to be removed
+     */
+    public void removeQuery(Query query) {
+        if (mQueries.remove(TomahawkUtils.getCacheKey(query), query)) {
+            mSortedQueries.remove(query);
         }
     }
 
@@ -169,9 +234,15 @@ public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkLis
      * @return list of all {@link org.tomahawk.libtomahawk.resolver.Query}s from this {@link Album}.
      */
     public ArrayList<Query> getQueries() {
-        ArrayList<Query> queries = new ArrayList<Query>(mQueries.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
-        return queries;
+        return new ArrayList<Query>(mSortedQueries.getSnapshot());
+    }
+
+    /**
+     * @return the {@link SortedView} of all {@link org.tomahawk.libtomahawk.resolver.Query}s of
+     * this {@link Album}, ordered by album position
+     */
+    public SortedView<Query> getQueriesView() {
+        return mSortedQueries;
     }
 
     /**
@@ -183,13 +254,12 @@ public class Album extends BitmapItem implements TomahawkBaseAdapter.TomahawkLis
      */
     public ArrayList<Query> getLocalQueries() {
         ArrayList<Query> queries = new ArrayList<Query>();
-        for (Query query : mQueries.values()) {
+        for (Query query : mSortedQueries.getSnapshot()) {
             if (query.getPreferredTrackResult() != null && query.getPreferredTrackResult()
                     .isLocal()) {
                 queries.add(query);
             }
         }
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
         return queries;
     }
 
@@ -19,7 +19,6 @@ package org.tomahawk.libtomahawk.collection;
 
 import org.tomahawk.libtomahawk.resolver.DataBaseResolver;
 import org.tomahawk.libtomahawk.resolver.Query;
-import org.tomahawk.libtomahawk.resolver.QueryComparator;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
@@ -39,8 +38,16 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkListItem {
 
-    private static ConcurrentHashMap<String, Artist> sArtists
-            = new ConcurrentHashMap<String, Artist>();
+    private static final EntityRegistry<Artist> sArtists = new EntityRegistry<Artist>(512);
+
+    // Every Artist which contains local Querys. They're never evicted anyway, since the
+    // UserCollection references them.
+    private static final SortedView<Artist> sLocalArtists
+            = new SortedView<Artist>(SortedView.ORDER_ALPHA);
+
+    private final int mId;
+
+    private final String mCacheKey;
 
     private String mName;
 
@@ -48,6 +55,10 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
 
     private ConcurrentHashMap<String, Query> mQueries = new ConcurrentHashMap<String, Query>();
 
+    private final SortedView<Album> mSortedAlbums = new SortedView<Album>(SortedView.ORDER_ALPHA);
+
+    private final SortedView<Query> mSortedQueries = new SortedView<Query>(SortedView.ORDER_ALPHA);
+
     private boolean mContainsLocalQueries = false;
 
     private String mImage;
@@ -57,23 +68,32 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
     /**
      * Construct a new {@link Artist} with the given name
      */
-    private Artist(String artistName) {
+    private Artist(String artistName, String cacheKey, int id) {
         mName = artistName;
+        mCacheKey = cacheKey;
+        mId = id;
     }
 
     /**
-     * Returns the {@link Artist} with the given id. If none exists in our static {@link
-     * ConcurrentHashMap} yet, construct and add it.
+     * Returns the {@link Artist} with the given name. If none exists in our static {@link
+     * EntityRegistry} yet, construct and add it.
      *
-     * @return {@link Artist} with the given id
+     * @return {@link Artist} with the given name
      */
     public static Artist get(String artistName) {
-        Artist artist = new Artist(artistName);
-        String key = TomahawkUtils.getCacheKey(artist);
-        if (!sArtists.containsKey(key)) {
-            sArtists.put(key, artist);
+        String key = TomahawkUtils.getCacheKey(artistName);
+        Artist artist = sArtists.get(key);
+        if (artist == null) {
+            synchronized (sArtists) {
+                artist = sArtists.get(key);
+                if (artist == null) {
+                    int id = sArtists.nextId();
+                    artist = new Artist(artistName, key, id);
+                    sArtists.add(key, id, artist);
+                }
+            }
         }
-        return sArtists.get(key);
+        return artist;
     }
 
     /**
@@ -83,6 +103,28 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
         return sArtists.get(key);
     }
 
+    /**
+     * Get the {@link org.tomahawk.libtomahawk.collection.Artist} by providing its id
+     */
+    public static Artist getArtistById(int id) {
+        return sArtists.getById(id);
+    }
+
+    /**
+     * @return the number of {@link Artist}s, which are currently cached
+     */
+    public static int getCachedCount() {
+        return sArtists.size();
+    }
+
+    /**
+     * @return the number of {@link Artist}s, which have been evicted from the cache, since nothing
+     * referenced them anymore
+     */
+    public static long getEvictedCount() {
+        return sArtists.getEvictedCount();
+    }
+
     /**
      * @return A {@link java.util.List} of all {@link Artist}s
      */
@@ -97,15 +139,14 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      * @return A {@link java.util.List} of local all {@link Artist}s
      */
     public static ArrayList<Artist> getLocalArtists() {
-        ArrayList<Artist> artists = new ArrayList<Artist>();
-        for (Artist artist : sArtists.values()) {
-            if (artist.containsLocalQueries()) {
-                artists.add(artist);
-            }
-        }
-        Collections.sort(artists,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
-        return artists;
+        return new ArrayList<Artist>(sLocalArtists.getSnapshot());
+    }
+
+    /**
+     * @return the {@link SortedView} of all local {@link Artist}s
+     */
+    public static SortedView<Artist> getLocalArtistsView() {
+        return sLocalArtists;
     }
 
     /**
@@ -124,6 +165,20 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
         return mName;
     }
 
+    /**
+     * @return this {@link Artist}'s compact id, which is unique among all {@link Artist}s
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * @return this {@link Artist}'s normalized cache key
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
     /**
      * @return this object
      */
@@ -153,12 +208,24 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      */
     public void addQuery(Query query) {
         if (query.getPreferredTrackResult() != null && query.getPreferredTrackResult()
-                .getResolvedBy() instanceof DataBaseResolver) {
+                .getResolvedBy() instanceof DataBaseResolver && !mContainsLocalQueries) {
             mContainsLocalQueries = true;
+            sLocalArtists.add(this);
         }
         String key = TomahawkUtils.getCacheKey(query);
-        if (!mQueries.containsKey(key)) {
-            mQueries.put(key, query);
+        if (mQueries.putIfAbsent(key, query) == null) {
+            mSortedQueries.add(query);
+        }
+    }
+
+    /**
+     * @param query the {@link org.tomahawk.libtomahawk.resolver.Query} to be removed. Nothing
+     *              happens, if another {@link org.tomahawk.libtomahawk.resolver.Query} with the
+     *              same track has been added instead.
+     */
+    public void removeQuery(Query query) {
+        if (mQueries.remove(TomahawkUtils.getCacheKey(query), query)) {
+            mSortedQueries.remove(query);
         }
     }
 
@@ -166,9 +233,7 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      * @return list of all {@link org.tomahawk.libtomahawk.resolver.Query}s from this object.
      */
     public ArrayList<Query> getQueries() {
-        ArrayList<Query> queries = new ArrayList<Query>(mQueries.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
-        return queries;
+        return new ArrayList<Query>(mSortedQueries.getSnapshot());
     }
 
     /**
@@ -177,13 +242,12 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      */
     public ArrayList<Query> getLocalQueries() {
         ArrayList<Query> queries = new ArrayList<Query>();
-        for (Query query : mQueries.values()) {
+        for (Query query : mSortedQueries.getSnapshot()) {
             if (query.getPreferredTrackResult() != null && query.getPreferredTrackResult()
                     .isLocal()) {
                 queries.add(query);
             }
         }
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
         return queries;
     }
 
@@ -194,8 +258,19 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      */
     public void addAlbum(Album album) {
         String key = TomahawkUtils.getCacheKey(album);
-        if (!mAlbums.containsKey(key)) {
-            mAlbums.put(key, album);
+        if (mAlbums.putIfAbsent(key, album) == null) {
+            mSortedAlbums.add(album);
+        }
+    }
+
+    /**
+     * Remove an {@link Album} from this object
+     *
+     * @param album the {@link Album} to be removed
+     */
+    public void removeAlbum(Album album) {
+        if (mAlbums.remove(TomahawkUtils.getCacheKey(album), album)) {
+            mSortedAlbums.remove(album);
         }
     }
 
@@ -204,6 +279,7 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      */
     public void clearAlbums() {
         mAlbums = new ConcurrentHashMap<String, Album>();
+        mSortedAlbums.clear();
     }
 
     /**
@@ -212,10 +288,7 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      * @return list of all {@link Album}s from this object.
      */
     public ArrayList<Album> getAlbums() {
-        ArrayList<Album> albums = new ArrayList<Album>(mAlbums.values());
-        Collections.sort(albums,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
-        return albums;
+        return new ArrayList<Album>(mSortedAlbums.getSnapshot());
     }
 
     /**
@@ -225,16 +298,28 @@ public class Artist extends BitmapItem implements TomahawkBaseAdapter.TomahawkLi
      */
     public ArrayList<Album> getLocalAlbums() {
         ArrayList<Album> albums = new ArrayList<Album>();
-        for (Album album : mAlbums.values()) {
+        for (Album album : mSortedAlbums.getSnapshot()) {
             if (album.containsLocalQueries()) {
                 albums.add(album);
             }
         }
-        Collections.sort(albums,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
         return albums;
     }
 
+    /**
+     * @return the {@link SortedView} of all {@link Album}s of this {@link Artist}
+     */
+    public SortedView<Album> getAlbumsView() {
+        return mSortedAlbums;
+    }
+
+    /**
+     * @return the {@link SortedView} of all {@link Query}s of this {@link Artist}
+     */
+    public SortedView<Query> getQueriesView() {
+        return mSortedQueries;
+    }
+
     /**
      * @return whether or not this {@link Album} only contains non local queries
      */
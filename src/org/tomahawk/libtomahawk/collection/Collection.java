@@ -41,6 +41,33 @@ public abstract class Collection {
      */
     public abstract ArrayList<Query> getQueries();
 
+    /**
+     * @return the {@link SectionIndex} of the sorted list of all {@link
+     * org.tomahawk.libtomahawk.resolver.Query}s, or null if this {@link Collection} doesn't keep
+     * one
+     */
+    public SectionIndex getQuerySectionIndex() {
+        return null;
+    }
+
+    /**
+     * @return a {@link QuerySnapshot} of the sorted list of all {@link
+     * org.tomahawk.libtomahawk.resolver.Query}s. Subclasses, which keep their {@link
+     * org.tomahawk.libtomahawk.resolver.Query}s sorted anyway, should override this, so that the
+     * list doesn't have to be copied.
+     */
+    public QuerySnapshot getQuerySnapshot() {
+        return new QuerySnapshot(getQueries(), getQuerySectionIndex());
+    }
+
+    /**
+     * @return the {@link QueryIndex} over all {@link org.tomahawk.libtomahawk.resolver.Query}s of
+     * this {@link Collection}, or null if this {@link Collection} doesn't maintain one
+     */
+    public QueryIndex getQueryIndex() {
+        return null;
+    }
+
     /**
      * Return a list of all {@link UserPlaylist}s.
      */
@@ -0,0 +1,77 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import java.util.ArrayList;
+
+/**
+ * Describes the changes, which have been applied to a {@link Collection} in a single incremental
+ * update. Every {@link Query} in here belongs to a single track of the {@link Collection}.
+ */
+public class CollectionDelta {
+
+    private final ArrayList<Query> mAddedQueries = new ArrayList<Query>();
+
+    private final ArrayList<Query> mUpdatedQueries = new ArrayList<Query>();
+
+    private final ArrayList<Query> mRemovedQueries = new ArrayList<Query>();
+
+    void addAddedQuery(Query query) {
+        mAddedQueries.add(query);
+    }
+
+    void addUpdatedQuery(Query query) {
+        mUpdatedQueries.add(query);
+    }
+
+    void addRemovedQuery(Query query) {
+        mRemovedQueries.add(query);
+    }
+
+    /**
+     * @return the {@link Query}s of all tracks, which have been added to the {@link Collection}
+     */
+    public ArrayList<Query> getAddedQueries() {
+        return mAddedQueries;
+    }
+
+    /**
+     * @return the {@link Query}s of all tracks, which have been changed. Every one of them replaces
+     * the {@link Query}, which has been representing the same track before.
+     */
+    public ArrayList<Query> getUpdatedQueries() {
+        return mUpdatedQueries;
+    }
+
+    /**
+     * @return the {@link Query}s of all tracks, which have been removed from the {@link
+     * Collection}
+     */
+    public ArrayList<Query> getRemovedQueries() {
+        return mRemovedQueries;
+    }
+
+    /**
+     * @return whether or not nothing has changed at all
+     */
+    public boolean isEmpty() {
+        return mAddedQueries.isEmpty() && mUpdatedQueries.isEmpty() && mRemovedQueries.isEmpty();
+    }
+}
@@ -0,0 +1,360 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.utils.LongSparseArray;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A compact binary image of the tracks and albums of a {@link UserCollection}, so that it can be
+ * restored on a cold start without scanning the MediaStore first.
+ * <p/>
+ * All names are stored once in a string pool and referenced by their index. Albums and tracks are
+ * stored as fixed-size records, so the file is simply mapped into memory and every field is read
+ * straight from its offset. Strings are only decoded when they're first requested.
+ * <p/>
+ * Layout (big-endian): magic, version, the id and DATE_MODIFIED watermarks, the string count, the
+ * string offsets (count + 1), the UTF-8 string pool, the album count, the album records sorted by
+ * album id, the track count and the track records.
+ */
+class CollectionSnapshot {
+
+    private static final int MAGIC = 0x544d4843;
+
+    private static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // albumId, artPath, firstYear, lastYear
+    private static final int ALBUM_RECORD_SIZE = 8 + 3 * 4;
+
+    // mediaId, albumId, duration, path, trackName, artistName, albumName, albumPos
+    private static final int TRACK_RECORD_SIZE = 3 * 8 + 5 * 4;
+
+    private final ByteBuffer mBuffer;
+
+    private final long mMediaIdWatermark;
+
+    private final long mDateModifiedWatermark;
+
+    private final int mStringOffsetsPos;
+
+    private final int mStringPoolPos;
+
+    private final String[] mStrings;
+
+    private final int mAlbumCount;
+
+    private final int mAlbumsPos;
+
+    private final int mTrackCount;
+
+    private final int mTracksPos;
+
+    private CollectionSnapshot(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a collection snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported collection snapshot version " + version);
+        }
+        mMediaIdWatermark = buffer.getLong();
+        mDateModifiedWatermark = buffer.getLong();
+        int stringCount = checkCount(buffer.getInt());
+        mStrings = new String[stringCount];
+        mStringOffsetsPos = buffer.position();
+        mStringPoolPos = mStringOffsetsPos + (stringCount + 1) * 4;
+        int previousOffset = 0;
+        for (int i = 0; i <= stringCount; i++) {
+            int offset = buffer.getInt(mStringOffsetsPos + i * 4);
+            if (offset < previousOffset) {
+                throw new IOException("Collection snapshot is corrupt");
+            }
+            previousOffset = offset;
+        }
+        buffer.position(checkPosition(mStringPoolPos + (long) previousOffset));
+        mAlbumCount = checkCount(buffer.getInt());
+        mAlbumsPos = buffer.position();
+        buffer.position(checkPosition(mAlbumsPos + (long) mAlbumCount * ALBUM_RECORD_SIZE));
+        mTrackCount = checkCount(buffer.getInt());
+        mTracksPos = buffer.position();
+        if (mTracksPos + (long) mTrackCount * TRACK_RECORD_SIZE != buffer.limit()) {
+            throw new IOException("Collection snapshot is truncated");
+        }
+        // Check every string reference once, so that the getters can't fail later on
+        for (int i = 0; i < mAlbumCount; i++) {
+            for (int j = 8; j < ALBUM_RECORD_SIZE; j += 4) {
+                checkStringIndex(buffer.getInt(mAlbumsPos + i * ALBUM_RECORD_SIZE + j));
+            }
+        }
+        for (int i = 0; i < mTrackCount; i++) {
+            for (int j = 24; j < TRACK_RECORD_SIZE - 4; j += 4) {
+                checkStringIndex(buffer.getInt(mTracksPos + i * TRACK_RECORD_SIZE + j));
+            }
+        }
+    }
+
+    /**
+     * Map the snapshot in the given {@link File} into memory
+     *
+     * @return the {@link CollectionSnapshot} or null, if there is no such {@link File}
+     * @throws IOException if the {@link File} couldn't be read or isn't a valid snapshot
+     */
+    static CollectionSnapshot read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel has been closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CollectionSnapshot(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Collection snapshot is truncated");
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Collection snapshot is corrupt");
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private int checkCount(int count) throws IOException {
+        if (count < 0 || count > mBuffer.limit()) {
+            throw new IOException("Collection snapshot is corrupt");
+        }
+        return count;
+    }
+
+    private int checkPosition(long position) throws IOException {
+        if (position < 0 || position > mBuffer.limit()) {
+            throw new IOException("Collection snapshot is truncated");
+        }
+        return (int) position;
+    }
+
+    private void checkStringIndex(int index) throws IOException {
+        if (index < -1 || index >= mStrings.length) {
+            throw new IOException("Collection snapshot is corrupt");
+        }
+    }
+
+    long getMediaIdWatermark() {
+        return mMediaIdWatermark;
+    }
+
+    long getDateModifiedWatermark() {
+        return mDateModifiedWatermark;
+    }
+
+    /**
+     * @return the album art path, first year and last year of every album by its MediaStore id,
+     * in the same format as they're loaded from the MediaStore
+     */
+    LongSparseArray<String[]> getAlbumDetails() {
+        LongSparseArray<String[]> albumDetails = new LongSparseArray<String[]>(mAlbumCount);
+        for (int i = 0; i < mAlbumCount; i++) {
+            int pos = mAlbumsPos + i * ALBUM_RECORD_SIZE;
+            albumDetails.put(mBuffer.getLong(pos), new String[]{getString(mBuffer.getInt(pos + 8)),
+                    getString(mBuffer.getInt(pos + 12)), getString(mBuffer.getInt(pos + 16))});
+        }
+        return albumDetails;
+    }
+
+    int getTrackCount() {
+        return mTrackCount;
+    }
+
+    long getMediaId(int track) {
+        return mBuffer.getLong(mTracksPos + track * TRACK_RECORD_SIZE);
+    }
+
+    long getAlbumId(int track) {
+        return mBuffer.getLong(mTracksPos + track * TRACK_RECORD_SIZE + 8);
+    }
+
+    long getDuration(int track) {
+        return mBuffer.getLong(mTracksPos + track * TRACK_RECORD_SIZE + 16);
+    }
+
+    String getPath(int track) {
+        return getString(mBuffer.getInt(mTracksPos + track * TRACK_RECORD_SIZE + 24));
+    }
+
+    String getTrackName(int track) {
+        return getString(mBuffer.getInt(mTracksPos + track * TRACK_RECORD_SIZE + 28));
+    }
+
+    String getArtistName(int track) {
+        return getString(mBuffer.getInt(mTracksPos + track * TRACK_RECORD_SIZE + 32));
+    }
+
+    String getAlbumName(int track) {
+        return getString(mBuffer.getInt(mTracksPos + track * TRACK_RECORD_SIZE + 36));
+    }
+
+    int getAlbumPos(int track) {
+        return mBuffer.getInt(mTracksPos + track * TRACK_RECORD_SIZE + 40);
+    }
+
+    /**
+     * @return the string with the given index in the string pool, null if the index is negative
+     */
+    private String getString(int index) {
+        if (index < 0) {
+            return null;
+        }
+        String string = mStrings[index];
+        if (string == null) {
+            int start = mBuffer.getInt(mStringOffsetsPos + index * 4);
+            int end = mBuffer.getInt(mStringOffsetsPos + (index + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer pool = mBuffer.duplicate();
+            pool.position(mStringPoolPos + start);
+            pool.get(bytes);
+            string = new String(bytes, UTF8);
+            mStrings[index] = string;
+        }
+        return string;
+    }
+
+    /**
+     * Collects albums and tracks and writes them to a snapshot {@link File}
+     */
+    static class Writer {
+
+        private final long mMediaIdWatermark;
+
+        private final long mDateModifiedWatermark;
+
+        private final HashMap<String, Integer> mStringIndices = new HashMap<String, Integer>();
+
+        private final ArrayList<byte[]> mStrings = new ArrayList<byte[]>();
+
+        private int mStringPoolLength = 0;
+
+        private final TreeMap<Long, int[]> mAlbums = new TreeMap<Long, int[]>();
+
+        private final ByteArrayOutputStream mTracks = new ByteArrayOutputStream();
+
+        private final DataOutputStream mTracksOut = new DataOutputStream(mTracks);
+
+        private int mTrackCount = 0;
+
+        Writer(long mediaIdWatermark, long dateModifiedWatermark) {
+            mMediaIdWatermark = mediaIdWatermark;
+            mDateModifiedWatermark = dateModifiedWatermark;
+        }
+
+        void addAlbum(long albumId, String albumArtPath, String firstYear, String lastYear) {
+            mAlbums.put(albumId, new int[]{addString(albumArtPath), addString(firstYear),
+                    addString(lastYear)});
+        }
+
+        void addTrack(long mediaId, long albumId, long duration, String path, String trackName,
+                String artistName, String albumName, int albumPos) {
+            try {
+                mTracksOut.writeLong(mediaId);
+                mTracksOut.writeLong(albumId);
+                mTracksOut.writeLong(duration);
+                mTracksOut.writeInt(addString(path));
+                mTracksOut.writeInt(addString(trackName));
+                mTracksOut.writeInt(addString(artistName));
+                mTracksOut.writeInt(addString(albumName));
+                mTracksOut.writeInt(albumPos);
+            } catch (IOException e) {
+                // Can't happen, we're writing into a ByteArrayOutputStream
+                throw new IllegalStateException(e);
+            }
+            mTrackCount++;
+        }
+
+        private int addString(String string) {
+            if (string == null) {
+                return -1;
+            }
+            Integer index = mStringIndices.get(string);
+            if (index == null) {
+                index = mStrings.size();
+                byte[] bytes = string.getBytes(UTF8);
+                mStrings.add(bytes);
+                mStringPoolLength += bytes.length;
+                mStringIndices.put(string, index);
+            }
+            return index;
+        }
+
+        /**
+         * Write the snapshot to the given {@link File}. It is written to a temporary file first
+         * and then renamed, so that a reader never sees a half written snapshot.
+         */
+        void writeTo(File file) throws IOException {
+            File tmpFile = new File(file.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(mMediaIdWatermark);
+                out.writeLong(mDateModifiedWatermark);
+                out.writeInt(mStrings.size());
+                int offset = 0;
+                for (byte[] bytes : mStrings) {
+                    out.writeInt(offset);
+                    offset += bytes.length;
+                }
+                out.writeInt(mStringPoolLength);
+                for (byte[] bytes : mStrings) {
+                    out.write(bytes);
+                }
+                out.writeInt(mAlbums.size());
+                for (Map.Entry<Long, int[]> album : mAlbums.entrySet()) {
+                    out.writeLong(album.getKey());
+                    for (int index : album.getValue()) {
+                        out.writeInt(index);
+                    }
+                }
+                out.writeInt(mTrackCount);
+                mTracks.writeTo(out);
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+                throw new IOException("Couldn't rename " + tmpFile + " to " + file);
+            }
+        }
+    }
+}
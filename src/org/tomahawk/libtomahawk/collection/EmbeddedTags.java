@@ -0,0 +1,93 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+/**
+ * The metadata, which has been read from the tags embedded in a local file by the {@link
+ * TagReader}. Every value, which hasn't been found, is null or 0.
+ */
+public class EmbeddedTags {
+
+    private String mTitle;
+
+    private String mArtist;
+
+    private String mAlbumArtist;
+
+    private String mAlbum;
+
+    private int mYear;
+
+    private int mDiscNumber;
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    void setTitle(String title) {
+        mTitle = title;
+    }
+
+    public String getArtist() {
+        return mArtist;
+    }
+
+    void setArtist(String artist) {
+        mArtist = artist;
+    }
+
+    public String getAlbumArtist() {
+        return mAlbumArtist;
+    }
+
+    void setAlbumArtist(String albumArtist) {
+        mAlbumArtist = albumArtist;
+    }
+
+    public String getAlbum() {
+        return mAlbum;
+    }
+
+    void setAlbum(String album) {
+        mAlbum = album;
+    }
+
+    public int getYear() {
+        return mYear;
+    }
+
+    void setYear(int year) {
+        mYear = year;
+    }
+
+    public int getDiscNumber() {
+        return mDiscNumber;
+    }
+
+    void setDiscNumber(int discNumber) {
+        mDiscNumber = discNumber;
+    }
+
+    /**
+     * @return whether or not not a single value has been found
+     */
+    public boolean isEmpty() {
+        return mTitle == null && mArtist == null && mAlbumArtist == null && mAlbum == null
+                && mYear == 0 && mDiscNumber == 0;
+    }
+}
@@ -0,0 +1,190 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the {@link Artist}s, {@link Album}s and {@link Track}s by their normalized cache key and
+ * assigns every one of them a compact int id.
+ * <p/>
+ * Entities are only weakly referenced, so an entity is evicted as soon as nothing else refers to
+ * it anymore. Local entities are always referenced by the {@link Query}s of the {@link
+ * UserCollection}, whereas the ones of search results or remote playlists go away together with
+ * the {@link Query}s, {@link Playlist}s and views using them. The ids of evicted entities are
+ * being reused, so an id is only meaningful as long as its entity is being referenced.
+ * <p/>
+ * Lookups by key don't lock. A new entity has to be registered while holding this registry's
+ * lock, after {@link #get(String)} has come up empty once more, so that it is only constructed if
+ * it really doesn't exist yet:
+ * <pre>
+ * T entity = registry.get(key);
+ * if (entity == null) {
+ *     synchronized (registry) {
+ *         entity = registry.get(key);
+ *         if (entity == null) {
+ *             int id = registry.nextId();
+ *             entity = new T(..., key, id);
+ *             registry.add(key, id, entity);
+ *         }
+ *     }
+ * }
+ * </pre>
+ */
+public class EntityRegistry<T> {
+
+    private final ConcurrentHashMap<String, EntityReference<T>> mEntities;
+
+    private final ArrayList<EntityReference<T>> mEntitiesById;
+
+    private final ReferenceQueue<T> mReferenceQueue = new ReferenceQueue<T>();
+
+    // Ids of evicted entities, which are handed out again before any new id
+    private int[] mFreeIds = new int[16];
+
+    private int mFreeIdCount = 0;
+
+    private long mEvictedCount = 0;
+
+    /**
+     * A {@link WeakReference} to an entity, which remembers where the entity has been registered,
+     * so that it can be unregistered once the entity has been garbage collected.
+     */
+    private static class EntityReference<T> extends WeakReference<T> {
+
+        private final String mKey;
+
+        private final int mId;
+
+        private EntityReference(T entity, ReferenceQueue<T> queue, String key, int id) {
+            super(entity, queue);
+            mKey = key;
+            mId = id;
+        }
+    }
+
+    public EntityRegistry(int initialCapacity) {
+        mEntities = new ConcurrentHashMap<String, EntityReference<T>>(initialCapacity);
+        mEntitiesById = new ArrayList<EntityReference<T>>(initialCapacity);
+    }
+
+    /**
+     * @return the entity with the given cache key, or null if there is none
+     */
+    public T get(String key) {
+        EntityReference<T> reference = mEntities.get(key);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * @return the entity with the given id, or null if there is none
+     */
+    public synchronized T getById(int id) {
+        if (id < 0 || id >= mEntitiesById.size()) {
+            return null;
+        }
+        EntityReference<T> reference = mEntitiesById.get(id);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Reserve the id for the next entity. Must only be called while holding this registry's lock,
+     * directly followed by {@link #add(String, int, Object)}.
+     */
+    public int nextId() {
+        checkLock();
+        expungeEvictedEntities();
+        if (mFreeIdCount > 0) {
+            return mFreeIds[--mFreeIdCount];
+        }
+        mEntitiesById.add(null);
+        return mEntitiesById.size() - 1;
+    }
+
+    /**
+     * Register the given entity under the given cache key and the id, which has been reserved for
+     * it by {@link #nextId()}. Must only be called while holding this registry's lock.
+     */
+    public void add(String key, int id, T entity) {
+        checkLock();
+        EntityReference<T> reference = new EntityReference<T>(entity, mReferenceQueue, key, id);
+        mEntitiesById.set(id, reference);
+        mEntities.put(key, reference);
+    }
+
+    /**
+     * @return the number of entities, which are currently registered
+     */
+    public synchronized int size() {
+        expungeEvictedEntities();
+        return mEntities.size();
+    }
+
+    /**
+     * @return the number of entities, which have been evicted so far
+     */
+    public synchronized long getEvictedCount() {
+        expungeEvictedEntities();
+        return mEvictedCount;
+    }
+
+    /**
+     * @return a new {@link ArrayList} containing every entity, which is currently registered
+     */
+    public ArrayList<T> values() {
+        ArrayList<T> entities = new ArrayList<T>(mEntities.size());
+        for (EntityReference<T> reference : mEntities.values()) {
+            T entity = reference.get();
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    private void checkLock() {
+        if (!Thread.holdsLock(this)) {
+            throw new IllegalStateException("EntityRegistry has to be locked to add an entity");
+        }
+    }
+
+    /**
+     * Unregister every entity, which has been garbage collected, and free up its id
+     */
+    @SuppressWarnings("unchecked")
+    private void expungeEvictedEntities() {
+        EntityReference<T> reference;
+        while ((reference = (EntityReference<T>) mReferenceQueue.poll()) != null) {
+            // The key might already belong to a newer entity, which must stay registered
+            mEntities.remove(reference.mKey, reference);
+            if (mEntitiesById.get(reference.mId) == reference) {
+                mEntitiesById.set(reference.mId, null);
+                if (mFreeIdCount == mFreeIds.length) {
+                    int[] freeIds = new int[mFreeIds.length * 2];
+                    System.arraycopy(mFreeIds, 0, freeIds, 0, mFreeIdCount);
+                    mFreeIds = freeIds;
+                }
+                mFreeIds[mFreeIdCount++] = reference.mId;
+            }
+            mEvictedCount++;
+        }
+    }
+}
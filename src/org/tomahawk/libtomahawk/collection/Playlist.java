@@ -88,11 +88,19 @@ public abstract class Playlist implements Playable {
         mCurrentQueryIndex = 0;
     }
 
+    /**
+     * Called before this {@link Playlist}'s {@link Query}s are being accessed. Subclasses, which
+     * don't have their {@link Query}s at hand when being constructed, load them here.
+     */
+    protected void ensureQueriesLoaded() {
+    }
+
     /**
      * Set the current {@link Query} of this {@link Playlist}
      */
     @Override
     public void setCurrentQuery(Query newquery) {
+        ensureQueriesLoaded();
         List<Query> querys = mShuffled ? mShuffledQueries : mQueries;
         int i = 0;
         while (i < querys.size()) {
@@ -119,6 +127,7 @@ public abstract class Playlist implements Playable {
      */
     @Override
     public Query getCurrentQuery() {
+        ensureQueriesLoaded();
         List<Query> querys = mShuffled ? mShuffledQueries : mQueries;
         if (querys != null && mCurrentQueryIndex >= 0 && mCurrentQueryIndex < querys.size()) {
             return querys.get(mCurrentQueryIndex);
@@ -138,6 +147,7 @@ public abstract class Playlist implements Playable {
      */
     @Override
     public Query getNextQuery() {
+        ensureQueriesLoaded();
         List<Query> querys = mShuffled ? mShuffledQueries : mQueries;
         if (mCurrentQueryIndex + 1 < querys.size()) {
             Query query = querys.get(mCurrentQueryIndex + 1);
@@ -155,6 +165,7 @@ public abstract class Playlist implements Playable {
      */
     @Override
     public Query getPreviousQuery() {
+        ensureQueriesLoaded();
         List<Query> querys = mShuffled ? mShuffledQueries : mQueries;
         if (mCurrentQueryIndex - 1 >= 0) {
             Query query = querys.get(mCurrentQueryIndex - 1);
@@ -172,6 +183,7 @@ public abstract class Playlist implements Playable {
      */
     @Override
     public Query getQueryAtPos(int i) {
+        ensureQueriesLoaded();
         if (i >= 0 && i < (mShuffled ? mShuffledQueries.size() : mQueries.size())) {
             mCurrentQueryIndex = i;
             return mShuffled ? mShuffledQueries.get(i) : mQueries.get(i);
@@ -184,6 +196,7 @@ public abstract class Playlist implements Playable {
      */
     @Override
     public Query getFirstQuery() {
+        ensureQueriesLoaded();
         if (mShuffled ? mShuffledQueries.isEmpty() : mQueries.isEmpty()) {
             return null;
         }
@@ -196,6 +209,7 @@ public abstract class Playlist implements Playable {
      */
     @Override
     public Query getLastQuery() {
+        ensureQueriesLoaded();
         if (mShuffled ? mShuffledQueries.isEmpty() : mQueries.isEmpty()) {
             return null;
         }
@@ -232,6 +246,7 @@ public abstract class Playlist implements Playable {
      * @return Returns next {@link Query}. Returns null if there is none.
      */
     public Query peekNextQuery() {
+        ensureQueriesLoaded();
         List<Query> querys = mShuffled ? mShuffledQueries : mQueries;
         if (mCurrentQueryIndex + 1 < querys.size()) {
             return querys.get(mCurrentQueryIndex + 1);
@@ -247,6 +262,7 @@ public abstract class Playlist implements Playable {
      * @return Returns previous {@link Query}. Returns null if there is none.
      */
     public Query peekPreviousQuery() {
+        ensureQueriesLoaded();
         if (mCurrentQueryIndex - 1 >= 0) {
             List<Query> querys = mShuffled ? mShuffledQueries : mQueries;
             return querys.get(mCurrentQueryIndex - 1);
@@ -263,6 +279,7 @@ public abstract class Playlist implements Playable {
      * @return Returns the {@link Query} at the given position. Returns null if there is none.
      */
     public Query peekQueryAtPos(int i) {
+        ensureQueriesLoaded();
         if (i >= 0 && i < (mShuffled ? mShuffledQueries.size() : mQueries.size())) {
             return mShuffled ? mShuffledQueries.get(i) : mQueries.get(i);
         }
@@ -274,6 +291,7 @@ public abstract class Playlist implements Playable {
      */
     @SuppressWarnings("unchecked")
     public void setShuffled(boolean shuffled) {
+        ensureQueriesLoaded();
         Query oldCurrentQuery = getCurrentQuery();
         mShuffled = shuffled;
         int i = 0;
@@ -320,6 +338,7 @@ public abstract class Playlist implements Playable {
      * Return the current count of querys in the {@link Playlist}
      */
     public int getCount() {
+        ensureQueriesLoaded();
         return mQueries.size();
     }
 
@@ -327,6 +346,7 @@ public abstract class Playlist implements Playable {
      * Return all querys in the {@link Playlist}
      */
     public ArrayList<Query> getQueries() {
+        ensureQueriesLoaded();
         return mShuffled ? mShuffledQueries : mQueries;
     }
 
@@ -334,6 +354,7 @@ public abstract class Playlist implements Playable {
      * Add an {@link ArrayList} of {@link Query}s at the given position
      */
     public void addQueries(int position, ArrayList<Query> querys) {
+        ensureQueriesLoaded();
         (mShuffled ? mShuffledQueries : mQueries).addAll(position, querys);
     }
 
@@ -341,6 +362,7 @@ public abstract class Playlist implements Playable {
      * Append an {@link ArrayList} of {@link Query}s at the end of this playlist
      */
     public void addQueries(ArrayList<Query> querys) {
+        ensureQueriesLoaded();
         (mShuffled ? mShuffledQueries : mQueries).addAll(querys);
     }
 
@@ -348,6 +370,7 @@ public abstract class Playlist implements Playable {
      * Remove the {@link Query} at the given position from this playlist
      */
     public void deleteQueryAtPos(int position) {
+        ensureQueriesLoaded();
         if (mShuffledQueries != null) {
             mShuffledQueries.remove((mShuffled ? mShuffledQueries : mQueries).get(position));
         }
@@ -361,6 +384,7 @@ public abstract class Playlist implements Playable {
      * Remove the given {@link Query} from this playlist
      */
     public void deleteQuery(Query query) {
+        ensureQueriesLoaded();
         if (mShuffledQueries != null) {
             mShuffledQueries.remove(query);
         }
@@ -0,0 +1,241 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * An inverted index over the track, artist and album names of the {@link Query}s in a {@link
+ * Collection}. Every name is normalized to lower case and split up into keys, each of which points
+ * to the list of {@link Query}s containing it. Terms with at least {@link #GRAM_LENGTH} characters
+ * are looked up via their n-grams, shorter terms via the prefixes of every word. This way a lookup
+ * only has to look at the few {@link Query}s which share all keys with the searched term, instead
+ * of going through the whole {@link Collection}.
+ */
+public class QueryIndex {
+
+    public static final int FIELD_TRACK = 0;
+
+    public static final int FIELD_ARTIST = 1;
+
+    public static final int FIELD_ALBUM = 2;
+
+    private static final int FIELD_COUNT = 3;
+
+    // Length of the n-grams used as keys. Shorter terms are being looked up by word prefixes.
+    private static final int GRAM_LENGTH = 3;
+
+    private final ArrayList<HashMap<String, HashSet<Query>>> mPostings
+            = new ArrayList<HashMap<String, HashSet<Query>>>();
+
+    // The normalized names of every indexed Query, needed to verify matches and to remove Querys
+    private final HashMap<Query, String[]> mNormalizedFields = new HashMap<Query, String[]>();
+
+    public QueryIndex() {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            mPostings.add(new HashMap<String, HashSet<Query>>());
+        }
+    }
+
+    /**
+     * Add the given {@link Query} to this {@link QueryIndex}
+     */
+    public synchronized void add(Query query) {
+        if (mNormalizedFields.containsKey(query)) {
+            return;
+        }
+        String[] fields = new String[FIELD_COUNT];
+        fields[FIELD_TRACK] = normalize(query.getName());
+        fields[FIELD_ARTIST] = normalize(query.getArtist().getName());
+        fields[FIELD_ALBUM] = normalize(query.getAlbum().getName());
+        mNormalizedFields.put(query, fields);
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            HashMap<String, HashSet<Query>> postings = mPostings.get(i);
+            for (String key : getKeys(fields[i])) {
+                HashSet<Query> postingList = postings.get(key);
+                if (postingList == null) {
+                    postingList = new HashSet<Query>();
+                    postings.put(key, postingList);
+                }
+                postingList.add(query);
+            }
+        }
+    }
+
+    /**
+     * Remove the given {@link Query} from this {@link QueryIndex}
+     */
+    public synchronized void remove(Query query) {
+        String[] fields = mNormalizedFields.remove(query);
+        if (fields == null) {
+            return;
+        }
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            HashMap<String, HashSet<Query>> postings = mPostings.get(i);
+            for (String key : getKeys(fields[i])) {
+                HashSet<Query> postingList = postings.get(key);
+                if (postingList != null) {
+                    postingList.remove(query);
+                    if (postingList.isEmpty()) {
+                        postings.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every {@link Query} from this {@link QueryIndex}
+     */
+    public synchronized void clear() {
+        for (HashMap<String, HashSet<Query>> postings : mPostings) {
+            postings.clear();
+        }
+        mNormalizedFields.clear();
+    }
+
+    /**
+     * @return the number of {@link Query}s in this {@link QueryIndex}
+     */
+    public synchronized int size() {
+        return mNormalizedFields.size();
+    }
+
+    /**
+     * Find all {@link Query}s whose track, artist or album name contains the given
+     * fullTextQuery.
+     *
+     * @return an {@link ArrayList} of all matching {@link Query}s. Empty if the given
+     * fullTextQuery is empty.
+     */
+    public synchronized ArrayList<Query> find(String fullTextQuery) {
+        HashSet<Query> matches = new HashSet<Query>();
+        String term = normalize(fullTextQuery);
+        if (term.length() > 0) {
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                matches.addAll(findInField(i, term));
+            }
+        }
+        return new ArrayList<Query>(matches);
+    }
+
+    /**
+     * Find all {@link Query}s whose track, album and artist name contain the given names. An empty
+     * name matches every {@link Query}.
+     *
+     * @return an {@link ArrayList} of all matching {@link Query}s. Empty if all of the given names
+     * are empty.
+     */
+    public synchronized ArrayList<Query> find(String trackName, String albumName,
+            String artistName) {
+        String[] terms = new String[FIELD_COUNT];
+        terms[FIELD_TRACK] = normalize(trackName);
+        terms[FIELD_ARTIST] = normalize(artistName);
+        terms[FIELD_ALBUM] = normalize(albumName);
+        // Start with the most selective field, so that the candidate set is as small as possible
+        HashSet<Query> candidates = null;
+        int candidatesField = -1;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (terms[i].length() > 0) {
+                HashSet<Query> matches = findInField(i, terms[i]);
+                if (candidates == null || matches.size() < candidates.size()) {
+                    candidates = matches;
+                    candidatesField = i;
+                }
+            }
+        }
+        ArrayList<Query> results = new ArrayList<Query>();
+        if (candidates == null) {
+            return results;
+        }
+        for (Query query : candidates) {
+            String[] fields = mNormalizedFields.get(query);
+            boolean matches = true;
+            for (int i = 0; i < FIELD_COUNT && matches; i++) {
+                matches = i == candidatesField || fields[i].contains(terms[i]);
+            }
+            if (matches) {
+                results.add(query);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Find all {@link Query}s whose name in the given field contains the given normalized term.
+     */
+    private HashSet<Query> findInField(int field, String term) {
+        HashSet<Query> results = new HashSet<Query>();
+        HashMap<String, HashSet<Query>> postings = mPostings.get(field);
+        if (term.length() < GRAM_LENGTH) {
+            HashSet<Query> postingList = postings.get(term);
+            if (postingList != null) {
+                results.addAll(postingList);
+            }
+            return results;
+        }
+        // Intersect the posting lists of all n-grams, beginning with the shortest one
+        HashSet<Query> shortest = null;
+        for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+            HashSet<Query> postingList = postings.get(term.substring(i, i + GRAM_LENGTH));
+            if (postingList == null) {
+                return results;
+            }
+            if (shortest == null || postingList.size() < shortest.size()) {
+                shortest = postingList;
+            }
+        }
+        // Sharing all n-grams doesn't imply containing the term, so we have to verify every match
+        for (Query query : shortest) {
+            if (mNormalizedFields.get(query)[field].contains(term)) {
+                results.add(query);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return all keys of the given normalized name. These are its n-grams and the prefixes,
+     * which are shorter than {@link #GRAM_LENGTH}, of every word in it.
+     */
+    private static HashSet<String> getKeys(String name) {
+        HashSet<String> keys = new HashSet<String>();
+        for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+            keys.add(name.substring(i, i + GRAM_LENGTH));
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1))) {
+                for (int j = i + 1; j < i + GRAM_LENGTH && j <= name.length(); j++) {
+                    keys.add(name.substring(i, j));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.toLowerCase().trim();
+    }
+}
@@ -0,0 +1,62 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A read-only {@link List} over a sorted snapshot of all {@link Query}s of a {@link Collection},
+ * together with the {@link SectionIndex} which matches exactly this snapshot. The snapshot is
+ * shared with the {@link Collection} instead of being copied. It is only rebuilt, in O(n), the
+ * first time it is requested after the {@link Collection} has changed, and is then shared by every
+ * caller until the next change. It never changes itself, so a new {@link QuerySnapshot} has to be
+ * obtained via {@link Collection#getQuerySnapshot()}, once the {@link Collection} has changed.
+ */
+public class QuerySnapshot extends AbstractList<Query> implements RandomAccess {
+
+    private final List<Query> mQueries;
+
+    private final SectionIndex mSectionIndex;
+
+    public QuerySnapshot(List<Query> queries, SectionIndex sectionIndex) {
+        mQueries = queries;
+        mSectionIndex = sectionIndex;
+    }
+
+    @Override
+    public Query get(int location) {
+        return mQueries.get(location);
+    }
+
+    @Override
+    public int size() {
+        return mQueries.size();
+    }
+
+    /**
+     * @return the {@link SectionIndex} of this {@link QuerySnapshot}'s {@link Query}s, or null if
+     * its {@link Collection} doesn't keep one
+     */
+    public SectionIndex getSectionIndex() {
+        return mSectionIndex;
+    }
+}
@@ -0,0 +1,69 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+/**
+ * The progress of loading the {@link UserCollection}, either from the MediaStore or from its
+ * snapshot. Everything, which has been loaded so far, is already part of the {@link
+ * UserCollection}, so that it can be shown while the rest is still being loaded.
+ */
+public class ScanProgress {
+
+    private final int mLoadedCount;
+
+    private final int mTotalCount;
+
+    private final boolean mDone;
+
+    public ScanProgress(int loadedCount, int totalCount, boolean done) {
+        mLoadedCount = loadedCount;
+        mTotalCount = totalCount;
+        mDone = done;
+    }
+
+    /**
+     * @return the number of tracks, which have already been added to the {@link UserCollection}
+     */
+    public int getLoadedCount() {
+        return mLoadedCount;
+    }
+
+    /**
+     * @return the number of tracks, which are being loaded in total
+     */
+    public int getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * @return whether or not loading has finished
+     */
+    public boolean isDone() {
+        return mDone;
+    }
+
+    /**
+     * @return the loaded share of all tracks, between 0 and 1
+     */
+    public float getFraction() {
+        if (mDone || mTotalCount <= 0) {
+            return 1f;
+        }
+        return Math.min(1f, (float) mLoadedCount / mTotalCount);
+    }
+}
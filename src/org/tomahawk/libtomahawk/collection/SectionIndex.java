@@ -0,0 +1,151 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+
+/**
+ * Immutable index of the alphabetical sections of a sorted list. Every name belongs to the section
+ * of its first letter, everything not starting with a letter from A to Z belongs to the "#"
+ * section, which comes first. Only sections which actually contain items are part of the index,
+ * so that it can directly be used to populate a fast scroll overlay.
+ * <p/>
+ * Looking up the range of a section is O(1). Looking up the section of a position is a binary
+ * search over at most {@link #SECTION_COUNT} sections, so it doesn't depend on the list's size.
+ */
+public class SectionIndex {
+
+    public static final int SECTION_COUNT = 27;
+
+    private static final String OTHER_LABEL = "#";
+
+    private final String[] mLabels;
+
+    // mStarts[i] is the position of the first item in section i, mStarts[mLabels.length] is the
+    // total number of items
+    private final int[] mStarts;
+
+    /**
+     * Construct a {@link SectionIndex} out of the number of items in each of the {@link
+     * #SECTION_COUNT} sections, as returned by {@link #getSection(String)}
+     */
+    SectionIndex(int[] sectionCounts) {
+        ArrayList<String> labels = new ArrayList<String>();
+        int[] starts = new int[SECTION_COUNT + 1];
+        int position = 0;
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            if (sectionCounts[i] > 0) {
+                starts[labels.size()] = position;
+                labels.add(getDefaultLabel(i));
+                position += sectionCounts[i];
+            }
+        }
+        starts[labels.size()] = position;
+        mLabels = labels.toArray(new String[labels.size()]);
+        mStarts = new int[mLabels.length + 1];
+        System.arraycopy(starts, 0, mStarts, 0, mStarts.length);
+    }
+
+    /**
+     * @return the section, between 0 and {@link #SECTION_COUNT} - 1, which an item with the given
+     * name belongs to
+     */
+    public static int getSection(String name) {
+        if (name == null) {
+            return 0;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                if (c >= 0x80) {
+                    // Strip accents, so that accented letters end up in the section of their base letter
+                    c = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+                }
+                c = Character.toUpperCase(c);
+                return c >= 'A' && c <= 'Z' ? c - 'A' + 1 : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static String getDefaultLabel(int section) {
+        return section == 0 ? OTHER_LABEL : String.valueOf((char) ('A' + section - 1));
+    }
+
+    /**
+     * @return the number of non-empty sections
+     */
+    public int getSectionCount() {
+        return mLabels.length;
+    }
+
+    /**
+     * @return the labels of all non-empty sections, like "#", "A", "B", ...
+     */
+    public String[] getLabels() {
+        return mLabels.clone();
+    }
+
+    public String getLabel(int section) {
+        return mLabels[section];
+    }
+
+    /**
+     * @return the position of the first item in the given section. Sections beyond the last one
+     * are clamped.
+     */
+    public int getSectionStart(int section) {
+        return mStarts[Math.max(0, Math.min(section, mLabels.length))];
+    }
+
+    /**
+     * @return the position after the last item in the given section
+     */
+    public int getSectionEnd(int section) {
+        return mStarts[Math.max(0, Math.min(section + 1, mLabels.length))];
+    }
+
+    /**
+     * @return the section which the given position belongs to, or -1 if there are no sections at
+     * all. Positions out of bounds are clamped to the first or last section.
+     */
+    public int getSectionForPosition(int position) {
+        if (mLabels.length == 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = mLabels.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mStarts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the total number of items in all sections
+     */
+    public int size() {
+        return mStarts[mLabels.length];
+    }
+}
@@ -0,0 +1,202 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Keeps {@link TomahawkBaseAdapter.TomahawkListItem}s sorted while they're being added and
+ * removed, so that a sorted list doesn't have to be built up from scratch every time it is
+ * requested.
+ * <p/>
+ * The sort key of an item is captured when it is added, so that the order stays consistent, even
+ * if e.g. the preferred track of a {@link Query} changes afterwards. Items with equal sort keys
+ * are ordered by their cache key. The sorted list is handed out as an immutable snapshot, which
+ * is only rebuilt after a change, so that getting it is O(1) and getting a page of it is O(k).
+ * <p/>
+ * Alphabetically sorted views are grouped into the sections of a {@link SectionIndex} first. The
+ * number of items per section is kept up to date on every change, so that the {@link
+ * SectionIndex} can be rebuilt without looking at the items at all.
+ */
+public class SortedView<T extends TomahawkBaseAdapter.TomahawkListItem> {
+
+    // Sorted alphabetically by name
+    public static final int ORDER_ALPHA = 0;
+
+    // Sorted by the album position of the preferred track, then by name. Only for Querys.
+    public static final int ORDER_ALBUMPOS = 1;
+
+    private final int mOrder;
+
+    private final TreeSet<Entry<T>> mEntries = new TreeSet<Entry<T>>();
+
+    private final IdentityHashMap<T, Entry<T>> mEntriesByItem = new IdentityHashMap<T, Entry<T>>();
+
+    private final int[] mSectionCounts = new int[SectionIndex.SECTION_COUNT];
+
+    private List<T> mSnapshot;
+
+    private SectionIndex mSectionIndex;
+
+    private static class Entry<T> implements Comparable<Entry<T>> {
+
+        private final T mItem;
+
+        private final int mAlbumPos;
+
+        private final int mSection;
+
+        private final String mName;
+
+        private final String mKey;
+
+        private Entry(T item, int albumPos, int section, String name, String key) {
+            mItem = item;
+            mAlbumPos = albumPos;
+            mSection = section;
+            mName = name != null ? name : "";
+            mKey = key;
+        }
+
+        @Override
+        public int compareTo(Entry<T> another) {
+            if (mAlbumPos != another.mAlbumPos) {
+                return mAlbumPos < another.mAlbumPos ? -1 : 1;
+            }
+            if (mSection != another.mSection) {
+                return mSection < another.mSection ? -1 : 1;
+            }
+            int result = mName.compareTo(another.mName);
+            if (result == 0) {
+                result = mKey.compareTo(another.mKey);
+            }
+            if (result == 0 && mItem != another.mItem) {
+                // Different items with the same key, should be rare enough to simply keep both
+                result = System.identityHashCode(mItem) < System.identityHashCode(another.mItem)
+                        ? -1 : 1;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param order either {@link #ORDER_ALPHA} or {@link #ORDER_ALBUMPOS}
+     */
+    public SortedView(int order) {
+        mOrder = order;
+    }
+
+    /**
+     * Add the given item at its sorted position. Nothing happens, if it has already been added.
+     */
+    public synchronized void add(T item) {
+        if (mEntriesByItem.containsKey(item)) {
+            return;
+        }
+        int albumPos = 0;
+        int section = 0;
+        if (mOrder == ORDER_ALBUMPOS && item instanceof Query) {
+            albumPos = ((Query) item).getPreferredTrack().getAlbumPos();
+        } else if (mOrder == ORDER_ALPHA) {
+            section = SectionIndex.getSection(item.getName());
+        }
+        Entry<T> entry = new Entry<T>(item, albumPos, section, item.getName(),
+                TomahawkUtils.getCacheKey(item));
+        mEntriesByItem.put(item, entry);
+        mEntries.add(entry);
+        mSectionCounts[section]++;
+        invalidate();
+    }
+
+    /**
+     * Remove the given item. Nothing happens, if it hasn't been added.
+     */
+    public synchronized void remove(T item) {
+        Entry<T> entry = mEntriesByItem.remove(item);
+        if (entry != null) {
+            mEntries.remove(entry);
+            mSectionCounts[entry.mSection]--;
+            invalidate();
+        }
+    }
+
+    /**
+     * Remove every item
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mEntriesByItem.clear();
+        Arrays.fill(mSectionCounts, 0);
+        invalidate();
+    }
+
+    private void invalidate() {
+        mSnapshot = null;
+        mSectionIndex = null;
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return an immutable, sorted snapshot of all items
+     */
+    public synchronized List<T> getSnapshot() {
+        if (mSnapshot == null) {
+            ArrayList<T> items = new ArrayList<T>(mEntries.size());
+            for (Entry<T> entry : mEntries) {
+                items.add(entry.mItem);
+            }
+            mSnapshot = Collections.unmodifiableList(items);
+        }
+        return mSnapshot;
+    }
+
+    /**
+     * @return the {@link SectionIndex} matching the current snapshot. Only views sorted by {@link
+     * #ORDER_ALPHA} are divided into sections, all items of other views are in the "#" section.
+     */
+    public synchronized SectionIndex getSectionIndex() {
+        if (mSectionIndex == null) {
+            mSectionIndex = new SectionIndex(mSectionCounts);
+        }
+        return mSectionIndex;
+    }
+
+    /**
+     * @return an immutable list of at most count items, beginning at the given offset. Empty, if
+     * the offset is out of bounds.
+     */
+    public List<T> getPage(int offset, int count) {
+        List<T> snapshot = getSnapshot();
+        int from = Math.max(0, Math.min(offset, snapshot.size()));
+        // Subtracting instead of adding, so that a huge count can't overflow
+        int to = from + Math.max(0, Math.min(count, snapshot.size() - from));
+        return snapshot.subList(from, to);
+    }
+}
@@ -0,0 +1,311 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the embedded tags of local files on a low priority background thread via the {@link
+ * TagReader}, so that the metadata the MediaStore lacks can be filled in afterwards. Every file is
+ * read at most once per modification: the {@link EmbeddedTags} are cached by path and mtime and
+ * the cache is persisted, so that a restart doesn't have to read anything again. Reading is
+ * throttled to {@link #MAX_READS_PER_SECOND} files, since it shouldn't ever make the playback
+ * stutter.
+ * <p/>
+ * Once it has been loaded, the cache is only being changed by the extraction thread. It is a
+ * concurrent map, so that any number of threads can look up cached tags at the same time without
+ * taking a lock.
+ */
+public class TagExtractor {
+
+    private final static String TAG = TagExtractor.class.getName();
+
+    public static final int MAX_READS_PER_SECOND = 20;
+
+    // Results are handed over to the Listener in batches of this size
+    private static final int RESULT_BATCH_SIZE = 100;
+
+    private static final int CACHE_MAGIC = 0x544d4854;
+
+    private static final int CACHE_VERSION = 1;
+
+    /**
+     * Gets the {@link EmbeddedTags} of files, which have been read for the first time or have been
+     * modified since they have been read the last time
+     */
+    public interface Listener {
+
+        /**
+         * Called on the extraction thread
+         *
+         * @param tagsByMediaId the new {@link EmbeddedTags} of every file by its MediaStore id
+         */
+        public void onTagsExtracted(HashMap<Long, EmbeddedTags> tagsByMediaId);
+    }
+
+    private static class CacheEntry {
+
+        private final long mLastModified;
+
+        // Null if the file doesn't contain any tags
+        private final EmbeddedTags mTags;
+
+        private CacheEntry(long lastModified, EmbeddedTags tags) {
+            mLastModified = lastModified;
+            mTags = tags;
+        }
+    }
+
+    private final File mCacheFile;
+
+    private final Listener mListener;
+
+    private final Handler mHandler;
+
+    private final ConcurrentHashMap<String, CacheEntry> mCache
+            = new ConcurrentHashMap<String, CacheEntry>();
+
+    private volatile boolean mCacheLoaded;
+
+    // Only being accessed by the extraction thread
+    private boolean mCacheDirty;
+
+    public TagExtractor(File cacheFile, Listener listener) {
+        mCacheFile = cacheFile;
+        mListener = listener;
+        HandlerThread handlerThread = new HandlerThread("TagExtraction",
+                android.os.Process.THREAD_PRIORITY_LOWEST);
+        handlerThread.start();
+        mHandler = new Handler(handlerThread.getLooper());
+    }
+
+    /**
+     * Load the cache from the cache file, if that hasn't been done yet. Should be called before
+     * {@link #getCachedTags(String)} is being called from several threads, since only one of them
+     * could load it while the others would have to wait.
+     */
+    public synchronized void loadCache() {
+        if (mCacheLoaded) {
+            return;
+        }
+        try {
+            readCache();
+        } catch (FileNotFoundException e) {
+            // Nothing has been cached yet
+        } catch (IOException e) {
+            Log.e(TAG, "loadCache: " + e.getClass() + ": " + e.getLocalizedMessage());
+            mCache.clear();
+            mCacheFile.delete();
+        }
+        mCacheLoaded = true;
+    }
+
+    /**
+     * @return the cached {@link EmbeddedTags} of the file with the given path, or null if it
+     * hasn't been read yet or doesn't contain any tags. Doesn't check whether the file has been
+     * modified since, that's what {@link #extract(HashMap, boolean)} is for.
+     */
+    public EmbeddedTags getCachedTags(String path) {
+        if (!mCacheLoaded) {
+            loadCache();
+        }
+        CacheEntry entry = mCache.get(path);
+        return entry != null ? entry.mTags : null;
+    }
+
+    /**
+     * Read the tags of every given file, which isn't cached yet or has been modified since it has
+     * been cached, in the background. The {@link Listener} is being called with the results.
+     *
+     * @param pathsByMediaId the paths of the files by their MediaStore ids
+     * @param complete       whether or not the given files are all local files, in which case
+     *                       the cache entries of all other files are being dropped
+     */
+    public void extract(final HashMap<Long, String> pathsByMediaId, final boolean complete) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                extractNow(pathsByMediaId, complete);
+            }
+        });
+    }
+
+    private void extractNow(HashMap<Long, String> pathsByMediaId, boolean complete) {
+        loadCache();
+        long startTime = SystemClock.elapsedRealtime();
+        HashMap<Long, EmbeddedTags> results = new HashMap<Long, EmbeddedTags>();
+        long lastReadTime = 0;
+        int readCount = 0;
+        for (Map.Entry<Long, String> entry : pathsByMediaId.entrySet()) {
+            String path = entry.getValue();
+            if (path == null) {
+                continue;
+            }
+            File file = new File(path);
+            long lastModified = file.lastModified();
+            if (lastModified == 0) {
+                // Doesn't exist (anymore) or isn't accessible
+                continue;
+            }
+            CacheEntry cacheEntry = mCache.get(path);
+            if (cacheEntry != null && cacheEntry.mLastModified == lastModified) {
+                continue;
+            }
+            long delay = lastReadTime + 1000 / MAX_READS_PER_SECOND - SystemClock.elapsedRealtime();
+            if (delay > 0) {
+                SystemClock.sleep(delay);
+            }
+            lastReadTime = SystemClock.elapsedRealtime();
+            EmbeddedTags tags = null;
+            try {
+                tags = TagReader.read(file);
+            } catch (IOException e) {
+                Log.e(TAG, "extractNow: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+            readCount++;
+            mCache.put(path, new CacheEntry(lastModified, tags));
+            mCacheDirty = true;
+            if (tags != null) {
+                results.put(entry.getKey(), tags);
+                if (results.size() >= RESULT_BATCH_SIZE) {
+                    mListener.onTagsExtracted(results);
+                    results = new HashMap<Long, EmbeddedTags>();
+                }
+            }
+        }
+        if (complete) {
+            HashSet<String> paths = new HashSet<String>(pathsByMediaId.values());
+            Iterator<String> iterator = mCache.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (!paths.contains(iterator.next())) {
+                    iterator.remove();
+                    mCacheDirty = true;
+                }
+            }
+        }
+        if (!results.isEmpty()) {
+            mListener.onTagsExtracted(results);
+        }
+        writeCache();
+        Log.d(TAG, "extractNow: read " + readCount + " of " + pathsByMediaId.size()
+                + " files in " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+    }
+
+    private void readCache() throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mCacheFile)));
+        try {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+                throw new IOException("Unknown tag cache format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                EmbeddedTags tags = null;
+                if (in.readBoolean()) {
+                    tags = new EmbeddedTags();
+                    tags.setTitle(readString(in));
+                    tags.setArtist(readString(in));
+                    tags.setAlbumArtist(readString(in));
+                    tags.setAlbum(readString(in));
+                    tags.setYear(in.readInt());
+                    tags.setDiscNumber(in.readInt());
+                }
+                mCache.put(path, new CacheEntry(lastModified, tags));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the cache to a temporary file first, so that a crash can't leave a truncated cache
+     * file behind. Failing to write it only means that the tags have to be read again. Only being
+     * called on the extraction thread.
+     */
+    private void writeCache() {
+        if (!mCacheDirty) {
+            return;
+        }
+        // The number of entries has to match the entries which are being written
+        HashMap<String, CacheEntry> cache = new HashMap<String, CacheEntry>(mCache);
+        File tmpFile = new File(mCacheFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(cache.size());
+                for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().mLastModified);
+                    EmbeddedTags tags = entry.getValue().mTags;
+                    out.writeBoolean(tags != null);
+                    if (tags != null) {
+                        writeString(out, tags.getTitle());
+                        writeString(out, tags.getArtist());
+                        writeString(out, tags.getAlbumArtist());
+                        writeString(out, tags.getAlbum());
+                        out.writeInt(tags.getYear());
+                        out.writeInt(tags.getDiscNumber());
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(mCacheFile)) {
+                throw new IOException("Couldn't rename " + tmpFile + " to " + mCacheFile);
+            }
+            mCacheDirty = false;
+        } catch (IOException e) {
+            Log.e(TAG, "writeCache: " + e.getClass() + ": " + e.getLocalizedMessage());
+            tmpFile.delete();
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the tags embedded in local audio files. Supported are ID3v2 (2.2 to 2.4), FLAC and Ogg
+ * (Vorbis and Opus) with Vorbis comments, and MP4 with iTunes-style metadata.
+ * <p/>
+ * Only the headers are being read. They are memory-mapped and walked atom by atom and block by
+ * block, so that e.g. the embedded artwork or the audio data itself are never touched. This class
+ * doesn't depend on the Android framework.
+ */
+public class TagReader {
+
+    // Never map more than this of a single header. Larger tags almost always contain artwork,
+    // which comes after the text frames we're interested in.
+    public static final int MAX_HEADER_SIZE = 1024 * 1024;
+
+    // Longer values are being cut off, nobody needs a track name of this length
+    private static final int MAX_VALUE_LENGTH = 1024;
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+
+    private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+
+    private static final int FIELD_TITLE = 0;
+
+    private static final int FIELD_ARTIST = 1;
+
+    private static final int FIELD_ALBUMARTIST = 2;
+
+    private static final int FIELD_ALBUM = 3;
+
+    private static final int FIELD_YEAR = 4;
+
+    private static final int FIELD_DISCNUMBER = 5;
+
+    /**
+     * Read the embedded tags of the given file
+     *
+     * @return the {@link EmbeddedTags}, or null if the file's format isn't supported or it
+     * doesn't contain any tags
+     * @throws IOException if the file couldn't be read or its headers are malformed
+     */
+    public static EmbeddedTags read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < 12) {
+                return null;
+            }
+            ByteBuffer head = map(channel, 0, 12);
+            EmbeddedTags tags = new EmbeddedTags();
+            if (startsWith(head, 0, "ID3")) {
+                readId3v2(channel, size, tags);
+            } else if (startsWith(head, 0, "fLaC")) {
+                readFlac(channel, size, tags);
+            } else if (startsWith(head, 0, "OggS")) {
+                readOgg(channel, size, tags);
+            } else if (startsWith(head, 4, "ftyp")) {
+                readMp4(channel, size, tags);
+            }
+            return tags.isEmpty() ? null : tags;
+        } catch (RuntimeException e) {
+            // Buffer under- and overflows of truncated or otherwise broken headers
+            throw new IOException("Malformed header in " + file.getPath(), e);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void readId3v2(FileChannel channel, long size, EmbeddedTags tags)
+            throws IOException {
+        ByteBuffer header = map(channel, 0, 10);
+        int version = header.get(3) & 0xff;
+        int flags = header.get(5) & 0xff;
+        if (version < 2 || version > 4) {
+            return;
+        }
+        int tagSize = (int) Math.min(Math.min(getSyncsafeInt(header, 6), MAX_HEADER_SIZE),
+                size - 10);
+        ByteBuffer tag = map(channel, 10, tagSize);
+        if ((flags & 0x80) != 0 && version < 4) {
+            // Unsynchronisation of the whole tag, only used by ancient encoders
+            tag = ByteBuffer.wrap(resynchronize(getBytes(tag, 0, tagSize)));
+            tagSize = tag.limit();
+        }
+        int position = 0;
+        if ((flags & 0x40) != 0 && version > 2) {
+            position = version == 3 ? tag.getInt(0) + 4 : getSyncsafeInt(tag, 0);
+        }
+        int frameHeaderSize = version == 2 ? 6 : 10;
+        while (position >= 0 && position + frameHeaderSize <= tagSize) {
+            if (tag.get(position) == 0) {
+                // Padding
+                break;
+            }
+            String id;
+            int frameSize;
+            int formatFlags = 0;
+            if (version == 2) {
+                id = new String(getBytes(tag, position, 3), ISO_8859_1);
+                frameSize = ((tag.get(position + 3) & 0xff) << 16)
+                        | ((tag.get(position + 4) & 0xff) << 8) | (tag.get(position + 5) & 0xff);
+            } else {
+                id = new String(getBytes(tag, position, 4), ISO_8859_1);
+                frameSize = version == 3 ? tag.getInt(position + 4)
+                        : getSyncsafeInt(tag, position + 4);
+                formatFlags = tag.get(position + 9) & 0xff;
+            }
+            int dataPosition = position + frameHeaderSize;
+            if (frameSize <= 0 || dataPosition + frameSize > tagSize) {
+                break;
+            }
+            int field = getId3Field(id);
+            boolean compressedOrEncrypted = version == 3 ? (formatFlags & 0xc0) != 0
+                    : version == 4 && (formatFlags & 0x0c) != 0;
+            if (field >= 0 && !compressedOrEncrypted) {
+                byte[] data = getBytes(tag, dataPosition, frameSize);
+                if (version == 4 && (formatFlags & 0x01) != 0 && data.length > 4) {
+                    // Skip the data length indicator
+                    byte[] stripped = new byte[data.length - 4];
+                    System.arraycopy(data, 4, stripped, 0, stripped.length);
+                    data = stripped;
+                }
+                if (version == 4 && (formatFlags & 0x02) != 0) {
+                    data = resynchronize(data);
+                }
+                setField(tags, field, decodeId3Text(data));
+            }
+            position = dataPosition + frameSize;
+        }
+    }
+
+    private static int getId3Field(String id) {
+        if ("TIT2".equals(id) || "TT2".equals(id)) {
+            return FIELD_TITLE;
+        } else if ("TPE1".equals(id) || "TP1".equals(id)) {
+            return FIELD_ARTIST;
+        } else if ("TPE2".equals(id) || "TP2".equals(id)) {
+            return FIELD_ALBUMARTIST;
+        } else if ("TALB".equals(id) || "TAL".equals(id)) {
+            return FIELD_ALBUM;
+        } else if ("TYER".equals(id) || "TDRC".equals(id) || "TYE".equals(id)) {
+            return FIELD_YEAR;
+        } else if ("TPOS".equals(id) || "TPA".equals(id)) {
+            return FIELD_DISCNUMBER;
+        }
+        return -1;
+    }
+
+    /**
+     * Decode the given ID3v2 text frame, whose first byte is its encoding. Only the first of
+     * multiple values is being returned.
+     */
+    private static String decodeId3Text(byte[] data) {
+        if (data.length < 2) {
+            return null;
+        }
+        Charset charset;
+        int terminatorLength = 1;
+        switch (data[0]) {
+            case 1:
+                charset = UTF_16;
+                terminatorLength = 2;
+                break;
+            case 2:
+                charset = UTF_16BE;
+                terminatorLength = 2;
+                break;
+            case 3:
+                charset = UTF_8;
+                break;
+            default:
+                charset = ISO_8859_1;
+        }
+        int end = 1;
+        while (end + terminatorLength <= data.length) {
+            boolean terminator = data[end] == 0 && (terminatorLength == 1 || data[end + 1] == 0);
+            if (terminator) {
+                break;
+            }
+            end += terminatorLength;
+        }
+        return new String(data, 1, Math.min(end, data.length) - 1, charset);
+    }
+
+    private static void readFlac(FileChannel channel, long size, EmbeddedTags tags)
+            throws IOException {
+        long position = 4;
+        while (position + 4 <= size) {
+            ByteBuffer blockHeader = map(channel, position, 4);
+            int type = blockHeader.get(0) & 0x7f;
+            boolean last = (blockHeader.get(0) & 0x80) != 0;
+            int length = ((blockHeader.get(1) & 0xff) << 16)
+                    | ((blockHeader.get(2) & 0xff) << 8) | (blockHeader.get(3) & 0xff);
+            position += 4;
+            if (type == 4) {
+                int mappedLength = (int) Math.min(Math.min(length, MAX_HEADER_SIZE),
+                        size - position);
+                readVorbisComment(map(channel, position, mappedLength), tags);
+                return;
+            }
+            if (last) {
+                return;
+            }
+            // Skipping e.g. the artwork of a PICTURE block without ever reading it
+            position += length;
+        }
+    }
+
+    private static void readOgg(FileChannel channel, long size, EmbeddedTags tags)
+            throws IOException {
+        int mappedLength = (int) Math.min(size, MAX_HEADER_SIZE);
+        ByteBuffer buffer = map(channel, 0, mappedLength);
+        // The comment header is the second packet, which may span several pages
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        int packetIndex = 0;
+        int position = 0;
+        while (position + 27 <= mappedLength && startsWith(buffer, position, "OggS")) {
+            int segmentCount = buffer.get(position + 26) & 0xff;
+            int bodyPosition = position + 27 + segmentCount;
+            for (int i = 0; i < segmentCount; i++) {
+                int lacingValue = buffer.get(position + 27 + i) & 0xff;
+                if (bodyPosition + lacingValue > mappedLength) {
+                    return;
+                }
+                if (packetIndex == 1) {
+                    packet.write(getBytes(buffer, bodyPosition, lacingValue), 0, lacingValue);
+                }
+                bodyPosition += lacingValue;
+                if (lacingValue < 255) {
+                    if (packetIndex == 1) {
+                        readOggCommentPacket(packet.toByteArray(), tags);
+                        return;
+                    }
+                    packetIndex++;
+                }
+            }
+            position = bodyPosition;
+        }
+    }
+
+    private static void readOggCommentPacket(byte[] packet, EmbeddedTags tags) {
+        ByteBuffer buffer = ByteBuffer.wrap(packet);
+        if (packet.length > 7 && packet[0] == 3 && startsWith(buffer, 1, "vorbis")) {
+            buffer.position(7);
+        } else if (startsWith(buffer, 0, "OpusTags")) {
+            buffer.position(8);
+        } else {
+            return;
+        }
+        readVorbisComment(buffer.slice(), tags);
+    }
+
+    private static void readVorbisComment(ByteBuffer buffer, EmbeddedTags tags) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = buffer.limit();
+        int vendorLength = buffer.getInt(0);
+        if (vendorLength < 0 || 8L + vendorLength > limit) {
+            return;
+        }
+        int position = 4 + vendorLength;
+        int count = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < count && position + 4 <= limit; i++) {
+            int length = buffer.getInt(position);
+            position += 4;
+            if (length < 0 || (long) position + length > limit) {
+                return;
+            }
+            String comment = new String(getBytes(buffer, position, length), UTF_8);
+            position += length;
+            int separator = comment.indexOf('=');
+            if (separator > 0) {
+                int field = getVorbisField(comment.substring(0, separator).toUpperCase());
+                if (field >= 0) {
+                    setField(tags, field, comment.substring(separator + 1));
+                }
+            }
+        }
+    }
+
+    private static int getVorbisField(String key) {
+        if ("TITLE".equals(key)) {
+            return FIELD_TITLE;
+        } else if ("ARTIST".equals(key)) {
+            return FIELD_ARTIST;
+        } else if ("ALBUMARTIST".equals(key) || "ALBUM ARTIST".equals(key)) {
+            return FIELD_ALBUMARTIST;
+        } else if ("ALBUM".equals(key)) {
+            return FIELD_ALBUM;
+        } else if ("DATE".equals(key) || "YEAR".equals(key)) {
+            return FIELD_YEAR;
+        } else if ("DISCNUMBER".equals(key)) {
+            return FIELD_DISCNUMBER;
+        }
+        return -1;
+    }
+
+    private static void readMp4(FileChannel channel, long size, EmbeddedTags tags)
+            throws IOException {
+        // Walk the top level atoms by their headers only, the moov atom may well come after mdat
+        long position = 0;
+        while (position + 8 <= size) {
+            ByteBuffer atomHeader = map(channel, position, (int) Math.min(16, size - position));
+            long atomSize = atomHeader.getInt(0) & 0xffffffffL;
+            int headerSize = 8;
+            if (atomSize == 1 && atomHeader.limit() >= 16) {
+                atomSize = atomHeader.getLong(8);
+                headerSize = 16;
+            } else if (atomSize == 0) {
+                atomSize = size - position;
+            }
+            if (atomSize < headerSize) {
+                return;
+            }
+            if (startsWith(atomHeader, 4, "moov")) {
+                // Mapping doesn't read anything, only the atoms we walk through are paged in
+                int moovLength = (int) Math.min(atomSize - headerSize,
+                        Math.min(Integer.MAX_VALUE, size - position - headerSize));
+                ByteBuffer moov = map(channel, position + headerSize, moovLength);
+                ByteBuffer udta = findAtom(moov, "udta");
+                ByteBuffer meta = findAtom(udta != null ? udta : moov, "meta");
+                if (meta != null && meta.limit() > 4) {
+                    // meta is a full atom, its children start after version and flags
+                    meta.position(4);
+                    ByteBuffer ilst = findAtom(meta.slice(), "ilst");
+                    if (ilst != null) {
+                        readMp4Items(ilst, tags);
+                    }
+                }
+                return;
+            }
+            position += atomSize;
+        }
+    }
+
+    /**
+     * @return the content of the first child atom of the given type, or null if there's none
+     */
+    private static ByteBuffer findAtom(ByteBuffer parent, String type) {
+        int position = 0;
+        int limit = parent.limit();
+        while (position + 8 <= limit) {
+            long atomSize = parent.getInt(position) & 0xffffffffL;
+            if (atomSize < 8 || position + atomSize > limit) {
+                return null;
+            }
+            if (startsWith(parent, position + 4, type)) {
+                ByteBuffer content = parent.duplicate();
+                content.position(position + 8);
+                content.limit((int) (position + atomSize));
+                return content.slice();
+            }
+            position += atomSize;
+        }
+        return null;
+    }
+
+    private static void readMp4Items(ByteBuffer ilst, EmbeddedTags tags) {
+        int position = 0;
+        int limit = ilst.limit();
+        while (position + 8 <= limit) {
+            int itemSize = ilst.getInt(position);
+            if (itemSize < 8 || position + itemSize > limit) {
+                return;
+            }
+            String type = new String(getBytes(ilst, position + 4, 4), ISO_8859_1);
+            int field = getMp4Field(type);
+            if (field >= 0) {
+                ByteBuffer item = ilst.duplicate();
+                item.position(position + 8);
+                item.limit(position + itemSize);
+                ByteBuffer data = findAtom(item.slice(), "data");
+                // The data atom starts with its type and locale, 4 bytes each
+                if (data != null && data.limit() > 8) {
+                    if (field == FIELD_DISCNUMBER) {
+                        if (data.limit() >= 12) {
+                            tags.setDiscNumber(data.getShort(10) & 0xffff);
+                        }
+                    } else {
+                        setField(tags, field,
+                                new String(getBytes(data, 8, data.limit() - 8), UTF_8));
+                    }
+                }
+            }
+            position += itemSize;
+        }
+    }
+
+    private static int getMp4Field(String type) {
+        if ("\u00a9nam".equals(type)) {
+            return FIELD_TITLE;
+        } else if ("\u00a9ART".equals(type)) {
+            return FIELD_ARTIST;
+        } else if ("aART".equals(type)) {
+            return FIELD_ALBUMARTIST;
+        } else if ("\u00a9alb".equals(type)) {
+            return FIELD_ALBUM;
+        } else if ("\u00a9day".equals(type)) {
+            return FIELD_YEAR;
+        } else if ("disk".equals(type)) {
+            return FIELD_DISCNUMBER;
+        }
+        return -1;
+    }
+
+    /**
+     * Set the given field of the given {@link EmbeddedTags}. The first value wins, empty values
+     * are ignored. Years and disc numbers are parsed from values like "2004-05-01" or "1/2".
+     */
+    private static void setField(EmbeddedTags tags, int field, String value) {
+        if (value == null) {
+            return;
+        }
+        value = value.trim();
+        if (value.length() == 0) {
+            return;
+        }
+        if (value.length() > MAX_VALUE_LENGTH) {
+            value = value.substring(0, MAX_VALUE_LENGTH);
+        }
+        switch (field) {
+            case FIELD_TITLE:
+                if (tags.getTitle() == null) {
+                    tags.setTitle(value);
+                }
+                break;
+            case FIELD_ARTIST:
+                if (tags.getArtist() == null) {
+                    tags.setArtist(value);
+                }
+                break;
+            case FIELD_ALBUMARTIST:
+                if (tags.getAlbumArtist() == null) {
+                    tags.setAlbumArtist(value);
+                }
+                break;
+            case FIELD_ALBUM:
+                if (tags.getAlbum() == null) {
+                    tags.setAlbum(value);
+                }
+                break;
+            case FIELD_YEAR:
+                if (tags.getYear() == 0) {
+                    tags.setYear(parseLeadingInt(value));
+                }
+                break;
+            case FIELD_DISCNUMBER:
+                if (tags.getDiscNumber() == 0) {
+                    tags.setDiscNumber(parseLeadingInt(value));
+                }
+                break;
+        }
+    }
+
+    private static int parseLeadingInt(String value) {
+        int result = 0;
+        for (int i = 0; i < value.length() && i < 9; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            result = result * 10 + c - '0';
+        }
+        return result;
+    }
+
+    private static int getSyncsafeInt(ByteBuffer buffer, int position) {
+        return ((buffer.get(position) & 0x7f) << 21) | ((buffer.get(position + 1) & 0x7f) << 14)
+                | ((buffer.get(position + 2) & 0x7f) << 7) | (buffer.get(position + 3) & 0x7f);
+    }
+
+    /**
+     * Undo the ID3v2 unsynchronisation scheme, which inserts a 0x00 after every 0xFF
+     */
+    private static byte[] resynchronize(byte[] data) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.length);
+        for (int i = 0; i < data.length; i++) {
+            result.write(data[i]);
+            if ((data[i] & 0xff) == 0xff && i + 1 < data.length && data[i + 1] == 0) {
+                i++;
+            }
+        }
+        return result.toByteArray();
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int length)
+            throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.max(0, length));
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return bytes;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int position, String prefix) {
+        if (position + prefix.length() > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(position + i) != (byte) prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -20,15 +20,16 @@ package org.tomahawk.libtomahawk.collection;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * This class represents a {@link Track}.
  */
 public class Track implements TomahawkBaseAdapter.TomahawkListItem {
 
-    private static ConcurrentHashMap<String, Track> sTracks
-            = new ConcurrentHashMap<String, Track>();
+    private static final EntityRegistry<Track> sTracks = new EntityRegistry<Track>(4096);
+
+    private final int mId;
+
+    private final String mCacheKey;
 
     private String mName;
 
@@ -47,17 +48,19 @@ public class Track implements TomahawkBaseAdapter.TomahawkListItem {
     /**
      * Construct a new {@link Track}
      */
-    private Track(String trackName, Album album, Artist artist) {
+    private Track(String trackName, Album album, Artist artist, String cacheKey, int id) {
         mName = trackName;
         mAlbum = album;
         mArtist = artist;
+        mCacheKey = cacheKey;
+        mId = id;
     }
 
     /**
-     * Returns the {@link Track} with the given id. If none exists in our static {@link
-     * ConcurrentHashMap} yet, construct and add it.
+     * Returns the {@link Track} with the given name, {@link Album} and {@link Artist}. If none
+     * exists in our static {@link EntityRegistry} yet, construct and add it.
      *
-     * @return {@link Track} with the given id
+     * @return {@link Track} with the given name, {@link Album} and {@link Artist}
      */
     public static Track get(String trackName, Album album, Artist artist) {
         if (artist == null) {
@@ -66,12 +69,19 @@ public class Track implements TomahawkBaseAdapter.TomahawkListItem {
         if (album == null) {
             album = Album.get("", artist);
         }
-        Track track = new Track(trackName, album, artist);
-        String key = TomahawkUtils.getCacheKey(track);
-        if (!sTracks.containsKey(key)) {
-            sTracks.put(key, track);
+        String key = TomahawkUtils.getCacheKey(trackName, album.getName(), artist.getName());
+        Track track = sTracks.get(key);
+        if (track == null) {
+            synchronized (sTracks) {
+                track = sTracks.get(key);
+                if (track == null) {
+                    int id = sTracks.nextId();
+                    track = new Track(trackName, album, artist, key, id);
+                    sTracks.add(key, id, track);
+                }
+            }
         }
-        return sTracks.get(key);
+        return track;
     }
 
     /**
@@ -81,6 +91,28 @@ public class Track implements TomahawkBaseAdapter.TomahawkListItem {
         return sTracks.get(key);
     }
 
+    /**
+     * Get the {@link org.tomahawk.libtomahawk.collection.Track} by providing its id
+     */
+    public static Track getTrackById(int id) {
+        return sTracks.getById(id);
+    }
+
+    /**
+     * @return the number of {@link Track}s, which are currently cached
+     */
+    public static int getCachedCount() {
+        return sTracks.size();
+    }
+
+    /**
+     * @return the number of {@link Track}s, which have been evicted from the cache, since nothing
+     * referenced them anymore
+     */
+    public static long getEvictedCount() {
+        return sTracks.getEvictedCount();
+    }
+
     /**
      * @return the {@link Track}'s name
      */
@@ -97,6 +129,20 @@ public class Track implements TomahawkBaseAdapter.TomahawkListItem {
         return mName;
     }
 
+    /**
+     * @return this {@link Track}'s compact id, which is unique among all {@link Track}s
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * @return this {@link Track}'s normalized cache key
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
     /**
      * @return the {@link Track}'s {@link Artist}
      */
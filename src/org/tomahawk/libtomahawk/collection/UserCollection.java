@@ -19,14 +19,16 @@
 package org.tomahawk.libtomahawk.collection;
 
 import org.tomahawk.libtomahawk.authentication.AuthenticatorUtils;
+import org.tomahawk.libtomahawk.database.DatabaseExecutor;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.hatchet.InfoRequestData;
 import org.tomahawk.libtomahawk.hatchet.InfoSystem;
 import org.tomahawk.libtomahawk.hatchet.UserInfo;
 import org.tomahawk.libtomahawk.resolver.Query;
-import org.tomahawk.libtomahawk.resolver.QueryComparator;
 import org.tomahawk.libtomahawk.resolver.Resolver;
 import org.tomahawk.libtomahawk.resolver.Result;
+import org.tomahawk.libtomahawk.utils.EventBus;
+import org.tomahawk.libtomahawk.utils.LongSparseArray;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 import org.tomahawk.tomahawk_android.services.TomahawkService;
@@ -40,22 +42,76 @@ import android.database.ContentObserver;
 import android.database.Cursor;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.MediaStore;
+import android.text.TextUtils;
+import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class represents a user's local {@link Collection} of all his {@link Track}s.
  */
 public class UserCollection extends Collection {
 
+    private final static String TAG = UserCollection.class.getName();
+
     public static final int Id = 0;
 
+    // Change notifications of the MediaStore come in bursts, so we wait this long for them to end
+    private static final long DELTA_UPDATE_DELAY = 500L;
+
+    // All changes to the cached UserPlaylist within this time are being written at once
+    private static final long CACHED_PLAYLIST_WRITE_DELAY = 5000L;
+
+    private static final String SNAPSHOT_FILE_NAME = "usercollection.snapshot";
+
+    private static final String TAG_CACHE_FILE_NAME = "usercollection.tags";
+
+    // Number of tracks, which are being handed over to an ingestion worker at once
+    private static final int INGESTION_BATCH_SIZE = 256;
+
+    // Idle ingestion workers are stopped after this time, a full scan is rare after all
+    private static final long INGESTION_WORKER_KEEP_ALIVE = 10000L;
+
+    // Minimum time between two ScanProgress events
+    private static final long SCAN_PROGRESS_INTERVAL = 300L;
+
+    // Maximum number of album ids in a single query, well below SQLite's limits
+    private static final int ALBUM_IDS_PER_QUERY = 500;
+
+    private static final String SCAN_PROGRESS_KEY = "scanprogress";
+
+    private static final String MEDIA_SELECTION = MediaStore.Audio.Media.IS_MUSIC + " != 0";
+
+    private static final String[] MEDIA_PROJECTION = {MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.DATA, MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.DURATION, MediaStore.Audio.Media.TRACK,
+            MediaStore.Audio.Media.ARTIST_ID, MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.ALBUM_ID, MediaStore.Audio.Media.ALBUM,
+            MediaStore.Audio.Media.DATE_MODIFIED};
+
     private TomahawkApp mTomahawkApp;
 
     private HandlerThread mCollectionUpdateHandlerThread;
@@ -66,11 +122,221 @@ public class UserCollection extends Collection {
 
     private ConcurrentHashMap<String, Query> mQueries = new ConcurrentHashMap<String, Query>();
 
+    private QueryIndex mQueryIndex = new QueryIndex();
+
+    private final SortedView<Query> mSortedQueries = new SortedView<Query>(SortedView.ORDER_ALPHA);
+
+    // Every local track by its MediaStore id. Only accessed on the mCollectionUpdateHandlerThread.
+    private HashMap<Long, LocalTrack> mLocalTracks = new HashMap<Long, LocalTrack>();
+
+    // The number of local tracks on every album by its MediaStore id
+    private HashMap<Long, Integer> mAlbumTrackCounts = new HashMap<Long, Integer>();
+
+    // Highest MediaStore id, which has been seen so far. Every track above is new.
+    private long mMediaIdWatermark = -1;
+
+    // Latest DATE_MODIFIED (in seconds), which has been seen so far
+    private long mDateModifiedWatermark = -1;
+
+    private boolean mInitialized = false;
+
+    private final EventBus<CollectionDelta> mDeltaEventBus = new EventBus<CollectionDelta>();
+
+    private final AtomicLong mDeltaCounter = new AtomicLong();
+
+    private final EventBus<ScanProgress> mScanProgressEventBus = new EventBus<ScanProgress>();
+
+    private volatile ScanProgress mScanProgress = new ScanProgress(0, 0, false);
+
+    private ThreadPoolExecutor mIngestionPool;
+
+    private TagExtractor mTagExtractor;
+
     private UserPlaylist mCachedUserPlaylist;
 
+    private final Object mCachedUserPlaylistLock = new Object();
+
+    private final Handler mCachedUserPlaylistHandler = new Handler(Looper.getMainLooper());
+
+    // The cached UserPlaylist, if it has changed since it has last been written as a whole
+    private UserPlaylist mPendingCachedUserPlaylist;
+
+    // The cached UserPlaylist's current index, if only that has changed since the last write.
+    // Otherwise -1.
+    private int mPendingCachedQueryIndex = -1;
+
+    private boolean mCachedUserPlaylistFlushScheduled = false;
+
+    private final Runnable mFlushCachedUserPlaylistRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushCachedUserPlaylist();
+        }
+    };
+
+    private long mLastScanDuration;
+
+    private int mLastScanTrackCount;
+
     private ConcurrentHashMap<String, UserPlaylist> mUserPlaylists
             = new ConcurrentHashMap<String, UserPlaylist>();
 
+    /**
+     * A track as it has been read from the {@link MediaStore} or the snapshot, along with the
+     * entities, which are being built for it by an ingestion worker
+     */
+    private static class TrackRow {
+
+        private final long mMediaId;
+
+        private final String mPath;
+
+        private final String mTrackName;
+
+        private final long mDuration;
+
+        private final int mAlbumPos;
+
+        private final String mArtistName;
+
+        private final long mAlbumId;
+
+        private final String mAlbumName;
+
+        private Artist mArtist;
+
+        private Album mAlbum;
+
+        private Query mQuery;
+
+        private TrackRow(long mediaId, String path, String trackName, long duration, int albumPos,
+                String artistName, long albumId, String albumName) {
+            mMediaId = mediaId;
+            mPath = path;
+            mTrackName = trackName;
+            mDuration = duration;
+            mAlbumPos = albumPos;
+            mArtistName = artistName;
+            mAlbumId = albumId;
+            mAlbumName = albumName;
+        }
+    }
+
+    /**
+     * Loads a large number of tracks in three stages. The tracks are being read on the calling
+     * thread and handed over in batches to the ingestion workers, which build the {@link Artist}s,
+     * {@link Album}s, {@link Track}s and {@link Query}s for them in parallel. The finished batches
+     * are being linked into this {@link UserCollection} on the calling thread again, in the same
+     * order they've been read in, so that everything which is only accessed on the
+     * mCollectionUpdateHandlerThread stays there. Reading only goes ahead of linking by a few
+     * batches, so that the memory needed doesn't grow with the size of the collection.
+     */
+    private class IngestionPipeline {
+
+        private final LongSparseArray<String[]> mAlbumDetails;
+
+        private final Resolver mResolver;
+
+        private final int mTotalCount;
+
+        private final ArrayDeque<Future<ArrayList<TrackRow>>> mPendingBatches
+                = new ArrayDeque<Future<ArrayList<TrackRow>>>();
+
+        private ArrayList<TrackRow> mBatch = new ArrayList<TrackRow>(INGESTION_BATCH_SIZE);
+
+        private int mLinkedCount;
+
+        private long mLastProgressTime;
+
+        private IngestionPipeline(LongSparseArray<String[]> albumDetails, int totalCount) {
+            mAlbumDetails = albumDetails;
+            mResolver = mTomahawkApp.getPipeLine().getResolver(
+                    TomahawkApp.RESOLVER_ID_USERCOLLECTION);
+            mTotalCount = totalCount;
+            // Every worker looks up the cached tags, so they have to be there before they start
+            mTagExtractor.loadCache();
+            publishScanProgress(new ScanProgress(0, totalCount, false));
+        }
+
+        private void add(TrackRow row) {
+            mBatch.add(row);
+            if (mBatch.size() >= INGESTION_BATCH_SIZE) {
+                submitBatch();
+                // Enough batches to keep every worker busy, while we're linking the oldest one
+                while (mPendingBatches.size() > mIngestionPool.getMaximumPoolSize() * 2) {
+                    linkBatch(mPendingBatches.poll());
+                }
+            }
+        }
+
+        /**
+         * Wait for all remaining batches and link them
+         */
+        private void finish() {
+            submitBatch();
+            while (!mPendingBatches.isEmpty()) {
+                linkBatch(mPendingBatches.poll());
+            }
+            publishScanProgress(new ScanProgress(mLinkedCount, mTotalCount, true));
+        }
+
+        private void submitBatch() {
+            if (mBatch.isEmpty()) {
+                return;
+            }
+            final ArrayList<TrackRow> batch = mBatch;
+            mBatch = new ArrayList<TrackRow>(INGESTION_BATCH_SIZE);
+            mPendingBatches.add(mIngestionPool.submit(new Callable<ArrayList<TrackRow>>() {
+                @Override
+                public ArrayList<TrackRow> call() {
+                    for (TrackRow row : batch) {
+                        prepareLocalTrack(row, mAlbumDetails, mResolver);
+                    }
+                    return batch;
+                }
+            }));
+        }
+
+        private void linkBatch(Future<ArrayList<TrackRow>> future) {
+            ArrayList<TrackRow> batch;
+            try {
+                batch = future.get();
+            } catch (InterruptedException e) {
+                Log.e(TAG, "linkBatch: " + e.getClass() + ": " + e.getLocalizedMessage());
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Just as if it had happened on this thread
+                throw new RuntimeException(e.getCause());
+            }
+            for (TrackRow row : batch) {
+                linkLocalTrack(row);
+            }
+            mLinkedCount += batch.size();
+            long now = SystemClock.elapsedRealtime();
+            if (now - mLastProgressTime >= SCAN_PROGRESS_INTERVAL) {
+                mLastProgressTime = now;
+                publishScanProgress(new ScanProgress(mLinkedCount, mTotalCount, false));
+            }
+        }
+    }
+
+    /**
+     * A track in the {@link MediaStore}, along with the {@link Query} representing it. The {@link
+     * TrackRow} is kept as it has been read, before any {@link EmbeddedTags} have been merged in.
+     */
+    private static class LocalTrack {
+
+        private Query mQuery;
+
+        private TrackRow mRow;
+
+        private LocalTrack(Query query, TrackRow row) {
+            mQuery = query;
+            mRow = row;
+        }
+    }
+
     private Runnable mUpdateRunnable = new Runnable() {
         /* 
          * (non-Javadoc)
@@ -78,8 +344,20 @@ public class UserCollection extends Collection {
          */
         @Override
         public void run() {
-            update();
-            mCollectionUpdateHandlerThread.getLooper().quit();
+            if (restoreSnapshot()) {
+                // Show the restored collection right away and catch up with the MediaStore after
+                TomahawkApp.getContext().sendBroadcast(new Intent(COLLECTION_UPDATED));
+                updateIncrementally();
+            } else {
+                update();
+            }
+        }
+    };
+
+    private Runnable mDeltaUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateIncrementally();
         }
     };
 
@@ -89,8 +367,8 @@ public class UserCollection extends Collection {
     private final ContentObserver mLocalMediaObserver = new ContentObserver(null) {
         @Override
         public void onChange(boolean selfChange) {
-            mCollectionUpdateHandlerThread.start();
-            mHandler.post(mUpdateRunnable);
+            mHandler.removeCallbacks(mDeltaUpdateRunnable);
+            mHandler.postDelayed(mDeltaUpdateRunnable, DELTA_UPDATE_DELAY);
         }
     };
 
@@ -120,6 +398,7 @@ public class UserCollection extends Collection {
                         @Override
                         public void run() {
                             ArrayList<String> ids = new ArrayList<String>();
+                            ArrayList<Future<?>> writes = new ArrayList<Future<?>>();
                             for (TomahawkBaseAdapter.TomahawkListItem tomahawkListItem : mTomahawkApp
                                     .getInfoSystem().getInfoRequestById(requestId)
                                     .getConvertedResults()) {
@@ -134,8 +413,8 @@ public class UserCollection extends Collection {
                                         userPlaylist.getCurrentRevision())) {
                                     // Userplaylist is not already stored, or has different or no
                                     // revision string, so we store it
-                                    mTomahawkApp.getUserPlaylistsDataSource()
-                                            .storeUserPlaylist(userPlaylist);
+                                    writes.add(mTomahawkApp.getUserPlaylistsDataSource()
+                                            .storeUserPlaylistAsync(userPlaylist, null));
                                 }
                             }
                             // Delete every playlist that has not been fetched via Hatchet.
@@ -143,8 +422,21 @@ public class UserCollection extends Collection {
                             for (UserPlaylist userPlaylist : mTomahawkApp
                                     .getUserPlaylistsDataSource().getHatchetUserPlaylists()) {
                                 if (!ids.contains(userPlaylist.getId())) {
-                                    mTomahawkApp.getUserPlaylistsDataSource()
-                                            .deleteUserPlaylist(userPlaylist.getId());
+                                    writes.add(mTomahawkApp.getUserPlaylistsDataSource()
+                                            .deleteUserPlaylistAsync(userPlaylist.getId(), null));
+                                }
+                            }
+                            // Wait for the writes to be committed, so that we read them back
+                            for (Future<?> write : writes) {
+                                try {
+                                    write.get();
+                                } catch (InterruptedException e) {
+                                    Log.e(TAG, "onReceive: " + e.getClass() + ": "
+                                            + e.getLocalizedMessage());
+                                    return;
+                                } catch (ExecutionException e) {
+                                    Log.e(TAG, "onReceive: " + e.getClass() + ": "
+                                            + e.getLocalizedMessage());
                                 }
                             }
                             UserCollection.this.updateUserPlaylists();
@@ -173,7 +465,44 @@ public class UserCollection extends Collection {
         mCollectionUpdateHandlerThread.start();
 
         mHandler = new Handler(mCollectionUpdateHandlerThread.getLooper());
-        mHandler.postDelayed(mUpdateRunnable, 300);
+
+        int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+        mIngestionPool = new ThreadPoolExecutor(workerCount, workerCount,
+                INGESTION_WORKER_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private int mCount = 0;
+
+            @Override
+            public synchronized Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        android.os.Process.setThreadPriority(
+                                android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "CollectionIngestion-" + mCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mIngestionPool.allowCoreThreadTimeOut(true);
+
+        mTagExtractor = new TagExtractor(
+                new File(TomahawkApp.getContext().getCacheDir(), TAG_CACHE_FILE_NAME),
+                new TagExtractor.Listener() {
+                    @Override
+                    public void onTagsExtracted(final HashMap<Long, EmbeddedTags> tagsByMediaId) {
+                        mHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                applyEmbeddedTags(tagsByMediaId);
+                            }
+                        });
+                    }
+                });
+
+        mHandler.post(mUpdateRunnable);
     }
 
     /**
@@ -216,21 +545,90 @@ public class UserCollection extends Collection {
     }
 
     /**
-     * Store the PlaybackService's currentPlaylist
+     * Store the PlaybackService's currentPlaylist. It isn't written right away, but together with
+     * every other change within the next {@link #CACHED_PLAYLIST_WRITE_DELAY} ms.
      */
     public void setCachedUserPlaylist(UserPlaylist userPlaylist) {
-        mCachedUserPlaylist = userPlaylist;
-        mTomahawkApp.getUserPlaylistsDataSource().storeUserPlaylist(mCachedUserPlaylist);
+        synchronized (mCachedUserPlaylistLock) {
+            mCachedUserPlaylist = userPlaylist;
+            mPendingCachedUserPlaylist = userPlaylist;
+            mPendingCachedQueryIndex = -1;
+            scheduleCachedUserPlaylistFlush();
+        }
+    }
+
+    /**
+     * Store the current index of the PlaybackService's currentPlaylist. As long as the playlist
+     * itself hasn't changed, only its current index column is being updated in the database.
+     */
+    public void setCachedCurrentQueryIndex(int currentQueryIndex) {
+        synchronized (mCachedUserPlaylistLock) {
+            if (mCachedUserPlaylist != null && mCachedUserPlaylist.isLoaded()) {
+                mCachedUserPlaylist.setCurrentQueryIndex(currentQueryIndex);
+            }
+            if (mPendingCachedUserPlaylist == null) {
+                mPendingCachedQueryIndex = currentQueryIndex;
+            }
+            scheduleCachedUserPlaylistFlush();
+        }
+    }
+
+    private void scheduleCachedUserPlaylistFlush() {
+        if (!mCachedUserPlaylistFlushScheduled) {
+            mCachedUserPlaylistFlushScheduled = true;
+            mCachedUserPlaylistHandler.postDelayed(mFlushCachedUserPlaylistRunnable,
+                    CACHED_PLAYLIST_WRITE_DELAY);
+        }
+    }
+
+    /**
+     * Write the pending changes of the cached {@link UserPlaylist} right away. Should be called,
+     * whenever the process might be killed soon. The changes always end up in a single write, so
+     * that the stored playlist and its current index can't get out of sync.
+     */
+    public void flushCachedUserPlaylist() {
+        UserPlaylist pendingUserPlaylist;
+        int pendingQueryIndex;
+        synchronized (mCachedUserPlaylistLock) {
+            mCachedUserPlaylistHandler.removeCallbacks(mFlushCachedUserPlaylistRunnable);
+            mCachedUserPlaylistFlushScheduled = false;
+            pendingUserPlaylist = mPendingCachedUserPlaylist;
+            pendingQueryIndex = mPendingCachedQueryIndex;
+            mPendingCachedUserPlaylist = null;
+            mPendingCachedQueryIndex = -1;
+        }
+        UserPlaylistsDataSource dataSource = mTomahawkApp.getUserPlaylistsDataSource();
+        if (pendingUserPlaylist != null) {
+            dataSource.storeUserPlaylistAsync(pendingUserPlaylist, null);
+        } else if (pendingQueryIndex >= 0) {
+            dataSource.storeCurrentQueryIndexAsync(UserPlaylistsDataSource.CACHED_PLAYLIST_ID,
+                    pendingQueryIndex, null);
+        }
     }
 
     /**
-     * @return the previously cached {@link UserPlaylist}
+     * Get the previously cached {@link UserPlaylist}. If it hasn't been cached since the app has
+     * been started, it is being read from the database in the background. Has to be called on the
+     * main thread.
+     *
+     * @param callback receives the cached {@link UserPlaylist} on the main thread, null if there is
+     *                 none
      */
-    public UserPlaylist getCachedUserPlaylist() {
-        if (mCachedUserPlaylist == null) {
-            mCachedUserPlaylist = mTomahawkApp.getUserPlaylistsDataSource().getCachedUserPlaylist();
+    public void getCachedUserPlaylist(final DatabaseExecutor.Callback<UserPlaylist> callback) {
+        if (mCachedUserPlaylist != null) {
+            callback.onResult(mCachedUserPlaylist);
+            return;
         }
-        return mCachedUserPlaylist;
+        mTomahawkApp.getUserPlaylistsDataSource().getCachedUserPlaylistAsync(
+                new DatabaseExecutor.Callback<UserPlaylist>() {
+                    @Override
+                    public void onResult(UserPlaylist userPlaylist) {
+                        if (mCachedUserPlaylist == null) {
+                            mCachedUserPlaylist = userPlaylist;
+                        }
+                        callback.onResult(mCachedUserPlaylist);
+                    }
+                });
     }
 
     /**
@@ -238,9 +636,43 @@ public class UserCollection extends Collection {
      */
     @Override
     public ArrayList<Query> getQueries() {
-        ArrayList<Query> queries = new ArrayList<Query>(mQueries.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
-        return queries;
+        return new ArrayList<Query>(mSortedQueries.getSnapshot());
+    }
+
+    /**
+     * @return a {@link QuerySnapshot} of the current snapshot of the {@link SortedView}. Taken
+     * while holding its lock, so that the {@link SectionIndex} belongs to the same snapshot.
+     */
+    @Override
+    public QuerySnapshot getQuerySnapshot() {
+        synchronized (mSortedQueries) {
+            return new QuerySnapshot(mSortedQueries.getSnapshot(),
+                    mSortedQueries.getSectionIndex());
+        }
+    }
+
+    /**
+     * @return the {@link SectionIndex} of the sorted {@link Query}s, which is kept up to date
+     * together with the {@link SortedView}
+     */
+    @Override
+    public SectionIndex getQuerySectionIndex() {
+        return mSortedQueries.getSectionIndex();
+    }
+
+    /**
+     * @return the {@link SortedView} of all {@link Query}s in this {@link UserCollection}
+     */
+    public SortedView<Query> getQueriesView() {
+        return mSortedQueries;
+    }
+
+    /**
+     * @return the {@link QueryIndex} over all {@link Query}s in this {@link UserCollection}
+     */
+    @Override
+    public QueryIndex getQueryIndex() {
+        return mQueryIndex;
     }
 
     /**
@@ -257,89 +689,588 @@ public class UserCollection extends Collection {
      * add them to our {@link UserCollection}
      */
     private void initializeCollection() {
-        Resolver userCollectionResolver = mTomahawkApp.getPipeLine().getResolver(
-                TomahawkApp.RESOLVER_ID_USERCOLLECTION);
-
         updateUserPlaylists();
         updateHatchetUserPlaylists();
 
-        String selection = MediaStore.Audio.Media.IS_MUSIC + " != 0";
-
-        String[] projection = {MediaStore.Audio.Media._ID, MediaStore.Audio.Media.DATA,
-                MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media.DURATION,
-                MediaStore.Audio.Media.TRACK, MediaStore.Audio.Media.ARTIST_ID,
-                MediaStore.Audio.Media.ARTIST, MediaStore.Audio.Media.ALBUM_ID,
-                MediaStore.Audio.Media.ALBUM};
+        for (Long mediaId : new ArrayList<Long>(mLocalTracks.keySet())) {
+            removeLocalTrack(mediaId);
+        }
+        mAlbums.clear();
+        mQueries.clear();
+        mQueryIndex.clear();
+        mSortedQueries.clear();
+        mMediaIdWatermark = -1;
+        mDateModifiedWatermark = -1;
 
         ContentResolver resolver = TomahawkApp.getContext().getContentResolver();
 
-        Cursor cursor = resolver
-                .query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projection, selection, null,
-                        null);
+        long scanStartTime = SystemClock.elapsedRealtime();
+        int trackCount = 0;
+
+        LongSparseArray<String[]> albumDetails = getAlbumDetails(resolver);
+        long albumScanDuration = SystemClock.elapsedRealtime() - scanStartTime;
+
+        Cursor cursor = resolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                MEDIA_PROJECTION, MEDIA_SELECTION, null, null);
 
         // Go through the complete set of data in the MediaStore
+        IngestionPipeline pipeline = new IngestionPipeline(albumDetails,
+                cursor != null ? cursor.getCount() : 0);
         while (cursor != null && cursor.moveToNext()) {
-            Artist artist = Artist.get(cursor.getString(6));
-
-            Album album = Album.get(cursor.getString(8), artist);
-            String albumsel = MediaStore.Audio.Albums._ID + " == " + Long.toString(
-                    cursor.getLong(7));
-            String[] albumproj = {MediaStore.Audio.Albums.ALBUM_ART,
-                    MediaStore.Audio.Albums.FIRST_YEAR, MediaStore.Audio.Albums.LAST_YEAR};
-            Cursor albumcursor = resolver.query(MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI,
-                    albumproj, albumsel, null, null);
-            if (albumcursor != null && albumcursor.moveToNext()) {
-                album.setAlbumArtPath(albumcursor.getString(0));
-                album.setFirstYear(albumcursor.getString(1));
-                album.setLastYear(albumcursor.getString(2));
+            trackCount++;
+            updateWatermarks(cursor);
+            pipeline.add(readTrackRow(cursor));
+        }
+        pipeline.finish();
+
+        if (cursor != null) {
+            cursor.close();
+        }
+        mInitialized = true;
+        writeSnapshot();
+        extractEmbeddedTags(mLocalTracks.keySet(), true);
+
+        mLastScanDuration = SystemClock.elapsedRealtime() - scanStartTime;
+        mLastScanTrackCount = trackCount;
+        Log.d(TAG, "initializeCollection: scanned " + trackCount + " tracks and "
+                + albumDetails.size() + " albums in " + mLastScanDuration + "ms (albums: "
+                + albumScanDuration + "ms), " + getLastScanDurationPer1kTracks()
+                + "ms per 1k tracks");
+    }
+
+    /**
+     * Apply only the changes of the {@link MediaStore} since the last scan. New and changed tracks
+     * are found via the id and DATE_MODIFIED watermarks, removed tracks by comparing the ids of all
+     * tracks with ours, which is only necessary if their count doesn't match. Afterwards a {@link
+     * CollectionDelta} is posted on the {@link #getDeltaEventBus()}.
+     */
+    private void updateIncrementally() {
+        if (!mInitialized) {
+            update();
+            return;
+        }
+        long startTime = SystemClock.elapsedRealtime();
+        CollectionDelta delta = new CollectionDelta();
+        HashSet<Long> changedMediaIds = new HashSet<Long>();
+        ContentResolver resolver = TomahawkApp.getContext().getContentResolver();
+
+        // DATE_MODIFIED only has a resolution of seconds, so the watermark itself is included
+        String selection = MEDIA_SELECTION + " AND (" + MediaStore.Audio.Media._ID + " > ? OR "
+                + MediaStore.Audio.Media.DATE_MODIFIED + " >= ?)";
+        String[] selectionArgs = new String[]{String.valueOf(mMediaIdWatermark),
+                String.valueOf(mDateModifiedWatermark)};
+        Cursor cursor = resolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                MEDIA_PROJECTION, selection, selectionArgs, null);
+        if (cursor != null) {
+            TreeSet<Long> albumIds = new TreeSet<Long>();
+            while (cursor.moveToNext()) {
+                albumIds.add(cursor.getLong(7));
+            }
+            LongSparseArray<String[]> albumDetails = getAlbumDetails(resolver, albumIds);
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                LocalTrack oldTrack = mLocalTracks.get(cursor.getLong(0));
+                if (oldTrack != null) {
+                    if (isUnchanged(oldTrack.mRow, cursor)) {
+                        // Only touched by the watermark, not actually changed
+                        updateWatermarks(cursor);
+                        continue;
+                    }
+                    removeLocalTrack(cursor.getLong(0));
+                    delta.addUpdatedQuery(addLocalTrack(cursor, albumDetails));
+                } else {
+                    delta.addAddedQuery(addLocalTrack(cursor, albumDetails));
+                }
+                changedMediaIds.add(cursor.getLong(0));
+            }
+            cursor.close();
+        }
+        extractEmbeddedTags(changedMediaIds, false);
+
+        cursor = resolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                new String[]{MediaStore.Audio.Media._ID}, MEDIA_SELECTION, null, null);
+        if (cursor != null) {
+            if (cursor.getCount() != mLocalTracks.size()) {
+                HashSet<Long> mediaIds = new HashSet<Long>(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    mediaIds.add(cursor.getLong(0));
+                }
+                for (Long mediaId : new ArrayList<Long>(mLocalTracks.keySet())) {
+                    if (!mediaIds.contains(mediaId)) {
+                        delta.addRemovedQuery(removeLocalTrack(mediaId));
+                    }
+                }
             }
-            if (albumcursor != null) {
-                albumcursor.close();
+            cursor.close();
+        }
+
+        Log.d(TAG, "updateIncrementally: " + delta.getAddedQueries().size() + " added, "
+                + delta.getUpdatedQueries().size() + " updated, "
+                + delta.getRemovedQueries().size() + " removed in "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        if (!delta.isEmpty()) {
+            writeSnapshot();
+            // Every delta gets its own key, so that none of them is being coalesced away
+            mDeltaEventBus.post(String.valueOf(mDeltaCounter.getAndIncrement()), delta);
+        }
+    }
+
+    /**
+     * Restore this {@link UserCollection} from the snapshot, which has been written after the last
+     * scan. Its watermarks are restored as well, so that {@link #updateIncrementally()} only has
+     * to apply what has changed in the {@link MediaStore} since then.
+     *
+     * @return whether or not a valid snapshot has been restored
+     */
+    private boolean restoreSnapshot() {
+        long startTime = SystemClock.elapsedRealtime();
+        CollectionSnapshot snapshot;
+        try {
+            snapshot = CollectionSnapshot.read(getSnapshotFile());
+        } catch (IOException e) {
+            Log.e(TAG, "restoreSnapshot: " + e.getClass() + ": " + e.getLocalizedMessage());
+            getSnapshotFile().delete();
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        updateUserPlaylists();
+        updateHatchetUserPlaylists();
+
+        IngestionPipeline pipeline = new IngestionPipeline(snapshot.getAlbumDetails(),
+                snapshot.getTrackCount());
+        for (int i = 0; i < snapshot.getTrackCount(); i++) {
+            pipeline.add(new TrackRow(snapshot.getMediaId(i), snapshot.getPath(i),
+                    snapshot.getTrackName(i), snapshot.getDuration(i), snapshot.getAlbumPos(i),
+                    snapshot.getArtistName(i), snapshot.getAlbumId(i), snapshot.getAlbumName(i)));
+        }
+        pipeline.finish();
+        extractEmbeddedTags(mLocalTracks.keySet(), true);
+        mMediaIdWatermark = snapshot.getMediaIdWatermark();
+        mDateModifiedWatermark = snapshot.getDateModifiedWatermark();
+        mInitialized = true;
+        Log.d(TAG, "restoreSnapshot: restored " + snapshot.getTrackCount() + " tracks in "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        return true;
+    }
+
+    /**
+     * Write every local track and album of this {@link UserCollection} along with the current
+     * watermarks to the snapshot file. Failing to do so only costs us a full scan on the next cold
+     * start, so errors are merely logged.
+     */
+    private void writeSnapshot() {
+        long startTime = SystemClock.elapsedRealtime();
+        CollectionSnapshot.Writer writer = new CollectionSnapshot.Writer(mMediaIdWatermark,
+                mDateModifiedWatermark);
+        for (Long albumId : mAlbumTrackCounts.keySet()) {
+            Album album = mAlbums.get(albumId);
+            if (album != null) {
+                writer.addAlbum(albumId, album.getAlbumArtPath(), album.getFirstYear(),
+                        album.getLastYear());
             }
-            if (!mAlbums.containsKey(cursor.getLong(7))) {
-                mAlbums.put(cursor.getLong(7), album);
+        }
+        // The rows as they came from the MediaStore, the EmbeddedTags are cached on their own
+        for (LocalTrack localTrack : mLocalTracks.values()) {
+            TrackRow row = localTrack.mRow;
+            writer.addTrack(row.mMediaId, row.mAlbumId, row.mDuration, row.mPath, row.mTrackName,
+                    row.mArtistName, row.mAlbumName, row.mAlbumPos);
+        }
+        try {
+            writer.writeTo(getSnapshotFile());
+            Log.d(TAG, "writeSnapshot: wrote " + mLocalTracks.size() + " tracks in "
+                    + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        } catch (IOException e) {
+            Log.e(TAG, "writeSnapshot: " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private static File getSnapshotFile() {
+        return new File(TomahawkApp.getContext().getCacheDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Add the track at the current position of the given {@link Cursor} to this {@link
+     * UserCollection}. The {@link Cursor} has to contain the columns of {@link #MEDIA_PROJECTION}.
+     *
+     * @return the {@link Query} representing the added track
+     */
+    private Query addLocalTrack(Cursor cursor, LongSparseArray<String[]> albumDetails) {
+        updateWatermarks(cursor);
+        TrackRow row = readTrackRow(cursor);
+        prepareLocalTrack(row, albumDetails, mTomahawkApp.getPipeLine().getResolver(
+                TomahawkApp.RESOLVER_ID_USERCOLLECTION));
+        return linkLocalTrack(row);
+    }
+
+    /**
+     * Read the track at the current position of the given {@link Cursor}, which has to contain
+     * the columns of {@link #MEDIA_PROJECTION}
+     */
+    private static TrackRow readTrackRow(Cursor cursor) {
+        return new TrackRow(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                cursor.getLong(3), cursor.getInt(4), cursor.getString(6), cursor.getLong(7),
+                cursor.getString(8));
+    }
+
+    /**
+     * Build the {@link Artist}, {@link Album}, {@link Track} and {@link Query} for the given
+     * {@link TrackRow}, with the cached {@link EmbeddedTags} of its file merged in. Doesn't touch
+     * anything but thread-safe state, so that it can be called by the ingestion workers.
+     */
+    private void prepareLocalTrack(TrackRow row, LongSparseArray<String[]> albumDetails,
+            Resolver userCollectionResolver) {
+        EmbeddedTags tags = mTagExtractor.getCachedTags(row.mPath);
+        String[] names = getMergedNames(row, tags);
+
+        Artist artist = Artist.get(names[1]);
+
+        Album album = Album.get(names[2], artist);
+        String[] details = albumDetails.get(row.mAlbumId);
+        if (details != null) {
+            album.setAlbumArtPath(details[0]);
+            album.setFirstYear(details[1]);
+            album.setLastYear(details[2]);
+        }
+        Album existingAlbum = mAlbums.putIfAbsent(row.mAlbumId, album);
+        if (existingAlbum != null) {
+            album = existingAlbum;
+        }
+
+        Track track = Track.get(names[0], album, artist);
+        track.setDuration(row.mDuration);
+        track.setAlbumPos(row.mAlbumPos);
+        applyEmbeddedTags(track, row, tags);
+
+        Query query = new Query(track.getName(), album.getName(), artist.getName(), true);
+        Result result = new Result(row.mPath, track);
+        result.setResolvedBy(userCollectionResolver);
+        result.setTrackScore(1f);
+        query.addTrackResult(result);
+        row.mArtist = artist;
+        row.mAlbum = album;
+        row.mQuery = query;
+    }
+
+    /**
+     * Link the prepared {@link TrackRow} into this {@link UserCollection}. Has to be called on the
+     * mCollectionUpdateHandlerThread.
+     *
+     * @return the {@link Query} representing the added track
+     */
+    private Query linkLocalTrack(TrackRow row) {
+        Query query = row.mQuery;
+        mQueries.put(query.getQid(), query);
+        mQueryIndex.add(query);
+        mSortedQueries.add(query);
+        mLocalTracks.put(row.mMediaId, new LocalTrack(query, row));
+        Integer albumTrackCount = mAlbumTrackCounts.get(row.mAlbumId);
+        mAlbumTrackCounts.put(row.mAlbumId, albumTrackCount == null ? 1 : albumTrackCount + 1);
+
+        row.mArtist.addQuery(query);
+        row.mArtist.addAlbum(row.mAlbum);
+        row.mAlbum.addQuery(query);
+        return query;
+    }
+
+    /**
+     * Remove the track with the given MediaStore id from this {@link UserCollection}
+     *
+     * @return the {@link Query} which has been representing the removed track
+     */
+    private Query removeLocalTrack(long mediaId) {
+        LocalTrack localTrack = mLocalTracks.remove(mediaId);
+        Query query = localTrack.mQuery;
+        mQueries.remove(query.getQid());
+        mQueryIndex.remove(query);
+        mSortedQueries.remove(query);
+        Artist artist = query.getArtist();
+        Album album = query.getAlbum();
+        artist.removeQuery(query);
+        album.removeQuery(query);
+        long albumId = localTrack.mRow.mAlbumId;
+        Integer albumTrackCount = mAlbumTrackCounts.get(albumId);
+        if (albumTrackCount == null || albumTrackCount <= 1) {
+            mAlbumTrackCounts.remove(albumId);
+            mAlbums.remove(albumId);
+            // Several MediaStore albums can map to the same Album, since Albums are shared by
+            // name and artist. So the others might still have tracks in it.
+            if (album.getLocalQueries().isEmpty()) {
+                artist.removeAlbum(album);
+            }
+        } else {
+            mAlbumTrackCounts.put(albumId, albumTrackCount - 1);
+        }
+        return query;
+    }
+
+    /**
+     * @return the track, artist and album name of the given {@link TrackRow}. The MediaStore
+     * reports missing names as {@link MediaStore#UNKNOWN_STRING}, those are being replaced by the
+     * ones from the given {@link EmbeddedTags}.
+     */
+    private static String[] getMergedNames(TrackRow row, EmbeddedTags tags) {
+        String[] names = new String[]{row.mTrackName, row.mArtistName, row.mAlbumName};
+        if (tags != null) {
+            if (isUnknown(names[0]) && tags.getTitle() != null) {
+                names[0] = tags.getTitle();
+            }
+            if (isUnknown(names[1])) {
+                if (tags.getArtist() != null) {
+                    names[1] = tags.getArtist();
+                } else if (tags.getAlbumArtist() != null) {
+                    names[1] = tags.getAlbumArtist();
+                }
+            }
+            if (isUnknown(names[2]) && tags.getAlbum() != null) {
+                names[2] = tags.getAlbum();
+            }
+        }
+        return names;
+    }
+
+    private static boolean isUnknown(String name) {
+        return TextUtils.isEmpty(name) || MediaStore.UNKNOWN_STRING.equals(name);
+    }
+
+    /**
+     * Set the disc number and year of the given {@link Track}. The MediaStore doesn't know about
+     * disc numbers, but some devices encode them in the track number as disc * 1000 + track.
+     *
+     * @return whether or not anything has changed
+     */
+    private static boolean applyEmbeddedTags(Track track, TrackRow row, EmbeddedTags tags) {
+        int discNumber = row.mAlbumPos >= 1000 ? row.mAlbumPos / 1000 : 0;
+        int year = track.getYear();
+        if (tags != null) {
+            if (tags.getDiscNumber() > 0) {
+                discNumber = tags.getDiscNumber();
+            }
+            if (tags.getYear() > 0) {
+                year = tags.getYear();
+            }
+        }
+        boolean changed = discNumber != track.getDiscNumber() || year != track.getYear();
+        track.setDiscNumber(discNumber);
+        track.setYear(year);
+        return changed;
+    }
+
+    /**
+     * Let the {@link TagExtractor} read the embedded tags of the given tracks in the background
+     *
+     * @param complete whether or not the given tracks are all local tracks
+     */
+    private void extractEmbeddedTags(Set<Long> mediaIds, boolean complete) {
+        HashMap<Long, String> pathsByMediaId = new HashMap<Long, String>(mediaIds.size());
+        for (Long mediaId : mediaIds) {
+            LocalTrack localTrack = mLocalTracks.get(mediaId);
+            if (localTrack != null) {
+                pathsByMediaId.put(mediaId, localTrack.mRow.mPath);
+            }
+        }
+        if (complete || !pathsByMediaId.isEmpty()) {
+            mTagExtractor.extract(pathsByMediaId, complete);
+        }
+    }
+
+    /**
+     * Merge the freshly extracted {@link EmbeddedTags} into the tracks they belong to. Tracks,
+     * whose names change, are being replaced, just like during an incremental update. The changes
+     * are posted as a {@link CollectionDelta}.
+     */
+    private void applyEmbeddedTags(HashMap<Long, EmbeddedTags> tagsByMediaId) {
+        CollectionDelta delta = new CollectionDelta();
+        Resolver userCollectionResolver = mTomahawkApp.getPipeLine().getResolver(
+                TomahawkApp.RESOLVER_ID_USERCOLLECTION);
+        for (Map.Entry<Long, EmbeddedTags> entry : tagsByMediaId.entrySet()) {
+            LocalTrack localTrack = mLocalTracks.get(entry.getKey());
+            if (localTrack == null) {
+                // Has been removed in the meantime
+                continue;
+            }
+            Query query = localTrack.mQuery;
+            TrackRow row = localTrack.mRow;
+            String[] names = getMergedNames(row, entry.getValue());
+            if (TextUtils.equals(names[0], query.getName())
+                    && TextUtils.equals(names[1], query.getArtist().getName())
+                    && TextUtils.equals(names[2], query.getAlbum().getName())) {
+                if (applyEmbeddedTags(query.getPreferredTrack(), row, entry.getValue())) {
+                    delta.addUpdatedQuery(query);
+                }
             } else {
-                album = mAlbums.get(cursor.getLong(7));
+                // Keep the album details, the album might be gone after removing its last track
+                LongSparseArray<String[]> albumDetails = new LongSparseArray<String[]>(1);
+                Album album = mAlbums.get(row.mAlbumId);
+                if (album != null) {
+                    albumDetails.put(row.mAlbumId, new String[]{album.getAlbumArtPath(),
+                            album.getFirstYear(), album.getLastYear()});
+                }
+                removeLocalTrack(row.mMediaId);
+                TrackRow newRow = new TrackRow(row.mMediaId, row.mPath, row.mTrackName,
+                        row.mDuration, row.mAlbumPos, row.mArtistName, row.mAlbumId,
+                        row.mAlbumName);
+                prepareLocalTrack(newRow, albumDetails, userCollectionResolver);
+                delta.addUpdatedQuery(linkLocalTrack(newRow));
             }
+        }
+        Log.d(TAG, "applyEmbeddedTags: " + delta.getUpdatedQueries().size() + " of "
+                + tagsByMediaId.size() + " tracks updated");
+        if (!delta.isEmpty()) {
+            mDeltaEventBus.post(String.valueOf(mDeltaCounter.getAndIncrement()), delta);
+        }
+    }
 
-            Track track = Track.get(cursor.getString(2), album, artist);
-            track.setDuration(cursor.getLong(3));
-            track.setAlbumPos(cursor.getInt(4));
+    /**
+     * @return whether or not the track at the current position of the given {@link Cursor} is
+     * still the same as the given {@link TrackRow}
+     */
+    private static boolean isUnchanged(TrackRow row, Cursor cursor) {
+        return TextUtils.equals(row.mPath, cursor.getString(1))
+                && TextUtils.equals(row.mTrackName, cursor.getString(2))
+                && TextUtils.equals(row.mArtistName, cursor.getString(6))
+                && TextUtils.equals(row.mAlbumName, cursor.getString(8))
+                && row.mDuration == cursor.getLong(3)
+                && row.mAlbumPos == cursor.getInt(4);
+    }
 
-            Query query = new Query(track.getName(), album.getName(), artist.getName(), true);
-            Result result = new Result(cursor.getString(1), track);
-            result.setResolvedBy(userCollectionResolver);
-            result.setTrackScore(1f);
-            query.addTrackResult(result);
-            mQueries.put(query.getQid(), query);
+    private void updateWatermarks(Cursor cursor) {
+        mMediaIdWatermark = Math.max(mMediaIdWatermark, cursor.getLong(0));
+        mDateModifiedWatermark = Math.max(mDateModifiedWatermark, cursor.getLong(9));
+    }
+
+    /**
+     * Load the album art path, first year and last year of every album in the {@link MediaStore}
+     * with a single query, so that they can be joined with the tracks in memory.
+     *
+     * @return a {@link LongSparseArray} containing the details of every album by its id
+     */
+    private LongSparseArray<String[]> getAlbumDetails(ContentResolver resolver) {
+        LongSparseArray<String[]> albumDetails = new LongSparseArray<String[]>();
+        readAlbumDetails(resolver, null, albumDetails);
+        return albumDetails;
+    }
 
-            artist.addQuery(query);
-            artist.addAlbum(album);
-            album.addQuery(query);
+    /**
+     * Same as {@link #getAlbumDetails(ContentResolver)}, but only for the albums with the given
+     * ids. A delta can be arbitrarily large, e.g. after the sd card has been mounted, so the ids
+     * are being queried in chunks of {@link #ALBUM_IDS_PER_QUERY}.
+     */
+    private LongSparseArray<String[]> getAlbumDetails(ContentResolver resolver,
+            TreeSet<Long> albumIds) {
+        LongSparseArray<String[]> albumDetails = new LongSparseArray<String[]>(albumIds.size());
+        StringBuilder chunk = new StringBuilder();
+        int chunkSize = 0;
+        Iterator<Long> iterator = albumIds.iterator();
+        while (iterator.hasNext()) {
+            if (chunkSize > 0) {
+                chunk.append(",");
+            }
+            chunk.append(iterator.next());
+            chunkSize++;
+            if (chunkSize == ALBUM_IDS_PER_QUERY || !iterator.hasNext()) {
+                readAlbumDetails(resolver, MediaStore.Audio.Albums._ID + " IN (" + chunk + ")",
+                        albumDetails);
+                chunk.setLength(0);
+                chunkSize = 0;
+            }
         }
+        return albumDetails;
+    }
 
+    /**
+     * Put the details of every album matching the given selection into the given {@link
+     * LongSparseArray}. The albums are sorted by id, so that they can simply be appended to it, as
+     * long as every selection only contains higher ids than the previous one.
+     */
+    private void readAlbumDetails(ContentResolver resolver, String selection,
+            LongSparseArray<String[]> albumDetails) {
+        String[] projection = {MediaStore.Audio.Albums._ID, MediaStore.Audio.Albums.ALBUM_ART,
+                MediaStore.Audio.Albums.FIRST_YEAR, MediaStore.Audio.Albums.LAST_YEAR};
+        Cursor cursor = resolver.query(MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI, projection,
+                selection, null, MediaStore.Audio.Albums._ID);
         if (cursor != null) {
+            while (cursor.moveToNext()) {
+                albumDetails.put(cursor.getLong(0), new String[]{cursor.getString(1),
+                        cursor.getString(2), cursor.getString(3)});
+            }
             cursor.close();
         }
     }
 
+    /**
+     * @return the {@link EventBus} on which a {@link CollectionDelta} is being posted after every
+     * incremental update of this {@link UserCollection}. A full update is still announced via a
+     * {@link #COLLECTION_UPDATED} broadcast.
+     */
+    public EventBus<CollectionDelta> getDeltaEventBus() {
+        return mDeltaEventBus;
+    }
+
+    /**
+     * @return the {@link EventBus} on which the {@link ScanProgress} is being posted every now and
+     * then, while this {@link UserCollection} is being loaded. Subscribers can show the tracks,
+     * which have been loaded so far. The last {@link ScanProgress} is done.
+     */
+    public EventBus<ScanProgress> getScanProgressEventBus() {
+        return mScanProgressEventBus;
+    }
+
+    /**
+     * @return the latest {@link ScanProgress} of loading this {@link UserCollection}
+     */
+    public ScanProgress getScanProgress() {
+        return mScanProgress;
+    }
+
+    private void publishScanProgress(ScanProgress scanProgress) {
+        mScanProgress = scanProgress;
+        mScanProgressEventBus.post(SCAN_PROGRESS_KEY, scanProgress);
+    }
+
+    /**
+     * @return how long the last scan of the {@link MediaStore} took in milliseconds
+     */
+    public long getLastScanDuration() {
+        return mLastScanDuration;
+    }
+
+    /**
+     * @return how many tracks have been found by the last scan of the {@link MediaStore}
+     */
+    public int getLastScanTrackCount() {
+        return mLastScanTrackCount;
+    }
+
+    /**
+     * @return how long the last scan of the {@link MediaStore} took per 1000 tracks in
+     * milliseconds. 0 if no track has been found.
+     */
+    public long getLastScanDurationPer1kTracks() {
+        if (mLastScanTrackCount == 0) {
+            return 0;
+        }
+        return mLastScanDuration * 1000 / mLastScanTrackCount;
+    }
+
     /**
      * Fetch all user {@link UserPlaylist} from the app's database via our helper class {@link
-     * UserPlaylistsDataSource}
+     * UserPlaylistsDataSource}. They are being read in the background, {@link #COLLECTION_UPDATED}
+     * is being sent as soon as they're available.
      */
     public void updateUserPlaylists() {
-        mUserPlaylists.clear();
-        ArrayList<UserPlaylist> userPlayListList = mTomahawkApp.getUserPlaylistsDataSource()
-                .getLocalUserPlaylists();
-        for (UserPlaylist userPlaylist : userPlayListList) {
-            mUserPlaylists.put(userPlaylist.getId(), userPlaylist);
-        }
-        userPlayListList = mTomahawkApp.getUserPlaylistsDataSource()
-                .getHatchetUserPlaylists();
-        for (UserPlaylist userPlaylist : userPlayListList) {
-            mUserPlaylists.put(userPlaylist.getId(), userPlaylist);
-        }
-        TomahawkApp.getContext().sendBroadcast(new Intent(COLLECTION_UPDATED));
+        mTomahawkApp.getUserPlaylistsDataSource().getUserPlaylistsAsync(
+                new DatabaseExecutor.Callback<ArrayList<UserPlaylist>>() {
+                    @Override
+                    public void onResult(ArrayList<UserPlaylist> userPlaylists) {
+                        mUserPlaylists.clear();
+                        for (UserPlaylist userPlaylist : userPlaylists) {
+                            mUserPlaylists.put(userPlaylist.getId(), userPlaylist);
+                        }
+                        TomahawkApp.getContext().sendBroadcast(new Intent(COLLECTION_UPDATED));
+                    }
+                });
     }
 
     public void updateHatchetUserPlaylists() {
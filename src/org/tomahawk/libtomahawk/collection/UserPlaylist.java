@@ -17,10 +17,12 @@
  */
 package org.tomahawk.libtomahawk.collection;
 
+import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * A {@link UserPlaylist} is a {@link
@@ -34,6 +36,14 @@ public class UserPlaylist extends Playlist implements TomahawkBaseAdapter.Tomaha
 
     private boolean mIsHatchetPlaylist;
 
+    // The data source to load our Querys from, as long as they haven't been loaded yet
+    private volatile UserPlaylistsDataSource mDataSource;
+
+    // The number of Querys as stored in the database, used until they are being loaded
+    private int mStoredCount;
+
+    private int mStoredCurrentQueryIndex;
+
     /**
      * Construct a new empty {@link UserPlaylist}.
      */
@@ -45,6 +55,28 @@ public class UserPlaylist extends Playlist implements TomahawkBaseAdapter.Tomaha
         mIsHatchetPlaylist = isHatchetPlaylist;
     }
 
+    /**
+     * Create a {@link UserPlaylist}, whose {@link org.tomahawk.libtomahawk.resolver.Query}s are
+     * stored in the database. Only its header is known at first, the {@link
+     * org.tomahawk.libtomahawk.resolver.Query}s are being loaded from the given {@link
+     * UserPlaylistsDataSource} as soon as they are accessed, i.e. when the {@link UserPlaylist} is
+     * being opened or played.
+     *
+     * @param count             the number of stored {@link Query}s
+     * @param currentQueryIndex the stored index of the current {@link Query}
+     * @return a reference to the constructed {@link UserPlaylist}
+     */
+    public static UserPlaylist fromDataSource(UserPlaylistsDataSource dataSource, String id,
+            String name, String currentRevision, boolean isHatchetPlaylist, int count,
+            int currentQueryIndex) {
+        UserPlaylist pl = new UserPlaylist(id, name, currentRevision, isHatchetPlaylist);
+        pl.mDataSource = dataSource;
+        pl.mStoredCount = count;
+        pl.mStoredCurrentQueryIndex = currentQueryIndex;
+        pl.setCurrentQueryIndex(currentQueryIndex < count ? currentQueryIndex : 0);
+        return pl;
+    }
+
     /**
      * Create a {@link UserPlaylist} from a list of
      * {@link org.tomahawk.libtomahawk.resolver.Query}s.
@@ -107,6 +139,53 @@ public class UserPlaylist extends Playlist implements TomahawkBaseAdapter.Tomaha
         return mIsHatchetPlaylist;
     }
 
+    /**
+     * @return whether or not this {@link UserPlaylist}'s {@link
+     * org.tomahawk.libtomahawk.resolver.Query}s are in memory. Doesn't wait for them, if they are
+     * just being loaded.
+     */
+    public boolean isLoaded() {
+        return mDataSource == null;
+    }
+
+    /**
+     * Load our {@link org.tomahawk.libtomahawk.resolver.Query}s from the {@link
+     * UserPlaylistsDataSource}, if we haven't already
+     */
+    @Override
+    protected synchronized void ensureQueriesLoaded() {
+        if (mDataSource != null) {
+            ArrayList<Query> queries = mDataSource.getUserPlaylistQueries(mId);
+            super.setQueries(queries);
+            if (mStoredCurrentQueryIndex < queries.size()) {
+                setCurrentQueryIndex(mStoredCurrentQueryIndex);
+            }
+            mDataSource = null;
+        }
+    }
+
+    /**
+     * Set this {@link UserPlaylist}'s {@link org.tomahawk.libtomahawk.resolver.Query}s. The stored
+     * ones won't be loaded anymore.
+     */
+    @Override
+    public synchronized void setQueries(Collection<Query> queries) {
+        mDataSource = null;
+        super.setQueries(queries);
+    }
+
+    /**
+     * @return the number of {@link org.tomahawk.libtomahawk.resolver.Query}s in this {@link
+     * UserPlaylist}. Doesn't load them, if they haven't been loaded yet.
+     */
+    @Override
+    public synchronized int getCount() {
+        if (mDataSource != null) {
+            return mStoredCount;
+        }
+        return super.getCount();
+    }
+
     /**
      * @return this object' name
      */
@@ -0,0 +1,296 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the reads and writes of a {@link SQLiteDatabase} off the calling thread. All writes are
+ * being queued up for a single writer thread, which commits every write that is pending at the
+ * time in one transaction. Reads are being run by a small pool of reader threads. With write-ahead
+ * logging enabled they don't have to wait for the writer.
+ * <p/>
+ * Every read and write returns a {@link Future}. Additionally a {@link Callback} can be given,
+ * which receives the result on the main thread.
+ */
+public class DatabaseExecutor {
+
+    private final static String TAG = DatabaseExecutor.class.getName();
+
+    public static final int READER_COUNT = 2;
+
+    // Maximum number of writes which are being committed in a single transaction
+    public static final int MAX_BATCH_SIZE = 64;
+
+    public static final long THREAD_KEEP_ALIVE = 10000L;
+
+    /**
+     * Receives the result of a read or write on the main thread. Not being called if the read or
+     * write has failed.
+     */
+    public interface Callback<T> {
+
+        void onResult(T result);
+    }
+
+    /**
+     * Gets notified whenever writes have been rolled back, so that state which has been derived
+     * from them can be dropped
+     */
+    public interface RollbackListener {
+
+        void onRolledBack();
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final ThreadPoolExecutor mWriter;
+
+    private final ThreadPoolExecutor mReaders;
+
+    private final LinkedBlockingQueue<Operation<?>> mPendingWrites
+            = new LinkedBlockingQueue<Operation<?>>();
+
+    private final RollbackListener mRollbackListener;
+
+    private volatile SQLiteDatabase mDatabase;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            runPendingWrites();
+        }
+    };
+
+    /**
+     * A read or write, whose result is being handed to its {@link Callback} once it's done
+     */
+    private class Operation<T> extends FutureTask<T> {
+
+        private final Callable<T> mCallable;
+
+        private final Callback<T> mCallback;
+
+        private T mResult;
+
+        private Operation(Callable<T> callable, Callback<T> callback) {
+            super(callable);
+            mCallable = callable;
+            mCallback = callback;
+        }
+
+        /**
+         * Run this write as part of a batch. Its result is only published once the batch has been
+         * committed.
+         */
+        private void execute() throws Exception {
+            mResult = mCallable.call();
+        }
+
+        private void publish() {
+            set(mResult);
+        }
+
+        private void fail(Throwable throwable) {
+            setException(throwable);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            final T result;
+            try {
+                result = get();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "done: " + e.getCause().getClass() + ": "
+                        + e.getCause().getLocalizedMessage());
+                return;
+            }
+            if (mCallback != null) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mCallback.onResult(result);
+                    }
+                });
+            }
+        }
+    }
+
+    public DatabaseExecutor(String name, RollbackListener rollbackListener) {
+        mRollbackListener = rollbackListener;
+        mWriter = new ThreadPoolExecutor(1, 1, THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DatabaseThreadFactory(name + "Writer"));
+        mWriter.allowCoreThreadTimeOut(true);
+        mReaders = new ThreadPoolExecutor(READER_COUNT, READER_COUNT, THREAD_KEEP_ALIVE,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new DatabaseThreadFactory(name + "Reader"));
+        mReaders.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Set the {@link SQLiteDatabase} the writes are being committed to. Has to be set before any
+     * write can succeed.
+     */
+    public void setDatabase(SQLiteDatabase database) {
+        mDatabase = database;
+    }
+
+    /**
+     * Run the given read on one of the reader threads
+     *
+     * @param callback the {@link Callback} to receive the result on the main thread. May be null.
+     */
+    public <T> Future<T> read(Callable<T> read, Callback<T> callback) {
+        Operation<T> operation = new Operation<T>(read, callback);
+        mReaders.execute(operation);
+        return operation;
+    }
+
+    /**
+     * Queue up the given write for the writer thread. Writes are being run in the order they have
+     * been queued up in.
+     *
+     * @param callback the {@link Callback} to receive the result on the main thread, once the
+     *                 write has been committed. May be null.
+     */
+    public <T> Future<T> write(Callable<T> write, Callback<T> callback) {
+        Operation<T> operation = new Operation<T>(write, callback);
+        mPendingWrites.add(operation);
+        mWriter.execute(mWriteRunnable);
+        return operation;
+    }
+
+    /**
+     * Commit all pending writes in one transaction. Every write has been queued up together with a
+     * run of this method, so if there are none left, an earlier run has already taken care of
+     * them.
+     */
+    private void runPendingWrites() {
+        ArrayList<Operation<?>> batch = new ArrayList<Operation<?>>();
+        mPendingWrites.drainTo(batch, MAX_BATCH_SIZE);
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() > 1) {
+            if (runInTransaction(batch)) {
+                for (Operation<?> operation : batch) {
+                    operation.publish();
+                }
+                return;
+            }
+            // A single failing write would roll back all the others, so we run them one by one
+            Log.d(TAG, "runPendingWrites: batch of " + batch.size()
+                    + " writes has failed, retrying them one by one");
+        }
+        for (Operation<?> operation : batch) {
+            ArrayList<Operation<?>> single = new ArrayList<Operation<?>>();
+            single.add(operation);
+            if (runInTransaction(single)) {
+                operation.publish();
+            }
+        }
+    }
+
+    /**
+     * Run the given writes in one transaction. If any of them fails, the transaction is being
+     * rolled back and the {@link RollbackListener} is being notified. If it's the only write, it
+     * is being failed with the cause.
+     *
+     * @return whether or not the transaction has been committed
+     */
+    private boolean runInTransaction(ArrayList<Operation<?>> operations) {
+        SQLiteDatabase database = mDatabase;
+        Throwable failure = null;
+        if (database == null) {
+            failure = new IllegalStateException("Database hasn't been opened");
+        } else {
+            database.beginTransaction();
+            try {
+                for (Operation<?> operation : operations) {
+                    operation.execute();
+                }
+                database.setTransactionSuccessful();
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                try {
+                    database.endTransaction();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            Log.e(TAG, "runInTransaction: " + failure.getClass() + ": "
+                    + failure.getLocalizedMessage());
+            mRollbackListener.onRolledBack();
+            if (operations.size() == 1) {
+                operations.get(0).fail(failure);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates background priority daemon threads, so that database access doesn't compete with the
+     * UI thread
+     */
+    private static class DatabaseThreadFactory implements ThreadFactory {
+
+        private final String mName;
+
+        private int mCount = 0;
+
+        private DatabaseThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public synchronized Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + "-" + mCount++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2013, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Resolver;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class provides a way of caching the {@link Result}s, which a {@link Resolver} has reported
+ * for a {@link Query}, in the database. This way we don't have to resolve the same {@link Query}
+ * again every time the app is being started. Every cached resolution expires after a per-{@link
+ * Resolver} time to live. Misses are being cached as well, but with a shorter time to live. If the
+ * cache grows beyond its size limit, the least recently used resolutions are being evicted.
+ * <p/>
+ * Resolutions are being stored through a {@link DatabaseExecutor}, so that the resolving threads
+ * never have to wait for a write. Every resolution is being cached under the cache key of the
+ * {@link Query} itself, which doesn't change once the {@link Query} has been resolved.
+ */
+public class ResultCacheDataSource {
+
+    private final static String TAG = ResultCacheDataSource.class.getName();
+
+    public static final long DEFAULT_TTL = 7 * 24 * 60 * 60 * 1000L;
+
+    public static final long DEFAULT_NEGATIVE_TTL = 6 * 60 * 60 * 1000L;
+
+    public static final int DEFAULT_MAX_ENTRIES = 5000;
+
+    // Check whether or not the cache has to be trimmed after this many stored resolutions
+    private static final int TRIM_INTERVAL = 50;
+
+    // Database fields
+    private volatile SQLiteDatabase mDatabase;
+
+    private ResultCacheSQLiteHelper mDbHelper;
+
+    private final DatabaseExecutor mExecutor;
+
+    private String[] mAllResolutionsColumns = {
+            ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_QUERYKEY,
+            ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_RESOLVERID,
+            ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_RESOLVEDAT,
+            ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_LASTACCESS};
+
+    private String[] mAllResultsColumns = {ResultCacheSQLiteHelper.RESULTS_COLUMN_ID,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_URL,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_TRACKNAME,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_ARTISTNAME,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMNAME,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_DURATION,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMPOS,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_BITRATE,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_SIZE,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_LINKURL,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_PURCHASEURL,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_TRACKSCORE};
+
+    private ConcurrentHashMap<Integer, Long> mTtls = new ConcurrentHashMap<Integer, Long>();
+
+    private ConcurrentHashMap<Integer, Long> mNegativeTtls = new ConcurrentHashMap<Integer, Long>();
+
+    private volatile int mMaxEntries = DEFAULT_MAX_ENTRIES;
+
+    // Only being accessed by the writer thread, once the database has been opened
+    private int mStoresSinceTrim = 0;
+
+    public ResultCacheDataSource(Context context) {
+        mDbHelper = new ResultCacheSQLiteHelper(context);
+        mExecutor = new DatabaseExecutor("ResultCache", new DatabaseExecutor.RollbackListener() {
+            @Override
+            public void onRolledBack() {
+                // Nothing has been derived from the stored resolutions, the next lookup of a
+                // resolution, which has been rolled back, simply misses
+            }
+        });
+    }
+
+    /**
+     * Always try to close the {@link ResultCacheSQLiteHelper}, in case it is still open for
+     * whatever reason. Then get a reference to our database.
+     */
+    public synchronized void open() throws SQLException {
+        mDbHelper.close();
+        mDatabase = mDbHelper.getWritableDatabase();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            // Lets getResults run while the writer thread is in a transaction
+            mDatabase.enableWriteAheadLogging();
+        }
+        trim();
+        mExecutor.setDatabase(mDatabase);
+    }
+
+    /**
+     * Close the {@link ResultCacheSQLiteHelper}
+     */
+    public synchronized void close() {
+        mExecutor.setDatabase(null);
+        mDbHelper.close();
+        mDatabase = null;
+    }
+
+    /**
+     * Set the time to live of the resolutions of the given {@link Resolver}
+     *
+     * @param ttl         time in milliseconds after which cached {@link Result}s expire
+     * @param negativeTtl time in milliseconds after which a cached miss expires
+     */
+    public void setTtl(Resolver resolver, long ttl, long negativeTtl) {
+        mTtls.put(resolver.getId(), ttl);
+        mNegativeTtls.put(resolver.getId(), negativeTtl);
+    }
+
+    /**
+     * Set the maximum number of resolutions to keep in the cache
+     */
+    public void setMaxEntries(int maxEntries) {
+        mMaxEntries = maxEntries;
+    }
+
+    /**
+     * @return whether or not the given {@link Query} can be cached. Only {@link Query}s with a
+     * track name are being cached, fullTextQueries aren't.
+     */
+    public static boolean isCacheable(Query query) {
+        return !query.isFullTextQuery() && query.getName() != null
+                && query.getName().length() > 0;
+    }
+
+    /**
+     * Get the cached {@link Result}s, which the given {@link Resolver} has reported for the given
+     * {@link Query}.
+     *
+     * @return an {@link ArrayList} of the cached {@link Result}s, which is empty if a miss has been
+     * cached. null if nothing has been cached or if the cached resolution has expired.
+     */
+    public synchronized ArrayList<Result> getResults(Query query, Resolver resolver) {
+        if (mDatabase == null || !isCacheable(query)) {
+            return null;
+        }
+        String queryKey = query.getCacheKey();
+        String[] selectionArgs = new String[]{queryKey, String.valueOf(resolver.getId())};
+        Cursor resolutionsCursor = mDatabase
+                .query(ResultCacheSQLiteHelper.TABLE_RESOLUTIONS, mAllResolutionsColumns,
+                        ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_QUERYKEY + " = ? and "
+                                + ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_RESOLVERID + " = ?",
+                        selectionArgs, null, null, null);
+        if (!resolutionsCursor.moveToFirst()) {
+            resolutionsCursor.close();
+            return null;
+        }
+        long resolvedAt = resolutionsCursor.getLong(2);
+        resolutionsCursor.close();
+
+        ArrayList<Result> results = new ArrayList<Result>();
+        Cursor resultsCursor = mDatabase
+                .query(ResultCacheSQLiteHelper.TABLE_RESULTS, mAllResultsColumns,
+                        ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY + " = ? and "
+                                + ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID + " = ?",
+                        selectionArgs, null, null, null);
+        resultsCursor.moveToFirst();
+        while (!resultsCursor.isAfterLast()) {
+            Artist artist = Artist.get(resultsCursor.getString(5));
+            Album album = Album.get(resultsCursor.getString(6), artist);
+            Track track = Track.get(resultsCursor.getString(4), album, artist);
+            track.setDuration(resultsCursor.getLong(7));
+            track.setAlbumPos(resultsCursor.getInt(8));
+            Result result = new Result(resultsCursor.getString(3), track);
+            result.setBitrate(resultsCursor.getInt(9));
+            result.setSize(resultsCursor.getInt(10));
+            result.setLinkUrl(resultsCursor.getString(11));
+            result.setPurchaseUrl(resultsCursor.getString(12));
+            result.setTrackScore(resultsCursor.getFloat(13));
+            result.setType(Result.RESULT_TYPE_TRACK);
+            result.setResolvedBy(resolver);
+            results.add(result);
+            resultsCursor.moveToNext();
+        }
+        resultsCursor.close();
+
+        long now = System.currentTimeMillis();
+        Long ttl = results.isEmpty() ? mNegativeTtls.get(resolver.getId())
+                : mTtls.get(resolver.getId());
+        if (ttl == null) {
+            ttl = results.isEmpty() ? DEFAULT_NEGATIVE_TTL : DEFAULT_TTL;
+        }
+        if (now - resolvedAt > ttl) {
+            return null;
+        }
+        ContentValues values = new ContentValues();
+        values.put(ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_LASTACCESS, now);
+        mDatabase.update(ResultCacheSQLiteHelper.TABLE_RESOLUTIONS, values,
+                ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_QUERYKEY + " = ? and "
+                        + ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_RESOLVERID + " = ?",
+                selectionArgs);
+        return results;
+    }
+
+    /**
+     * Store the given {@link Result}s, which the given {@link Resolver} has reported for the given
+     * {@link Query}, on the writer thread. An empty {@link ArrayList} is being stored as a miss.
+     */
+    public void storeResults(Query query, final Resolver resolver, ArrayList<Result> results) {
+        if (mDatabase == null || !isCacheable(query)) {
+            return;
+        }
+        final String queryKey = query.getCacheKey();
+        // The Results might still be changed by the caller, so we hand over a copy
+        final ArrayList<Result> resultsToStore = new ArrayList<Result>(results);
+        final long now = System.currentTimeMillis();
+        mExecutor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                storeResults(queryKey, resolver, resultsToStore, now);
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Store the given {@link Result}s under the given key. Only being called on the writer thread,
+     * which has already begun a transaction.
+     */
+    private void storeResults(String queryKey, Resolver resolver, ArrayList<Result> results,
+            long now) {
+        String[] selectionArgs = new String[]{queryKey, String.valueOf(resolver.getId())};
+        mDatabase.delete(ResultCacheSQLiteHelper.TABLE_RESULTS,
+                ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY + " = ? and "
+                        + ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID + " = ?",
+                selectionArgs);
+        ContentValues values = new ContentValues();
+        values.put(ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_QUERYKEY, queryKey);
+        values.put(ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_RESOLVERID, resolver.getId());
+        values.put(ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_RESOLVEDAT, now);
+        values.put(ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_LASTACCESS, now);
+        mDatabase.insertWithOnConflict(ResultCacheSQLiteHelper.TABLE_RESOLUTIONS, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+        for (Result result : results) {
+            if (result.getTrack() == null) {
+                continue;
+            }
+            values.clear();
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY, queryKey);
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID, resolver.getId());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_URL, result.getPath());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_TRACKNAME,
+                    result.getTrack().getName());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_ARTISTNAME,
+                    result.getTrack().getArtist().getName());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMNAME,
+                    result.getTrack().getAlbum().getName());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_DURATION,
+                    result.getTrack().getDuration());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMPOS,
+                    result.getTrack().getAlbumPos());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_BITRATE, result.getBitrate());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_SIZE, result.getSize());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_LINKURL, result.getLinkUrl());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_PURCHASEURL,
+                    result.getPurchaseUrl());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_TRACKSCORE,
+                    result.getTrackScore());
+            mDatabase.insert(ResultCacheSQLiteHelper.TABLE_RESULTS, null, values);
+        }
+        if (++mStoresSinceTrim >= TRIM_INTERVAL) {
+            trim();
+        }
+    }
+
+    /**
+     * Evict the least recently used resolutions until the cache doesn't exceed its size limit
+     * anymore.
+     */
+    private void trim() {
+        mStoresSinceTrim = 0;
+        long count = DatabaseUtils
+                .queryNumEntries(mDatabase, ResultCacheSQLiteHelper.TABLE_RESOLUTIONS);
+        if (count <= mMaxEntries) {
+            return;
+        }
+        Log.d(TAG, "trim: evicting " + (count - mMaxEntries) + " resolutions");
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.execSQL("DELETE FROM `" + ResultCacheSQLiteHelper.TABLE_RESOLUTIONS
+                    + "` WHERE rowid IN (SELECT rowid FROM `"
+                    + ResultCacheSQLiteHelper.TABLE_RESOLUTIONS + "` ORDER BY `"
+                    + ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_LASTACCESS + "` ASC LIMIT "
+                    + (count - mMaxEntries) + ");");
+            mDatabase.execSQL("DELETE FROM `" + ResultCacheSQLiteHelper.TABLE_RESULTS
+                    + "` WHERE NOT EXISTS (SELECT 1 FROM `"
+                    + ResultCacheSQLiteHelper.TABLE_RESOLUTIONS + "` r WHERE r.`"
+                    + ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_QUERYKEY + "` = `"
+                    + ResultCacheSQLiteHelper.TABLE_RESULTS + "`.`"
+                    + ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY + "` AND r.`"
+                    + ResultCacheSQLiteHelper.RESOLUTIONS_COLUMN_RESOLVERID + "` = `"
+                    + ResultCacheSQLiteHelper.TABLE_RESULTS + "`.`"
+                    + ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID + "`);");
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2013, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+/**
+ * This is a helper class to declare the different column names inside our result cache database,
+ * and to create and call the proper SQL commands onCreate and onUpgrade. The result cache lives in
+ * its own database file, so that it can be thrown away without touching the user's playlists.
+ */
+public class ResultCacheSQLiteHelper extends SQLiteOpenHelper {
+
+    public static final String TAG = ResultCacheSQLiteHelper.class.getName();
+
+    public static final String TABLE_RESOLUTIONS = "resolutions";
+
+    public static final String RESOLUTIONS_COLUMN_QUERYKEY = "querykey";
+
+    public static final String RESOLUTIONS_COLUMN_RESOLVERID = "resolverid";
+
+    public static final String RESOLUTIONS_COLUMN_RESOLVEDAT = "resolvedat";
+
+    public static final String RESOLUTIONS_COLUMN_LASTACCESS = "lastaccess";
+
+    public static final String TABLE_RESULTS = "results";
+
+    public static final String RESULTS_COLUMN_ID = "id";
+
+    public static final String RESULTS_COLUMN_QUERYKEY = "querykey";
+
+    public static final String RESULTS_COLUMN_RESOLVERID = "resolverid";
+
+    public static final String RESULTS_COLUMN_URL = "url";
+
+    public static final String RESULTS_COLUMN_TRACKNAME = "trackname";
+
+    public static final String RESULTS_COLUMN_ARTISTNAME = "artistname";
+
+    public static final String RESULTS_COLUMN_ALBUMNAME = "albumname";
+
+    public static final String RESULTS_COLUMN_DURATION = "duration";
+
+    public static final String RESULTS_COLUMN_ALBUMPOS = "albumpos";
+
+    public static final String RESULTS_COLUMN_BITRATE = "bitrate";
+
+    public static final String RESULTS_COLUMN_SIZE = "size";
+
+    public static final String RESULTS_COLUMN_LINKURL = "linkurl";
+
+    public static final String RESULTS_COLUMN_PURCHASEURL = "purchaseurl";
+
+    public static final String RESULTS_COLUMN_TRACKSCORE = "trackscore";
+
+    private static final String DATABASE_NAME = "resultcache.db";
+
+    private static final int DATABASE_VERSION = 1;
+
+    // Database creation sql statements
+    private static final String CREATE_TABLE_RESOLUTIONS =
+            "CREATE TABLE `" + TABLE_RESOLUTIONS + "` (  `"
+                    + RESOLUTIONS_COLUMN_QUERYKEY + "` TEXT ,  `"
+                    + RESOLUTIONS_COLUMN_RESOLVERID + "` INTEGER , `"
+                    + RESOLUTIONS_COLUMN_RESOLVEDAT + "` INTEGER , `"
+                    + RESOLUTIONS_COLUMN_LASTACCESS + "` INTEGER ,"
+                    + " PRIMARY KEY (`" + RESOLUTIONS_COLUMN_QUERYKEY + "`, `"
+                    + RESOLUTIONS_COLUMN_RESOLVERID + "`));";
+
+    private static final String CREATE_INDEX_RESOLUTIONS_LASTACCESS =
+            "CREATE INDEX `" + TABLE_RESOLUTIONS + "_" + RESOLUTIONS_COLUMN_LASTACCESS + "` ON `"
+                    + TABLE_RESOLUTIONS + "` (`" + RESOLUTIONS_COLUMN_LASTACCESS + "`);";
+
+    private static final String CREATE_TABLE_RESULTS =
+            "CREATE TABLE `" + TABLE_RESULTS + "` (  `"
+                    + RESULTS_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
+                    + RESULTS_COLUMN_QUERYKEY + "` TEXT ,  `"
+                    + RESULTS_COLUMN_RESOLVERID + "` INTEGER ,  `"
+                    + RESULTS_COLUMN_URL + "` TEXT ,`"
+                    + RESULTS_COLUMN_TRACKNAME + "` TEXT ,`"
+                    + RESULTS_COLUMN_ARTISTNAME + "` TEXT ,`"
+                    + RESULTS_COLUMN_ALBUMNAME + "` TEXT ,`"
+                    + RESULTS_COLUMN_DURATION + "` INTEGER ,`"
+                    + RESULTS_COLUMN_ALBUMPOS + "` INTEGER ,`"
+                    + RESULTS_COLUMN_BITRATE + "` INTEGER ,`"
+                    + RESULTS_COLUMN_SIZE + "` INTEGER ,`"
+                    + RESULTS_COLUMN_LINKURL + "` TEXT ,`"
+                    + RESULTS_COLUMN_PURCHASEURL + "` TEXT ,`"
+                    + RESULTS_COLUMN_TRACKSCORE + "` REAL );";
+
+    private static final String CREATE_INDEX_RESULTS_QUERYKEY =
+            "CREATE INDEX `" + TABLE_RESULTS + "_" + RESULTS_COLUMN_QUERYKEY + "` ON `"
+                    + TABLE_RESULTS + "` (`" + RESULTS_COLUMN_QUERYKEY + "`, `"
+                    + RESULTS_COLUMN_RESOLVERID + "`);";
+
+    public ResultCacheSQLiteHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Creates the tables
+     */
+    @Override
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_TABLE_RESOLUTIONS);
+        database.execSQL(CREATE_INDEX_RESOLUTIONS_LASTACCESS);
+        database.execSQL(CREATE_TABLE_RESULTS);
+        database.execSQL(CREATE_INDEX_RESULTS_QUERYKEY);
+    }
+
+    /**
+     * Drops all tables and creates them again. It's only a cache after all.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Log.d(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion
+                + ", which will destroy all old data");
+        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_RESULTS + "`;");
+        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_RESOLUTIONS + "`;");
+        onCreate(db);
+    }
+
+}
@@ -18,8 +18,10 @@
 package org.tomahawk.libtomahawk.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 /**
@@ -50,18 +52,38 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
 
     public static final String TRACKS_COLUMN_TRACKNAME = "trackname";
 
-    public static final String TRACKS_COLUMN_ARTISTNAME = "artistname";
+    public static final String TRACKS_COLUMN_IDARTISTS = "id_artists";
 
-    public static final String TRACKS_COLUMN_ALBUMNAME = "albumname";
+    public static final String TRACKS_COLUMN_IDALBUMS = "id_albums";
+
+    public static final String TRACKS_COLUMN_POSITION = "position";
+
+    public static final String TABLE_ARTISTS = "artists";
+
+    public static final String ARTISTS_COLUMN_ID = "id";
+
+    public static final String ARTISTS_COLUMN_NAME = "name";
 
     public static final String TABLE_ALBUMS = "albums";
 
+    public static final String ALBUMS_COLUMN_ID = "id";
+
+    public static final String ALBUMS_COLUMN_NAME = "name";
+
+    public static final String INDEX_TRACKS_PLAYLIST_POSITION = "tracks_playlist_position";
+
+    // Columns of the tracks table up to version 5, which have been replaced by id_artists and
+    // id_albums
+    private static final String TRACKS_COLUMN_ARTISTNAME = "artistname";
+
+    private static final String TRACKS_COLUMN_ALBUMNAME = "albumname";
+
     private static final String DATABASE_NAME = "userplaylists.db";
 
-    private static final int DATABASE_VERSION = 4;
+    private static final int DATABASE_VERSION = 6;
 
     // Database creation sql statements
-    private static final String CREATE_TABLE_USERPLAYLISTS =
+    public static final String CREATE_TABLE_USERPLAYLISTS =
             "CREATE TABLE `" + TABLE_USERPLAYLISTS + "` (  `"
                     + USERPLAYLISTS_COLUMN_ID + "` TEXT PRIMARY KEY ,  `"
                     + USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + "` INTEGER , `"
@@ -69,16 +91,36 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
                     + USERPLAYLISTS_COLUMN_CURRENTTRACKINDEX + "` INTEGER , `"
                     + USERPLAYLISTS_COLUMN_CURRENTREVISION + "` TEXT );";
 
-    private static final String CREATE_TABLE_TRACKS =
+    public static final String CREATE_TABLE_ARTISTS =
+            "CREATE TABLE `" + TABLE_ARTISTS + "` (  `"
+                    + ARTISTS_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
+                    + ARTISTS_COLUMN_NAME + "` TEXT NOT NULL UNIQUE );";
+
+    public static final String CREATE_TABLE_ALBUMS =
+            "CREATE TABLE `" + TABLE_ALBUMS + "` (  `"
+                    + ALBUMS_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
+                    + ALBUMS_COLUMN_NAME + "` TEXT NOT NULL UNIQUE );";
+
+    public static final String CREATE_TABLE_TRACKS =
             "CREATE TABLE `" + TABLE_TRACKS + "` (  `"
                     + TRACKS_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
                     + TRACKS_COLUMN_IDUSERPLAYLISTS + "` TEXT ,  `"
                     + TRACKS_COLUMN_TRACKNAME + "` TEXT ,`"
-                    + TRACKS_COLUMN_ARTISTNAME + "` TEXT ,`"
-                    + TRACKS_COLUMN_ALBUMNAME + "` TEXT ,"
+                    + TRACKS_COLUMN_IDARTISTS + "` INTEGER ,`"
+                    + TRACKS_COLUMN_IDALBUMS + "` INTEGER ,`"
+                    + TRACKS_COLUMN_POSITION + "` INTEGER ,"
                     + " FOREIGN KEY (`" + TRACKS_COLUMN_IDUSERPLAYLISTS + "`)"
                     + " REFERENCES `" + TABLE_USERPLAYLISTS + "` (`" + USERPLAYLISTS_COLUMN_ID
-                    + "`));";
+                    + "`),"
+                    + " FOREIGN KEY (`" + TRACKS_COLUMN_IDARTISTS + "`)"
+                    + " REFERENCES `" + TABLE_ARTISTS + "` (`" + ARTISTS_COLUMN_ID + "`),"
+                    + " FOREIGN KEY (`" + TRACKS_COLUMN_IDALBUMS + "`)"
+                    + " REFERENCES `" + TABLE_ALBUMS + "` (`" + ALBUMS_COLUMN_ID + "`));";
+
+    // Every read and write of a playlist's tracks selects them by playlist and position
+    public static final String CREATE_INDEX_TRACKS_PLAYLIST_POSITION =
+            "CREATE INDEX `" + INDEX_TRACKS_PLAYLIST_POSITION + "` ON `" + TABLE_TRACKS + "` (`"
+                    + TRACKS_COLUMN_IDUSERPLAYLISTS + "`, `" + TRACKS_COLUMN_POSITION + "`);";
 
     public TomahawkSQLiteHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -90,20 +132,102 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase database) {
         database.execSQL(CREATE_TABLE_USERPLAYLISTS);
+        database.execSQL(CREATE_TABLE_ARTISTS);
+        database.execSQL(CREATE_TABLE_ALBUMS);
         database.execSQL(CREATE_TABLE_TRACKS);
+        database.execSQL(CREATE_INDEX_TRACKS_PLAYLIST_POSITION);
     }
 
     /**
-     * Drops all tables and creates them again
+     * Migrates the database step by step, starting at version 4, so that no playlist is lost.
+     * Anything older than that is dropped, i.e. all of its tables are being created again.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        Log.d(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion
-                + ", which will destroy all old data");
-        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_TRACKS + "`;");
+        Log.d(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion);
+        if (oldVersion < 4) {
+            Log.d(TAG, "Version " + oldVersion + " can't be migrated, which will destroy all old "
+                    + "data");
+            db.execSQL("DROP TABLE IF EXISTS `" + TABLE_TRACKS + "`;");
+            db.execSQL("DROP TABLE IF EXISTS `" + TABLE_ALBUMS + "`;");
+            db.execSQL("DROP TABLE IF EXISTS `" + TABLE_ARTISTS + "`;");
+            db.execSQL("DROP TABLE IF EXISTS `" + TABLE_USERPLAYLISTS + "`;");
+            onCreate(db);
+            return;
+        }
+        if (oldVersion < 5) {
+            upgradeToVersion5(db);
+        }
+        if (oldVersion < 6) {
+            upgradeToVersion6(db);
+        }
+    }
+
+    /**
+     * Adds the position column. The position of every existing track is its position in the order
+     * it has been inserted in. The tracks are being numbered in a single pass over all of them,
+     * sorted by playlist and id, so that large playlists don't slow down the first start.
+     */
+    private void upgradeToVersion5(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE `" + TABLE_TRACKS + "` ADD COLUMN `" + TRACKS_COLUMN_POSITION
+                + "` INTEGER;");
+        SQLiteStatement updateStatement = db.compileStatement("UPDATE `" + TABLE_TRACKS
+                + "` SET `" + TRACKS_COLUMN_POSITION + "` = ? WHERE `" + TRACKS_COLUMN_ID
+                + "` = ?");
+        Cursor cursor = db.rawQuery("SELECT `" + TRACKS_COLUMN_ID + "`, `"
+                + TRACKS_COLUMN_IDUSERPLAYLISTS + "` FROM `" + TABLE_TRACKS + "` ORDER BY `"
+                + TRACKS_COLUMN_IDUSERPLAYLISTS + "`, `" + TRACKS_COLUMN_ID + "`", null);
+        try {
+            String playlistId = null;
+            long position = 0;
+            while (cursor.moveToNext()) {
+                String trackPlaylistId = cursor.getString(1);
+                if (trackPlaylistId == null ? playlistId != null
+                        : !trackPlaylistId.equals(playlistId)) {
+                    playlistId = trackPlaylistId;
+                    position = 0;
+                }
+                updateStatement.bindLong(1, position++);
+                updateStatement.bindLong(2, cursor.getLong(0));
+                updateStatement.execute();
+            }
+        } finally {
+            cursor.close();
+            updateStatement.close();
+        }
+    }
+
+    /**
+     * Moves the artist and album names out of the tracks table into their own tables, so that
+     * every name is only stored once, and adds the index on playlist and position. SQLite can't
+     * drop columns, so the tracks table is being copied over into a new one.
+     */
+    private void upgradeToVersion6(SQLiteDatabase db) {
+        String oldTracks = TABLE_TRACKS + "_v5";
+        // Old databases might still contain an albums table from before version 4
         db.execSQL("DROP TABLE IF EXISTS `" + TABLE_ALBUMS + "`;");
-        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_USERPLAYLISTS + "`;");
-        onCreate(db);
+        db.execSQL(CREATE_TABLE_ARTISTS);
+        db.execSQL(CREATE_TABLE_ALBUMS);
+        db.execSQL("INSERT OR IGNORE INTO `" + TABLE_ARTISTS + "` (`" + ARTISTS_COLUMN_NAME
+                + "`) SELECT DISTINCT `" + TRACKS_COLUMN_ARTISTNAME + "` FROM `" + TABLE_TRACKS
+                + "` WHERE `" + TRACKS_COLUMN_ARTISTNAME + "` IS NOT NULL;");
+        db.execSQL("INSERT OR IGNORE INTO `" + TABLE_ALBUMS + "` (`" + ALBUMS_COLUMN_NAME
+                + "`) SELECT DISTINCT `" + TRACKS_COLUMN_ALBUMNAME + "` FROM `" + TABLE_TRACKS
+                + "` WHERE `" + TRACKS_COLUMN_ALBUMNAME + "` IS NOT NULL;");
+        db.execSQL("ALTER TABLE `" + TABLE_TRACKS + "` RENAME TO `" + oldTracks + "`;");
+        db.execSQL(CREATE_TABLE_TRACKS);
+        db.execSQL("INSERT INTO `" + TABLE_TRACKS + "` (`" + TRACKS_COLUMN_ID + "`, `"
+                + TRACKS_COLUMN_IDUSERPLAYLISTS + "`, `" + TRACKS_COLUMN_TRACKNAME + "`, `"
+                + TRACKS_COLUMN_IDARTISTS + "`, `" + TRACKS_COLUMN_IDALBUMS + "`, `"
+                + TRACKS_COLUMN_POSITION + "`) SELECT t.`" + TRACKS_COLUMN_ID + "`, t.`"
+                + TRACKS_COLUMN_IDUSERPLAYLISTS + "`, t.`" + TRACKS_COLUMN_TRACKNAME + "`, "
+                + "(SELECT `" + ARTISTS_COLUMN_ID + "` FROM `" + TABLE_ARTISTS + "` WHERE `"
+                + ARTISTS_COLUMN_NAME + "` = t.`" + TRACKS_COLUMN_ARTISTNAME + "`), "
+                + "(SELECT `" + ALBUMS_COLUMN_ID + "` FROM `" + TABLE_ALBUMS + "` WHERE `"
+                + ALBUMS_COLUMN_NAME + "` = t.`" + TRACKS_COLUMN_ALBUMNAME + "`), t.`"
+                + TRACKS_COLUMN_POSITION + "` FROM `" + oldTracks + "` AS t;");
+        db.execSQL("DROP TABLE `" + oldTracks + "`;");
+        db.execSQL(CREATE_INDEX_TRACKS_PLAYLIST_POSITION);
     }
 
 }
@@ -28,17 +28,35 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.util.Log;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 /**
  * This class provides a way of storing user created {@link org.tomahawk.libtomahawk.collection.UserPlaylist}s
  * in the database
+ * <p/>
+ * The tracks of a playlist are stored incrementally. The revision, which has been stored last, is
+ * kept in memory, so that storing a playlist only has to insert, delete and move the tracks which
+ * have actually changed since then.
+ * <p/>
+ * All writes go through a {@link DatabaseExecutor}, so that they're being committed by a single
+ * writer thread, and never block the caller. Reads can be run asynchronously as well. The
+ * synchronous reads block on the database, so they must not be called on the main thread.
  */
 public class UserPlaylistsDataSource {
 
+    private final static String TAG = UserPlaylistsDataSource.class.getName();
+
     public static final String CACHED_PLAYLIST_NAME = "Last used playlist";
 
     public static final String CACHED_PLAYLIST_ID = "cached_playlist_id";
@@ -52,54 +70,271 @@ public class UserPlaylistsDataSource {
 
     private TomahawkSQLiteHelper mDbHelper;
 
-    private String[] mAllUserPlaylistsColumns = {TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID,
-            TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST,
-            TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_NAME,
-            TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTTRACKINDEX,
-            TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTREVISION};
+    private final DatabaseExecutor mExecutor;
+
+    // Selects the header of playlists, i.e. id, ishatchetplaylist, name, currenttrackindex,
+    // currentrevision and the number of tracks. Counting the tracks only has to look at the index.
+    private static final String SELECT_HEADERS = "SELECT p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "`, p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + "`, p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_NAME + "`, p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTTRACKINDEX + "`, p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTREVISION + "`, "
+            + "(SELECT COUNT(*) FROM `"
+            + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "` = p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "`) FROM `"
+            + TomahawkSQLiteHelper.TABLE_USERPLAYLISTS + "` AS p";
+
+    private static final String SELECT_HEADER_BY_ID = SELECT_HEADERS + " WHERE p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "` = ?";
 
-    private String[] mAllTracksColumns = {TomahawkSQLiteHelper.TRACKS_COLUMN_ID,
-            TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS,
-            TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
-            TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
-            TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,};
+    private static final String SELECT_HEADERS_BY_TYPE = SELECT_HEADERS + " WHERE p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + "` = ? AND p.`"
+            + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "` != ?";
+
+    // Selects id, track name, artist name, album name and position of a playlist's tracks in the
+    // order of their position. Served by the index on playlist and position.
+    private static final String SELECT_TRACKS = "SELECT t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "`, t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME + "`, ar.`"
+            + TomahawkSQLiteHelper.ARTISTS_COLUMN_NAME + "`, al.`"
+            + TomahawkSQLiteHelper.ALBUMS_COLUMN_NAME + "`, t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "` FROM `"
+            + TomahawkSQLiteHelper.TABLE_TRACKS + "` AS t LEFT JOIN `"
+            + TomahawkSQLiteHelper.TABLE_ARTISTS + "` AS ar ON ar.`"
+            + TomahawkSQLiteHelper.ARTISTS_COLUMN_ID + "` = t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_IDARTISTS + "` LEFT JOIN `"
+            + TomahawkSQLiteHelper.TABLE_ALBUMS + "` AS al ON al.`"
+            + TomahawkSQLiteHelper.ALBUMS_COLUMN_ID + "` = t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_IDALBUMS + "` WHERE t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "` = ? ORDER BY t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "`, t.`"
+            + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "`";
 
     private ConcurrentHashMap<String, ConcurrentHashMap<Query, Long>> mPlaylistQueryIdMap
             = new ConcurrentHashMap<String, ConcurrentHashMap<Query, Long>>();
 
+    // The stored tracks of every playlist, which has been read or written, in the order of their
+    // position. Only accessed while holding the lock.
+    private final HashMap<String, ArrayList<StoredTrack>> mStoredTracks
+            = new HashMap<String, ArrayList<StoredTrack>>();
+
+    // The ids of the artist and album names, which have been looked up or inserted. Only accessed
+    // while holding the lock.
+    private final HashMap<String, Long> mArtistIds = new HashMap<String, Long>();
+
+    private final HashMap<String, Long> mAlbumIds = new HashMap<String, Long>();
+
+    // Every statement we've compiled since the database has been opened, so that we can close them
+    private final ArrayList<SQLiteStatement> mStatements = new ArrayList<SQLiteStatement>();
+
+    private SQLiteStatement mInsertTrackStatement;
+
+    private SQLiteStatement mDeleteTrackStatement;
+
+    private SQLiteStatement mUpdateTrackPositionStatement;
+
+    private SQLiteStatement mDeleteTracksStatement;
+
+    private SQLiteStatement mDeleteUserPlaylistStatement;
+
+    private SQLiteStatement mCountUserPlaylistStatement;
+
+    private SQLiteStatement mUpdateCurrentTrackIndexStatement;
+
+    private SQLiteStatement mSelectArtistIdStatement;
+
+    private SQLiteStatement mInsertArtistStatement;
+
+    private SQLiteStatement mSelectAlbumIdStatement;
+
+    private SQLiteStatement mInsertAlbumStatement;
+
+    /**
+     * A track as it is stored in the database
+     */
+    static class StoredTrack {
+
+        final long mId;
+
+        final String mKey;
+
+        final long mPosition;
+
+        StoredTrack(long id, String key, long position) {
+            mId = id;
+            mKey = key;
+            mPosition = position;
+        }
+    }
+
     public UserPlaylistsDataSource(Context context) {
         mDbHelper = new TomahawkSQLiteHelper(context);
+        mExecutor = new DatabaseExecutor("UserPlaylists", new DatabaseExecutor.RollbackListener() {
+            @Override
+            public void onRolledBack() {
+                invalidateAll();
+            }
+        });
     }
 
     /**
      * Always try to close the {@link TomahawkSQLiteHelper}, in case it is still open for whatever
      * reason. Then get a reference to our database.
      */
-    public void open() throws SQLException {
+    public synchronized void open() throws SQLException {
+        closeStatements();
         mDbHelper.close();
         mDatabase = mDbHelper.getWritableDatabase();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            // Lets our readers run while the writer thread is in a transaction
+            mDatabase.enableWriteAheadLogging();
+        }
+        pruneNames();
+        mInsertTrackStatement = compileStatement("INSERT INTO `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` (`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDARTISTS + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDALBUMS + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "`) VALUES (?, ?, ?, ?, ?)");
+        mDeleteTrackStatement = compileStatement("DELETE FROM `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "` = ?");
+        mUpdateTrackPositionStatement = compileStatement("UPDATE `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` SET `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "` = ? WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "` = ?");
+        mDeleteTracksStatement = compileStatement("DELETE FROM `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "` = ?");
+        mDeleteUserPlaylistStatement = compileStatement("DELETE FROM `"
+                + TomahawkSQLiteHelper.TABLE_USERPLAYLISTS + "` WHERE `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "` = ?");
+        mCountUserPlaylistStatement = compileStatement("SELECT COUNT(*) FROM `"
+                + TomahawkSQLiteHelper.TABLE_USERPLAYLISTS + "` WHERE `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "` = ?");
+        mUpdateCurrentTrackIndexStatement = compileStatement("UPDATE `"
+                + TomahawkSQLiteHelper.TABLE_USERPLAYLISTS + "` SET `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTTRACKINDEX + "` = ? WHERE `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "` = ?");
+        mSelectArtistIdStatement = compileStatement("SELECT `"
+                + TomahawkSQLiteHelper.ARTISTS_COLUMN_ID + "` FROM `"
+                + TomahawkSQLiteHelper.TABLE_ARTISTS + "` WHERE `"
+                + TomahawkSQLiteHelper.ARTISTS_COLUMN_NAME + "` = ?");
+        mInsertArtistStatement = compileStatement("INSERT INTO `"
+                + TomahawkSQLiteHelper.TABLE_ARTISTS + "` (`"
+                + TomahawkSQLiteHelper.ARTISTS_COLUMN_NAME + "`) VALUES (?)");
+        mSelectAlbumIdStatement = compileStatement("SELECT `"
+                + TomahawkSQLiteHelper.ALBUMS_COLUMN_ID + "` FROM `"
+                + TomahawkSQLiteHelper.TABLE_ALBUMS + "` WHERE `"
+                + TomahawkSQLiteHelper.ALBUMS_COLUMN_NAME + "` = ?");
+        mInsertAlbumStatement = compileStatement("INSERT INTO `"
+                + TomahawkSQLiteHelper.TABLE_ALBUMS + "` (`"
+                + TomahawkSQLiteHelper.ALBUMS_COLUMN_NAME + "`) VALUES (?)");
+        mExecutor.setDatabase(mDatabase);
     }
 
     /**
      * Close the {@link TomahawkSQLiteHelper}
      */
-    public void close() {
+    public synchronized void close() {
+        mExecutor.setDatabase(null);
+        closeStatements();
         mDbHelper.close();
     }
 
+    private SQLiteStatement compileStatement(String sql) {
+        SQLiteStatement statement = mDatabase.compileStatement(sql);
+        mStatements.add(statement);
+        return statement;
+    }
+
+    private void closeStatements() {
+        for (SQLiteStatement statement : mStatements) {
+            statement.close();
+        }
+        mStatements.clear();
+        mStoredTracks.clear();
+        mArtistIds.clear();
+        mAlbumIds.clear();
+    }
+
+    /**
+     * Remove every artist and album name, which isn't referenced by any track anymore. Tracks
+     * being deleted leave their names behind, so that storing a playlist doesn't have to check
+     * every one of them.
+     */
+    private void pruneNames() {
+        mDatabase.execSQL("DELETE FROM `" + TomahawkSQLiteHelper.TABLE_ARTISTS + "` WHERE `"
+                + TomahawkSQLiteHelper.ARTISTS_COLUMN_ID + "` NOT IN (SELECT `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDARTISTS + "` FROM `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDARTISTS + "` IS NOT NULL)");
+        mDatabase.execSQL("DELETE FROM `" + TomahawkSQLiteHelper.TABLE_ALBUMS + "` WHERE `"
+                + TomahawkSQLiteHelper.ALBUMS_COLUMN_ID + "` NOT IN (SELECT `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDALBUMS + "` FROM `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDALBUMS + "` IS NOT NULL)");
+    }
+
     /**
-     * Store the given {@link Playlist}
+     * Store the given {@link Playlist} on the writer thread. Only the tracks, which have changed
+     * since the last time it has been stored, are being written. If the given {@link Playlist}
+     * hasn't loaded its tracks yet, they can't have changed, so only its header is being written.
      *
      * @param playlist the given {@link Playlist}
-     * @return String containing the stored {@link Playlist}'s id
+     * @param callback receives the stored {@link Playlist}'s id on the main thread. May be null.
+     * @return a {@link Future} of the stored {@link Playlist}'s id
+     */
+    public Future<String> storeUserPlaylistAsync(final UserPlaylist playlist,
+            DatabaseExecutor.Callback<String> callback) {
+        // The playlist might still be changed by the caller, so we hand over a copy
+        final ArrayList<Query> queries =
+                playlist.isLoaded() ? new ArrayList<Query>(playlist.getQueries()) : null;
+        final ContentValues values = getHeaderValues(playlist);
+        return mExecutor.write(new Callable<String>() {
+            @Override
+            public String call() {
+                return storeUserPlaylist(playlist.getId(), values, queries);
+            }
+        }, callback);
+    }
+
+    /**
+     * Store only the current track index of the playlist with the given id on the writer thread.
+     * Nothing is being written, if the playlist hasn't been stored yet.
+     *
+     * @param callback gets called on the main thread once it has been stored. May be null.
      */
-    public String storeUserPlaylist(UserPlaylist playlist) {
+    public Future<Void> storeCurrentQueryIndexAsync(final String playlistId,
+            final int currentQueryIndex, DatabaseExecutor.Callback<Void> callback) {
+        return mExecutor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                storeCurrentQueryIndex(playlistId, currentQueryIndex);
+                return null;
+            }
+        }, callback);
+    }
+
+    private synchronized void storeCurrentQueryIndex(String playlistId, int currentQueryIndex) {
+        mUpdateCurrentTrackIndexStatement.bindLong(1, currentQueryIndex);
+        mUpdateCurrentTrackIndexStatement.bindString(2, playlistId);
+        mUpdateCurrentTrackIndexStatement.execute();
+    }
+
+    /**
+     * @return the {@link ContentValues} of the given {@link Playlist}'s row, without its id
+     */
+    private static ContentValues getHeaderValues(UserPlaylist playlist) {
         ContentValues values = new ContentValues();
         values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_NAME, playlist.getName());
         values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTTRACKINDEX,
                 playlist.getCurrentQueryIndex());
-        String insertId = playlist.getId();
         if (!playlist.isHatchetPlaylist()) {
+            values.putNull(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTREVISION);
             values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST,
                     ISHATCHETPLAYLIST_FALSE);
         } else {
@@ -108,32 +343,235 @@ public class UserPlaylistsDataSource {
             values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST,
                     ISHATCHETPLAYLIST_TRUE);
         }
-        values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID, insertId);
+        return values;
+    }
+
+    /**
+     * Store the playlist with the given id
+     *
+     * @param values  the {@link ContentValues} of the playlist's row
+     * @param queries the playlist's {@link Query}s. Null if they haven't changed.
+     * @return the playlist's id
+     */
+    private synchronized String storeUserPlaylist(String insertId, ContentValues values,
+            ArrayList<Query> queries) {
         mDatabase.beginTransaction();
-        mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, null, values,
-                SQLiteDatabase.CONFLICT_REPLACE);
-        // Delete every already associated Track entry
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
-                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \"" + insertId + "\"",
-                null);
-        // Store every single Track in the database and store the relationship
-        // by storing the playlists's id with it
-        for (Query query : playlist.getQueries()) {
-            values.clear();
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS, insertId);
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
-                    query.getPreferredTrack().getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
-                    query.getPreferredTrack().getArtist().getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
-                    query.getPreferredTrack().getAlbum().getName());
-            mDatabase.insert(TomahawkSQLiteHelper.TABLE_TRACKS, null, values);
+        try {
+            // Updating the playlist's row instead of replacing it, so that its tracks stay valid
+            if (mDatabase.update(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, values,
+                    TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = ?",
+                    new String[]{insertId}) == 0) {
+                ContentValues insertValues = new ContentValues(values);
+                insertValues.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID, insertId);
+                mDatabase.insert(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, null, insertValues);
+            }
+            if (queries != null) {
+                storeTracks(insertId, queries);
+            }
+            mDatabase.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            invalidate(insertId);
+            throw e;
+        } finally {
+            mDatabase.endTransaction();
         }
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
         return insertId;
     }
 
+    /**
+     * Bring the stored tracks of the playlist with the given id up to date with the given {@link
+     * Query}s. Every stored track, which is still part of the playlist, is being kept and only
+     * moved to its new position if necessary. Duplicates are matched up in their order. All other
+     * stored tracks are being deleted and the remaining {@link Query}s are being inserted.
+     */
+    private void storeTracks(String playlistId, ArrayList<Query> queries) {
+        String[] keys = new String[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            keys[i] = getKey(queries.get(i));
+        }
+        StoredTrack[] keptTracks = new StoredTrack[queries.size()];
+        ArrayList<StoredTrack> deletedTracks = matchStoredTracks(getStoredTracks(playlistId), keys,
+                keptTracks);
+        for (StoredTrack storedTrack : deletedTracks) {
+            mDeleteTrackStatement.bindLong(1, storedTrack.mId);
+            mDeleteTrackStatement.execute();
+        }
+        int deletedCount = deletedTracks.size();
+        int insertedCount = 0;
+        int movedCount = 0;
+        ArrayList<StoredTrack> newStoredTracks = new ArrayList<StoredTrack>(queries.size());
+        ConcurrentHashMap<Query, Long> queryIdMap = new ConcurrentHashMap<Query, Long>();
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            long id;
+            if (keptTracks[i] == null) {
+                id = insertTrack(playlistId, query, i);
+                insertedCount++;
+            } else {
+                id = keptTracks[i].mId;
+                if (keptTracks[i].mPosition != i) {
+                    mUpdateTrackPositionStatement.bindLong(1, i);
+                    mUpdateTrackPositionStatement.bindLong(2, id);
+                    mUpdateTrackPositionStatement.execute();
+                    movedCount++;
+                }
+            }
+            newStoredTracks.add(new StoredTrack(id, keys[i], i));
+            queryIdMap.put(query, id);
+        }
+        mStoredTracks.put(playlistId, newStoredTracks);
+        mPlaylistQueryIdMap.put(playlistId, queryIdMap);
+        Log.d(TAG, "storeTracks: " + insertedCount + " inserted, " + deletedCount + " deleted, "
+                + movedCount + " moved in playlist " + playlistId);
+    }
+
+    /**
+     * Match the stored tracks of a playlist up with the keys of its current tracks. Every stored
+     * track, whose key is still part of the playlist, is being kept. Duplicates are matched up in
+     * their order.
+     *
+     * @param storedTracks the stored tracks in the order of their position
+     * @param keptTracks   gets the stored track, which is being kept at each position of the
+     *                     given keys, or null if the track at that position has to be inserted
+     * @return the stored tracks, which aren't part of the playlist anymore
+     */
+    static ArrayList<StoredTrack> matchStoredTracks(ArrayList<StoredTrack> storedTracks,
+            String[] keys, StoredTrack[] keptTracks) {
+        HashMap<String, ArrayDeque<StoredTrack>> storedTracksByKey
+                = new HashMap<String, ArrayDeque<StoredTrack>>();
+        for (StoredTrack storedTrack : storedTracks) {
+            ArrayDeque<StoredTrack> sameKeyTracks = storedTracksByKey.get(storedTrack.mKey);
+            if (sameKeyTracks == null) {
+                sameKeyTracks = new ArrayDeque<StoredTrack>();
+                storedTracksByKey.put(storedTrack.mKey, sameKeyTracks);
+            }
+            sameKeyTracks.add(storedTrack);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            ArrayDeque<StoredTrack> sameKeyTracks = storedTracksByKey.get(keys[i]);
+            if (sameKeyTracks != null) {
+                keptTracks[i] = sameKeyTracks.poll();
+            }
+        }
+        ArrayList<StoredTrack> deletedTracks = new ArrayList<StoredTrack>();
+        for (ArrayDeque<StoredTrack> sameKeyTracks : storedTracksByKey.values()) {
+            deletedTracks.addAll(sameKeyTracks);
+        }
+        return deletedTracks;
+    }
+
+    /**
+     * Insert the given {@link Query} as a track of the playlist with the given id
+     *
+     * @return the id of the inserted row
+     */
+    private long insertTrack(String playlistId, Query query, long position) {
+        Track track = query.getPreferredTrack();
+        bindString(mInsertTrackStatement, 1, playlistId);
+        bindString(mInsertTrackStatement, 2, track.getName());
+        bindId(mInsertTrackStatement, 3, getNameId(track.getArtist().getName(), mArtistIds,
+                mSelectArtistIdStatement, mInsertArtistStatement));
+        bindId(mInsertTrackStatement, 4, getNameId(track.getAlbum().getName(), mAlbumIds,
+                mSelectAlbumIdStatement, mInsertAlbumStatement));
+        mInsertTrackStatement.bindLong(5, position);
+        return mInsertTrackStatement.executeInsert();
+    }
+
+    /**
+     * Get the id of the given artist or album name and insert the name, if it isn't stored yet.
+     *
+     * @return the id of the given name or null, if the given name is null
+     */
+    private static Long getNameId(String name, HashMap<String, Long> ids,
+            SQLiteStatement selectStatement, SQLiteStatement insertStatement) {
+        if (name == null) {
+            return null;
+        }
+        Long id = ids.get(name);
+        if (id == null) {
+            selectStatement.bindString(1, name);
+            try {
+                id = selectStatement.simpleQueryForLong();
+            } catch (SQLiteDoneException e) {
+                insertStatement.bindString(1, name);
+                id = insertStatement.executeInsert();
+            }
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Forget everything we know about the stored state of the playlist with the given id. Has to
+     * be called if a write has failed, since it has been rolled back and might have inserted names,
+     * whose ids we've already remembered.
+     */
+    private void invalidate(String playlistId) {
+        mStoredTracks.remove(playlistId);
+        mPlaylistQueryIdMap.remove(playlistId);
+        mArtistIds.clear();
+        mAlbumIds.clear();
+    }
+
+    /**
+     * Forget everything we know about the stored state of every playlist. Called whenever the
+     * {@link DatabaseExecutor} has rolled back a batch of writes, which have already updated it.
+     */
+    private synchronized void invalidateAll() {
+        mStoredTracks.clear();
+        mPlaylistQueryIdMap.clear();
+        mArtistIds.clear();
+        mAlbumIds.clear();
+    }
+
+    /**
+     * @return the stored tracks of the playlist with the given id, read from the database if they
+     * haven't been read or written before. Has to be called while holding the lock.
+     */
+    private ArrayList<StoredTrack> getStoredTracks(String playlistId) {
+        ArrayList<StoredTrack> storedTracks = mStoredTracks.get(playlistId);
+        if (storedTracks == null) {
+            storedTracks = new ArrayList<StoredTrack>();
+            Cursor tracksCursor = mDatabase.rawQuery(SELECT_TRACKS, new String[]{playlistId});
+            while (tracksCursor.moveToNext()) {
+                storedTracks.add(new StoredTrack(tracksCursor.getLong(0),
+                        getKey(tracksCursor.getString(1), tracksCursor.getString(2),
+                                tracksCursor.getString(3)), tracksCursor.getLong(4)));
+            }
+            tracksCursor.close();
+            mStoredTracks.put(playlistId, storedTracks);
+        }
+        return storedTracks;
+    }
+
+    private static String getKey(Query query) {
+        Track track = query.getPreferredTrack();
+        return getKey(track.getName(), track.getArtist().getName(), track.getAlbum().getName());
+    }
+
+    /**
+     * @return a key, which is equal for two tracks if and only if they'd be stored the same way
+     */
+    private static String getKey(String trackName, String artistName, String albumName) {
+        return trackName + "\t" + artistName + "\t" + albumName;
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bindId(SQLiteStatement statement, int index, Long id) {
+        if (id == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, id);
+        }
+    }
+
     /**
      * @return the stored {@link org.tomahawk.libtomahawk.collection.UserPlaylist} with
      * CACHED_PLAYLIST_ID as its id
@@ -151,23 +589,17 @@ public class UserPlaylistsDataSource {
     }
 
     /**
-     * @return every stored {@link org.tomahawk.libtomahawk.collection.UserPlaylist} in the database
+     * @return every stored {@link org.tomahawk.libtomahawk.collection.UserPlaylist} in the
+     * database. Only their headers are being read, their tracks are loaded as soon as they're
+     * needed.
      */
     private ArrayList<UserPlaylist> getUserPlaylists(boolean onlyLocalPlaylists) {
         ArrayList<UserPlaylist> playListList = new ArrayList<UserPlaylist>();
-        Cursor userplaylistsCursor = mDatabase
-                .query(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, mAllUserPlaylistsColumns,
-                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + " = "
-                                + (onlyLocalPlaylists ? ISHATCHETPLAYLIST_FALSE
-                                : ISHATCHETPLAYLIST_TRUE),
-                        null, null, null, null);
-        userplaylistsCursor.moveToFirst();
-        while (!userplaylistsCursor.isAfterLast()) {
-            if (!userplaylistsCursor.getString(0).equals(CACHED_PLAYLIST_ID)) {
-                UserPlaylist userPlaylist = getUserPlaylist(userplaylistsCursor.getString(0));
-                playListList.add(userPlaylist);
-            }
-            userplaylistsCursor.moveToNext();
+        Cursor userplaylistsCursor = mDatabase.rawQuery(SELECT_HEADERS_BY_TYPE, new String[]{
+                String.valueOf(onlyLocalPlaylists ? ISHATCHETPLAYLIST_FALSE
+                        : ISHATCHETPLAYLIST_TRUE), CACHED_PLAYLIST_ID});
+        while (userplaylistsCursor.moveToNext()) {
+            playListList.add(readHeader(userplaylistsCursor));
         }
         userplaylistsCursor.close();
         return playListList;
@@ -176,107 +608,260 @@ public class UserPlaylistsDataSource {
     /**
      * @param playlistId the id by which to get the correct {@link org.tomahawk.libtomahawk.collection.Playlist}
      * @return the stored {@link org.tomahawk.libtomahawk.collection.Playlist} with playlistId as
-     * its id
+     * its id. Its tracks are loaded as soon as they're needed.
      */
     public UserPlaylist getUserPlaylist(String playlistId) {
-        ArrayList<Query> queries;
-        Cursor userplaylistsCursor = mDatabase
-                .query(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, mAllUserPlaylistsColumns,
-                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = \"" + playlistId + "\"",
-                        null, null, null, null);
+        UserPlaylist userPlaylist = null;
+        Cursor userplaylistsCursor = mDatabase.rawQuery(SELECT_HEADER_BY_ID,
+                new String[]{playlistId});
         if (userplaylistsCursor.moveToFirst()) {
-            ConcurrentHashMap<Query, Long> queryIdMap = new ConcurrentHashMap<Query, Long>();
-            Cursor tracksCursor = mDatabase
-                    .query(TomahawkSQLiteHelper.TABLE_TRACKS, mAllTracksColumns,
-                            TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \""
-                                    + playlistId + "\"", null, null, null, null);
-            queries = new ArrayList<Query>();
-            tracksCursor.moveToFirst();
-            while (!tracksCursor.isAfterLast()) {
-                String trackName = tracksCursor.getString(2);
-                String artistName = tracksCursor.getString(3);
-                String albumName = tracksCursor.getString(4);
-                Query query = new Query(trackName, albumName, artistName, false);
-                queryIdMap.put(query, tracksCursor.getLong(0));
-                queries.add(query);
-                tracksCursor.moveToNext();
+            userPlaylist = readHeader(userplaylistsCursor);
+        }
+        userplaylistsCursor.close();
+        return userPlaylist;
+    }
+
+    /**
+     * Construct a {@link UserPlaylist} from the header the given {@link Cursor} currently points
+     * to
+     */
+    private UserPlaylist readHeader(Cursor userplaylistsCursor) {
+        return UserPlaylist.fromDataSource(this, userplaylistsCursor.getString(0),
+                userplaylistsCursor.getString(2), userplaylistsCursor.getString(4),
+                userplaylistsCursor.getInt(1) == ISHATCHETPLAYLIST_TRUE,
+                userplaylistsCursor.getInt(5), userplaylistsCursor.getInt(3));
+    }
+
+    /**
+     * Read all tracks of the playlist with the given id. The stored tracks, which the writer thread
+     * keeps track of, are being left alone, since this read might already be outdated by a write,
+     * which hasn't been committed yet. The ids of the returned {@link Query}s are taken from the
+     * writer's stored tracks for the same reason, if it has any.
+     *
+     * @return an {@link ArrayList} of {@link Query}s in the order of their position
+     */
+    public ArrayList<Query> getUserPlaylistQueries(String playlistId) {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        ArrayList<StoredTrack> readTracks = new ArrayList<StoredTrack>();
+        Cursor tracksCursor = mDatabase.rawQuery(SELECT_TRACKS, new String[]{playlistId});
+        while (tracksCursor.moveToNext()) {
+            String trackName = tracksCursor.getString(1);
+            String artistName = tracksCursor.getString(2);
+            String albumName = tracksCursor.getString(3);
+            queries.add(new Query(trackName, albumName, artistName, false));
+            readTracks.add(new StoredTrack(tracksCursor.getLong(0),
+                    getKey(trackName, artistName, albumName), tracksCursor.getLong(4)));
+        }
+        tracksCursor.close();
+        ConcurrentHashMap<Query, Long> queryIdMap = new ConcurrentHashMap<Query, Long>();
+        synchronized (this) {
+            ArrayList<StoredTrack> storedTracks = mStoredTracks.get(playlistId);
+            if (storedTracks == null) {
+                // The writer hasn't touched this playlist since its stored tracks have been
+                // dropped, so it doesn't know any other ids than the ones we've read
+                for (int i = 0; i < queries.size(); i++) {
+                    queryIdMap.put(queries.get(i), readTracks.get(i).mId);
+                }
+            } else {
+                String[] keys = new String[readTracks.size()];
+                for (int i = 0; i < readTracks.size(); i++) {
+                    keys[i] = readTracks.get(i).mKey;
+                }
+                StoredTrack[] keptTracks = new StoredTrack[keys.length];
+                matchStoredTracks(storedTracks, keys, keptTracks);
+                for (int i = 0; i < queries.size(); i++) {
+                    if (keptTracks[i] != null) {
+                        queryIdMap.put(queries.get(i), keptTracks[i].mId);
+                    }
+                }
             }
             mPlaylistQueryIdMap.put(playlistId, queryIdMap);
-            Query currentQuery = null;
-            if (queries.size() > userplaylistsCursor.getInt(3)) {
-                currentQuery = queries.get(userplaylistsCursor.getInt(3));
-            }
-            UserPlaylist userPlaylist = UserPlaylist
-                    .fromQueryList(playlistId, userplaylistsCursor.getString(2),
-                            userplaylistsCursor.getString(4),
-                            userplaylistsCursor.getInt(1) == ISHATCHETPLAYLIST_TRUE, queries,
-                            currentQuery);
-            tracksCursor.close();
-            userplaylistsCursor.close();
-            return userPlaylist;
         }
-        userplaylistsCursor.close();
-        return null;
+        return queries;
+    }
+
+    /**
+     * Read the headers of all stored {@link org.tomahawk.libtomahawk.collection.UserPlaylist}s,
+     * local ones as well as Hatchet ones, on a reader thread
+     *
+     * @param callback receives the {@link org.tomahawk.libtomahawk.collection.UserPlaylist}s on
+     *                 the main thread. May be null.
+     */
+    public Future<ArrayList<UserPlaylist>> getUserPlaylistsAsync(
+            DatabaseExecutor.Callback<ArrayList<UserPlaylist>> callback) {
+        return mExecutor.read(new Callable<ArrayList<UserPlaylist>>() {
+            @Override
+            public ArrayList<UserPlaylist> call() {
+                ArrayList<UserPlaylist> userPlaylists = getLocalUserPlaylists();
+                userPlaylists.addAll(getHatchetUserPlaylists());
+                return userPlaylists;
+            }
+        }, callback);
+    }
+
+    /**
+     * Read the cached {@link org.tomahawk.libtomahawk.collection.UserPlaylist} together with its
+     * tracks on a reader thread, since it is about to be played
+     *
+     * @param callback receives the {@link org.tomahawk.libtomahawk.collection.UserPlaylist} on the
+     *                 main thread, null if there is none. May be null.
+     */
+    public Future<UserPlaylist> getCachedUserPlaylistAsync(
+            DatabaseExecutor.Callback<UserPlaylist> callback) {
+        return mExecutor.read(new Callable<UserPlaylist>() {
+            @Override
+            public UserPlaylist call() {
+                UserPlaylist userPlaylist = getCachedUserPlaylist();
+                if (userPlaylist != null) {
+                    userPlaylist.getQueries();
+                }
+                return userPlaylist;
+            }
+        }, callback);
     }
 
     /**
-     * Delete the {@link org.tomahawk.libtomahawk.collection.UserPlaylist} with the given id
+     * Load the tracks of the given {@link org.tomahawk.libtomahawk.collection.UserPlaylist} on a
+     * reader thread, if it hasn't loaded them yet
+     *
+     * @param callback receives the given {@link org.tomahawk.libtomahawk.collection.UserPlaylist}
+     *                 on the main thread, once it is loaded. May be null.
+     */
+    public Future<UserPlaylist> loadUserPlaylistAsync(final UserPlaylist userPlaylist,
+            DatabaseExecutor.Callback<UserPlaylist> callback) {
+        return mExecutor.read(new Callable<UserPlaylist>() {
+            @Override
+            public UserPlaylist call() {
+                userPlaylist.getQueries();
+                return userPlaylist;
+            }
+        }, callback);
+    }
+
+    /**
+     * Delete the {@link org.tomahawk.libtomahawk.collection.UserPlaylist} with the given id on the
+     * writer thread
      *
      * @param playlistId String containing the id of the {@link org.tomahawk.libtomahawk.collection.UserPlaylist}
      *                   to be deleted
+     * @param callback   gets called on the main thread once it has been deleted. May be null.
      */
-    public void deleteUserPlaylist(String playlistId) {
+    public Future<Void> deleteUserPlaylistAsync(final String playlistId,
+            DatabaseExecutor.Callback<Void> callback) {
+        return mExecutor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                deleteUserPlaylist(playlistId);
+                return null;
+            }
+        }, callback);
+    }
+
+    private synchronized void deleteUserPlaylist(String playlistId) {
+        mStoredTracks.remove(playlistId);
+        mPlaylistQueryIdMap.remove(playlistId);
         mDatabase.beginTransaction();
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
-                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \"" + playlistId + "\"",
-                null);
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS,
-                TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = \"" + playlistId + "\"", null);
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+        try {
+            mDeleteTracksStatement.bindString(1, playlistId);
+            mDeleteTracksStatement.execute();
+            mDeleteUserPlaylistStatement.bindString(1, playlistId);
+            mDeleteUserPlaylistStatement.execute();
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
     }
 
     /**
      * Delete the {@link org.tomahawk.libtomahawk.resolver.Query} with the given key in the {@link
-     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId
+     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId on the writer
+     * thread
+     *
+     * @param callback gets called on the main thread once it has been deleted. May be null.
      */
-    public void deleteQueryInUserPlaylist(String playlistId, Query query) {
-        Long id = mPlaylistQueryIdMap.get(playlistId).get(query);
-        mDatabase.beginTransaction();
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
-                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \"" + playlistId + "\""
-                        + " and " + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + " = " + id, null);
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+    public Future<Void> deleteQueryInUserPlaylistAsync(final String playlistId, final Query query,
+            DatabaseExecutor.Callback<Void> callback) {
+        return mExecutor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                deleteQueryInUserPlaylist(playlistId, query);
+                return null;
+            }
+        }, callback);
+    }
+
+    private synchronized void deleteQueryInUserPlaylist(String playlistId, Query query) {
+        ConcurrentHashMap<Query, Long> queryIdMap = mPlaylistQueryIdMap.get(playlistId);
+        Long id = queryIdMap != null ? queryIdMap.get(query) : null;
+        if (id == null) {
+            Log.d(TAG, "deleteQueryInUserPlaylist: track isn't known to be stored in playlist "
+                    + playlistId);
+            return;
+        }
+        mDeleteTrackStatement.bindLong(1, id);
+        mDeleteTrackStatement.execute();
+        // The positions of the remaining tracks are left as they are. The gap is being closed the
+        // next time the whole playlist is stored.
+        ArrayList<StoredTrack> storedTracks = mStoredTracks.get(playlistId);
+        if (storedTracks != null) {
+            Iterator<StoredTrack> iterator = storedTracks.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().mId == id) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+        queryIdMap.remove(query);
     }
 
     /**
      * Add the given {@link ArrayList} of {@link Track}s to the {@link
-     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId
+     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId on the writer
+     * thread
+     *
+     * @param callback gets called on the main thread once they have been added. May be null.
      */
-    public void addQueriesToUserPlaylist(String playlistId, ArrayList<Query> queries) {
-        ContentValues values = new ContentValues();
-        Cursor userplaylistsCursor = mDatabase
-                .query(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, mAllUserPlaylistsColumns,
-                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = \"" + playlistId + "\"",
-                        null, null, null, null);
-        if (userplaylistsCursor.moveToFirst()) {
+    public Future<Void> addQueriesToUserPlaylistAsync(final String playlistId,
+            ArrayList<Query> queries, DatabaseExecutor.Callback<Void> callback) {
+        final ArrayList<Query> queriesCopy = new ArrayList<Query>(queries);
+        return mExecutor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                addQueriesToUserPlaylist(playlistId, queriesCopy);
+                return null;
+            }
+        }, callback);
+    }
+
+    private synchronized void addQueriesToUserPlaylist(String playlistId,
+            ArrayList<Query> queries) {
+        mCountUserPlaylistStatement.bindString(1, playlistId);
+        if (mCountUserPlaylistStatement.simpleQueryForLong() > 0) {
+            ArrayList<StoredTrack> storedTracks = getStoredTracks(playlistId);
+            long position = 0;
+            if (!storedTracks.isEmpty()) {
+                position = storedTracks.get(storedTracks.size() - 1).mPosition + 1;
+            }
+            ConcurrentHashMap<Query, Long> queryIdMap = mPlaylistQueryIdMap.get(playlistId);
             mDatabase.beginTransaction();
-            // Store every single Track in the database and store the relationship
-            // by storing the playlists's id with it
-            for (Query query : queries) {
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS, playlistId);
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
-                        query.getPreferredTrack().getName());
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
-                        query.getPreferredTrack().getArtist().getName());
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
-                        query.getPreferredTrack().getAlbum().getName());
-                mDatabase.insert(TomahawkSQLiteHelper.TABLE_TRACKS, null, values);
+            try {
+                // Append every single Track to the end of the playlist
+                for (Query query : queries) {
+                    long id = insertTrack(playlistId, query, position);
+                    storedTracks.add(new StoredTrack(id, getKey(query), position));
+                    if (queryIdMap != null) {
+                        queryIdMap.put(query, id);
+                    }
+                    position++;
+                }
+                mDatabase.setTransactionSuccessful();
+            } catch (RuntimeException e) {
+                invalidate(playlistId);
+                throw e;
+            } finally {
+                mDatabase.endTransaction();
             }
-            mDatabase.setTransactionSuccessful();
-            mDatabase.endTransaction();
         }
-        userplaylistsCursor.close();
     }
 }
@@ -0,0 +1,41 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2013, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import java.util.ArrayList;
+
+/**
+ * Base class for {@link Resolver}s, which are only able to resolve one {@link Query} at a time
+ */
+public abstract class AbstractResolver implements Resolver {
+
+    /**
+     * Resolve every one of the given {@link Query}s on its own. Override this, if the {@link
+     * Resolver} is able to resolve all of them in a single pass.
+     *
+     * @return whether or not the Resolver is ready to resolve
+     */
+    @Override
+    public boolean resolve(ArrayList<Query> queries) {
+        boolean ready = isReady();
+        for (Query query : queries) {
+            ready = resolve(query);
+        }
+        return ready;
+    }
+}
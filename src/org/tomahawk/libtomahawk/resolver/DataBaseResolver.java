@@ -19,6 +19,7 @@ package org.tomahawk.libtomahawk.resolver;
 
 import org.json.JSONObject;
 import org.tomahawk.libtomahawk.collection.Collection;
+import org.tomahawk.libtomahawk.collection.QueryIndex;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.tomahawk_android.R;
@@ -26,7 +27,6 @@ import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.graphics.drawable.Drawable;
 import android.text.TextUtils;
-import android.widget.Filter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -112,151 +112,124 @@ public class DataBaseResolver implements Resolver {
     }
 
     /**
-     * Resolve the given {@link Query}.
+     * Resolve the given {@link Query}. This is being called by the {@link ResolverScheduler} on
+     * one of its worker threads, so we can do the actual work synchronously.
      *
      * @param query the {@link Query} which should be resolved
      * @return whether or not the Resolver is ready to resolve
      */
     @Override
     public boolean resolve(Query query) {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        queries.add(query);
+        return resolve(queries);
+    }
+
+    /**
+     * Resolve all of the given {@link Query}s with a single pass over the {@link Collection}. This
+     * is being called by the {@link ResolverScheduler} on one of its worker threads, so we can do
+     * the actual work synchronously.
+     *
+     * @param queries the {@link Query}s which should be resolved
+     * @return whether or not the Resolver is ready to resolve
+     */
+    @Override
+    public boolean resolve(ArrayList<Query> queries) {
         if (mReady) {
             mStopped = false;
-            if (query.isFullTextQuery()) {
-                new TomahawkListItemFilter(query.getQid(), this, query.getFullTextQuery())
-                        .filter(null);
-            } else {
-                new TomahawkListItemFilter(query.getQid(), this, query.getName(),
-                        query.getAlbum().getName(), query.getArtist().getName()).filter(null);
+            ArrayList<ArrayList<Result>> resultLists = getFilteredResults(queries);
+            mStopped = true;
+            for (int i = 0; i < queries.size(); i++) {
+                mTomahawkApp.getPipeLine().reportResults(queries.get(i).getQid(),
+                        resultLists.get(i), this);
             }
         }
         return mReady;
     }
 
     /**
-     * We use a {@link Filter} to resolve our {@link Track}s from the {@link UserCollection}
+     * The actual resolving process. Fetches the matching {@link Track}s from the {@link
+     * UserCollection}. If the {@link Collection} maintains a {@link QueryIndex}, every {@link Query}
+     * is being looked up in it. Otherwise every {@link Track} of the {@link Collection} is only
+     * being looked at once, no matter how many {@link Query}s are being resolved.
+     *
+     * @param queries the {@link Query}s to be searched for. If a {@link Query} is a fullTextQuery,
+     *                its fullTextQuery is being searched for in the {@link Track}'s, {@link
+     *                org.tomahawk.libtomahawk.collection.Album}'s and {@link
+     *                org.tomahawk.libtomahawk.collection.Artist}'s name. Otherwise all three names
+     *                have to match.
+     * @return an {@link ArrayList} containing an {@link ArrayList} of all found {@link Result}s for
+     * each of the given {@link Query}s, in the same order
      */
-    private class TomahawkListItemFilter extends Filter {
-
-        private String mQid;
-
-        private Resolver mResolver;
-
-        private String mFullTextQuery = "";
-
-        private String mTrackName = "";
-
-        private String mAlbumName = "";
-
-        private String mArtistName = "";
-
-        /**
-         * Construct this {@link TomahawkListItemFilter}, if you want to do a fullTextQuery search.
-         *
-         * @param qid           the id of the {@link Query} to be resolved
-         * @param resolver      the {@link Resolver} that we will associate with the resolved {@link
-         *                      Result}s
-         * @param fullTextQuery {@link String}  containing the fullTextQuery to be searched for
-         */
-        public TomahawkListItemFilter(final String qid, final Resolver resolver,
-                final String fullTextQuery) {
-            mQid = qid;
-            mResolver = resolver;
-            mFullTextQuery = fullTextQuery.toLowerCase().trim();
+    private ArrayList<ArrayList<Result>> getFilteredResults(List<Query> queries) {
+        ArrayList<ArrayList<Result>> filteredResults = new ArrayList<ArrayList<Result>>();
+        String[] fullTextQueries = new String[queries.size()];
+        String[] trackNames = new String[queries.size()];
+        String[] albumNames = new String[queries.size()];
+        String[] artistNames = new String[queries.size()];
+        boolean[] isEmpty = new boolean[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            filteredResults.add(new ArrayList<Result>());
+            if (query.isFullTextQuery()) {
+                fullTextQueries[i] = query.getFullTextQuery().toLowerCase().trim();
+                isEmpty[i] = TextUtils.isEmpty(fullTextQueries[i]);
+            } else {
+                trackNames[i] = query.getName().toLowerCase().trim();
+                albumNames[i] = query.getAlbum().getName().toLowerCase().trim();
+                artistNames[i] = query.getArtist().getName().toLowerCase().trim();
+                isEmpty[i] = TextUtils.isEmpty(trackNames[i]) && TextUtils.isEmpty(albumNames[i])
+                        && TextUtils.isEmpty(artistNames[i]);
+            }
         }
-
-        /**
-         * Construct this {@link TomahawkListItemFilter}, if you want to do a fullTextQuery search.
-         *
-         * @param qid        the id of the {@link Query} to be resolved
-         * @param resolver   the {@link Resolver} that we will associate with the resolved {@link
-         *                   Result}s
-         * @param trackName  {@link String}  containing the {@link Track}s name
-         * @param albumName  {@link String}  containing the {@link org.tomahawk.libtomahawk.collection.Album}s
-         *                   name
-         * @param artistName {@link String}  containing the {@link org.tomahawk.libtomahawk.collection.Artist}s
-         *                   name
-         */
-        public TomahawkListItemFilter(final String qid, final Resolver resolver,
-                final String trackName, final String albumName, final String artistName) {
-            mQid = qid;
-            mResolver = resolver;
-            mTrackName = trackName.toLowerCase().trim();
-            mAlbumName = albumName.toLowerCase().trim();
-            mArtistName = artistName.toLowerCase().trim();
+        if (mCollection == null) {
+            return filteredResults;
         }
-
-        /**
-         * Called when this {@link TomahawkListItemFilter} is done with performFiltering(...)
-         *
-         * @param constraint can be ignored in our case
-         * @param results    all found {@link FilterResults}
-         */
-        @SuppressWarnings("unchecked")
-        @Override
-        protected void publishResults(CharSequence constraint, FilterResults results) {
-            final ArrayList<Result> resultList = (ArrayList<Result>) results.values;
-            mStopped = true;
-            Runnable r = new Runnable() {
-                @Override
-                public void run() {
-                    mTomahawkApp.getPipeLine().reportResults(mQid, resultList);
+        QueryIndex queryIndex = mCollection.getQueryIndex();
+        if (queryIndex != null) {
+            for (int i = 0; i < queries.size(); i++) {
+                if (isEmpty[i]) {
+                    continue;
+                }
+                ArrayList<Query> matches;
+                if (fullTextQueries[i] != null) {
+                    matches = queryIndex.find(fullTextQueries[i]);
+                } else {
+                    matches = queryIndex.find(trackNames[i], albumNames[i], artistNames[i]);
+                }
+                for (Query query : matches) {
+                    filteredResults.get(i).add(query.getPreferredTrackResult());
                 }
-            };
-            Thread t = new Thread(r);
-            t.start();
-        }
-
-        /**
-         * Perform the filtering process. Automatically called whenever this {@link
-         * TomahawkListItemFilter} is constructed
-         *
-         * @param constraint can be ignored in our case
-         * @return all found {@link FilterResults}
-         */
-        @Override
-        protected FilterResults performFiltering(CharSequence constraint) {
-            ArrayList<Result> filteredResults = getFilteredResults();
-
-            FilterResults results = new FilterResults();
-            synchronized (this) {
-                results.values = filteredResults;
             }
-
-            return results;
+            return filteredResults;
         }
-
-        /**
-         * The actual resolving process.
-         *
-         * @return an {@link ArrayList} of all found {@link Result}s
-         */
-        protected ArrayList<Result> getFilteredResults() {
-            ArrayList<Result> filteredResults = new ArrayList<Result>();
-            if (mCollection == null || (TextUtils.isEmpty(mFullTextQuery) && TextUtils
-                    .isEmpty(mTrackName) && TextUtils
-                    .isEmpty(mAlbumName) && TextUtils.isEmpty(mArtistName))) {
-                return filteredResults;
-            }
-            List<Query> inputList = new ArrayList<Query>();
-            inputList.addAll(mCollection.getQueries());
-
-            for (Query query : inputList) {
-                if (!TextUtils.isEmpty(mFullTextQuery)) {
-                    if (query.getName().toLowerCase().contains(mFullTextQuery) ||
-                            query.getArtist().getName().toLowerCase().contains(mFullTextQuery) ||
-                            query.getAlbum().getName().toLowerCase().contains(mFullTextQuery)) {
-                        filteredResults.add(query.getPreferredTrackResult());
+        // This Collection doesn't maintain an index, so we have to go through all of its Querys
+        List<Query> inputList = new ArrayList<Query>();
+        inputList.addAll(mCollection.getQueries());
+
+        for (Query query : inputList) {
+            String name = query.getName().toLowerCase();
+            String artistName = query.getArtist().getName().toLowerCase();
+            String albumName = query.getAlbum().getName().toLowerCase();
+            for (int i = 0; i < queries.size(); i++) {
+                if (isEmpty[i]) {
+                    continue;
+                }
+                if (fullTextQueries[i] != null) {
+                    if (name.contains(fullTextQueries[i])
+                            || artistName.contains(fullTextQueries[i])
+                            || albumName.contains(fullTextQueries[i])) {
+                        filteredResults.get(i).add(query.getPreferredTrackResult());
                     }
                 } else {
-                    if (query.getName().toLowerCase().contains(mTrackName) &&
-                            query.getArtist().getName().toLowerCase().contains(mArtistName) &&
-                            query.getAlbum().getName().toLowerCase().contains(mAlbumName)) {
-                        filteredResults.add(query.getPreferredTrackResult());
+                    if (name.contains(trackNames[i]) && artistName.contains(artistNames[i])
+                            && albumName.contains(albumNames[i])) {
+                        filteredResults.get(i).add(query.getPreferredTrackResult());
                     }
                 }
             }
-            return filteredResults;
         }
+        return filteredResults;
     }
 
     /**
@@ -274,4 +247,12 @@ public class DataBaseResolver implements Resolver {
     public int getWeight() {
         return mWeight;
     }
+
+    /**
+     * @return this {@link DataBaseResolver}'s timeout in milliseconds
+     */
+    @Override
+    public int getTimeout() {
+        return mTimeout;
+    }
 }
@@ -17,16 +17,23 @@
  */
 package org.tomahawk.libtomahawk.resolver;
 
+import org.tomahawk.libtomahawk.collection.CollectionDelta;
+import org.tomahawk.libtomahawk.database.ResultCacheDataSource;
+import org.tomahawk.libtomahawk.utils.EventBus;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.content.Intent;
-import android.os.Handler;
-import android.os.Looper;
-import android.text.TextUtils;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@link PipeLine} is being used to provide all the resolving functionality. All {@link
@@ -49,18 +56,92 @@ public class PipeLine {
 
     private static final float MINSCORE = 0.5F;
 
+    // Default score a Result needs, so that its Query counts as solved and can be played right away
+    public static final float DEFAULT_EARLY_PLAYABLE_SCORE = 0.9F;
+
+    // Number of the most recently resolved Querys, which are being kept, even if nobody else
+    // references them anymore
+    public static final int RECENT_QUERIES_SIZE = 200;
+
     private TomahawkApp mTomahawkApp;
 
     private ArrayList<Resolver> mResolvers = new ArrayList<Resolver>();
 
-    private ConcurrentHashMap<String, Query> mQids = new ConcurrentHashMap<String, Query>();
+    private ResolverScheduler mResolverScheduler;
+
+    private ResultCacheDataSource mResultCache;
+
+    private final EventBus<Query> mResultsEventBus = new EventBus<Query>();
+
+    // Forwards the events of the mResultsEventBus as broadcasts, if any other process needs them
+    private final EventBus.Subscriber<Query> mBroadcastBridge = new EventBus.Subscriber<Query>() {
+        @Override
+        public void onEvent(String qid, Query query) {
+            Intent reportIntent = new Intent(PIPELINE_RESULTSREPORTED);
+            reportIntent.putExtra(PIPELINE_RESULTSREPORTED_QID, qid);
+            mTomahawkApp.sendBroadcast(reportIntent);
+        }
+    };
+
+    // Every Query by its qid. Only weakly referenced, so that a Query, its Results and their
+    // Tracks, Albums and Artists go away as soon as no Playlist or view uses them anymore.
+    private ConcurrentHashMap<String, QueryReference> mQids
+            = new ConcurrentHashMap<String, QueryReference>();
+
+    private final ReferenceQueue<Query> mQidsReferenceQueue = new ReferenceQueue<Query>();
+
+    private final LinkedHashMap<String, Query> mRecentQueries
+            = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+            return size() > RECENT_QUERIES_SIZE;
+        }
+    };
 
     private ConcurrentHashMap<String, Query> mWaitingQids = new ConcurrentHashMap<String, Query>();
 
+    // The qids of all Querys, which have been handed over to us but not been scheduled yet
+    private ConcurrentHashMap<String, Boolean> mSchedulingQids
+            = new ConcurrentHashMap<String, Boolean>();
+
+    // Every Query which is being resolved right now, by its coalescing key
+    private ConcurrentHashMap<String, Query> mResolvingQueries
+            = new ConcurrentHashMap<String, Query>();
+
+    // The key, under which a Query has been put into mResolvingQueries, by its qid
+    private ConcurrentHashMap<String, String> mCoalescingKeys
+            = new ConcurrentHashMap<String, String>();
+
+    // The Querys sharing the resolution of another Query, by the qid of that other Query
+    private ConcurrentHashMap<String, CopyOnWriteArrayList<Query>> mCoalescedQueries
+            = new ConcurrentHashMap<String, CopyOnWriteArrayList<Query>>();
+
+    // The Query whose resolution is being shared, by the qid of every Query sharing it
+    private ConcurrentHashMap<String, Query> mCoalescedQids = new ConcurrentHashMap<String, Query>();
+
+    private final AtomicLong mCoalescingHits = new AtomicLong();
+
+    private final AtomicLong mCoalescingMisses = new AtomicLong();
+
     private boolean mAllResolversAdded;
 
+    private float mEarlyPlayableScore = DEFAULT_EARLY_PLAYABLE_SCORE;
+
+    private boolean mStreamResults = true;
+
+    private static class QueryReference extends WeakReference<Query> {
+
+        private final String mQid;
+
+        private QueryReference(Query query, ReferenceQueue<Query> queue) {
+            super(query, queue);
+            mQid = query.getQid();
+        }
+    }
+
     public PipeLine(TomahawkApp tomahawkApp) {
         mTomahawkApp = tomahawkApp;
+        mResolverScheduler = new ResolverScheduler(this);
     }
 
     /**
@@ -70,6 +151,63 @@ public class PipeLine {
         mResolvers.add(resolver);
     }
 
+    /**
+     * @return the {@link ResolverScheduler} which dispatches {@link Query}s to our {@link
+     * Resolver}s
+     */
+    public ResolverScheduler getResolverScheduler() {
+        return mResolverScheduler;
+    }
+
+    /**
+     * @return the {@link EventBus} on which a {@link Query} is being posted under its qid, every
+     * time new {@link Result}s have been reported for it. Subscribe to the qids you're interested
+     * in, rather than to every {@link Query}, wherever possible.
+     */
+    public EventBus<Query> getResultsEventBus() {
+        return mResultsEventBus;
+    }
+
+    /**
+     * Set whether or not every results report should additionally be sent as a {@link
+     * #PIPELINE_RESULTSREPORTED} broadcast. Only needed for consumers outside of this process,
+     * since every broadcast costs a Binder transaction.
+     */
+    public void setBroadcastBridgeEnabled(boolean enabled) {
+        if (enabled) {
+            mResultsEventBus.subscribe(mBroadcastBridge);
+        } else {
+            mResultsEventBus.unsubscribe(mBroadcastBridge);
+        }
+    }
+
+    /**
+     * Set the score, which the best {@link Result} of a {@link Query} has to reach, so that the
+     * {@link Query} is good enough to start playing. Such a {@link Query} counts as solved and
+     * every {@link Resolver} which is still working on it is being cancelled. A score of 1 means
+     * that only perfect matches are good enough.
+     */
+    public void setEarlyPlayableScore(float earlyPlayableScore) {
+        mEarlyPlayableScore = earlyPlayableScore;
+    }
+
+    /**
+     * Set whether or not the {@link Result}s of every single {@link Resolver} should be reported as
+     * soon as they come in. If not, the {@link Result}s of a {@link Query} are only reported once,
+     * after it has been solved or no {@link Resolver} is working on it anymore.
+     */
+    public void setStreamResults(boolean streamResults) {
+        mStreamResults = streamResults;
+    }
+
+    /**
+     * Set the {@link ResultCacheDataSource}, which is being consulted before a {@link Query} is
+     * dispatched to a {@link Resolver}, and which stores every reported {@link Result}.
+     */
+    public void setResultCache(ResultCacheDataSource resultCache) {
+        mResultCache = resultCache;
+    }
+
     /**
      * Get the {@link Resolver} with the given id, null if not found
      */
@@ -95,7 +233,7 @@ public class PipeLine {
      * is a {@link Query} with the same fullTextQuery, the old resultList will be reported.
      */
     public String resolve(String fullTextQuery, boolean forceOnlyLocal) {
-        if (fullTextQuery != null && !TextUtils.isEmpty(fullTextQuery)) {
+        if (fullTextQuery != null && !TomahawkUtils.isEmpty(fullTextQuery)) {
             Query q = new Query(fullTextQuery, forceOnlyLocal);
             resolve(q);
             return q.getQid();
@@ -111,7 +249,7 @@ public class PipeLine {
      * org.tomahawk.libtomahawk.collection.Album}, the old resultList will be reported.
      */
     public String resolve(String trackName, String albumName, String artistName) {
-        if (trackName != null && !TextUtils.isEmpty(trackName)) {
+        if (trackName != null && !TomahawkUtils.isEmpty(trackName)) {
             Query q = new Query(trackName, albumName, artistName, false);
             return resolve(q);
         }
@@ -128,31 +266,13 @@ public class PipeLine {
     /**
      * This will invoke every {@link Resolver} to resolve the given {@link Query}.
      */
-    public String resolve(final Query q, boolean forceOnlyLocal) {
+    public String resolve(Query q, boolean forceOnlyLocal) {
         if (!forceOnlyLocal && q.isSolved()) {
-            sendResultsReportBroadcast(q.getQid());
+            postResultsReport(q);
         } else {
-            if (!isEveryResolverReady()) {
-                if (!mWaitingQids.containsKey(q.getQid())) {
-                    mWaitingQids.put(q.getQid(), q);
-                }
-            } else {
-                mQids.put(q.getQid(), q);
-                for (final Resolver resolver : mResolvers) {
-                    if ((forceOnlyLocal && resolver instanceof DataBaseResolver)
-                            || (!forceOnlyLocal && q.isOnlyLocal()
-                            && resolver instanceof DataBaseResolver)
-                            || (!forceOnlyLocal && !q.isOnlyLocal())) {
-                        Handler handler = new Handler(Looper.getMainLooper());
-                        handler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                resolver.resolve(q);
-                            }
-                        });
-                    }
-                }
-            }
+            ArrayList<Query> queries = new ArrayList<Query>();
+            queries.add(q);
+            resolveQueries(queries, forceOnlyLocal);
         }
         return q.getQid();
     }
@@ -172,22 +292,230 @@ public class PipeLine {
     public HashSet<String> resolve(ArrayList<Query> queries, boolean forceOnlyLocal) {
         HashSet<String> qids = new HashSet<String>();
         if (queries != null) {
+            ArrayList<Query> queriesToResolve = new ArrayList<Query>();
             for (Query query : queries) {
                 if (forceOnlyLocal || !query.isSolved()) {
-                    qids.add(resolve(query, forceOnlyLocal));
+                    queriesToResolve.add(query);
+                    qids.add(query.getQid());
                 }
             }
+            resolveQueries(queriesToResolve, forceOnlyLocal);
         }
         return qids;
     }
 
     /**
-     * Send a broadcast containing the id of the resolved {@link Query}.
+     * Hand the given {@link Query}s over to the {@link ResolverScheduler}. If not every {@link
+     * Resolver} is ready yet, the {@link Query}s are put on hold. Looking up the {@link
+     * ResultCacheDataSource} means disk access, so in that case this is being done on one of the
+     * {@link ResolverScheduler}'s worker threads.
      */
-    private void sendResultsReportBroadcast(String qid) {
-        Intent reportIntent = new Intent(PIPELINE_RESULTSREPORTED);
-        reportIntent.putExtra(PIPELINE_RESULTSREPORTED_QID, qid);
-        mTomahawkApp.sendBroadcast(reportIntent);
+    private void resolveQueries(final ArrayList<Query> queries, final boolean forceOnlyLocal) {
+        if (!isEveryResolverReady()) {
+            for (Query q : queries) {
+                if (!mWaitingQids.containsKey(q.getQid())) {
+                    mWaitingQids.put(q.getQid(), q);
+                }
+            }
+        } else {
+            final ArrayList<Query> queriesToSchedule = new ArrayList<Query>();
+            for (Query q : queries) {
+                putQuery(q);
+                mSchedulingQids.put(q.getQid(), true);
+                if (forceOnlyLocal || !coalesce(q)) {
+                    queriesToSchedule.add(q);
+                } else {
+                    mSchedulingQids.remove(q.getQid());
+                }
+            }
+            if (mResultCache == null || forceOnlyLocal) {
+                scheduleQueries(queriesToSchedule, forceOnlyLocal);
+            } else {
+                mResolverScheduler.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduleQueries(queriesToSchedule, forceOnlyLocal);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Let the given {@link Query} share the resolution of an identical {@link Query}, which is
+     * already being resolved. If there is none, the given {@link Query} is registered as being
+     * resolved, so that following identical {@link Query}s can share its resolution.
+     *
+     * @return true if the given {@link Query} shares the resolution of another {@link Query}, false
+     * if it has to be resolved itself
+     */
+    private boolean coalesce(Query q) {
+        if (q.isFullTextQuery()) {
+            return false;
+        }
+        if (mCoalescedQids.containsKey(q.getQid())) {
+            return true;
+        }
+        String key = getCoalescingKey(q);
+        mCoalescedQueries.putIfAbsent(q.getQid(), new CopyOnWriteArrayList<Query>());
+        Query resolvingQuery = mResolvingQueries.putIfAbsent(key, q);
+        if (resolvingQuery == null) {
+            mCoalescingKeys.put(q.getQid(), key);
+        } else if (resolvingQuery != q) {
+            mCoalescedQueries.remove(q.getQid());
+            CopyOnWriteArrayList<Query> coalescedQueries =
+                    mCoalescedQueries.get(resolvingQuery.getQid());
+            if (coalescedQueries != null) {
+                synchronized (coalescedQueries) {
+                    // Make sure that the resolving Query hasn't been finished in the meantime
+                    if (mCoalescedQueries.get(resolvingQuery.getQid()) == coalescedQueries) {
+                        mCoalescedQids.put(q.getQid(), resolvingQuery);
+                        coalescedQueries.add(q);
+                        mCoalescingHits.incrementAndGet();
+                        // Hand over everything that has been found so far
+                        if (!resolvingQuery.getTrackResults().isEmpty()) {
+                            shareResults(resolvingQuery, q);
+                            postResultsReport(q);
+                        }
+                        return true;
+                    }
+                }
+            }
+        }
+        mCoalescingMisses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Called as soon as nobody is resolving the given {@link Query} anymore. From now on an
+     * identical {@link Query} is being resolved on its own again.
+     */
+    private void onResolvingFinished(Query q) {
+        if (q.isFullTextQuery()) {
+            return;
+        }
+        String key = mCoalescingKeys.remove(q.getQid());
+        if (key != null) {
+            mResolvingQueries.remove(key, q);
+        }
+        CopyOnWriteArrayList<Query> coalescedQueries = mCoalescedQueries.get(q.getQid());
+        if (coalescedQueries != null) {
+            synchronized (coalescedQueries) {
+                mCoalescedQueries.remove(q.getQid());
+            }
+            for (Query coalescedQuery : coalescedQueries) {
+                mCoalescedQids.remove(coalescedQuery.getQid());
+            }
+        }
+    }
+
+    /**
+     * Post the given {@link Query} on the results {@link EventBus}, along with every {@link Query}
+     * sharing its resolution, after handing the {@link Result}s over to them.
+     */
+    private void postCoalescedResultsReports(Query q) {
+        postResultsReport(q);
+        CopyOnWriteArrayList<Query> coalescedQueries = mCoalescedQueries.get(q.getQid());
+        if (coalescedQueries != null) {
+            for (Query coalescedQuery : coalescedQueries) {
+                shareResults(q, coalescedQuery);
+                postResultsReport(coalescedQuery);
+            }
+        }
+    }
+
+    private static void shareResults(Query from, Query to) {
+        to.addTrackResults(from.getTrackResults());
+        if (from.isSolved() && !to.isCurrentlyPlaying()) {
+            to.setSolved(true);
+        }
+    }
+
+    /**
+     * @return the key, under which identical {@link Query}s are being coalesced. The {@link
+     * Query}'s own cache key, which doesn't change when {@link Result}s are being added, plus
+     * whether or not the {@link Query} is only being resolved locally.
+     */
+    private static String getCoalescingKey(Query q) {
+        String key = q.getCacheKey();
+        return q.isOnlyLocal() ? key + "\t\tonlylocal" : key;
+    }
+
+    /**
+     * @return how many {@link Query}s have shared the resolution of an identical {@link Query}
+     * since startup
+     */
+    public long getCoalescingHits() {
+        return mCoalescingHits.get();
+    }
+
+    /**
+     * @return how many track {@link Query}s had to be resolved on their own since startup
+     */
+    public long getCoalescingMisses() {
+        return mCoalescingMisses.get();
+    }
+
+    /**
+     * Every {@link Resolver} gets all of its {@link Query}s at once, so that it is able to resolve
+     * them in a single batch. {@link Query}s, for which the {@link Resolver}'s {@link Result}s are
+     * still cached, aren't scheduled at all. Their cached {@link Result}s are being reported right
+     * away instead.
+     */
+    private void scheduleQueries(ArrayList<Query> queries, boolean forceOnlyLocal) {
+        for (Resolver resolver : mResolvers) {
+            ArrayList<Query> batch = new ArrayList<Query>();
+            for (Query q : queries) {
+                if ((forceOnlyLocal && resolver instanceof DataBaseResolver)
+                        || (!forceOnlyLocal && q.isOnlyLocal()
+                        && resolver instanceof DataBaseResolver)
+                        || (!forceOnlyLocal && !q.isOnlyLocal())) {
+                    if (isCaching(resolver) && !forceOnlyLocal) {
+                        if (q.isSolved()) {
+                            // Already solved by the cached Results of another Resolver
+                            continue;
+                        }
+                        ArrayList<Result> cachedResults = mResultCache.getResults(q, resolver);
+                        if (cachedResults != null) {
+                            q.addTrackResults(cachedResults);
+                            solveIfPlayable(q);
+                            postCoalescedResultsReports(q);
+                            continue;
+                        }
+                    }
+                    batch.add(q);
+                }
+            }
+            if (!batch.isEmpty()) {
+                mResolverScheduler.schedule(resolver, batch);
+            }
+        }
+        for (Query q : queries) {
+            mSchedulingQids.remove(q.getQid());
+            if (!isResolving(q.getQid())) {
+                // Every Result came out of the cache, there's no Resolver for this Query or it has
+                // been dropped right away. Either way, this is the final report.
+                postCoalescedResultsReports(q);
+                onResolvingFinished(q);
+            }
+        }
+    }
+
+    /**
+     * @return whether or not the {@link Result}s of the given {@link Resolver} are being cached.
+     * Our local database is faster to query than the cache and changes whenever the {@link
+     * org.tomahawk.libtomahawk.collection.UserCollection} does, so its {@link Result}s are not.
+     */
+    private boolean isCaching(Resolver resolver) {
+        return mResultCache != null && !(resolver instanceof DataBaseResolver);
+    }
+
+    /**
+     * Post the given {@link Query} on the results {@link EventBus}. Protected, so that it can be
+     * replaced where no Android framework is available, e.g. in the benchmarks.
+     */
+    protected void postResultsReport(Query query) {
+        mResultsEventBus.post(query.getQid(), query);
     }
 
     /**
@@ -195,10 +523,15 @@ public class PipeLine {
      * This method will then calculate a score and assign it to every {@link Result}. If the score
      * is higher than MINSCORE the {@link Result} is added to the output resultList.
      *
-     * @param qid     the {@link Query} id
-     * @param results the unfiltered {@link ArrayList} of {@link Result}s
+     * @param qid      the {@link Query} id
+     * @param results  the unfiltered {@link ArrayList} of {@link Result}s
+     * @param resolver the {@link Resolver} which has reported the {@link Result}s
      */
-    public void reportResults(String qid, ArrayList<Result> results) {
+    public void reportResults(String qid, ArrayList<Result> results, Resolver resolver) {
+        if (!mResolverScheduler.onResolved(resolver, qid)) {
+            // The Query has been solved in the meantime, so these Results are too late
+            return;
+        }
         ArrayList<Result> cleanTrackResults = new ArrayList<Result>();
         ArrayList<Result> cleanAlbumResults = new ArrayList<Result>();
         ArrayList<Result> cleanArtistResults = new ArrayList<Result>();
@@ -206,18 +539,19 @@ public class PipeLine {
         if (q != null && results != null) {
             for (Result r : results) {
                 if (r != null) {
-                    r.setTrackScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_TRACKS));
+                    r.setTrackScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_TRACKS, MINSCORE));
                     if (r.getTrackScore() >= MINSCORE && !cleanTrackResults.contains(r)) {
                         r.setType(Result.RESULT_TYPE_TRACK);
                         cleanTrackResults.add(r);
                     }
                     if (q.isFullTextQuery()) {
-                        r.setAlbumScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_ALBUMS));
+                        r.setAlbumScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_ALBUMS, MINSCORE));
                         if (r.getAlbumScore() >= MINSCORE && !cleanAlbumResults.contains(r)) {
                             r.setType(Result.RESULT_TYPE_ALBUM);
                             cleanAlbumResults.add(r);
                         }
-                        r.setArtistScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_ARTISTS));
+                        r.setArtistScore(
+                                q.howSimilar(r, PIPELINE_SEARCHTYPE_ARTISTS, MINSCORE));
                         if (r.getArtistScore() >= MINSCORE && !cleanArtistResults.contains(r)) {
                             r.setType(Result.RESULT_TYPE_ARTIST);
                             cleanArtistResults.add(r);
@@ -225,10 +559,55 @@ public class PipeLine {
                     }
                 }
             }
-            mQids.get(qid).addArtistResults(cleanArtistResults);
-            mQids.get(qid).addAlbumResults(cleanAlbumResults);
-            mQids.get(qid).addTrackResults(cleanTrackResults);
-            sendResultsReportBroadcast(q.getQid());
+            q.addArtistResults(cleanArtistResults);
+            q.addAlbumResults(cleanAlbumResults);
+            q.addTrackResults(cleanTrackResults);
+            if (isCaching(resolver)) {
+                mResultCache.storeResults(q, resolver, cleanTrackResults);
+            }
+            solveIfPlayable(q);
+            boolean isResolving = isResolving(qid);
+            if (mStreamResults || q.isSolved() || !isResolving) {
+                postCoalescedResultsReports(q);
+            }
+            if (!isResolving) {
+                onResolvingFinished(q);
+            }
+        }
+    }
+
+    /**
+     * Mark the given {@link Query} as solved, if its best {@link Result} is good enough to start
+     * playing. Once it is solved, we don't wait for the remaining {@link Resolver}s anymore.
+     */
+    private void solveIfPlayable(Query q) {
+        // A fullTextQuery is a search, so we want the Results of every Resolver in that case
+        if (!q.isFullTextQuery()) {
+            Result preferredResult = q.getPreferredTrackResult();
+            // The Query which is being played shouldn't change its state underneath the player
+            if (!q.isSolved() && !q.isCurrentlyPlaying() && preferredResult != null
+                    && preferredResult.getTrackScore() >= mEarlyPlayableScore) {
+                q.setSolved(true);
+            }
+            if (q.isSolved()) {
+                mResolverScheduler.cancel(q.getQid());
+            }
+        }
+    }
+
+    /**
+     * Called by the {@link ResolverScheduler} if the given {@link Resolver} didn't report back in
+     * time or if its queue was full and the {@link Query}s had to be dropped. Every {@link Query},
+     * which isn't waiting for any other {@link Resolver} after that, is reported as being done, so
+     * that nobody keeps waiting for it.
+     */
+    void onResolverTimedOut(Resolver resolver, ArrayList<String> qids) {
+        for (String qid : qids) {
+            Query query = getQuery(qid);
+            if (query != null && !isResolving(qid)) {
+                postCoalescedResultsReports(query);
+                onResolvingFinished(query);
+            }
         }
     }
 
@@ -244,11 +623,59 @@ public class PipeLine {
         return false;
     }
 
+    /**
+     * @return true if any {@link Resolver} is still working on, or about to work on, the {@link
+     * Query} with the given qid. False otherwise
+     */
+    public boolean isResolving(String qid) {
+        Query resolvingQuery = mCoalescedQids.get(qid);
+        if (resolvingQuery != null) {
+            qid = resolvingQuery.getQid();
+        }
+        return mSchedulingQids.containsKey(qid) || mResolverScheduler.isScheduled(qid);
+    }
+
     /**
      * Get the {@link Query} with the given id
+     *
+     * @return the {@link Query} or null, if it has been resolved a while ago and isn't being used
+     * anymore
      */
     public Query getQuery(String qid) {
-        return mQids.get(qid);
+        QueryReference reference = mQids.get(qid);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * @return every {@link Query}, which is still around
+     */
+    private ArrayList<Query> getQueries() {
+        ArrayList<Query> queries = new ArrayList<Query>(mQids.size());
+        for (QueryReference reference : mQids.values()) {
+            Query query = reference.get();
+            if (query != null) {
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    private void putQuery(Query q) {
+        QueryReference reference;
+        while ((reference = (QueryReference) mQidsReferenceQueue.poll()) != null) {
+            mQids.remove(reference.mQid, reference);
+        }
+        mQids.put(q.getQid(), new QueryReference(q, mQidsReferenceQueue));
+        synchronized (mRecentQueries) {
+            mRecentQueries.put(q.getQid(), q);
+        }
+    }
+
+    /**
+     * @return the number of {@link Query}s this {@link PipeLine} currently knows about
+     */
+    public int getQueryCount() {
+        return mQids.size();
     }
 
     /**
@@ -271,10 +698,16 @@ public class PipeLine {
      */
     public void onResolverReady() {
         if (isEveryResolverReady()) {
+            ArrayList<Query> queries = new ArrayList<Query>();
             for (Query query : mWaitingQids.values()) {
                 mWaitingQids.remove(query.getQid());
-                resolve(query);
+                if (query.isSolved()) {
+                    postResultsReport(query);
+                } else {
+                    queries.add(query);
+                }
             }
+            resolveQueries(queries, false);
         }
     }
 
@@ -283,7 +716,30 @@ public class PipeLine {
     }
 
     public void onCollectionUpdated() {
-        ArrayList<Query> queries = new ArrayList<Query>(mQids.values());
-        resolve(queries, true);
+        resolve(getQueries(), true);
+    }
+
+    /**
+     * Called after an incremental update of the local {@link org.tomahawk.libtomahawk.collection.UserCollection}.
+     * In contrast to onCollectionUpdated(), only the {@link Query}s, which one of the added or
+     * changed tracks could resolve, are being resolved locally again.
+     */
+    public void onCollectionChanged(CollectionDelta delta) {
+        HashSet<String> keys = new HashSet<String>();
+        for (Query query : delta.getAddedQueries()) {
+            keys.add(query.getCacheKey());
+        }
+        for (Query query : delta.getUpdatedQueries()) {
+            keys.add(query.getCacheKey());
+        }
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (Query query : getQueries()) {
+            if (!query.isFullTextQuery() && keys.contains(query.getCacheKey())) {
+                queries.add(query);
+            }
+        }
+        if (!queries.isEmpty()) {
+            resolve(queries, true);
+        }
     }
 }
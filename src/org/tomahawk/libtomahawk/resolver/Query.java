@@ -21,11 +21,8 @@ import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
-import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
-import android.text.TextUtils;
-
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
@@ -68,11 +65,21 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
 
     private boolean mIsOnlyLocal;
 
+    // The cleaned up names of this Query. Only computed once, as soon as they're needed by
+    // howSimilar.
+    private String mCleanArtistName;
+
+    private String mCleanAlbumName;
+
+    private String mCleanTrackName;
+
+    private String mCleanSearchString;
+
     /**
      * Constructs a new Query with the given QueryID. ID should be generated in TomahawkApp.
      */
     private Query() {
-        mQid = TomahawkApp.getSessionUniqueStringId();
+        mQid = TomahawkUtils.getSessionUniqueStringId();
     }
 
     /**
@@ -252,6 +259,18 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
         return mIsOnlyLocal;
     }
 
+    /**
+     * @return the normalized cache key of the track (or the full text query) this {@link Query} has
+     * been constructed with. Unlike the key of its preferred track, this key doesn't change when
+     * {@link Result}s are being added.
+     */
+    public String getCacheKey() {
+        if (mIsFullTextQuery) {
+            return TomahawkUtils.getCacheKey(mFullTextQuery);
+        }
+        return mTrack.getCacheKey();
+    }
+
     public boolean isPlayable() {
         return mPlayable;
     }
@@ -260,6 +279,13 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
         return mSolved;
     }
 
+    /**
+     * Mark this {@link Query} as solved. A solved {@link Query} isn't being resolved again.
+     */
+    public void setSolved(boolean solved) {
+        mSolved = solved;
+    }
+
     public boolean isCurrentlyPlaying() {
         return mCurrentlyPlaying;
     }
@@ -276,21 +302,25 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      * This method determines how similar the given result is to the search string.
      */
     public float howSimilar(Result r, int searchType) {
+        return howSimilar(r, searchType, Float.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * This method determines how similar the given result is to the search string. As soon as it
+     * is clear that the score can't reach the given minScore, the computation is being cut short.
+     *
+     * @param minScore the minimum score a {@link Result} needs to be of any interest
+     * @return the same score as {@link #howSimilar(Result, int)} if it is at least minScore.
+     * Otherwise some score below minScore.
+     */
+    public float howSimilar(Result r, int searchType, float minScore) {
         String resultArtistName = "";
         String resultAlbumName = "";
         String resultTrackName = "";
-        String artistName;
-        String albumName;
-        String trackName;
-        if (isFullTextQuery()) {
-            artistName = cleanUpString(mFullTextQuery, true);
-            albumName = cleanUpString(mFullTextQuery, false);
-            trackName = albumName;
-        } else {
-            artistName = cleanUpString(mTrack.getArtist().getName(), false);
-            albumName = cleanUpString(mTrack.getAlbum().getName(), false);
-            trackName = cleanUpString(mTrack.getName(), false);
-        }
+        prepareCleanStrings();
+        String artistName = mCleanArtistName;
+        String albumName = mCleanAlbumName;
+        String trackName = mCleanTrackName;
         if (r.getArtist().getName() != null) {
             resultArtistName = cleanUpString(r.getArtist().getName(), false);
         }
@@ -301,29 +331,33 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
             resultTrackName = cleanUpString(r.getTrack().getName(), false);
         }
 
-        int distanceArtist = TomahawkUtils
-                .getLevenshteinDistance(artistName, resultArtistName);
-        int distanceAlbum = TomahawkUtils
-                .getLevenshteinDistance(albumName, resultAlbumName);
-        int distanceTrack = TomahawkUtils.getLevenshteinDistance(trackName, resultTrackName);
-
         int maxLengthArtist = Math
                 .max(artistName.length(), resultArtistName.length());
         int maxLengthAlbum = Math
                 .max(albumName.length(), resultAlbumName.length());
         int maxLengthTrack = Math.max(trackName.length(), resultTrackName.length());
 
-        float distanceScoreArtist = (float) (maxLengthArtist - distanceArtist) / maxLengthArtist;
-        float distanceScoreAlbum;
-        if (maxLengthAlbum > 0) {
-            distanceScoreAlbum = (float) (maxLengthAlbum - distanceAlbum) / maxLengthAlbum;
-        } else {
-            distanceScoreAlbum = 0F;
-        }
-        float distanceScoreTrack = (float) (maxLengthTrack - distanceTrack) / maxLengthTrack;
-
         if (isFullTextQuery()) {
-            final String searchString = cleanUpString(getFullTextQuery(), false);
+            // The score is the maximum of all partial scores, so every partial score has to reach
+            // minScore on its own. If it doesn't, it is of no interest how far it stays below.
+            int distanceArtist = TomahawkUtils.getLevenshteinDistance(artistName,
+                    resultArtistName, getMaxDistance(maxLengthArtist, minScore));
+            int distanceAlbum = TomahawkUtils.getLevenshteinDistance(albumName,
+                    resultAlbumName, getMaxDistance(maxLengthAlbum, minScore));
+            int distanceTrack = TomahawkUtils.getLevenshteinDistance(trackName,
+                    resultTrackName, getMaxDistance(maxLengthTrack, minScore));
+
+            float distanceScoreArtist =
+                    (float) (maxLengthArtist - distanceArtist) / maxLengthArtist;
+            float distanceScoreAlbum;
+            if (maxLengthAlbum > 0) {
+                distanceScoreAlbum = (float) (maxLengthAlbum - distanceAlbum) / maxLengthAlbum;
+            } else {
+                distanceScoreAlbum = 0F;
+            }
+            float distanceScoreTrack = (float) (maxLengthTrack - distanceTrack) / maxLengthTrack;
+
+            final String searchString = mCleanSearchString;
             ArrayList<String> resultSearchStrings = new ArrayList<String>();
             switch (searchType) {
                 case PipeLine.PIPELINE_SEARCHTYPE_TRACKS:
@@ -335,7 +369,7 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
                     resultSearchStrings.add(cleanUpString(resultArtistName, false));
                     break;
                 case PipeLine.PIPELINE_SEARCHTYPE_ALBUMS:
-                    if (!TextUtils.isEmpty(resultAlbumName)) {
+                    if (!TomahawkUtils.isEmpty(resultAlbumName)) {
                         resultSearchStrings
                                 .add(cleanUpString(resultArtistName + " " + resultAlbumName,
                                         false));
@@ -346,10 +380,10 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
 
             float maxResult = 0F;
             for (String resultSearchString : resultSearchStrings) {
-                int distanceArtistTrack = TomahawkUtils
-                        .getLevenshteinDistance(searchString, resultSearchString);
                 int maxLengthArtistTrack = Math
                         .max(searchString.length(), resultSearchString.length());
+                int distanceArtistTrack = TomahawkUtils.getLevenshteinDistance(searchString,
+                        resultSearchString, getMaxDistance(maxLengthArtistTrack, minScore));
                 float distanceScoreArtistTrack =
                         (float) (maxLengthArtistTrack - distanceArtistTrack) / maxLengthArtistTrack;
 
@@ -363,8 +397,44 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
             }
             return maxResult;
         } else {
-            if (TextUtils.isEmpty(mTrack.getAlbum().getName())) {
+            // The score is a weighted sum, so every partial score has to be high enough to still
+            // reach minScore, assuming that all partial scores which are yet to be computed are
+            // perfect. Going from the highest to the lowest weight gives us the tightest bounds.
+            int maxDistanceTrack = getMaxDistance(maxLengthTrack, (minScore * 10 - 4 - 1) / 5);
+            int distanceTrack = TomahawkUtils
+                    .getLevenshteinDistance(trackName, resultTrackName, maxDistanceTrack);
+            if (distanceTrack > maxDistanceTrack) {
+                return 0F;
+            }
+            float distanceScoreTrack = (float) (maxLengthTrack - distanceTrack) / maxLengthTrack;
+
+            int maxDistanceArtist = getMaxDistance(maxLengthArtist,
+                    (minScore * 10 - distanceScoreTrack * 5 - 1) / 4);
+            int distanceArtist = TomahawkUtils
+                    .getLevenshteinDistance(artistName, resultArtistName, maxDistanceArtist);
+            if (distanceArtist > maxDistanceArtist) {
+                return 0F;
+            }
+            float distanceScoreArtist =
+                    (float) (maxLengthArtist - distanceArtist) / maxLengthArtist;
+
+            float distanceScoreAlbum;
+            if (TomahawkUtils.isEmpty(mTrack.getAlbum().getName())) {
                 distanceScoreAlbum = 1F;
+            } else {
+                int maxDistanceAlbum = getMaxDistance(maxLengthAlbum,
+                        minScore * 10 - distanceScoreArtist * 4 - distanceScoreTrack * 5);
+                int distanceAlbum = TomahawkUtils
+                        .getLevenshteinDistance(albumName, resultAlbumName, maxDistanceAlbum);
+                if (distanceAlbum > maxDistanceAlbum) {
+                    return 0F;
+                }
+                if (maxLengthAlbum > 0) {
+                    distanceScoreAlbum =
+                            (float) (maxLengthAlbum - distanceAlbum) / maxLengthAlbum;
+                } else {
+                    distanceScoreAlbum = 0F;
+                }
             }
 
             return (distanceScoreArtist * 4 + distanceScoreAlbum + distanceScoreTrack * 5) / 10;
@@ -372,19 +442,85 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
     }
 
     /**
-     * Clean up the given String.
+     * @return the maximum edit distance between two strings, the longer of which has the given
+     * length, with which a partial score of at least minScore can still be reached
+     */
+    private static int getMaxDistance(int maxLength, float minScore) {
+        if (!(minScore > 0F)) {
+            return maxLength;
+        }
+        // One additional edit as a safety margin against rounding errors. Every distance within
+        // the bound is computed exactly anyway.
+        return (int) (maxLength * (1F - minScore)) + 1;
+    }
+
+    /**
+     * Clean up the names of this {@link Query}, if that hasn't been done already.
+     */
+    private void prepareCleanStrings() {
+        if (mCleanTrackName == null) {
+            if (isFullTextQuery()) {
+                mCleanArtistName = cleanUpString(mFullTextQuery, true);
+                mCleanAlbumName = cleanUpString(mFullTextQuery, false);
+                mCleanSearchString = mCleanAlbumName;
+                mCleanTrackName = mCleanAlbumName;
+            } else {
+                mCleanArtistName = cleanUpString(mTrack.getArtist().getName(), false);
+                mCleanAlbumName = cleanUpString(mTrack.getAlbum().getName(), false);
+                mCleanTrackName = cleanUpString(mTrack.getName(), false);
+            }
+        }
+    }
+
+    /**
+     * Clean up the given String. Lower case, trimmed and every run of two or more whitespace
+     * characters replaced by a single space.
      *
      * @param replaceArticle wether or not the prefix "the " should be removed
      * @return the clean String
      */
     public String cleanUpString(String in, boolean replaceArticle) {
-        String out = in.toLowerCase().trim().replaceAll("[\\s]{2,}", " ");
+        String out = in.toLowerCase().trim();
+        StringBuilder collapsed = null;
+        int i = 0;
+        while (i < out.length()) {
+            char c = out.charAt(i);
+            if (isWhitespace(c)) {
+                int runEnd = i + 1;
+                while (runEnd < out.length() && isWhitespace(out.charAt(runEnd))) {
+                    runEnd++;
+                }
+                if (runEnd - i >= 2) {
+                    if (collapsed == null) {
+                        collapsed = new StringBuilder(out.length());
+                        collapsed.append(out, 0, i);
+                    }
+                    collapsed.append(' ');
+                    i = runEnd;
+                    continue;
+                }
+            }
+            if (collapsed != null) {
+                collapsed.append(c);
+            }
+            i++;
+        }
+        if (collapsed != null) {
+            out = collapsed.toString();
+        }
         if (replaceArticle && out.startsWith("the ")) {
             out = out.substring(4);
         }
         return out;
     }
 
+    /**
+     * @return whether or not the given char is matched by the regex character class \s
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
     @Override
     public String getName() {
         return getPreferredTrack().getName();
@@ -19,6 +19,8 @@ package org.tomahawk.libtomahawk.resolver;
 
 import android.graphics.drawable.Drawable;
 
+import java.util.ArrayList;
+
 /**
  * The basic {@link Resolver} interface, which is implemented by every type of {@link Resolver}
  */
@@ -46,6 +48,14 @@ public interface Resolver {
      */
     public boolean resolve(Query query);
 
+    /**
+     * Resolve all of the given {@link Query}s in one go. {@link Resolver}s which can't do any
+     * better should extend {@link AbstractResolver}, which resolves every {@link Query} on its own.
+     *
+     * @return whether or not the Resolver is ready to resolve
+     */
+    public boolean resolve(ArrayList<Query> queries);
+
     /**
      * @return this {@link Resolver}'s id
      */
@@ -55,4 +65,10 @@ public interface Resolver {
      * @return this {@link Resolver}'s weight
      */
     public int getWeight();
+
+    /**
+     * @return the time in milliseconds after which this {@link Resolver} isn't being waited for
+     * anymore. 0 if it doesn't have a timeout of its own.
+     */
+    public int getTimeout();
 }
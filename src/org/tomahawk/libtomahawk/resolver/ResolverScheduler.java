@@ -0,0 +1,398 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ResolverScheduler} dispatches {@link Query}s to the {@link Resolver}s of the {@link
+ * PipeLine}. Every {@link Resolver} gets its own lane with a bounded queue and a limit of {@link
+ * Query}s that may be in flight at the same time. Thread-safe {@link Resolver}s are invoked on a
+ * small pool of worker threads, whereas all {@link ScriptResolver}s share a single serialized lane,
+ * since they're bound to a WebView and end up on the UI thread anyway.
+ */
+public class ResolverScheduler {
+
+    private final static String TAG = ResolverScheduler.class.getName();
+
+    public static final int DEFAULT_QUEUE_DEPTH = 200;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    public static final int SCRIPTRESOLVER_QUEUE_DEPTH = 100;
+
+    public static final int SCRIPTRESOLVER_MAX_IN_FLIGHT = 10;
+
+    // Maximum number of Querys which are handed over to a Resolver in a single batch
+    public static final int MAX_BATCH_SIZE = 50;
+
+    // If a Resolver doesn't report back within this time, we free up its slot again. Only used
+    // for Resolvers which don't have a timeout of their own.
+    public static final long IN_FLIGHT_TIMEOUT = 15000L;
+
+    private final PipeLine mPipeLine;
+
+    private final ScheduledThreadPoolExecutor mWorkerPool;
+
+    private final ScheduledThreadPoolExecutor mScriptLane;
+
+    private final ConcurrentHashMap<Integer, Lane> mLanes = new ConcurrentHashMap<Integer, Lane>();
+
+    /**
+     * A {@link Lane} holds the pending {@link Query}s of one {@link Resolver} and keeps track of
+     * the {@link Query}s which have been dispatched but not yet been reported back.
+     */
+    private static class Lane {
+
+        private final Resolver mResolver;
+
+        private final ArrayDeque<Query> mPending = new ArrayDeque<Query>();
+
+        private final HashMap<String, Long> mInFlight = new HashMap<String, Long>();
+
+        // The qids in mInFlight, whose Results aren't needed anymore. They keep their slot until
+        // the Resolver has reported back, since it is still busy with them.
+        private final HashSet<String> mCancelled = new HashSet<String>();
+
+        private int mQueueDepth;
+
+        private int mMaxInFlight;
+
+        private Lane(Resolver resolver, int queueDepth, int maxInFlight) {
+            mResolver = resolver;
+            mQueueDepth = queueDepth;
+            mMaxInFlight = maxInFlight;
+        }
+    }
+
+    public ResolverScheduler(PipeLine pipeLine) {
+        mPipeLine = pipeLine;
+        int workerCount = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        mWorkerPool = new ScheduledThreadPoolExecutor(workerCount,
+                new ResolverThreadFactory("ResolverWorker"));
+        mScriptLane = new ScheduledThreadPoolExecutor(1,
+                new ResolverThreadFactory("ScriptResolverLane"));
+    }
+
+    /**
+     * Set the queue depth and the in-flight limit of the given {@link Resolver}'s lane.
+     *
+     * @param queueDepth  maximum number of {@link Query}s waiting to be dispatched. If exceeded,
+     *                    the oldest waiting {@link Query} is dropped, since it has most likely been
+     *                    scrolled out of sight already. Dropped {@link Query}s are reported to the
+     *                    {@link PipeLine} just like timed out ones.
+     * @param maxInFlight maximum number of {@link Query}s the {@link Resolver} may work on at the
+     *                    same time
+     */
+    public void setLimits(Resolver resolver, int queueDepth, int maxInFlight) {
+        Lane lane = getLane(resolver);
+        synchronized (lane) {
+            lane.mQueueDepth = Math.max(1, queueDepth);
+            lane.mMaxInFlight = Math.max(1, maxInFlight);
+        }
+        dispatch(lane);
+    }
+
+    /**
+     * Enqueue the given {@link Query} in the given {@link Resolver}'s lane.
+     */
+    public void schedule(Resolver resolver, Query query) {
+        Lane lane = getLane(resolver);
+        ArrayList<String> droppedQids = new ArrayList<String>();
+        synchronized (lane) {
+            enqueue(lane, query, droppedQids);
+        }
+        dispatch(lane);
+        reportDropped(lane, droppedQids);
+    }
+
+    /**
+     * Enqueue all of the given {@link Query}s in the given {@link Resolver}'s lane at once, so that
+     * they can be dispatched to the {@link Resolver} as a batch.
+     */
+    public void schedule(Resolver resolver, ArrayList<Query> queries) {
+        Lane lane = getLane(resolver);
+        ArrayList<String> droppedQids = new ArrayList<String>();
+        for (Query query : queries) {
+            boolean isFull;
+            synchronized (lane) {
+                isFull = lane.mPending.size() >= lane.mQueueDepth;
+            }
+            if (isFull) {
+                // Hand over as much as the Resolver is able to take, before anything is dropped
+                dispatch(lane);
+            }
+            synchronized (lane) {
+                enqueue(lane, query, droppedQids);
+            }
+        }
+        dispatch(lane);
+        reportDropped(lane, droppedQids);
+    }
+
+    /**
+     * Append the given {@link Query} to the given {@link Lane}'s pending {@link Query}s. If the
+     * {@link Lane} is full, its oldest pending {@link Query} is dropped and its qid is added to the
+     * given droppedQids.
+     */
+    private void enqueue(Lane lane, Query query, ArrayList<String> droppedQids) {
+        if (isInFlightOrPending(lane, query)) {
+            return;
+        }
+        if (lane.mPending.size() >= lane.mQueueDepth) {
+            droppedQids.add(lane.mPending.pollFirst().getQid());
+        }
+        lane.mPending.addLast(query);
+    }
+
+    /**
+     * Report the given dropped qids to the {@link PipeLine}, so that nobody keeps waiting for them.
+     * Must not be called while holding the given {@link Lane}'s lock.
+     */
+    private void reportDropped(Lane lane, ArrayList<String> droppedQids) {
+        if (!droppedQids.isEmpty()) {
+            Log.d(TAG, "schedule: queue of resolver " + lane.mResolver.getId()
+                    + " is full, dropped " + droppedQids.size() + " queries");
+            mPipeLine.onResolverTimedOut(lane.mResolver, droppedQids);
+        }
+    }
+
+    /**
+     * Called as soon as the given {@link Resolver} has reported back the results for the {@link
+     * Query} with the given qid. Frees up the slot, so that the next {@link Query} can be
+     * dispatched.
+     *
+     * @return false if the {@link Query} has been cancelled while the {@link Resolver} was working
+     * on it, so that its {@link Result}s should be ignored. True otherwise.
+     */
+    public boolean onResolved(Resolver resolver, String qid) {
+        boolean cancelled = false;
+        Lane lane = mLanes.get(resolver.getId());
+        if (lane != null) {
+            synchronized (lane) {
+                lane.mInFlight.remove(qid);
+                cancelled = lane.mCancelled.remove(qid);
+            }
+            dispatch(lane);
+        }
+        return !cancelled;
+    }
+
+    /**
+     * Cancel the {@link Query} with the given qid. It is being removed from every lane, so that
+     * no {@link Resolver} picks it up anymore. A {@link Resolver} which is already working on it
+     * keeps its slot until it reports back, since we can't stop it, but its {@link Result}s are
+     * being ignored.
+     */
+    public void cancel(String qid) {
+        for (Lane lane : mLanes.values()) {
+            synchronized (lane) {
+                Iterator<Query> iterator = lane.mPending.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().getQid().equals(qid)) {
+                        iterator.remove();
+                    }
+                }
+                if (lane.mInFlight.containsKey(qid)) {
+                    lane.mCancelled.add(qid);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether or not the {@link Query} with the given qid is waiting for or being worked
+     * on by any {@link Resolver}
+     */
+    public boolean isScheduled(String qid) {
+        for (Lane lane : mLanes.values()) {
+            synchronized (lane) {
+                if (lane.mInFlight.containsKey(qid) && !lane.mCancelled.contains(qid)) {
+                    return true;
+                }
+                for (Query pending : lane.mPending) {
+                    if (pending.getQid().equals(qid)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run the given {@link Runnable} on one of the worker threads. Used for work which has to
+     * happen before a {@link Query} can be scheduled, but shouldn't block the calling thread.
+     */
+    public void execute(Runnable runnable) {
+        mWorkerPool.execute(runnable);
+    }
+
+    /**
+     * @return the number of {@link Query}s which are either waiting or in flight for the given
+     * {@link Resolver}
+     */
+    public int getLoad(Resolver resolver) {
+        Lane lane = mLanes.get(resolver.getId());
+        if (lane != null) {
+            synchronized (lane) {
+                return lane.mPending.size() + lane.mInFlight.size();
+            }
+        }
+        return 0;
+    }
+
+    private boolean isInFlightOrPending(Lane lane, Query query) {
+        if (lane.mInFlight.containsKey(query.getQid())) {
+            // If it has been cancelled, we're interested in the Results again
+            lane.mCancelled.remove(query.getQid());
+            return true;
+        }
+        for (Query pending : lane.mPending) {
+            if (pending == query) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Lane getLane(Resolver resolver) {
+        Lane lane = mLanes.get(resolver.getId());
+        if (lane == null) {
+            if (resolver instanceof ScriptResolver) {
+                lane = new Lane(resolver, SCRIPTRESOLVER_QUEUE_DEPTH,
+                        SCRIPTRESOLVER_MAX_IN_FLIGHT);
+            } else {
+                lane = new Lane(resolver, DEFAULT_QUEUE_DEPTH, DEFAULT_MAX_IN_FLIGHT);
+            }
+            Lane existingLane = mLanes.putIfAbsent(resolver.getId(), lane);
+            if (existingLane != null) {
+                lane = existingLane;
+            }
+        }
+        return lane;
+    }
+
+    /**
+     * Dispatch as many pending {@link Query}s of the given {@link Lane} as its in-flight limit
+     * allows. {@link Query}s are handed over in batches of up to {@link #MAX_BATCH_SIZE}, so that a
+     * {@link Resolver} can answer all of them in a single pass.
+     */
+    private void dispatch(final Lane lane) {
+        while (true) {
+            final ArrayList<Query> batch = new ArrayList<Query>();
+            final Long dispatchTime = System.currentTimeMillis();
+            synchronized (lane) {
+                int batchSize = Math.min(MAX_BATCH_SIZE,
+                        lane.mMaxInFlight - lane.mInFlight.size());
+                while (!lane.mPending.isEmpty() && batch.size() < batchSize) {
+                    Query query = lane.mPending.pollFirst();
+                    lane.mInFlight.put(query.getQid(), dispatchTime);
+                    batch.add(query);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            ScheduledThreadPoolExecutor executor =
+                    lane.mResolver instanceof ScriptResolver ? mScriptLane : mWorkerPool;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (batch.size() == 1) {
+                        lane.mResolver.resolve(batch.get(0));
+                    } else {
+                        lane.mResolver.resolve(batch);
+                    }
+                }
+            });
+            mWorkerPool.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ArrayList<String> expiredQids = new ArrayList<String>();
+                    synchronized (lane) {
+                        for (Query query : batch) {
+                            if (dispatchTime.equals(lane.mInFlight.get(query.getQid()))) {
+                                lane.mInFlight.remove(query.getQid());
+                                if (!lane.mCancelled.remove(query.getQid())) {
+                                    expiredQids.add(query.getQid());
+                                }
+                            }
+                        }
+                    }
+                    if (!expiredQids.isEmpty()) {
+                        Log.d(TAG, "dispatch: resolver " + lane.mResolver.getId()
+                                + " timed out on " + expiredQids.size() + " queries");
+                        dispatch(lane);
+                        mPipeLine.onResolverTimedOut(lane.mResolver, expiredQids);
+                    }
+                }
+            }, getTimeout(lane.mResolver), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the time in milliseconds after which the given {@link Resolver}'s slots are being
+     * freed up again
+     */
+    private long getTimeout(Resolver resolver) {
+        if (resolver.getTimeout() > 0) {
+            return resolver.getTimeout();
+        }
+        return IN_FLIGHT_TIMEOUT;
+    }
+
+    /**
+     * Creates background priority daemon threads, so that resolving doesn't compete with the UI
+     * thread.
+     */
+    private static class ResolverThreadFactory implements ThreadFactory {
+
+        private final String mName;
+
+        private int mCount = 0;
+
+        private ResolverThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public synchronized Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + "-" + mCount++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -20,8 +20,7 @@ package org.tomahawk.libtomahawk.resolver;
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Track;
-
-import android.text.TextUtils;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 
 /**
  * This class represents a {@link Result}, which will be returned by a {@link Resolver}.
@@ -226,7 +225,7 @@ public class Result {
      */
     public void setPath(String path) {
         this.mPath = path;
-        if (path != null && !TextUtils.isEmpty(path)) {
+        if (path != null && !TomahawkUtils.isEmpty(path)) {
             isResolved = true;
         }
     }
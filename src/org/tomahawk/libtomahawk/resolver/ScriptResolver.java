@@ -251,7 +251,9 @@ public class ScriptResolver implements Resolver {
                     } else if (id == R.id.scriptresolver_add_track_results_string && obj != null) {
                         String qid = obj.get("qid").toString();
                         JSONArray resultList = obj.getJSONArray("results");
-                        mTomahawkApp.getPipeLine().reportResults(qid, parseResultList(resultList));
+                        mTomahawkApp.getPipeLine()
+                                .reportResults(qid, parseResultList(resultList),
+                                        ScriptResolver.this);
                         mStopped = true;
                     }
                 } catch (JSONException e) {
@@ -305,6 +307,61 @@ public class ScriptResolver implements Resolver {
         return mReady;
     }
 
+    /**
+     * Invoke the javascript to resolve all of the given {@link Query}s. Instead of calling into the
+     * WebView once per {@link Query}, the whole batch is passed over as a single JSON array and
+     * dispatched to the resolver's functions within one javascript call.
+     *
+     * @param queries the {@link Query}s which should be resolved
+     * @return whether or not the Resolver is ready to resolve
+     */
+    @Override
+    public boolean resolve(ArrayList<Query> queries) {
+        if (mReady) {
+            mStopped = false;
+            final JSONArray batch = new JSONArray();
+            try {
+                for (Query query : queries) {
+                    JSONObject obj = new JSONObject();
+                    obj.put("qid", query.getQid());
+                    if (query.isFullTextQuery()) {
+                        // The fullTextQuery comes escaped for the single javascript calls,
+                        // but the JSONArray takes care of that by itself
+                        obj.put("fullTextQuery", query.getFullTextQuery().replace("\\'", "'"));
+                    } else {
+                        obj.put("artist", query.getArtist().getName());
+                        obj.put("album", query.getAlbum().getName());
+                        obj.put("track", query.getName());
+                    }
+                    batch.put(obj);
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "resolve: " + e.getClass() + ": " + e.getLocalizedMessage());
+                return mReady;
+            }
+            UiThreadHandler = new Handler(Looper.getMainLooper()) {
+                @Override
+                public void handleMessage(Message inputMessage) {
+                    mScriptEngine.loadUrl(
+                            "javascript:" + RESOLVER_LEGACY_CODE2 + makeJSFunctionCallbackJava(
+                                    R.id.scriptresolver_resolve,
+                                    "(function(queries){for(var i=0;i<queries.length;i++){"
+                                            + "var q=queries[i];"
+                                            + "if(q.fullTextQuery!==undefined){"
+                                            + "(Tomahawk.resolver.instance!==undefined)"
+                                            + "?resolver.search(q.qid,q.fullTextQuery)"
+                                            + ":resolve(q.qid,'','',q.fullTextQuery);"
+                                            + "}else{"
+                                            + "resolver.resolve(q.qid,q.artist,q.album,q.track);"
+                                            + "}}})(" + batch.toString() + ")", false));
+                }
+            };
+            Message message = UiThreadHandler.obtainMessage();
+            message.sendToTarget();
+        }
+        return mReady;
+    }
+
     /**
      * Parses the given {@link JSONArray} into a {@link ArrayList} of {@link Result}s.
      *
@@ -442,4 +499,12 @@ public class ScriptResolver implements Resolver {
         return mWeight;
     }
 
+    /**
+     * @return the timeout given in this {@link ScriptResolver}'s settings in milliseconds. 0 as
+     * long as the settings haven't been loaded.
+     */
+    @Override
+    public int getTimeout() {
+        return mTimeout;
+    }
 }
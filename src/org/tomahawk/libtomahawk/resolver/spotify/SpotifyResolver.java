@@ -17,6 +17,7 @@
  */
 package org.tomahawk.libtomahawk.resolver.spotify;
 
+import org.tomahawk.libtomahawk.resolver.AbstractResolver;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.resolver.Resolver;
 import org.tomahawk.libtomahawk.resolver.Result;
@@ -32,7 +33,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * A {@link Resolver} which resolves {@link org.tomahawk.libtomahawk.collection.Track}s via
  * libspotify
  */
-public class SpotifyResolver implements Resolver {
+public class SpotifyResolver extends AbstractResolver {
 
     private final static String TAG = SpotifyResolver.class.getName();
 
@@ -137,7 +138,7 @@ public class SpotifyResolver implements Resolver {
     public void onResolved(String qid) {
         mStopped = true;
         // report our results to the pipeline
-        mTomahawkApp.getPipeLine().reportResults(qid, mResults.get(qid));
+        mTomahawkApp.getPipeLine().reportResults(qid, mResults.get(qid), this);
     }
 
     /**
@@ -154,4 +155,13 @@ public class SpotifyResolver implements Resolver {
     public void setAuthenticated(boolean authenticated) {
         mAuthenticated = authenticated;
     }
+
+    /**
+     * @return always 0, so that the default timeout of the {@link
+     * org.tomahawk.libtomahawk.resolver.ResolverScheduler} applies
+     */
+    @Override
+    public int getTimeout() {
+        return 0;
+    }
 }
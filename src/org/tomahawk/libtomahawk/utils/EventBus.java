@@ -0,0 +1,158 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A simple in-process publish/subscribe bus for events of type E. Every event is posted under a
+ * key, e.g. a {@link org.tomahawk.libtomahawk.resolver.Query}'s qid, and is delivered to the
+ * {@link Subscriber}s of that key as well as to the {@link Subscriber}s of every key.
+ * <p/>
+ * Events are delivered on the main thread, just like broadcasts used to be. Posting doesn't block:
+ * if several events are posted under the same key before they could be delivered, they are being
+ * coalesced and only the latest one is delivered.
+ */
+public class EventBus<E> {
+
+    /**
+     * Receives the events of an {@link EventBus}
+     */
+    public interface Subscriber<E> {
+
+        /**
+         * Called on the main thread with the latest event, which has been posted under the given
+         * key
+         */
+        public void onEvent(String key, E event);
+    }
+
+    private final CopyOnWriteArrayList<Subscriber<E>> mSubscribers
+            = new CopyOnWriteArrayList<Subscriber<E>>();
+
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Subscriber<E>>> mKeySubscribers
+            = new ConcurrentHashMap<String, CopyOnWriteArrayList<Subscriber<E>>>();
+
+    // The latest event of every key, which is waiting to be delivered
+    private final ConcurrentHashMap<String, E> mPendingEvents = new ConcurrentHashMap<String, E>();
+
+    // The keys of all pending events, in the order they have been posted
+    private final ConcurrentLinkedQueue<String> mPendingKeys = new ConcurrentLinkedQueue<String>();
+
+    private final AtomicBoolean mDeliveryScheduled = new AtomicBoolean(false);
+
+    private volatile Handler mHandler;
+
+    private final Runnable mDeliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDeliveryScheduled.set(false);
+            String key;
+            while ((key = mPendingKeys.poll()) != null) {
+                E event = mPendingEvents.remove(key);
+                if (event != null) {
+                    deliver(key, event);
+                }
+            }
+        }
+    };
+
+    /**
+     * Subscribe the given {@link Subscriber} to the events of every key
+     */
+    public void subscribe(Subscriber<E> subscriber) {
+        mSubscribers.addIfAbsent(subscriber);
+    }
+
+    /**
+     * Subscribe the given {@link Subscriber} to the events of the given key only
+     */
+    public void subscribe(String key, Subscriber<E> subscriber) {
+        CopyOnWriteArrayList<Subscriber<E>> subscribers = mKeySubscribers.get(key);
+        if (subscribers == null) {
+            subscribers = new CopyOnWriteArrayList<Subscriber<E>>();
+            CopyOnWriteArrayList<Subscriber<E>> existingSubscribers =
+                    mKeySubscribers.putIfAbsent(key, subscribers);
+            if (existingSubscribers != null) {
+                subscribers = existingSubscribers;
+            }
+        }
+        subscribers.addIfAbsent(subscriber);
+    }
+
+    /**
+     * Unsubscribe the given {@link Subscriber} from the events of the given key
+     */
+    public void unsubscribe(String key, Subscriber<E> subscriber) {
+        CopyOnWriteArrayList<Subscriber<E>> subscribers = mKeySubscribers.get(key);
+        if (subscribers != null) {
+            subscribers.remove(subscriber);
+            if (subscribers.isEmpty()) {
+                mKeySubscribers.remove(key, subscribers);
+            }
+        }
+    }
+
+    /**
+     * Unsubscribe the given {@link Subscriber} from everything it has subscribed to
+     */
+    public void unsubscribe(Subscriber<E> subscriber) {
+        mSubscribers.remove(subscriber);
+        for (String key : mKeySubscribers.keySet()) {
+            unsubscribe(key, subscriber);
+        }
+    }
+
+    /**
+     * Post the given event under the given key. Can be called from any thread.
+     */
+    public void post(String key, E event) {
+        if (mPendingEvents.put(key, event) == null) {
+            mPendingKeys.add(key);
+        }
+        if (mDeliveryScheduled.compareAndSet(false, true)) {
+            getHandler().post(mDeliverRunnable);
+        }
+    }
+
+    private void deliver(String key, E event) {
+        for (Subscriber<E> subscriber : mSubscribers) {
+            subscriber.onEvent(key, event);
+        }
+        CopyOnWriteArrayList<Subscriber<E>> subscribers = mKeySubscribers.get(key);
+        if (subscribers != null) {
+            for (Subscriber<E> subscriber : subscribers) {
+                subscriber.onEvent(key, event);
+            }
+        }
+    }
+
+    private Handler getHandler() {
+        // Created lazily, so that an EventBus can be constructed without a running main Looper
+        if (mHandler == null) {
+            mHandler = new Handler(Looper.getMainLooper());
+        }
+        return mHandler;
+    }
+}
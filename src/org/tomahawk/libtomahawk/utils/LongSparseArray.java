@@ -0,0 +1,107 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import java.util.Arrays;
+
+/**
+ * Maps primitive long keys to objects, without boxing every key into a {@link Long} and without an
+ * entry object per mapping. Keys are kept in a sorted array and looked up via binary search, so
+ * this is only meant for maps which are filled once and read often, like the ones built up while
+ * scanning a database table. Adding keys in ascending order is especially cheap.
+ * <p/>
+ * Equivalent to android.util.LongSparseArray, which isn't available before API level 16.
+ */
+public class LongSparseArray<E> {
+
+    private long[] mKeys;
+
+    private Object[] mValues;
+
+    private int mSize;
+
+    public LongSparseArray() {
+        this(16);
+    }
+
+    public LongSparseArray(int initialCapacity) {
+        initialCapacity = Math.max(1, initialCapacity);
+        mKeys = new long[initialCapacity];
+        mValues = new Object[initialCapacity];
+        mSize = 0;
+    }
+
+    /**
+     * @return the object mapped to the given key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long key) {
+        int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (i < 0) {
+            return null;
+        }
+        return (E) mValues[i];
+    }
+
+    /**
+     * Map the given key to the given object, replacing the previous mapping if there was one
+     */
+    public void put(long key, E value) {
+        if (mSize > 0 && key > mKeys[mSize - 1]) {
+            // Fast path for keys which are being added in ascending order
+            insert(mSize, key, value);
+            return;
+        }
+        int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (i >= 0) {
+            mValues[i] = value;
+        } else {
+            insert(~i, key, value);
+        }
+    }
+
+    /**
+     * @return the number of mappings
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Remove every mapping
+     */
+    public void clear() {
+        Arrays.fill(mValues, 0, mSize, null);
+        mSize = 0;
+    }
+
+    private void insert(int index, long key, E value) {
+        if (mSize == mKeys.length) {
+            int capacity = mKeys.length * 2;
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+        }
+        if (index < mSize) {
+            System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+            System.arraycopy(mValues, index, mValues, index + 1, mSize - index);
+        }
+        mKeys[index] = key;
+        mValues[index] = value;
+        mSize++;
+    }
+}
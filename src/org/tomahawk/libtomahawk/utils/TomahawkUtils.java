@@ -35,6 +35,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -43,6 +44,36 @@ public class TomahawkUtils {
 
     public static String TAG = TomahawkUtils.class.getName();
 
+    private static final AtomicLong sSessionIdCounter = new AtomicLong();
+
+    private static final ThreadLocal<int[][]> sLevenshteinRows = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[][]{new int[64], new int[64]};
+        }
+    };
+
+    /**
+     * @return an id, which is unique within this session
+     */
+    public static long getSessionUniqueId() {
+        return sSessionIdCounter.getAndIncrement();
+    }
+
+    public static String getSessionUniqueStringId() {
+        return String.valueOf(getSessionUniqueId());
+    }
+
+    /**
+     * Same as {@link TextUtils#isEmpty(CharSequence)}. Used by the resolving code, so that it
+     * doesn't depend on the Android framework and can be benchmarked on a plain JVM.
+     *
+     * @return true if the given {@link CharSequence} is null or of zero length
+     */
+    public static boolean isEmpty(CharSequence charSequence) {
+        return charSequence == null || charSequence.length() == 0;
+    }
+
     /**
      * Author: Chas Emerick (source: http://mrfoo.de/archiv/1176-Levenshtein-Distance-in-Java.html)
      *
@@ -55,44 +86,71 @@ public class TomahawkUtils {
         if (s == null || t == null) {
             throw new IllegalArgumentException("Strings must not be null");
         }
-        if (TextUtils.isEmpty(s)) {
-            return t.length();
-        } else if (TextUtils.isEmpty(t)) {
-            return s.length();
+        return getLevenshteinDistance(s, t, Math.max(s.length(), t.length()));
+    }
+
+    /**
+     * Bounded version of the LevenshteinDistance algorithm. Only the diagonal band of width
+     * 2*maxDistance+1 is being computed (Ukkonen's cutoff), and the computation stops as soon as
+     * every cell of a row exceeds maxDistance. The rows are kept in thread-local buffers, so that
+     * no arrays have to be allocated per call.
+     *
+     * @return the minimum number of single-character edits required to change one of the given
+     * strings into the other, if it doesn't exceed maxDistance. Otherwise maxDistance+1.
+     */
+    public static int getLevenshteinDistance(String s, String t, int maxDistance) {
+        if (s == null || t == null) {
+            throw new IllegalArgumentException("Strings must not be null");
         }
         int n = s.length(); // length of s
         int m = t.length(); // length of t
+        // the distance can never be larger than the longer string's length
+        int k = Math.max(0, Math.min(maxDistance, Math.max(n, m)));
 
         if (n == 0) {
-            return m;
+            return Math.min(m, k + 1);
         } else if (m == 0) {
-            return n;
+            return Math.min(n, k + 1);
+        } else if (Math.abs(n - m) > k) {
+            return k + 1;
         }
 
-        int p[] = new int[n + 1]; //'previous' cost array, horizontally
-        int d[] = new int[n + 1]; // cost array, horizontally
+        int[][] rows = sLevenshteinRows.get();
+        if (rows[0].length < n + 1) {
+            rows[0] = new int[n + 1];
+            rows[1] = new int[n + 1];
+        }
+        int p[] = rows[0]; //'previous' cost array, horizontally
+        int d[] = rows[1]; // cost array, horizontally
         int _d[]; //placeholder to assist in swapping p and d
+        int outOfBand = k + 1; // every cell outside of the band exceeds maxDistance anyway
 
-        // indexes into strings s and t
-        int i; // iterates through s
-        int j; // iterates through t
-
-        char t_j; // jth character of t
-
-        int cost; // cost
-
-        for (i = 0; i <= n; i++) {
-            p[i] = i;
+        for (int i = 0; i <= n; i++) {
+            p[i] = i <= k ? i : outOfBand;
         }
 
-        for (j = 1; j <= m; j++) {
-            t_j = t.charAt(j - 1);
-            d[0] = j;
-
-            for (i = 1; i <= n; i++) {
-                cost = s.charAt(i - 1) == t_j ? 0 : 1;
+        for (int j = 1; j <= m; j++) {
+            char t_j = t.charAt(j - 1); // jth character of t
+            int from = Math.max(1, j - k);
+            int to = Math.min(n, j + k);
+            d[0] = j <= k ? j : outOfBand;
+            if (from > 1) {
+                d[from - 1] = outOfBand;
+            }
+            int rowMin = d[0];
+            for (int i = from; i <= to; i++) {
+                int cost = s.charAt(i - 1) == t_j ? 0 : 1;
                 // minimum of cell to the left+1, to the top+1, diagonally left and up +cost
-                d[i] = Math.min(Math.min(d[i - 1] + 1, p[i] + 1), p[i - 1] + cost);
+                int value = Math.min(Math.min(d[i - 1] + 1, p[i] + 1), p[i - 1] + cost);
+                d[i] = Math.min(value, outOfBand);
+                rowMin = Math.min(rowMin, d[i]);
+            }
+            if (to < n) {
+                d[to + 1] = outOfBand;
+            }
+            if (rowMin > k) {
+                // the distance can only grow from here on
+                return outOfBand;
             }
 
             // copy current distance counts to 'previous row' distance counts
@@ -158,20 +216,25 @@ public class TomahawkUtils {
         return intent;
     }
 
-    private static String getCacheKey(String... strings) {
-        String result = "";
+    /**
+     * @return the normalized cache key made up of the given names
+     */
+    public static String getCacheKey(String... strings) {
+        StringBuilder result = new StringBuilder();
         for (String s : strings) {
-            result += "\t\t" + s.toLowerCase();
+            result.append("\t\t").append(s.toLowerCase());
         }
-        return result;
+        return result.toString();
     }
 
     public static String getCacheKey(TomahawkBaseAdapter.TomahawkListItem tomahawkListItem) {
         if (tomahawkListItem instanceof Artist) {
-            return getCacheKey(tomahawkListItem.getName());
+            return ((Artist) tomahawkListItem).getCacheKey();
         } else if (tomahawkListItem instanceof Album) {
-            return getCacheKey(tomahawkListItem.getName(), tomahawkListItem.getArtist().getName());
-        } else if (tomahawkListItem instanceof Track || tomahawkListItem instanceof Query) {
+            return ((Album) tomahawkListItem).getCacheKey();
+        } else if (tomahawkListItem instanceof Track) {
+            return ((Track) tomahawkListItem).getCacheKey();
+        } else if (tomahawkListItem instanceof Query) {
             return getCacheKey(tomahawkListItem.getName(), tomahawkListItem.getAlbum().getName(),
                     tomahawkListItem.getArtist().getName());
         }
@@ -20,17 +20,25 @@ package org.tomahawk.tomahawk_android;
 
 import org.acra.ReportingInteractionMode;
 import org.acra.annotation.ReportsCrashes;
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Collection;
+import org.tomahawk.libtomahawk.collection.CollectionDelta;
 import org.tomahawk.libtomahawk.collection.Source;
 import org.tomahawk.libtomahawk.collection.SourceList;
+import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserCollection;
+import org.tomahawk.libtomahawk.database.ResultCacheDataSource;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.hatchet.InfoSystem;
 import org.tomahawk.libtomahawk.resolver.DataBaseResolver;
 import org.tomahawk.libtomahawk.resolver.PipeLine;
+import org.tomahawk.libtomahawk.resolver.ResolverScheduler;
 import org.tomahawk.libtomahawk.resolver.ScriptResolver;
 import org.tomahawk.libtomahawk.resolver.spotify.LibSpotifyWrapper;
 import org.tomahawk.libtomahawk.resolver.spotify.SpotifyResolver;
+import org.tomahawk.libtomahawk.utils.EventBus;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.utils.TomahawkExceptionReporter;
 
 import android.accounts.AccountManager;
@@ -88,7 +96,15 @@ public class TomahawkApp extends Application {
 
     private UserPlaylistsDataSource mUserPlaylistsDataSource;
 
-    private static long mSessionIdCounter = 0;
+    private ResultCacheDataSource mResultCacheDataSource;
+
+    private final EventBus.Subscriber<CollectionDelta> mCollectionDeltaSubscriber =
+            new EventBus.Subscriber<CollectionDelta>() {
+                @Override
+                public void onEvent(String key, CollectionDelta delta) {
+                    mPipeLine.onCollectionChanged(delta);
+                }
+            };
 
     /**
      * Handles incoming {@link Collection} updated broadcasts.
@@ -133,7 +149,13 @@ public class TomahawkApp extends Application {
             mCollectionUpdatedReceiver = new CollectionUpdateReceiver();
             registerReceiver(mCollectionUpdatedReceiver, sCollectionUpdateIntentFilter);
         }
-        mPipeLine.addResolver(new DataBaseResolver(RESOLVER_ID_USERCOLLECTION, this));
+        DataBaseResolver dataBaseResolver = new DataBaseResolver(RESOLVER_ID_USERCOLLECTION, this);
+        mPipeLine.addResolver(dataBaseResolver);
+        // Resolving via our local database is cpu-bound, so we don't want it to occupy every
+        // worker thread of the ResolverScheduler. Since it answers a whole batch in a single pass
+        // over the collection, two full batches are allowed to be in flight at the same time.
+        mPipeLine.getResolverScheduler().setLimits(dataBaseResolver,
+                ResolverScheduler.DEFAULT_QUEUE_DEPTH, 2 * ResolverScheduler.MAX_BATCH_SIZE);
         ScriptResolver scriptResolver = new ScriptResolver(RESOLVER_ID_JAMENDO, this,
                 "js/jamendo/jamendo-resolver.js");
         mPipeLine.addResolver(scriptResolver);
@@ -154,6 +176,12 @@ public class TomahawkApp extends Application {
         mUserPlaylistsDataSource = new UserPlaylistsDataSource(this);
         mUserPlaylistsDataSource.open();
 
+        // Initialize ResultCacheDataSource, so that we don't have to resolve the same Querys with
+        // every app start
+        mResultCacheDataSource = new ResultCacheDataSource(this);
+        mResultCacheDataSource.open();
+        mPipeLine.setResultCache(mResultCacheDataSource);
+
         initialize();
     }
 
@@ -161,6 +189,11 @@ public class TomahawkApp extends Application {
     public void onLowMemory() {
         LibSpotifyWrapper.pause();
         LibSpotifyWrapper.destroy();
+        Log.d(TAG, "onLowMemory: cached artists: " + Artist.getCachedCount() + " (evicted: "
+                + Artist.getEvictedCount() + "), albums: " + Album.getCachedCount()
+                + " (evicted: " + Album.getEvictedCount() + "), tracks: " + Track.getCachedCount()
+                + " (evicted: " + Track.getEvictedCount() + "), queries: "
+                + mPipeLine.getQueryCount());
     }
 
     /**
@@ -183,7 +216,9 @@ public class TomahawkApp extends Application {
      */
     public void initLocalCollection() {
         Log.d(TAG, "Initializing Local Collection.");
-        Source src = new Source(new UserCollection(this), 0, "My Collection");
+        UserCollection userCollection = new UserCollection(this);
+        userCollection.getDeltaEventBus().subscribe(mCollectionDeltaSubscriber);
+        Source src = new Source(userCollection, 0, "My Collection");
         mSourceList.setLocalSource(src);
     }
 
@@ -215,6 +250,10 @@ public class TomahawkApp extends Application {
         return mUserPlaylistsDataSource;
     }
 
+    public ResultCacheDataSource getResultCacheDataSource() {
+        return mResultCacheDataSource;
+    }
+
     /**
      * Returns the context for the application
      */
@@ -223,11 +262,11 @@ public class TomahawkApp extends Application {
     }
 
     public static long getSessionUniqueId() {
-        return mSessionIdCounter++;
+        return TomahawkUtils.getSessionUniqueId();
     }
 
     public static String getSessionUniqueStringId() {
-        return String.valueOf(getSessionUniqueId());
+        return TomahawkUtils.getSessionUniqueStringId();
     }
 
     public static long getLifetimeUniqueId() {
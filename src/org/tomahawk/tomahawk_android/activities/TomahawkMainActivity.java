@@ -22,12 +22,14 @@ import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Collection;
 import org.tomahawk.libtomahawk.collection.CollectionLoader;
+import org.tomahawk.libtomahawk.collection.ScanProgress;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
 import org.tomahawk.libtomahawk.collection.SourceList;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.hatchet.InfoSystem;
 import org.tomahawk.libtomahawk.resolver.PipeLine;
+import org.tomahawk.libtomahawk.utils.EventBus;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.adapters.TomahawkMenuAdapter;
@@ -158,16 +160,21 @@ public class TomahawkMainActivity extends ActionBarActivity
 
     private Drawable mProgressDrawable;
 
+    // Whether or not the UserCollection is being loaded right now
+    private boolean mIsScanningCollection = false;
+
     private static final int MSG_UPDATE_ANIMATION = 0x20;
 
     // Used to display an animated progress drawable, as long as the PipeLine is resolving something
+    // or the UserCollection is being loaded
     private Handler mAnimationHandler = new Handler(new Handler.Callback() {
         @Override
         public boolean handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_UPDATE_ANIMATION:
                     if ((mPipeLine != null && mPipeLine.isResolving()) ||
-                            (mPlaybackService != null && mPlaybackService.isPreparing())) {
+                            (mPlaybackService != null && mPlaybackService.isPreparing()) ||
+                            mIsScanningCollection) {
                         mProgressDrawable.setLevel(mProgressDrawable.getLevel() + 500);
                         getSupportActionBar().setLogo(mProgressDrawable);
                         mAnimationHandler.removeMessages(MSG_UPDATE_ANIMATION);
@@ -181,6 +188,22 @@ public class TomahawkMainActivity extends ActionBarActivity
         }
     });
 
+    /**
+     * Only shows the progress of loading the {@link UserCollection}. The loaded tracks are being
+     * shown as soon as the {@link Collection#COLLECTION_UPDATED} broadcast at the end of the scan
+     * arrives, so that the fragments don't have to reload their whole content every time.
+     */
+    private final EventBus.Subscriber<ScanProgress> mScanProgressSubscriber =
+            new EventBus.Subscriber<ScanProgress>() {
+                @Override
+                public void onEvent(String key, ScanProgress scanProgress) {
+                    mIsScanningCollection = !scanProgress.isDone();
+                    if (mIsScanningCollection) {
+                        startLoadingAnimation();
+                    }
+                }
+            };
+
     /**
      * Handles incoming broadcasts.
      */
@@ -406,6 +429,7 @@ public class TomahawkMainActivity extends ActionBarActivity
         SourceList sl = ((TomahawkApp) getApplication()).getSourceList();
         mUserCollection = (UserCollection) sl
                 .getCollectionFromId(sl.getLocalSource().getCollection().getId());
+        mUserCollection.getScanProgressEventBus().subscribe(mScanProgressSubscriber);
         if (mPlaybackService != null) {
             setNowPlayingInfo();
         }
@@ -446,6 +470,9 @@ public class TomahawkMainActivity extends ActionBarActivity
             unregisterReceiver(mTomahawkMainReceiver);
             mTomahawkMainReceiver = null;
         }
+        if (mUserCollection != null) {
+            mUserCollection.getScanProgressEventBus().unsubscribe(mScanProgressSubscriber);
+        }
     }
 
     @Override
@@ -19,6 +19,7 @@ package org.tomahawk.tomahawk_android.adapters;
 
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.SectionIndex;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
 import org.tomahawk.libtomahawk.resolver.Query;
@@ -32,16 +33,21 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
 import java.util.List;
+import java.util.Set;
 
 import se.emilsjolander.stickylistheaders.StickyListHeadersAdapter;
+import se.emilsjolander.stickylistheaders.StickyListHeadersListView;
+import se.emilsjolander.stickylistheaders.WrapperView;
 
 /**
  * This class is used to populate a {@link org.tomahawk.tomahawk_android.views.TomahawkStickyListHeadersListView}.
  */
-public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyListHeadersAdapter {
+public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyListHeadersAdapter,
+        SectionIndexer {
 
     private LayoutInflater mLayoutInflater;
 
@@ -69,6 +75,10 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
 
     private boolean mShowAddButton = false;
 
+    private SectionIndex mSectionIndex;
+
+    private String[] mSections = new String[0];
+
     /**
      * Constructs a new {@link TomahawkListAdapter}.
      *
@@ -92,6 +102,23 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
         mDoubleLineListItemResourceHolder.textViewId3 = R.id.double_line_list_textview3;
     }
 
+    /**
+     * Show a header above each alphabetical section of the first list, instead of the category
+     * headers. The given {@link SectionIndex} is also being used for fast scrolling, so that
+     * neither needs to look at the items themselves. It is ignored while the list is filtered.
+     *
+     * @param sectionIndex the {@link SectionIndex} of the first list, or null to disable the
+     *                     section headers again
+     */
+    public void setSectionIndex(SectionIndex sectionIndex) {
+        mCategoryHeaderResourceHolder = new ResourceHolder();
+        mCategoryHeaderResourceHolder.resourceId = R.layout.single_line_list_header;
+        mCategoryHeaderResourceHolder.imageViewId = R.id.single_line_list_header_icon_imageview;
+        mCategoryHeaderResourceHolder.textViewId1 = R.id.single_line_list_header_textview;
+        mSectionIndex = sectionIndex;
+        mSections = sectionIndex != null ? sectionIndex.getLabels() : new String[0];
+    }
+
     /**
      * Set whether or not a header should be shown above each "category". Like "Albums", "Tracks"
      * etc.
@@ -362,6 +389,30 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
         return view;
     }
 
+    /**
+     * Update every visible row of the given list, which shows one of the {@link Query}s with the
+     * given qids, e.g. after new results have been reported for them. In contrast to
+     * notifyDataSetChanged(), all other rows are left untouched and the list doesn't have to be
+     * laid out again.
+     */
+    public void updateQueryRows(StickyListHeadersListView list, Set<String> qids) {
+        // The list's positions include its header views, our positions don't
+        int firstPosition = list.getFirstVisiblePosition() - list.getHeaderViewsCount();
+        for (int i = 0; i < list.getListChildCount(); i++) {
+            int position = firstPosition + i;
+            if (position < 0 || position >= getCount()) {
+                continue;
+            }
+            Object item = getItem(position);
+            View child = list.getListChildAt(i);
+            if (item instanceof Query && qids.contains(((Query) item).getQid())
+                    && child instanceof WrapperView) {
+                // Every row is wrapped, so that it can show a sticky header above it
+                getView(position, ((WrapperView) child).getItem(), list.getWrappedList());
+            }
+        }
+    }
+
     /**
      * @return the count of every item to display
      */
@@ -415,7 +466,7 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
      */
     @Override
     public View getHeaderView(int position, View convertView, ViewGroup parent) {
-        if (mShowPlaylistHeader || mShowCategoryHeaders) {
+        if (mShowPlaylistHeader || mShowCategoryHeaders || isSectioned()) {
             ViewHolder viewHolder;
             if (convertView == null) {
                 convertView = mLayoutInflater
@@ -429,7 +480,15 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
                 convertView.setTag(viewHolder);
             }
             viewHolder = (ViewHolder) convertView.getTag();
-            if (mShowCategoryHeaders && getItem(position) != null) {
+            if (isSectioned()) {
+                if (viewHolder.imageViewLeft != null) {
+                    viewHolder.imageViewLeft.setVisibility(ImageView.GONE);
+                }
+                int section = getSectionForPosition(position);
+                viewHolder.textFirstLine.setText(
+                        section < mSections.length ? mSections[section] : "");
+            } else if (mShowCategoryHeaders && getItem(position) != null) {
+                viewHolder.imageViewLeft.setVisibility(ImageView.VISIBLE);
                 if (getItem(position) instanceof Track || getItem(position) instanceof Query) {
                     viewHolder.imageViewLeft.setImageResource(R.drawable.ic_action_track);
                     viewHolder.textFirstLine.setText(R.string.tracksfragment_title_string);
@@ -465,6 +524,9 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
      */
     @Override
     public long getHeaderId(int position) {
+        if (isSectioned()) {
+            return getSectionForPosition(position);
+        }
         long result = 0;
         int sizeSum = 0;
         if (mShowContentHeader) {
@@ -481,6 +543,49 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
         return result;
     }
 
+    /**
+     * @return the labels of all alphabetical sections, empty if there is no {@link SectionIndex}
+     */
+    @Override
+    public Object[] getSections() {
+        return isSectioned() ? mSections : new String[0];
+    }
+
+    /**
+     * @return the position of the first item in the given section
+     */
+    @Override
+    public int getPositionForSection(int section) {
+        if (isSectioned()) {
+            return mSectionIndex.getSectionStart(section) + getContentHeaderCount();
+        }
+        return 0;
+    }
+
+    /**
+     * @return the section the given position belongs to
+     */
+    @Override
+    public int getSectionForPosition(int position) {
+        if (isSectioned()) {
+            return Math.max(0,
+                    mSectionIndex.getSectionForPosition(position - getContentHeaderCount()));
+        }
+        return 0;
+    }
+
+    /**
+     * @return whether or not the headers and fast scroll sections are taken from the {@link
+     * SectionIndex}. A filtered list doesn't match it anymore.
+     */
+    private boolean isSectioned() {
+        return mSectionIndex != null && !mFiltered;
+    }
+
+    private int getContentHeaderCount() {
+        return mShowContentHeader ? 1 : 0;
+    }
+
     /**
      * @return the {@link TomahawkListItem} shown in the content header
      */
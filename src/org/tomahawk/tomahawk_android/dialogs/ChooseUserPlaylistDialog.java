@@ -19,6 +19,7 @@ package org.tomahawk.tomahawk_android.dialogs;
 
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
+import org.tomahawk.libtomahawk.database.DatabaseExecutor;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.R;
@@ -75,10 +76,16 @@ public class ChooseUserPlaylistDialog extends DialogFragment {
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
                 UserPlaylistsDataSource userPlaylistsDataSource = ((TomahawkApp) getActivity()
                         .getApplication()).getUserPlaylistsDataSource();
-                userPlaylistsDataSource.addQueriesToUserPlaylist(
-                        mUserCollection.getLocalUserPlaylists().get(position).getId(), mQueries);
-                ((UserCollection) ((TomahawkApp) getActivity().getApplication()).getSourceList()
-                        .getCollectionFromId(UserCollection.Id)).updateUserPlaylists();
+                final UserCollection userCollection = (UserCollection) ((TomahawkApp) getActivity()
+                        .getApplication()).getSourceList().getCollectionFromId(UserCollection.Id);
+                userPlaylistsDataSource.addQueriesToUserPlaylistAsync(
+                        mUserCollection.getLocalUserPlaylists().get(position).getId(), mQueries,
+                        new DatabaseExecutor.Callback<Void>() {
+                            @Override
+                            public void onResult(Void result) {
+                                userCollection.updateUserPlaylists();
+                            }
+                        });
                 getDialog().dismiss();
             }
         });
@@ -20,6 +20,7 @@ package org.tomahawk.tomahawk_android.dialogs;
 import org.tomahawk.libtomahawk.collection.Playlist;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
+import org.tomahawk.libtomahawk.database.DatabaseExecutor;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.R;
@@ -138,19 +139,25 @@ public class CreateUserPlaylistDialog extends DialogFragment {
                 R.string.playbackplaylistfragment_title_string) : editText.getText().toString();
         UserPlaylistsDataSource userPlaylistsDataSource = ((TomahawkApp) getActivity()
                 .getApplication()).getUserPlaylistsDataSource();
+        final UserCollection userCollection = (UserCollection) ((TomahawkApp) getActivity()
+                .getApplication()).getSourceList().getCollectionFromId(UserCollection.Id);
+        DatabaseExecutor.Callback<String> callback = new DatabaseExecutor.Callback<String>() {
+            @Override
+            public void onResult(String playlistId) {
+                userCollection.updateUserPlaylists();
+            }
+        };
         if (mPlaylist != null) {
             userPlaylistsDataSource
-                    .storeUserPlaylist(UserPlaylist
+                    .storeUserPlaylistAsync(UserPlaylist
                             .fromQueryList(TomahawkApp.getLifetimeUniqueStringId(),
-                                    playlistName, mPlaylist.getQueries()));
+                                    playlistName, mPlaylist.getQueries()), callback);
         } else {
-            userPlaylistsDataSource.storeUserPlaylist(
+            userPlaylistsDataSource.storeUserPlaylistAsync(
                     UserPlaylist
                             .fromQueryList(TomahawkApp.getLifetimeUniqueStringId(), playlistName,
-                                    new ArrayList<Query>()));
+                                    new ArrayList<Query>()), callback);
         }
-        ((UserCollection) ((TomahawkApp) getActivity().getApplication()).getSourceList()
-                .getCollectionFromId(UserCollection.Id)).updateUserPlaylists();
     }
 
     /**
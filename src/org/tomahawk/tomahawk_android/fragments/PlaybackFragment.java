@@ -46,6 +46,7 @@ import android.widget.FrameLayout;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import se.emilsjolander.stickylistheaders.StickyListHeadersListView;
 
@@ -382,9 +383,7 @@ public class PlaybackFragment extends TomahawkFragment
     }
 
     @Override
-    protected void onPipeLineResultsReported(String qId) {
-        if (mCorrespondingQueryIds.contains(qId)) {
-            onPlaylistChanged();
-        }
+    protected void onPipeLineResultsReported(Set<String> qIds) {
+        updateQueryRows(qIds);
     }
 }
@@ -49,6 +49,7 @@ import android.widget.TextView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * {@link TomahawkFragment} which offers both local and non-local search functionality to the user.
@@ -70,6 +71,9 @@ public class SearchableFragment extends TomahawkFragment
 
     private String mCurrentQueryString;
 
+    // The PipeLine only references its Querys weakly, so we hold on to the one we're showing
+    private Query mCurrentQuery;
+
     private EditText mSearchEditText = null;
 
     /**
@@ -217,6 +221,9 @@ public class SearchableFragment extends TomahawkFragment
      */
     public void showQueryResults(String qid) {
         Query query = mPipeline.getQuery(qid);
+        if (query == null) {
+            return;
+        }
         mCurrentQueryString = query.getFullTextQuery();
         List<List<TomahawkBaseAdapter.TomahawkListItem>> listArray
                 = new ArrayList<List<TomahawkBaseAdapter.TomahawkListItem>>();
@@ -283,9 +290,10 @@ public class SearchableFragment extends TomahawkFragment
         CheckBox onlineSourcesCheckBox = (CheckBox) mTomahawkMainActivity
                 .findViewById(R.id.search_onlinesources_checkbox);
         String queryId = mPipeline.resolve(fullTextQuery, !onlineSourcesCheckBox.isChecked());
-        mCorrespondingQueryIds.clear();
+        clearCorrespondingQueryIds();
+        mCurrentQuery = queryId != null ? mPipeline.getQuery(queryId) : null;
         if (queryId != null) {
-            mCorrespondingQueryIds.add(queryId);
+            addCorrespondingQueryId(queryId);
             mTomahawkMainActivity.startLoadingAnimation();
         }
     }
@@ -332,12 +340,14 @@ public class SearchableFragment extends TomahawkFragment
     }
 
     @Override
-    protected void onPipeLineResultsReported(String qId) {
-        if (mCorrespondingQueryIds.contains(qId)) {
-            mTomahawkMainActivity.getContentViewer()
-                    .getBackStackAtPosition(mCorrespondingHubId)
-                    .get(0).queryString = mCurrentQueryString;
-            showQueryResults(qId);
+    protected void onPipeLineResultsReported(Set<String> qIds) {
+        for (String qId : qIds) {
+            if (mCorrespondingQueryIds.contains(qId)) {
+                mTomahawkMainActivity.getContentViewer()
+                        .getBackStackAtPosition(mCorrespondingHubId)
+                        .get(0).queryString = mCurrentQueryString;
+                showQueryResults(qId);
+            }
         }
     }
 }
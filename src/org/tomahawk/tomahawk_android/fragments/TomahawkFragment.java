@@ -21,15 +21,18 @@ package org.tomahawk.tomahawk_android.fragments;
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Collection;
+import org.tomahawk.libtomahawk.collection.CollectionDelta;
 import org.tomahawk.libtomahawk.collection.CollectionLoader;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
+import org.tomahawk.libtomahawk.database.DatabaseExecutor;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.hatchet.ArtistInfo;
 import org.tomahawk.libtomahawk.hatchet.InfoRequestData;
 import org.tomahawk.libtomahawk.hatchet.InfoSystem;
 import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.utils.EventBus;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
@@ -48,6 +51,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.Loader;
 import android.text.TextUtils;
@@ -60,6 +64,8 @@ import android.widget.GridView;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The base class for {@link AlbumsFragment}, {@link TracksFragment}, {@link ArtistsFragment},
@@ -88,6 +94,12 @@ public class TomahawkFragment extends TomahawkListFragment
     public static final String TOMAHAWK_LIST_ITEM_IS_LOCAL
             = "org.tomahawk.tomahawk_list_item_is_local";
 
+    // Results reports are collected and handed over at most once per this many milliseconds
+    private static final long RESULTS_FRAME_INTERVAL = 100L;
+
+    // Collection deltas are collected and cause at most one reload per this many milliseconds
+    private static final long COLLECTION_FRAME_INTERVAL = 500L;
+
     protected TomahawkApp mTomahawkApp;
 
     private TomahawkFragmentReceiver mTomahawkFragmentReceiver;
@@ -100,7 +112,7 @@ public class TomahawkFragment extends TomahawkListFragment
 
     protected HashSet<String> mCorrespondingQueryIds = new HashSet<String>();
 
-    protected ArrayList<Query> mShownQueries = new ArrayList<Query>();
+    protected List<Query> mShownQueries = new ArrayList<Query>();
 
     protected int mCorrespondingHubId;
 
@@ -112,6 +124,64 @@ public class TomahawkFragment extends TomahawkListFragment
 
     protected boolean mIsLocal = false;
 
+    // The qids which have been reported since the last results frame
+    private final HashSet<String> mReportedQids = new HashSet<String>();
+
+    private final Handler mResultsFrameHandler = new Handler();
+
+    private final Runnable mResultsFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            HashSet<String> reportedQids = new HashSet<String>(mReportedQids);
+            mReportedQids.clear();
+            onPipeLineResultsReported(reportedQids);
+        }
+    };
+
+    // Whether or not a reload has been scheduled for the collection deltas since the last one
+    private boolean mCollectionFramePending = false;
+
+    private final Handler mCollectionFrameHandler = new Handler();
+
+    private final Runnable mCollectionFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCollectionFramePending = false;
+            onCollectionUpdated();
+        }
+    };
+
+    /**
+     * Receives the results reports of the {@link Query}s in mCorrespondingQueryIds only. They are
+     * being collected into frames, so that a burst of reports causes only one UI update.
+     */
+    private final EventBus.Subscriber<Query> mResultsSubscriber = new EventBus.Subscriber<Query>() {
+        @Override
+        public void onEvent(String qid, Query query) {
+            if (mReportedQids.isEmpty()) {
+                mResultsFrameHandler.postDelayed(mResultsFrameRunnable, RESULTS_FRAME_INTERVAL);
+            }
+            mReportedQids.add(qid);
+        }
+    };
+
+    /**
+     * Receives the {@link CollectionDelta}s of the {@link org.tomahawk.libtomahawk.collection.UserCollection}.
+     * They are being collected into frames as well, so that a burst of deltas causes only one
+     * reload.
+     */
+    private final EventBus.Subscriber<CollectionDelta> mCollectionDeltaSubscriber =
+            new EventBus.Subscriber<CollectionDelta>() {
+                @Override
+                public void onEvent(String key, CollectionDelta delta) {
+                    if (!mCollectionFramePending) {
+                        mCollectionFramePending = true;
+                        mCollectionFrameHandler.postDelayed(mCollectionFrameRunnable,
+                                COLLECTION_FRAME_INTERVAL);
+                    }
+                }
+            };
+
     /**
      * Handles incoming {@link Collection} updated broadcasts.
      */
@@ -121,9 +191,6 @@ public class TomahawkFragment extends TomahawkListFragment
         public void onReceive(Context context, Intent intent) {
             if (Collection.COLLECTION_UPDATED.equals(intent.getAction())) {
                 onCollectionUpdated();
-            } else if (PipeLine.PIPELINE_RESULTSREPORTED.equals(intent.getAction())) {
-                String qid = intent.getStringExtra(PipeLine.PIPELINE_RESULTSREPORTED_QID);
-                onPipeLineResultsReported(qid);
             } else if (InfoSystem.INFOSYSTEM_RESULTSREPORTED.equals(intent.getAction())) {
                 String requestId = intent.getStringExtra(
                         InfoSystem.INFOSYSTEM_RESULTSREPORTED_REQUESTID);
@@ -164,6 +231,18 @@ public class TomahawkFragment extends TomahawkListFragment
                         .getUserPlaylistById(
                                 getArguments().getString(TOMAHAWK_HATCHET_USER_PLAYLIST_KEY));
             }
+            if (mUserPlaylist != null && !mUserPlaylist.isLoaded()) {
+                // Don't make the UI thread wait for the tracks, show them once they're loaded
+                mTomahawkApp.getUserPlaylistsDataSource().loadUserPlaylistAsync(mUserPlaylist,
+                        new DatabaseExecutor.Callback<UserPlaylist>() {
+                            @Override
+                            public void onResult(UserPlaylist userPlaylist) {
+                                if (isAdded()) {
+                                    onCollectionUpdated();
+                                }
+                            }
+                        });
+            }
             if (getArguments() != null && getArguments().containsKey(TOMAHAWK_ARTIST_KEY)
                     && !TextUtils.isEmpty(getArguments().getString(TOMAHAWK_ARTIST_KEY))) {
                 mArtist = Artist.getArtistByKey(getArguments().getString(TOMAHAWK_ARTIST_KEY));
@@ -189,11 +268,16 @@ public class TomahawkFragment extends TomahawkListFragment
             mTomahawkFragmentReceiver = new TomahawkFragmentReceiver();
             IntentFilter intentFilter = new IntentFilter(Collection.COLLECTION_UPDATED);
             getActivity().registerReceiver(mTomahawkFragmentReceiver, intentFilter);
-            intentFilter = new IntentFilter(PipeLine.PIPELINE_RESULTSREPORTED);
-            getActivity().registerReceiver(mTomahawkFragmentReceiver, intentFilter);
             intentFilter = new IntentFilter(InfoSystem.INFOSYSTEM_RESULTSREPORTED);
             getActivity().registerReceiver(mTomahawkFragmentReceiver, intentFilter);
         }
+        for (String qid : mCorrespondingQueryIds) {
+            mPipeline.getResultsEventBus().subscribe(qid, mResultsSubscriber);
+        }
+        if (mTomahawkMainActivity.getUserCollection() != null) {
+            mTomahawkMainActivity.getUserCollection().getDeltaEventBus()
+                    .subscribe(mCollectionDeltaSubscriber);
+        }
         TomahawkStickyListHeadersListView list = getListView();
         if (list != null) {
             list.setOnItemLongClickListener(this);
@@ -214,6 +298,18 @@ public class TomahawkFragment extends TomahawkListFragment
             getActivity().unregisterReceiver(mTomahawkFragmentReceiver);
             mTomahawkFragmentReceiver = null;
         }
+        for (String qid : mCorrespondingQueryIds) {
+            mPipeline.getResultsEventBus().unsubscribe(qid, mResultsSubscriber);
+        }
+        mResultsFrameHandler.removeCallbacks(mResultsFrameRunnable);
+        mReportedQids.clear();
+        // The loader is being restarted in onResume anyway
+        mCollectionFrameHandler.removeCallbacks(mCollectionFrameRunnable);
+        mCollectionFramePending = false;
+        if (mTomahawkMainActivity.getUserCollection() != null) {
+            mTomahawkMainActivity.getUserCollection().getDeltaEventBus()
+                    .unsubscribe(mCollectionDeltaSubscriber);
+        }
     }
 
     @Override
@@ -270,21 +366,46 @@ public class TomahawkFragment extends TomahawkListFragment
      * @param tomahawkListItem     the item that has been clicked
      */
     @Override
-    public void onFakeContextItemSelected(TomahawkMainActivity tomahawkMainActivity,
-            String menuItemTitle, TomahawkBaseAdapter.TomahawkListItem tomahawkListItem) {
-        UserCollection userCollection = tomahawkMainActivity.getUserCollection();
+    public void onFakeContextItemSelected(final TomahawkMainActivity tomahawkMainActivity,
+            final String menuItemTitle, TomahawkBaseAdapter.TomahawkListItem tomahawkListItem) {
+        if (tomahawkListItem instanceof UserPlaylist
+                && !((UserPlaylist) tomahawkListItem).isLoaded()
+                && !menuItemTitle.equals(tomahawkMainActivity.getResources()
+                .getString(R.string.fake_context_menu_delete))) {
+            // Read the playlist's tracks in the background first and come back once they're in
+            ((TomahawkApp) tomahawkMainActivity.getApplication()).getUserPlaylistsDataSource()
+                    .loadUserPlaylistAsync((UserPlaylist) tomahawkListItem,
+                            new DatabaseExecutor.Callback<UserPlaylist>() {
+                                @Override
+                                public void onResult(UserPlaylist userPlaylist) {
+                                    if (userPlaylist != null && userPlaylist.isLoaded()) {
+                                        onFakeContextItemSelected(tomahawkMainActivity,
+                                                menuItemTitle, userPlaylist);
+                                    }
+                                }
+                            });
+            return;
+        }
+        final UserCollection userCollection = tomahawkMainActivity.getUserCollection();
         ArrayList<Query> queries = new ArrayList<Query>();
         PlaybackService playbackService = tomahawkMainActivity.getPlaybackService();
+        DatabaseExecutor.Callback<Void> updateUserPlaylistsCallback =
+                new DatabaseExecutor.Callback<Void>() {
+                    @Override
+                    public void onResult(Void result) {
+                        userCollection.updateUserPlaylists();
+                    }
+                };
         if (menuItemTitle.equals(tomahawkMainActivity.getResources()
                 .getString(R.string.fake_context_menu_delete))) {
             if (tomahawkListItem instanceof UserPlaylist) {
                 ((TomahawkApp) tomahawkMainActivity.getApplication()).getUserPlaylistsDataSource()
-                        .deleteUserPlaylist(((UserPlaylist) tomahawkListItem).getId());
-                userCollection.updateUserPlaylists();
+                        .deleteUserPlaylistAsync(((UserPlaylist) tomahawkListItem).getId(),
+                                updateUserPlaylistsCallback);
             } else if (tomahawkListItem instanceof Query && mUserPlaylist != null) {
                 ((TomahawkApp) tomahawkMainActivity.getApplication()).getUserPlaylistsDataSource()
-                        .deleteQueryInUserPlaylist(mUserPlaylist.getId(), (Query) tomahawkListItem);
-                userCollection.updateUserPlaylists();
+                        .deleteQueryInUserPlaylistAsync(mUserPlaylist.getId(),
+                                (Query) tomahawkListItem, updateUserPlaylistsCallback);
             } else if (playbackService != null && this instanceof PlaybackFragment
                     && tomahawkListItem instanceof Query) {
                 if (TomahawkUtils.getCacheKey(playbackService.getCurrentTrack())
@@ -330,9 +451,9 @@ public class TomahawkFragment extends TomahawkListFragment
                             playbackService.start();
                         }
                     } else {
-                        playbackService.setCurrentQuery((Query) tomahawkListItem);
                         playbackService.getCurrentPlaylist()
                                 .setCurrentQuery((Query) tomahawkListItem);
+                        playbackService.setCurrentQuery((Query) tomahawkListItem);
                         playbackService.start();
                     }
                 }
@@ -471,8 +592,41 @@ public class TomahawkFragment extends TomahawkListFragment
         }
     }
 
-    protected void onPipeLineResultsReported(String qId) {
+    /**
+     * Called once per results frame with the qids of every {@link Query} in mCorrespondingQueryIds,
+     * for which new results have been reported since the last frame
+     */
+    protected void onPipeLineResultsReported(Set<String> qIds) {
+
+    }
+
+    /**
+     * Update only the rows of our {@link TomahawkListAdapter} which show one of the given qids
+     */
+    protected void updateQueryRows(Set<String> qIds) {
+        if (getListAdapter() instanceof TomahawkListAdapter) {
+            ((TomahawkListAdapter) getListAdapter()).updateQueryRows(getListView(), qIds);
+        }
+    }
+
+    /**
+     * Add the given qid to mCorrespondingQueryIds, so that we're notified about its results
+     * reports from now on
+     */
+    protected void addCorrespondingQueryId(String qid) {
+        if (mCorrespondingQueryIds.add(qid) && isResumed()) {
+            mPipeline.getResultsEventBus().subscribe(qid, mResultsSubscriber);
+        }
+    }
 
+    /**
+     * Clear mCorrespondingQueryIds and stop listening to their results reports
+     */
+    protected void clearCorrespondingQueryIds() {
+        for (String qid : mCorrespondingQueryIds) {
+            mPipeline.getResultsEventBus().unsubscribe(qid, mResultsSubscriber);
+        }
+        mCorrespondingQueryIds.clear();
     }
 
     protected void onInfoSystemResultsReported(String requestId) {
@@ -522,7 +676,9 @@ public class TomahawkFragment extends TomahawkListFragment
         }
         if (!qs.isEmpty()) {
             HashSet<String> qids = mPipeline.resolve(qs);
-            mCorrespondingQueryIds.addAll(qids);
+            for (String qid : qids) {
+                addCorrespondingQueryId(qid);
+            }
             mTomahawkMainActivity.startLoadingAnimation();
         }
     }
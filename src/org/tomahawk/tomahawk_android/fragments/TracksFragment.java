@@ -19,6 +19,8 @@ package org.tomahawk.tomahawk_android.fragments;
 
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Collection;
+import org.tomahawk.libtomahawk.collection.QuerySnapshot;
+import org.tomahawk.libtomahawk.collection.SectionIndex;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
@@ -35,7 +37,9 @@ import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * {@link TomahawkFragment} which shows a set of {@link Track}s inside its {@link
@@ -122,6 +126,7 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
     public void updateAdapter() {
         ArrayList<TomahawkBaseAdapter.TomahawkListItem> queries
                 = new ArrayList<TomahawkBaseAdapter.TomahawkListItem>();
+        QuerySnapshot querySnapshot = null;
         TomahawkListAdapter tomahawkListAdapter;
         Collection coll = mTomahawkMainActivity.getUserCollection();
         if (mAlbum != null) {
@@ -161,7 +166,10 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
                 ((TomahawkListAdapter) getListAdapter()).setListArray(listArray);
             }
         } else if (mUserPlaylist != null) {
-            queries.addAll(mUserPlaylist.getQueries());
+            // The tracks are being loaded in the background, we'll be called again when they're in
+            if (mUserPlaylist.isLoaded()) {
+                queries.addAll(mUserPlaylist.getQueries());
+            }
             List<List<TomahawkBaseAdapter.TomahawkListItem>> listArray
                     = new ArrayList<List<TomahawkBaseAdapter.TomahawkListItem>>();
             listArray.add(queries);
@@ -189,22 +197,34 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
                 ((TomahawkListAdapter) getListAdapter()).setListArray(listArray);
             }
         } else {
-            queries.addAll(coll.getQueries());
+            // The whole Collection might be huge, so we use its snapshot instead of copying it
+            querySnapshot = coll.getQuerySnapshot();
             List<List<TomahawkBaseAdapter.TomahawkListItem>> listArray
                     = new ArrayList<List<TomahawkBaseAdapter.TomahawkListItem>>();
-            listArray.add(queries);
+            listArray.add(Collections.<TomahawkBaseAdapter.TomahawkListItem>unmodifiableList(
+                    querySnapshot));
+            SectionIndex sectionIndex = querySnapshot.getSectionIndex();
             if (getListAdapter() == null) {
                 tomahawkListAdapter = new TomahawkListAdapter(mTomahawkMainActivity, listArray);
-                getListView().setAreHeadersSticky(false);
+                tomahawkListAdapter.setSectionIndex(sectionIndex);
+                getListView().setAreHeadersSticky(sectionIndex != null);
+                getListView().setFastScrollEnabled(sectionIndex != null);
                 setListAdapter(tomahawkListAdapter);
             } else {
-                ((TomahawkListAdapter) getListAdapter()).setListArray(listArray);
+                tomahawkListAdapter = (TomahawkListAdapter) getListAdapter();
+                tomahawkListAdapter.setSectionIndex(sectionIndex);
+                tomahawkListAdapter.setListArray(listArray);
             }
         }
 
-        mShownQueries.clear();
-        for (TomahawkBaseAdapter.TomahawkListItem item : queries) {
-            mShownQueries.add((Query) item);
+        if (querySnapshot != null) {
+            mShownQueries = querySnapshot;
+        } else {
+            ArrayList<Query> shownQueries = new ArrayList<Query>(queries.size());
+            for (TomahawkBaseAdapter.TomahawkListItem item : queries) {
+                shownQueries.add((Query) item);
+            }
+            mShownQueries = shownQueries;
         }
         resolveQueriesFromTo(getListView().getFirstVisiblePosition(),
                 getListView().getLastVisiblePosition() + 2);
@@ -220,10 +240,9 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
     }
 
     @Override
-    protected void onPipeLineResultsReported(String qId) {
-        if (mCorrespondingQueryIds.contains(qId)) {
-            updateAdapter();
-        }
+    protected void onPipeLineResultsReported(Set<String> qIds) {
+        // The shown Querys stay the same, only their results change
+        updateQueryRows(qIds);
     }
 
     @Override
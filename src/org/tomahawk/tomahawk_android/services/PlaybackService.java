@@ -23,9 +23,11 @@ import org.tomahawk.libtomahawk.collection.Playlist;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
+import org.tomahawk.libtomahawk.database.DatabaseExecutor;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.utils.EventBus;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
@@ -245,13 +247,18 @@ public class PlaybackService extends Service {
                     // the loaded bitmap is relevant to us, so we update the playing notification
                     updatePlayingNotification();
                 }
-            } else if (PipeLine.PIPELINE_RESULTSREPORTED.equals(intent.getAction())) {
-                String qid = intent.getStringExtra(PipeLine.PIPELINE_RESULTSREPORTED_QID);
-                onPipeLineResultsReported(qid);
             }
         }
     }
 
+    // The current Query may be resolved by anybody, so we have to listen to every results report
+    private final EventBus.Subscriber<Query> mResultsSubscriber = new EventBus.Subscriber<Query>() {
+        @Override
+        public void onEvent(String qid, Query query) {
+            onPipeLineResultsReported(qid);
+        }
+    };
+
     public class PlaybackServiceBinder extends Binder {
 
         public PlaybackService getService() {
@@ -318,8 +325,7 @@ public class PlaybackService extends Service {
                 new IntentFilter(AudioManager.ACTION_AUDIO_BECOMING_NOISY));
         registerReceiver(mPlaybackServiceBroadcastReceiver,
                 new IntentFilter(BitmapItem.BITMAPITEM_BITMAPLOADED));
-        registerReceiver(mPlaybackServiceBroadcastReceiver,
-                new IntentFilter(PipeLine.PIPELINE_RESULTSREPORTED));
+        mPipeLine.getResultsEventBus().subscribe(mResultsSubscriber);
 
         // Initialize killtime handler (watchdog style)
         mKillTimerHandler.removeCallbacksAndMessages(null);
@@ -367,7 +373,9 @@ public class PlaybackService extends Service {
     public void onDestroy() {
         pause(true);
         saveState();
+        getUserCollection().flushCachedUserPlaylist();
         unregisterReceiver(mPlaybackServiceBroadcastReceiver);
+        mPipeLine.getResultsEventBus().unsubscribe(mResultsSubscriber);
         mTomahawkMediaPlayer.release();
         mTomahawkMediaPlayer = null;
         if (mWakeLock.isHeld()) {
@@ -377,6 +385,19 @@ public class PlaybackService extends Service {
         super.onDestroy();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // We might be killed soon, so we shouldn't wait with writing the current playlist
+        getUserCollection().flushCachedUserPlaylist();
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        getUserCollection().flushCachedUserPlaylist();
+    }
+
     /**
      * Called if given {@link TomahawkMediaPlayer} has been prepared for playback
      */
@@ -431,36 +452,46 @@ public class PlaybackService extends Service {
     }
 
     /**
-     * Save the current playlist in the UserPlaylists Database
+     * Save the current playlist in the UserPlaylists Database. The {@link UserCollection} delays
+     * the actual write, so this is cheap enough to be called on every change of the playlist.
      */
     private void saveState() {
         if (getCurrentPlaylist() != null) {
-            long startTime = System.currentTimeMillis();
-            UserCollection userCollection = (UserCollection) ((TomahawkApp) getApplication())
-                    .getSourceList().getCollectionFromId(UserCollection.Id);
-            userCollection.setCachedUserPlaylist(UserPlaylist
+            getUserCollection().setCachedUserPlaylist(UserPlaylist
                     .fromQueryList(UserPlaylistsDataSource.CACHED_PLAYLIST_ID,
                             UserPlaylistsDataSource.CACHED_PLAYLIST_NAME,
                             getCurrentPlaylist().getQueries(),
                             getCurrentPlaylist().getCurrentQuery()));
-            Log.d(TAG, "Playlist stored in " + (System.currentTimeMillis() - startTime) + "ms");
         }
     }
 
+    private UserCollection getUserCollection() {
+        return (UserCollection) ((TomahawkApp) getApplication()).getSourceList()
+                .getCollectionFromId(UserCollection.Id);
+    }
+
     /**
      * Restore the current playlist from the UserPlaylists Database. Do this by storing it in the
      * {@link org.tomahawk.libtomahawk.collection.UserCollection} first, and then retrieving the
-     * playlist from there.
+     * playlist from there. The playlist is being read in the background, if the user has already
+     * started playing something else in the meantime, it is dropped.
      */
     private void restoreState() {
-        long startTime = System.currentTimeMillis();
-        UserCollection userCollection = (UserCollection) ((TomahawkApp) getApplication())
-                .getSourceList().getCollectionFromId(UserCollection.Id);
-        setCurrentPlaylist(userCollection.getCachedUserPlaylist());
-        Log.d(TAG, "Playlist loaded in " + (System.currentTimeMillis() - startTime) + "ms");
-        if (getCurrentPlaylist() != null && isPlaying()) {
-            pause(true);
-        }
+        final long startTime = System.currentTimeMillis();
+        getUserCollection().getCachedUserPlaylist(new DatabaseExecutor.Callback<UserPlaylist>() {
+            @Override
+            public void onResult(UserPlaylist userPlaylist) {
+                if (getCurrentPlaylist() != null) {
+                    return;
+                }
+                setCurrentPlaylist(userPlaylist);
+                Log.d(TAG, "Playlist loaded in " + (System.currentTimeMillis() - startTime)
+                        + "ms");
+                if (getCurrentPlaylist() != null && isPlaying()) {
+                    pause(true);
+                }
+            }
+        });
     }
 
     /**
@@ -604,6 +635,7 @@ public class PlaybackService extends Service {
      */
     public void setShuffled(boolean shuffled) {
         mCurrentPlaylist.setShuffled(shuffled);
+        saveState();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -712,6 +744,10 @@ public class PlaybackService extends Service {
                 next();
             }
         }
+        if (getCurrentPlaylist() != null) {
+            getUserCollection().setCachedCurrentQueryIndex(
+                    getCurrentPlaylist().getCurrentQueryIndex());
+        }
     }
 
     /**
@@ -740,6 +776,7 @@ public class PlaybackService extends Service {
         if (playlist != null) {
             setCurrentQuery(mCurrentPlaylist.getCurrentQuery());
         }
+        saveState();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -759,6 +796,7 @@ public class PlaybackService extends Service {
         if (wasEmpty && mCurrentPlaylist.getCount() > 0) {
             setCurrentQuery(mCurrentPlaylist.getQueryAtPos(0));
         }
+        saveState();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -782,6 +820,7 @@ public class PlaybackService extends Service {
         if (wasEmpty && mCurrentPlaylist.getCount() > 0) {
             setCurrentQuery(mCurrentPlaylist.getQueryAtPos(0));
         }
+        saveState();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -793,6 +832,7 @@ public class PlaybackService extends Service {
         if (mCurrentPlaylist.getCount() == 0) {
             pause(true);
         }
+        saveState();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -804,6 +844,7 @@ public class PlaybackService extends Service {
         if (mCurrentPlaylist.getCount() == 0) {
             pause(true);
         }
+        saveState();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -977,9 +1018,19 @@ public class PlaybackService extends Service {
         }
     }
 
+    /**
+     * Prepare the current {@link Query}, as soon as it is good enough to start playing or nothing
+     * better is to be expected anymore. Once it is playing, we don't restart it just because more
+     * {@link org.tomahawk.libtomahawk.resolver.Result}s are coming in.
+     */
     private void onPipeLineResultsReported(String qId) {
-        if (mCurrentPlaylist != null && mCurrentPlaylist.getCurrentQuery().getQid().equals(qId)) {
-            setCurrentQuery(mCurrentPlaylist.getCurrentQuery());
+        if (mCurrentPlaylist != null && mCurrentPlaylist.getCurrentQuery() != null
+                && mCurrentPlaylist.getCurrentQuery().getQid().equals(qId)) {
+            Query currentQuery = mCurrentPlaylist.getCurrentQuery();
+            if (!currentQuery.isCurrentlyPlaying()
+                    && (currentQuery.isSolved() || !mPipeLine.isResolving(qId))) {
+                setCurrentQuery(currentQuery);
+            }
         }
     }
 }
@@ -0,0 +1,256 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tomahawk.libtomahawk.utils.LongSparseArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CollectionSnapshotTest {
+
+    // magic, version, both watermarks and the string count
+    private static final int STRING_OFFSETS_POS = 4 + 4 + 8 + 8 + 4;
+
+    private static final int TRACK_RECORD_SIZE = 3 * 8 + 5 * 4;
+
+    private File mDir;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("snapshot", "");
+        mDir.delete();
+        mDir.mkdir();
+        mFile = new File(mDir, "collection.snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    /**
+     * Write a snapshot with two albums and three tracks, which share some of their strings and
+     * leave others out
+     */
+    private void writeSnapshot() throws IOException {
+        CollectionSnapshot.Writer writer = new CollectionSnapshot.Writer(1234L, 1400000000L);
+        writer.addAlbum(20L, "/art/20.jpg", "1983", "1983");
+        writer.addAlbum(10L, null, null, null);
+        writer.addTrack(101L, 20L, 447000L, "/music/blue_monday.mp3", "Blue Monday", "New Order",
+                "Power, Corruption & Lies", 1);
+        writer.addTrack(102L, 20L, 299000L, "/music/age_of_consent.mp3", "Age Of Consent",
+                "New Order", "Power, Corruption & Lies", 2);
+        writer.addTrack(103L, 10L, 0L, "/music/k\u00e4rlek.flac", "K\u00e4rlek \u266b", null,
+                null, 0);
+        writer.writeTo(mFile);
+    }
+
+    private void assertRejected() {
+        try {
+            CollectionSnapshot.read(mFile);
+            fail("Snapshot of " + mFile.length() + " bytes should have been rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private void writeInt(long position, int value) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(position);
+            file.writeInt(value);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        writeSnapshot();
+        assertFalse(new File(mFile.getPath() + ".tmp").exists());
+
+        CollectionSnapshot snapshot = CollectionSnapshot.read(mFile);
+        assertEquals(1234L, snapshot.getMediaIdWatermark());
+        assertEquals(1400000000L, snapshot.getDateModifiedWatermark());
+
+        LongSparseArray<String[]> albumDetails = snapshot.getAlbumDetails();
+        assertEquals(2, albumDetails.size());
+        assertArrayEquals(new String[]{"/art/20.jpg", "1983", "1983"}, albumDetails.get(20L));
+        assertArrayEquals(new String[]{null, null, null}, albumDetails.get(10L));
+
+        assertEquals(3, snapshot.getTrackCount());
+        assertEquals(101L, snapshot.getMediaId(0));
+        assertEquals(20L, snapshot.getAlbumId(0));
+        assertEquals(447000L, snapshot.getDuration(0));
+        assertEquals("/music/blue_monday.mp3", snapshot.getPath(0));
+        assertEquals("Blue Monday", snapshot.getTrackName(0));
+        assertEquals("New Order", snapshot.getArtistName(0));
+        assertEquals("Power, Corruption & Lies", snapshot.getAlbumName(0));
+        assertEquals(1, snapshot.getAlbumPos(0));
+
+        assertEquals(102L, snapshot.getMediaId(1));
+        assertEquals("Age Of Consent", snapshot.getTrackName(1));
+        assertEquals("New Order", snapshot.getArtistName(1));
+        assertEquals(2, snapshot.getAlbumPos(1));
+
+        assertEquals(103L, snapshot.getMediaId(2));
+        assertEquals(10L, snapshot.getAlbumId(2));
+        assertEquals(0L, snapshot.getDuration(2));
+        assertEquals("/music/k\u00e4rlek.flac", snapshot.getPath(2));
+        assertEquals("K\u00e4rlek \u266b", snapshot.getTrackName(2));
+        assertNull(snapshot.getArtistName(2));
+        assertNull(snapshot.getAlbumName(2));
+        assertEquals(0, snapshot.getAlbumPos(2));
+    }
+
+    @Test
+    public void roundTripOfEmptyCollection() throws IOException {
+        new CollectionSnapshot.Writer(0L, 0L).writeTo(mFile);
+
+        CollectionSnapshot snapshot = CollectionSnapshot.read(mFile);
+        assertEquals(0L, snapshot.getMediaIdWatermark());
+        assertEquals(0, snapshot.getAlbumDetails().size());
+        assertEquals(0, snapshot.getTrackCount());
+    }
+
+    @Test
+    public void missingFileIsNoSnapshot() throws IOException {
+        assertNull(CollectionSnapshot.read(mFile));
+    }
+
+    @Test
+    public void everyTruncationIsRejected() throws IOException {
+        writeSnapshot();
+        long length = mFile.length();
+        for (long truncatedLength = length - 1; truncatedLength >= 0; truncatedLength--) {
+            RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+            try {
+                file.setLength(truncatedLength);
+            } finally {
+                file.close();
+            }
+            assertRejected();
+        }
+    }
+
+    @Test
+    public void trailingBytesAreRejected() throws IOException {
+        writeSnapshot();
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() + 1);
+        } finally {
+            file.close();
+        }
+        assertRejected();
+    }
+
+    @Test
+    public void wrongMagicIsRejected() throws IOException {
+        writeSnapshot();
+        writeInt(0, 0x1d3);
+        assertRejected();
+    }
+
+    @Test
+    public void unsupportedVersionIsRejected() throws IOException {
+        writeSnapshot();
+        writeInt(4, 2);
+        assertRejected();
+    }
+
+    @Test
+    public void negativeStringCountIsRejected() throws IOException {
+        writeSnapshot();
+        writeInt(STRING_OFFSETS_POS - 4, -1);
+        assertRejected();
+    }
+
+    @Test
+    public void hugeStringCountIsRejected() throws IOException {
+        writeSnapshot();
+        writeInt(STRING_OFFSETS_POS - 4, Integer.MAX_VALUE);
+        assertRejected();
+    }
+
+    @Test
+    public void decreasingStringOffsetIsRejected() throws IOException {
+        writeSnapshot();
+        writeInt(STRING_OFFSETS_POS + 4, Integer.MAX_VALUE);
+        assertRejected();
+    }
+
+    @Test
+    public void stringPoolBeyondEndIsRejected() throws IOException {
+        writeSnapshot();
+        // The last string offset is the length of the pool. The offset before it is left as it is,
+        // so that the offsets are still in order.
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        int stringCount;
+        try {
+            file.seek(STRING_OFFSETS_POS - 4);
+            stringCount = file.readInt();
+        } finally {
+            file.close();
+        }
+        writeInt(STRING_OFFSETS_POS + stringCount * 4, (int) mFile.length());
+        assertRejected();
+    }
+
+    @Test
+    public void outOfRangeStringIndexIsRejected() throws IOException {
+        writeSnapshot();
+        // The track name index of the last track
+        writeInt(mFile.length() - TRACK_RECORD_SIZE + 28, 1000);
+        assertRejected();
+    }
+
+    @Test
+    public void negativeStringIndexIsRejected() throws IOException {
+        writeSnapshot();
+        // Only -1 stands for null
+        writeInt(mFile.length() - TRACK_RECORD_SIZE + 28, -2);
+        assertRejected();
+    }
+
+    @Test
+    public void wrongTrackCountIsRejected() throws IOException {
+        writeSnapshot();
+        writeInt(mFile.length() - 3 * TRACK_RECORD_SIZE - 4, 4);
+        assertRejected();
+    }
+}
@@ -0,0 +1,168 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryIndexTest {
+
+    private QueryIndex mQueryIndex;
+
+    private Query mBlueMonday;
+
+    private Query mBluesRun;
+
+    private Query mLoveWillTearUsApart;
+
+    private Query mOverlappingGrams;
+
+    @Before
+    public void setUp() {
+        mQueryIndex = new QueryIndex();
+        mBlueMonday = add("Blue Monday", "Power, Corruption & Lies", "New Order");
+        mBluesRun = add("Blues Run The Game", "Jackson C. Frank", "Jackson C. Frank");
+        mLoveWillTearUsApart = add("Love Will Tear Us Apart", "Closer", "Joy Division");
+        // Contains all n-grams of "abcde", but not "abcde" itself
+        mOverlappingGrams = add("abcd bcde", "Gram Album", "Gram Artist");
+    }
+
+    private Query add(String trackName, String albumName, String artistName) {
+        Query query = new Query(trackName, albumName, artistName, false);
+        mQueryIndex.add(query);
+        return query;
+    }
+
+    private static void assertMatches(ArrayList<Query> actual, Query... expected) {
+        assertEquals(new HashSet<Query>(Arrays.asList(expected)), new HashSet<Query>(actual));
+        assertEquals("duplicate matches", expected.length, actual.size());
+    }
+
+    @Test
+    public void shortTermMatchesWordPrefixes() {
+        assertMatches(mQueryIndex.find("b"), mBlueMonday, mBluesRun);
+        assertMatches(mQueryIndex.find("bl"), mBlueMonday, mBluesRun);
+        assertMatches(mQueryIndex.find("us"), mLoveWillTearUsApart);
+    }
+
+    @Test
+    public void shortTermMatchesPrefixesOfEveryField() {
+        // "Jackson C. Frank" is both album and artist, it must only be found once
+        assertMatches(mQueryIndex.find("c."), mBluesRun);
+        assertMatches(mQueryIndex.find("jo"), mLoveWillTearUsApart);
+    }
+
+    @Test
+    public void shortTermDoesNotMatchInsideWords() {
+        assertMatches(mQueryIndex.find("ue"));
+        assertMatches(mQueryIndex.find("y"));
+    }
+
+    @Test
+    public void longTermMatchesAnywhere() {
+        assertMatches(mQueryIndex.find("day"), mBlueMonday);
+        assertMatches(mQueryIndex.find("monday"), mBlueMonday);
+        assertMatches(mQueryIndex.find("lue"), mBlueMonday, mBluesRun);
+        assertMatches(mQueryIndex.find("tear us apart"), mLoveWillTearUsApart);
+        assertMatches(mQueryIndex.find("ruption & li"), mBlueMonday);
+    }
+
+    @Test
+    public void longTermSharingAllGramsIsVerified() {
+        assertMatches(mQueryIndex.find("abcd"), mOverlappingGrams);
+        assertMatches(mQueryIndex.find("abcde"));
+    }
+
+    @Test
+    public void termIsNormalized() {
+        assertMatches(mQueryIndex.find("  BLUE MON "), mBlueMonday);
+        assertMatches(mQueryIndex.find(" Bl "), mBlueMonday, mBluesRun);
+    }
+
+    @Test
+    public void emptyTermMatchesNothing() {
+        assertMatches(mQueryIndex.find(""));
+        assertMatches(mQueryIndex.find("   "));
+        assertMatches(mQueryIndex.find(null));
+    }
+
+    @Test
+    public void unknownTermMatchesNothing() {
+        assertMatches(mQueryIndex.find("x"));
+        assertMatches(mQueryIndex.find("xyz"));
+        assertMatches(mQueryIndex.find("monday morning"));
+    }
+
+    @Test
+    public void findByFieldsMatchesAllGivenFields() {
+        assertMatches(mQueryIndex.find("", "", "new order"), mBlueMonday);
+        assertMatches(mQueryIndex.find("blue", "", "order"), mBlueMonday);
+        assertMatches(mQueryIndex.find("bl", "jackson", "fr"), mBluesRun);
+        assertMatches(mQueryIndex.find("blue", "", "division"));
+        assertMatches(mQueryIndex.find("love", "power", ""));
+    }
+
+    @Test
+    public void findByFieldsDoesNotMatchOtherFields() {
+        // "Closer" is only the album name
+        assertMatches(mQueryIndex.find("closer", "", ""));
+        assertMatches(mQueryIndex.find("", "closer", ""), mLoveWillTearUsApart);
+    }
+
+    @Test
+    public void findByEmptyFieldsMatchesNothing() {
+        assertMatches(mQueryIndex.find("", "", ""));
+        assertMatches(mQueryIndex.find(null, " ", null));
+    }
+
+    @Test
+    public void addingTwiceIndexesOnce() {
+        mQueryIndex.add(mBlueMonday);
+        assertEquals(4, mQueryIndex.size());
+        assertMatches(mQueryIndex.find("monday"), mBlueMonday);
+    }
+
+    @Test
+    public void removedQueryIsNotFound() {
+        mQueryIndex.remove(mBlueMonday);
+        assertEquals(3, mQueryIndex.size());
+        assertMatches(mQueryIndex.find("monday"));
+        // Keys shared with the removed Query still point to the remaining ones
+        assertMatches(mQueryIndex.find("bl"), mBluesRun);
+        assertMatches(mQueryIndex.find("lue"), mBluesRun);
+        mQueryIndex.remove(mBlueMonday);
+        assertEquals(3, mQueryIndex.size());
+    }
+
+    @Test
+    public void clearedIndexIsEmpty() {
+        mQueryIndex.clear();
+        assertEquals(0, mQueryIndex.size());
+        assertMatches(mQueryIndex.find("b"));
+        assertMatches(mQueryIndex.find("love"));
+        assertTrue(mQueryIndex.find("", "", "joy").isEmpty());
+    }
+}
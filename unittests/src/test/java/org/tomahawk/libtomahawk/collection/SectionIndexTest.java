@@ -0,0 +1,154 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SectionIndexTest {
+
+    /**
+     * @return a {@link SectionIndex} with 2 items in "#", 3 in "A", 1 in "C" and 4 in "Z"
+     */
+    private static SectionIndex makeSectionIndex() {
+        int[] sectionCounts = new int[SectionIndex.SECTION_COUNT];
+        sectionCounts[0] = 2;
+        sectionCounts[SectionIndex.getSection("A")] = 3;
+        sectionCounts[SectionIndex.getSection("C")] = 1;
+        sectionCounts[SectionIndex.getSection("Z")] = 4;
+        return new SectionIndex(sectionCounts);
+    }
+
+    @Test
+    public void sectionIsFirstLetter() {
+        assertEquals(1, SectionIndex.getSection("Abba"));
+        assertEquals(1, SectionIndex.getSection("abba"));
+        assertEquals(26, SectionIndex.getSection("Zapp"));
+        assertEquals(26, SectionIndex.getSection("  \tZapp"));
+    }
+
+    @Test
+    public void accentedLetterIsInSectionOfBaseLetter() {
+        assertEquals(SectionIndex.getSection("E"), SectionIndex.getSection("\u00c9dith Piaf"));
+        assertEquals(SectionIndex.getSection("N"), SectionIndex.getSection("\u00f1u"));
+    }
+
+    @Test
+    public void everythingElseIsInFirstSection() {
+        assertEquals(0, SectionIndex.getSection(null));
+        assertEquals(0, SectionIndex.getSection(""));
+        assertEquals(0, SectionIndex.getSection("   "));
+        assertEquals(0, SectionIndex.getSection("2Pac"));
+        assertEquals(0, SectionIndex.getSection("!!!"));
+        assertEquals(0, SectionIndex.getSection("\u00d8ystein"));
+        assertEquals(0, SectionIndex.getSection("\u5742\u672c\u9f8d\u4e00"));
+    }
+
+    @Test
+    public void onlyNonEmptySectionsAreLabeled() {
+        SectionIndex sectionIndex = makeSectionIndex();
+        assertEquals(4, sectionIndex.getSectionCount());
+        assertArrayEquals(new String[]{"#", "A", "C", "Z"}, sectionIndex.getLabels());
+        assertEquals("C", sectionIndex.getLabel(2));
+        assertEquals(10, sectionIndex.size());
+    }
+
+    @Test
+    public void labelsCantBeModified() {
+        SectionIndex sectionIndex = makeSectionIndex();
+        sectionIndex.getLabels()[0] = "X";
+        assertEquals("#", sectionIndex.getLabel(0));
+    }
+
+    @Test
+    public void sectionBoundaries() {
+        SectionIndex sectionIndex = makeSectionIndex();
+        int[] starts = {0, 2, 5, 6};
+        int[] ends = {2, 5, 6, 10};
+        for (int i = 0; i < starts.length; i++) {
+            assertEquals(starts[i], sectionIndex.getSectionStart(i));
+            assertEquals(ends[i], sectionIndex.getSectionEnd(i));
+        }
+    }
+
+    @Test
+    public void sectionBoundariesAreClamped() {
+        SectionIndex sectionIndex = makeSectionIndex();
+        assertEquals(0, sectionIndex.getSectionStart(-1));
+        assertEquals(10, sectionIndex.getSectionStart(4));
+        assertEquals(10, sectionIndex.getSectionStart(Integer.MAX_VALUE));
+        assertEquals(0, sectionIndex.getSectionEnd(-1));
+        assertEquals(10, sectionIndex.getSectionEnd(4));
+    }
+
+    @Test
+    public void sectionForPositionAtBoundaries() {
+        SectionIndex sectionIndex = makeSectionIndex();
+        assertEquals(0, sectionIndex.getSectionForPosition(0));
+        assertEquals(0, sectionIndex.getSectionForPosition(1));
+        assertEquals(1, sectionIndex.getSectionForPosition(2));
+        assertEquals(1, sectionIndex.getSectionForPosition(4));
+        assertEquals(2, sectionIndex.getSectionForPosition(5));
+        assertEquals(3, sectionIndex.getSectionForPosition(6));
+        assertEquals(3, sectionIndex.getSectionForPosition(9));
+    }
+
+    @Test
+    public void sectionForPositionIsClamped() {
+        SectionIndex sectionIndex = makeSectionIndex();
+        assertEquals(0, sectionIndex.getSectionForPosition(-1));
+        assertEquals(3, sectionIndex.getSectionForPosition(10));
+        assertEquals(3, sectionIndex.getSectionForPosition(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void everyPositionIsInsideItsSection() {
+        SectionIndex sectionIndex = makeSectionIndex();
+        for (int position = 0; position < sectionIndex.size(); position++) {
+            int section = sectionIndex.getSectionForPosition(position);
+            assertTrue(sectionIndex.getSectionStart(section) <= position);
+            assertTrue(position < sectionIndex.getSectionEnd(section));
+        }
+    }
+
+    @Test
+    public void singleSection() {
+        int[] sectionCounts = new int[SectionIndex.SECTION_COUNT];
+        sectionCounts[SectionIndex.SECTION_COUNT - 1] = 3;
+        SectionIndex sectionIndex = new SectionIndex(sectionCounts);
+        assertArrayEquals(new String[]{"Z"}, sectionIndex.getLabels());
+        assertEquals(0, sectionIndex.getSectionStart(0));
+        assertEquals(3, sectionIndex.getSectionEnd(0));
+        assertEquals(0, sectionIndex.getSectionForPosition(0));
+        assertEquals(0, sectionIndex.getSectionForPosition(2));
+    }
+
+    @Test
+    public void emptyIndexHasNoSections() {
+        SectionIndex sectionIndex = new SectionIndex(new int[SectionIndex.SECTION_COUNT]);
+        assertEquals(0, sectionIndex.getSectionCount());
+        assertEquals(0, sectionIndex.getLabels().length);
+        assertEquals(0, sectionIndex.size());
+        assertEquals(-1, sectionIndex.getSectionForPosition(0));
+        assertEquals(0, sectionIndex.getSectionStart(0));
+        assertEquals(0, sectionIndex.getSectionEnd(0));
+    }
+}
@@ -0,0 +1,214 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.junit.Test;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SortedViewTest {
+
+    private static SortedView<Artist> makeArtistView(String... names) {
+        SortedView<Artist> sortedView = new SortedView<Artist>(SortedView.ORDER_ALPHA);
+        for (String name : names) {
+            sortedView.add(Artist.get(name));
+        }
+        return sortedView;
+    }
+
+    private static List<String> getNames(
+            List<? extends TomahawkBaseAdapter.TomahawkListItem> items) {
+        ArrayList<String> names = new ArrayList<String>();
+        for (TomahawkBaseAdapter.TomahawkListItem item : items) {
+            names.add(item.getName());
+        }
+        return names;
+    }
+
+    private static Query makeQuery(String trackName, int albumPos) {
+        Query query = new Query(trackName, "SortedViewTest Album", "SortedViewTest Artist", false);
+        query.getPreferredTrack().setAlbumPos(albumPos);
+        return query;
+    }
+
+    private static String getLabel(String name) {
+        int section = SectionIndex.getSection(name);
+        return section == 0 ? "#" : String.valueOf((char) ('A' + section - 1));
+    }
+
+    @Test
+    public void alphaOrderIsGroupedBySection() {
+        SortedView<Artist> sortedView = makeArtistView("Zapp", "\u00c9dith Piaf", "Abba", "2Pac",
+                "Eels", "!!!");
+        // Accented names are in the section of their base letter, everything else which doesn't
+        // start with a letter comes first
+        assertEquals(Arrays.asList("!!!", "2Pac", "Abba", "Eels", "\u00c9dith Piaf", "Zapp"),
+                getNames(sortedView.getSnapshot()));
+    }
+
+    @Test
+    public void equalNamesAreOrderedByCacheKey() {
+        SortedView<Album> sortedView = new SortedView<Album>(SortedView.ORDER_ALPHA);
+        Album queensHits = Album.get("Greatest Hits", Artist.get("Queen"));
+        Album abbasHits = Album.get("Greatest Hits", Artist.get("ABBA"));
+        sortedView.add(queensHits);
+        sortedView.add(abbasHits);
+        assertEquals(Arrays.asList(abbasHits, queensHits), sortedView.getSnapshot());
+    }
+
+    @Test
+    public void addingTwiceAddsOnce() {
+        SortedView<Artist> sortedView = makeArtistView("Abba", "Eels");
+        sortedView.add(Artist.get("Abba"));
+        assertEquals(2, sortedView.size());
+        assertEquals(Arrays.asList("Abba", "Eels"), getNames(sortedView.getSnapshot()));
+    }
+
+    @Test
+    public void removedItemIsGone() {
+        SortedView<Artist> sortedView = makeArtistView("Abba", "Eels", "Zapp");
+        sortedView.remove(Artist.get("Eels"));
+        assertEquals(2, sortedView.size());
+        assertEquals(Arrays.asList("Abba", "Zapp"), getNames(sortedView.getSnapshot()));
+        // Removing something which isn't there doesn't change anything
+        sortedView.remove(Artist.get("Eels"));
+        sortedView.remove(Artist.get("SortedViewTest Unknown"));
+        assertEquals(Arrays.asList("Abba", "Zapp"), getNames(sortedView.getSnapshot()));
+        sortedView.clear();
+        assertEquals(0, sortedView.size());
+        assertTrue(sortedView.getSnapshot().isEmpty());
+    }
+
+    @Test
+    public void snapshotIsOnlyRebuiltAfterChanges() {
+        SortedView<Artist> sortedView = makeArtistView("Abba", "Eels");
+        List<Artist> snapshot = sortedView.getSnapshot();
+        assertSame(snapshot, sortedView.getSnapshot());
+        sortedView.add(Artist.get("Eels"));
+        assertSame(snapshot, sortedView.getSnapshot());
+
+        sortedView.add(Artist.get("Zapp"));
+        assertNotSame(snapshot, sortedView.getSnapshot());
+        // The old snapshot stays as it was
+        assertEquals(Arrays.asList("Abba", "Eels"), getNames(snapshot));
+        assertEquals(Arrays.asList("Abba", "Eels", "Zapp"), getNames(sortedView.getSnapshot()));
+    }
+
+    @Test
+    public void snapshotIsImmutable() {
+        SortedView<Artist> sortedView = makeArtistView("Abba");
+        try {
+            sortedView.getSnapshot().add(Artist.get("Eels"));
+            fail("The snapshot must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void pagesAreClampedToBounds() {
+        SortedView<Artist> sortedView = makeArtistView("Abba", "Eels", "Zapp");
+        assertEquals(Arrays.asList("Eels", "Zapp"), getNames(sortedView.getPage(1, 5)));
+        assertEquals(Arrays.asList("Abba"), getNames(sortedView.getPage(-1, 1)));
+        assertEquals(Arrays.asList("Eels", "Zapp"),
+                getNames(sortedView.getPage(1, Integer.MAX_VALUE)));
+        assertTrue(sortedView.getPage(3, 1).isEmpty());
+        assertTrue(sortedView.getPage(Integer.MAX_VALUE, 1).isEmpty());
+        assertTrue(sortedView.getPage(1, 0).isEmpty());
+        assertTrue(sortedView.getPage(1, -1).isEmpty());
+    }
+
+    @Test
+    public void sectionIndexMatchesSnapshot() {
+        SortedView<Artist> sortedView = makeArtistView("Zapp", "Abba", "2Pac", "Eels", "Air",
+                "!!!", "Zola Jesus");
+        sortedView.remove(Artist.get("Eels"));
+        sortedView.add(Artist.get("ZZ Top"));
+        List<Artist> snapshot = sortedView.getSnapshot();
+        SectionIndex sectionIndex = sortedView.getSectionIndex();
+        assertArrayEquals(new String[]{"#", "A", "Z"}, sectionIndex.getLabels());
+        assertEquals(snapshot.size(), sectionIndex.size());
+        for (int i = 0; i < sectionIndex.getSectionCount(); i++) {
+            for (int position = sectionIndex.getSectionStart(i);
+                    position < sectionIndex.getSectionEnd(i); position++) {
+                assertEquals(i, sectionIndex.getSectionForPosition(position));
+                assertEquals(sectionIndex.getLabel(i), getLabel(snapshot.get(position).getName()));
+            }
+        }
+    }
+
+    @Test
+    public void sectionIndexIsRebuiltAfterChanges() {
+        SortedView<Artist> sortedView = makeArtistView("Abba");
+        SectionIndex sectionIndex = sortedView.getSectionIndex();
+        assertSame(sectionIndex, sortedView.getSectionIndex());
+        sortedView.add(Artist.get("Zapp"));
+        assertArrayEquals(new String[]{"A"}, sectionIndex.getLabels());
+        assertArrayEquals(new String[]{"A", "Z"}, sortedView.getSectionIndex().getLabels());
+    }
+
+    @Test
+    public void albumPosOrderIsInOneSection() {
+        SortedView<Query> sortedView = new SortedView<Query>(SortedView.ORDER_ALBUMPOS);
+        sortedView.add(makeQuery("SortedViewTest Section A", 1));
+        sortedView.add(makeQuery("SortedViewTest Section B", 2));
+        assertArrayEquals(new String[]{"#"}, sortedView.getSectionIndex().getLabels());
+        assertEquals(2, sortedView.getSectionIndex().getSectionEnd(0));
+    }
+
+    @Test
+    public void albumPosOrderIsByAlbumPosThenByName() {
+        SortedView<Query> sortedView = new SortedView<Query>(SortedView.ORDER_ALBUMPOS);
+        Query third = makeQuery("SortedViewTest A", 3);
+        Query first = makeQuery("SortedViewTest Z", 1);
+        Query secondB = makeQuery("SortedViewTest B", 2);
+        Query secondA = makeQuery("SortedViewTest A2", 2);
+        sortedView.add(third);
+        sortedView.add(first);
+        sortedView.add(secondB);
+        sortedView.add(secondA);
+        assertEquals(Arrays.asList(first, secondA, secondB, third), sortedView.getSnapshot());
+    }
+
+    @Test
+    public void sortKeyIsCapturedWhenAdded() {
+        SortedView<Query> sortedView = new SortedView<Query>(SortedView.ORDER_ALBUMPOS);
+        Query first = makeQuery("SortedViewTest Captured 1", 1);
+        Query second = makeQuery("SortedViewTest Captured 2", 2);
+        sortedView.add(second);
+        sortedView.add(first);
+        first.getPreferredTrack().setAlbumPos(3);
+        sortedView.add(makeQuery("SortedViewTest Captured 3", 3));
+        assertEquals(first, sortedView.getSnapshot().get(0));
+        // Removing still finds the item by the key it has been added with
+        sortedView.remove(first);
+        assertEquals(2, sortedView.size());
+        assertEquals(second, sortedView.getSnapshot().get(0));
+    }
+}
@@ -0,0 +1,417 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Reads hand-built headers. Every format is first read in a well-formed variant, so that the
+ * malformed variants really test the handling of the broken part.
+ */
+public class TagReaderTest {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("tags", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private EmbeddedTags read(byte[]... parts) throws IOException {
+        FileOutputStream out = new FileOutputStream(mFile);
+        try {
+            for (byte[] part : parts) {
+                out.write(part);
+            }
+        } finally {
+            out.close();
+        }
+        return TagReader.read(mFile);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(String ascii) {
+        return ascii.getBytes(ISO_8859_1);
+    }
+
+    private static byte[] int32(long value) {
+        return new byte[]{(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8),
+                (byte) value};
+    }
+
+    private static byte[] int32LittleEndian(long value) {
+        return new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16),
+                (byte) (value >> 24)};
+    }
+
+    private static byte[] syncsafe(int value) {
+        return new byte[]{(byte) ((value >> 21) & 0x7f), (byte) ((value >> 14) & 0x7f),
+                (byte) ((value >> 7) & 0x7f), (byte) (value & 0x7f)};
+    }
+
+    private static byte[] zeros(int length) {
+        return new byte[length];
+    }
+
+    // ID3v2
+
+    private static byte[] id3Header(int version, int flags, int tagSize) {
+        return concat(bytes("ID3"), new byte[]{(byte) version, 0, (byte) flags},
+                syncsafe(tagSize));
+    }
+
+    /**
+     * @return an ID3v2.3 text frame with the given ISO-8859-1 text
+     */
+    private static byte[] id3v3Frame(String id, String text) {
+        byte[] data = concat(new byte[]{0}, text.getBytes(ISO_8859_1));
+        return concat(bytes(id), int32(data.length), zeros(2), data);
+    }
+
+    private static byte[] id3v3Tag(byte[]... frames) {
+        byte[] body = concat(concat(frames), zeros(16));
+        return concat(id3Header(3, 0, body.length), body);
+    }
+
+    @Test
+    public void wellFormedId3v23() throws IOException {
+        byte[] utf16Data = concat(new byte[]{1}, "Bj\u00f6rk".getBytes(UTF_16), zeros(2));
+        byte[] utf16Frame = concat(bytes("TPE1"), int32(utf16Data.length), zeros(2), utf16Data);
+        EmbeddedTags tags = read(id3v3Tag(id3v3Frame("TIT2", "Hyperballad"), utf16Frame,
+                id3v3Frame("TALB", "Post"), id3v3Frame("TYER", "1995"),
+                id3v3Frame("TPOS", "1/2")), zeros(64));
+        assertEquals("Hyperballad", tags.getTitle());
+        assertEquals("Bj\u00f6rk", tags.getArtist());
+        assertEquals("Post", tags.getAlbum());
+        assertEquals(1995, tags.getYear());
+        assertEquals(1, tags.getDiscNumber());
+    }
+
+    @Test
+    public void wellFormedId3v24() throws IOException {
+        byte[] data = concat(new byte[]{3}, "Caf\u00e9 del Mar".getBytes(UTF_8));
+        byte[] frame = concat(bytes("TALB"), syncsafe(data.length), zeros(2), data);
+        byte[] dateData = concat(new byte[]{0}, bytes("2004-05-01"));
+        byte[] dateFrame = concat(bytes("TDRC"), syncsafe(dateData.length), zeros(2), dateData);
+        byte[] body = concat(frame, dateFrame);
+        EmbeddedTags tags = read(id3Header(4, 0, body.length), body, zeros(64));
+        assertEquals("Caf\u00e9 del Mar", tags.getAlbum());
+        assertEquals(2004, tags.getYear());
+    }
+
+    @Test
+    public void wellFormedId3v22() throws IOException {
+        byte[] data = concat(new byte[]{0}, bytes("Teardrop"));
+        byte[] frame = concat(bytes("TT2"), new byte[]{0, 0, (byte) data.length}, data);
+        EmbeddedTags tags = read(id3Header(2, 0, frame.length), frame, zeros(64));
+        assertEquals("Teardrop", tags.getTitle());
+    }
+
+    @Test
+    public void unsupportedId3VersionIsIgnored() throws IOException {
+        byte[] frame = id3v3Frame("TIT2", "Hyperballad");
+        assertNull(read(id3Header(5, 0, frame.length), frame, zeros(64)));
+    }
+
+    @Test
+    public void id3FrameBeyondTagIsIgnored() throws IOException {
+        byte[] title = id3v3Frame("TIT2", "Hyperballad");
+        byte[] broken = concat(bytes("TALB"), int32(1000), zeros(2), new byte[]{0}, bytes("Post"));
+        byte[] body = concat(title, broken);
+        EmbeddedTags tags = read(id3Header(3, 0, body.length), body, zeros(2000));
+        assertEquals("Hyperballad", tags.getTitle());
+        assertNull(tags.getAlbum());
+    }
+
+    @Test
+    public void id3FrameWithNegativeSizeIsIgnored() throws IOException {
+        byte[] title = id3v3Frame("TIT2", "Hyperballad");
+        byte[] broken = concat(bytes("TALB"), int32(0xfffffff0L), zeros(2), bytes("Post"));
+        byte[] body = concat(title, broken);
+        EmbeddedTags tags = read(id3Header(3, 0, body.length), body, zeros(64));
+        assertEquals("Hyperballad", tags.getTitle());
+        assertNull(tags.getAlbum());
+    }
+
+    @Test
+    public void id3TagBeyondEndOfFileIsClamped() throws IOException {
+        byte[] frame = id3v3Frame("TIT2", "Hyperballad");
+        EmbeddedTags tags = read(id3Header(3, 0, 100000), frame);
+        assertEquals("Hyperballad", tags.getTitle());
+    }
+
+    @Test
+    public void id3TagWithoutFramesIsNoTag() throws IOException {
+        assertNull(read(id3Header(3, 0, 1000), zeros(2)));
+    }
+
+    @Test
+    public void id3ExtendedHeaderWithNegativeSizeIsIgnored() throws IOException {
+        byte[] body = concat(int32(0xfffffff0L), id3v3Frame("TIT2", "Hyperballad"));
+        assertNull(read(id3Header(3, 0x40, body.length), body, zeros(64)));
+    }
+
+    @Test
+    public void id3ExtendedHeaderBeyondTagIsIgnored() throws IOException {
+        byte[] body = concat(int32(5000), id3v3Frame("TIT2", "Hyperballad"));
+        assertNull(read(id3Header(3, 0x40, body.length), body, zeros(64)));
+    }
+
+    @Test
+    public void emptyId3TextFramesAreIgnored() throws IOException {
+        byte[] emptyTitle = concat(bytes("TIT2"), int32(1), zeros(2), new byte[]{0});
+        EmbeddedTags tags = read(id3v3Tag(emptyTitle, id3v3Frame("TIT2", "  "),
+                id3v3Frame("TIT2", "Hyperballad")), zeros(64));
+        assertEquals("Hyperballad", tags.getTitle());
+    }
+
+    // FLAC
+
+    private static byte[] vorbisComment(int declaredCount, String... comments) {
+        byte[] vendor = bytes("reference libFLAC 1.2.1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] header = concat(int32LittleEndian(vendor.length), vendor,
+                int32LittleEndian(declaredCount));
+        out.write(header, 0, header.length);
+        for (String comment : comments) {
+            byte[] entry = concat(int32LittleEndian(comment.getBytes(UTF_8).length),
+                    comment.getBytes(UTF_8));
+            out.write(entry, 0, entry.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] flacBlock(int type, boolean last, byte[] content) {
+        return flacBlock(type, last, content.length, content);
+    }
+
+    private static byte[] flacBlock(int type, boolean last, int declaredLength, byte[] content) {
+        return concat(new byte[]{(byte) (type | (last ? 0x80 : 0)), (byte) (declaredLength >> 16),
+                (byte) (declaredLength >> 8), (byte) declaredLength}, content);
+    }
+
+    @Test
+    public void wellFormedFlac() throws IOException {
+        byte[] comment = vorbisComment(4, "TITLE=Roads", "artist=Portishead",
+                "ALBUM=Dummy", "DATE=1994-08-22");
+        EmbeddedTags tags = read(bytes("fLaC"), flacBlock(0, false, zeros(34)),
+                flacBlock(6, false, zeros(100)), flacBlock(4, true, comment), zeros(64));
+        assertEquals("Roads", tags.getTitle());
+        assertEquals("Portishead", tags.getArtist());
+        assertEquals("Dummy", tags.getAlbum());
+        assertEquals(1994, tags.getYear());
+    }
+
+    @Test
+    public void flacWithoutCommentBlockIsNoTag() throws IOException {
+        assertNull(read(bytes("fLaC"), flacBlock(0, true, zeros(34)), zeros(64)));
+    }
+
+    @Test
+    public void flacBlockBeyondEndOfFileIsIgnored() throws IOException {
+        byte[] comment = vorbisComment(1, "TITLE=Roads");
+        assertNull(read(bytes("fLaC"), flacBlock(6, false, 0xffffff, zeros(10)),
+                flacBlock(4, true, comment)));
+    }
+
+    @Test
+    public void flacCommentBlockBeyondEndOfFileIsClamped() throws IOException {
+        byte[] comment = vorbisComment(1, "TITLE=Roads");
+        EmbeddedTags tags = read(bytes("fLaC"), flacBlock(4, true, 100000, comment));
+        assertEquals("Roads", tags.getTitle());
+    }
+
+    @Test
+    public void vorbisVendorBeyondBlockIsIgnored() throws IOException {
+        byte[] comment = concat(int32LittleEndian(100000), bytes("libFLAC"));
+        assertNull(read(bytes("fLaC"), flacBlock(4, true, comment), zeros(64)));
+    }
+
+    @Test
+    public void vorbisVendorWithNegativeLengthIsIgnored() throws IOException {
+        byte[] comment = concat(int32LittleEndian(-8), zeros(16));
+        assertNull(read(bytes("fLaC"), flacBlock(4, true, comment), zeros(64)));
+    }
+
+    @Test
+    public void vorbisCommentCountBeyondBlockIsClamped() throws IOException {
+        byte[] comment = vorbisComment(1000, "TITLE=Roads", "ALBUM=Dummy");
+        EmbeddedTags tags = read(bytes("fLaC"), flacBlock(4, true, comment));
+        assertEquals("Roads", tags.getTitle());
+        assertEquals("Dummy", tags.getAlbum());
+    }
+
+    @Test
+    public void vorbisCommentBeyondBlockIsIgnored() throws IOException {
+        byte[] comment = concat(vorbisComment(2, "TITLE=Roads"), int32LittleEndian(1000),
+                bytes("ALBUM=Dummy"));
+        EmbeddedTags tags = read(bytes("fLaC"), flacBlock(4, true, comment), zeros(2000));
+        assertEquals("Roads", tags.getTitle());
+        assertNull(tags.getAlbum());
+    }
+
+    @Test
+    public void vorbisCommentsWithoutSeparatorAreIgnored() throws IOException {
+        byte[] comment = vorbisComment(3, "TITLE", "=Roads", "TITLE=Roads");
+        EmbeddedTags tags = read(bytes("fLaC"), flacBlock(4, true, comment), zeros(64));
+        assertEquals("Roads", tags.getTitle());
+    }
+
+    // MP4
+
+    private static byte[] atom(String type, byte[]... children) {
+        byte[] content = concat(children);
+        return concat(int32(8 + content.length), bytes(type), content);
+    }
+
+    private static byte[] mp4Item(String type, String value) {
+        return atom(type, atom("data", int32(1), zeros(4), value.getBytes(UTF_8)));
+    }
+
+    private static byte[] moov(byte[]... items) {
+        byte[] meta = atom("meta", zeros(4), atom("hdlr", zeros(25)), atom("ilst", items));
+        return atom("moov", atom("mvhd", zeros(100)), atom("udta", meta));
+    }
+
+    private static byte[] ftyp() {
+        return atom("ftyp", bytes("M4A "), zeros(4), bytes("M4A mp42isom"));
+    }
+
+    @Test
+    public void wellFormedMp4() throws IOException {
+        byte[] disk = atom("disk", atom("data", int32(0), zeros(4), new byte[]{0, 0, 0, 2, 0, 3,
+                0, 0}));
+        EmbeddedTags tags = read(ftyp(), atom("mdat", zeros(1000)), moov(
+                mp4Item("\u00a9nam", "Glory Box"), mp4Item("\u00a9ART", "Portishead"),
+                mp4Item("aART", "Portishead"), mp4Item("\u00a9day", "1994"), disk));
+        assertEquals("Glory Box", tags.getTitle());
+        assertEquals("Portishead", tags.getArtist());
+        assertEquals("Portishead", tags.getAlbumArtist());
+        assertEquals(1994, tags.getYear());
+        assertEquals(2, tags.getDiscNumber());
+    }
+
+    @Test
+    public void mp4WithoutMoovIsNoTag() throws IOException {
+        assertNull(read(ftyp(), atom("mdat", zeros(1000))));
+    }
+
+    @Test
+    public void mp4AtomSmallerThanHeaderIsIgnored() throws IOException {
+        assertNull(read(ftyp(), int32(4), bytes("free"),
+                moov(mp4Item("\u00a9nam", "Glory Box"))));
+    }
+
+    @Test
+    public void mp4AtomWithNegativeLargeSizeIsIgnored() throws IOException {
+        assertNull(read(ftyp(), int32(1), bytes("mdat"), int32(0xffffffffL), int32(0),
+                moov(mp4Item("\u00a9nam", "Glory Box"))));
+    }
+
+    @Test
+    public void mp4AtomBeyondEndOfFileIsIgnored() throws IOException {
+        assertNull(read(ftyp(), int32(0x7fffffff), bytes("mdat"), zeros(100),
+                moov(mp4Item("\u00a9nam", "Glory Box"))));
+    }
+
+    @Test
+    public void mp4MoovBeyondEndOfFileIsClamped() throws IOException {
+        byte[] moov = moov(mp4Item("\u00a9nam", "Glory Box"));
+        byte[] hugeSize = int32(0x7fffffff);
+        System.arraycopy(hugeSize, 0, moov, 0, 4);
+        EmbeddedTags tags = read(ftyp(), moov);
+        assertEquals("Glory Box", tags.getTitle());
+    }
+
+    @Test
+    public void mp4ChildAtomBeyondParentIsIgnored() throws IOException {
+        byte[] udta = concat(int32(100000), bytes("udta"), zeros(32));
+        assertNull(read(ftyp(), atom("moov", atom("mvhd", zeros(100)), udta)));
+    }
+
+    @Test
+    public void mp4ItemBeyondListIsIgnored() throws IOException {
+        byte[] title = mp4Item("\u00a9nam", "Glory Box");
+        byte[] broken = concat(int32(1000), bytes("\u00a9ART"), zeros(32));
+        EmbeddedTags tags = read(ftyp(), moov(title, broken));
+        assertEquals("Glory Box", tags.getTitle());
+        assertNull(tags.getArtist());
+    }
+
+    @Test
+    public void mp4ItemWithNegativeSizeIsIgnored() throws IOException {
+        byte[] title = mp4Item("\u00a9nam", "Glory Box");
+        byte[] broken = concat(int32(0xfffffff0L), bytes("\u00a9ART"), zeros(32));
+        EmbeddedTags tags = read(ftyp(), moov(title, broken));
+        assertEquals("Glory Box", tags.getTitle());
+        assertNull(tags.getArtist());
+    }
+
+    @Test
+    public void mp4DataAtomWithoutValueIsIgnored() throws IOException {
+        byte[] emptyTitle = atom("\u00a9nam", atom("data", int32(1)));
+        byte[] shortDisk = atom("disk", atom("data", int32(0), zeros(4), new byte[]{0}));
+        EmbeddedTags tags = read(ftyp(), moov(emptyTitle, shortDisk,
+                mp4Item("\u00a9alb", "Dummy")));
+        assertNull(tags.getTitle());
+        assertEquals(0, tags.getDiscNumber());
+        assertEquals("Dummy", tags.getAlbum());
+    }
+
+    // Other files
+
+    @Test
+    public void tinyFileIsNoTag() throws IOException {
+        assertNull(read(bytes("ID3")));
+        assertNull(read(new byte[0]));
+    }
+
+    @Test
+    public void unknownFormatIsNoTag() throws IOException {
+        assertNull(read(bytes("RIFF"), zeros(100)));
+    }
+}
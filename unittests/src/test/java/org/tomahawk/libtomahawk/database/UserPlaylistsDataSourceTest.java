@@ -0,0 +1,155 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the diff between the stored and the current tracks of a playlist, which decides what
+ * storing a playlist inserts, deletes and moves
+ */
+public class UserPlaylistsDataSourceTest {
+
+    /**
+     * @return stored tracks with the given keys at increasing positions. Their ids are their
+     * position plus 100.
+     */
+    private static ArrayList<UserPlaylistsDataSource.StoredTrack> makeStoredTracks(
+            String... keys) {
+        ArrayList<UserPlaylistsDataSource.StoredTrack> storedTracks
+                = new ArrayList<UserPlaylistsDataSource.StoredTrack>();
+        for (int i = 0; i < keys.length; i++) {
+            storedTracks.add(new UserPlaylistsDataSource.StoredTrack(100 + i, keys[i], i));
+        }
+        return storedTracks;
+    }
+
+    /**
+     * @return the ids of the given stored tracks, 0 for null
+     */
+    private static Long[] getIds(UserPlaylistsDataSource.StoredTrack[] storedTracks) {
+        Long[] ids = new Long[storedTracks.length];
+        for (int i = 0; i < storedTracks.length; i++) {
+            ids[i] = storedTracks[i] != null ? storedTracks[i].mId : 0L;
+        }
+        return ids;
+    }
+
+    private static HashSet<Long> getIds(ArrayList<UserPlaylistsDataSource.StoredTrack> tracks) {
+        HashSet<Long> ids = new HashSet<Long>();
+        for (UserPlaylistsDataSource.StoredTrack storedTrack : tracks) {
+            ids.add(storedTrack.mId);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the number of kept tracks, which have to be moved to their new position
+     */
+    private static int getMovedCount(UserPlaylistsDataSource.StoredTrack[] keptTracks) {
+        int movedCount = 0;
+        for (int i = 0; i < keptTracks.length; i++) {
+            if (keptTracks[i] != null && keptTracks[i].mPosition != i) {
+                movedCount++;
+            }
+        }
+        return movedCount;
+    }
+
+    private static void assertDiff(String[] storedKeys, String[] keys, Long[] expectedKeptIds,
+            Long[] expectedDeletedIds, int expectedMovedCount) {
+        UserPlaylistsDataSource.StoredTrack[] keptTracks
+                = new UserPlaylistsDataSource.StoredTrack[keys.length];
+        ArrayList<UserPlaylistsDataSource.StoredTrack> deletedTracks = UserPlaylistsDataSource
+                .matchStoredTracks(makeStoredTracks(storedKeys), keys, keptTracks);
+        assertArrayEquals(expectedKeptIds, getIds(keptTracks));
+        assertEquals(expectedDeletedIds.length, deletedTracks.size());
+        assertEquals(new HashSet<Long>(Arrays.asList(expectedDeletedIds)), getIds(deletedTracks));
+        assertEquals(expectedMovedCount, getMovedCount(keptTracks));
+    }
+
+    private static String[] keys(String... keys) {
+        return keys;
+    }
+
+    private static Long[] ids(Long... ids) {
+        return ids;
+    }
+
+    @Test
+    public void unchangedPlaylistKeepsEverything() {
+        assertDiff(keys("a", "b", "c"), keys("a", "b", "c"), ids(100L, 101L, 102L), ids(), 0);
+    }
+
+    @Test
+    public void reorderOnlyMovesTracks() {
+        assertDiff(keys("a", "b", "c"), keys("c", "a", "b"), ids(102L, 100L, 101L), ids(), 3);
+        assertDiff(keys("a", "b", "c", "d"), keys("b", "a", "c", "d"),
+                ids(101L, 100L, 102L, 103L), ids(), 2);
+    }
+
+    @Test
+    public void appendedTrackIsInserted() {
+        assertDiff(keys("a", "b"), keys("a", "b", "c"), ids(100L, 101L, 0L), ids(), 0);
+    }
+
+    @Test
+    public void removedTrackIsDeletedAndFollowingTracksAreMoved() {
+        assertDiff(keys("a", "b", "c"), keys("a", "c"), ids(100L, 102L), ids(101L), 1);
+    }
+
+    @Test
+    public void replacedTrackIsDeletedAndInserted() {
+        assertDiff(keys("a", "b", "c"), keys("a", "x", "c"), ids(100L, 0L, 102L), ids(101L), 0);
+    }
+
+    @Test
+    public void duplicatesAreMatchedInTheirOrder() {
+        assertDiff(keys("a", "b", "a"), keys("a", "a", "b"), ids(100L, 102L, 101L), ids(), 2);
+        assertDiff(keys("a", "a", "a"), keys("a", "a", "a"), ids(100L, 101L, 102L), ids(), 0);
+    }
+
+    @Test
+    public void removedDuplicateDeletesTheLastOne() {
+        assertDiff(keys("a", "b", "a"), keys("b", "a"), ids(101L, 100L), ids(102L), 2);
+        assertDiff(keys("a", "a", "a"), keys("a"), ids(100L), ids(101L, 102L), 0);
+    }
+
+    @Test
+    public void addedDuplicateIsInserted() {
+        assertDiff(keys("a", "b"), keys("a", "b", "a"), ids(100L, 101L, 0L), ids(), 0);
+        assertDiff(keys("a"), keys("a", "a", "a"), ids(100L, 0L, 0L), ids(), 0);
+    }
+
+    @Test
+    public void newPlaylistInsertsEverything() {
+        assertDiff(keys(), keys("a", "b", "a"), ids(0L, 0L, 0L), ids(), 0);
+    }
+
+    @Test
+    public void emptiedPlaylistDeletesEverything() {
+        assertDiff(keys("a", "b", "a"), keys(), ids(), ids(100L, 101L, 102L), 0);
+    }
+}